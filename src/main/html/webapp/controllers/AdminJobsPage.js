@@ -5,6 +5,7 @@ AdminJobsPage = can.Control({
     element.html(can.view('views/admin/jobs.ejs'));
     element.fadeIn();
 
+    this.jobs = {};
     this.loadJobs("#job-list-running-stq", "running-stq");
     this.loadJobs("#job-list-running-ltq", "running-ltq");
     this.loadJobs("#job-list-current", "current");
@@ -15,22 +16,12 @@ AdminJobsPage = can.Control({
   loadJobs: function(element, mySate) {
     var that = this;
     JobAdminDetails.findAll({
-      state: mySate
+      state: mySate,
+      limit: 500
     }, function(jobs) {
-      $.each(jobs, function(key, job) {
-        if (job.attr('startTime') > 0 && job.attr('endTime') === 0) {
-          //running
-          job.attr('endTime', job.attr('currentTime'));
-        } else {
-          job.attr('endTime', job.attr('endTime'));
-        }
-        if (job.attr('setupStartTime') > 0 && job.attr('setupEndTime') === 0) {
-          //running
-          job.attr('setupEndTime', job.attr('currentTime'));
-        } else {
-          job.attr('setupEndTime', job.attr('setupEndTime'));
-        }
-      });
+      that.updateTimes(jobs);
+      jobs.attr('list', mySate);
+      that.jobs[mySate] = jobs;
       $(element).html(can.view('views/admin/jobs-list.ejs', jobs));
     }, function(response) {
       new ErrorPage(that.element, response);
@@ -38,6 +29,42 @@ AdminJobsPage = can.Control({
 
   },
 
+  updateTimes: function(jobs) {
+    $.each(jobs, function(key, job) {
+      if (job.attr('startTime') > 0 && job.attr('endTime') === 0) {
+        //running
+        job.attr('endTime', job.attr('currentTime'));
+      } else {
+        job.attr('endTime', job.attr('endTime'));
+      }
+      if (job.attr('setupStartTime') > 0 && job.attr('setupEndTime') === 0) {
+        //running
+        job.attr('setupEndTime', job.attr('currentTime'));
+      } else {
+        job.attr('setupEndTime', job.attr('setupEndTime'));
+      }
+    });
+  },
+
+  // loads the next page and appends it to the list
+  '.load-more-btn click': function(el, ev) {
+    var that = this;
+    var jobs = this.jobs[el.data('list')];
+
+    el.button('loading');
+    JobAdminDetails.findAll({
+      state: el.data('list'),
+      before: jobs.attr('next')
+    }, function(page) {
+      that.updateTimes(page);
+      jobs.push.apply(jobs, page);
+      jobs.attr('next', page.attr('next'));
+      el.button('reset');
+    }, function(response) {
+      new ErrorPage(that.element, response);
+    });
+  },
+
   '.delete-btn click': function(el, ev) {
 
     job = el.closest('tr').data('job');
@@ -2,8 +2,13 @@ package cloudgene.mapred;
 
 import cloudgene.mapred.database.util.DatabaseConnectorFactory;
 import cloudgene.mapred.database.util.Fixtures;
+import cloudgene.mapred.jobs.LeaseManager;
 import cloudgene.mapred.jobs.PersistentWorkflowEngine;
-import cloudgene.mapred.jobs.WorkflowEngine;
+import cloudgene.mapred.jobs.queue.FairSharePolicy;
+import cloudgene.mapred.jobs.queue.FifoPolicy;
+import cloudgene.mapred.jobs.queue.ResourceLedger;
+import cloudgene.mapred.jobs.queue.ResourcePolicy;
+import cloudgene.mapred.jobs.queue.SchedulingPolicy;
 import cloudgene.mapred.util.BuildUtil;
 import cloudgene.mapred.util.Config;
 import cloudgene.mapred.util.Settings;
@@ -34,7 +39,7 @@ import java.sql.SQLException;
 
 public class Main implements Daemon {
 
-	public static final String VERSION = "1.30.4";
+	public static final String VERSION = "1.30.5";
 
 	private Database database;
 
@@ -185,10 +190,27 @@ public class Main implements Daemon {
 
 			log.info("Start workflow engine.");
 
-			WorkflowEngine engine = new PersistentWorkflowEngine(database, settings.getThreadsQueue(),
-					settings.getThreadsSetupQueue());
+			PersistentWorkflowEngine engine = new PersistentWorkflowEngine(database, settings.getThreadsQueue(),
+					settings.getThreadsSetupQueue(), settings.getWorker(), settings.getLeaseTimeout() * 1000L);
+			SchedulingPolicy policy = null;
+			if (settings.getScheduler() != null && settings.getScheduler().equalsIgnoreCase("fair")) {
+				policy = new FairSharePolicy(settings);
+			}
+			if (settings.getResourceCpus() > 0) {
+				ResourceLedger ledger = new ResourceLedger(settings.getResourceCpus(), settings.getResourceMemory());
+				policy = new ResourcePolicy(policy != null ? policy : new FifoPolicy(), ledger,
+						settings.getMaxBackfillTime() * 1000L);
+			}
+			if (policy != null) {
+				engine.setSchedulingPolicy(policy);
+			}
 			new Thread(engine).start();
 
+			if (engine.isCluster()) {
+				log.info("Start lease manager of worker '" + settings.getWorker() + "'.");
+				new LeaseManager(database, engine, settings).start();
+			}
+
 			int port = Integer.parseInt(line.getOptionValue("port", config.getPort()));
 
 			log.info("Setting web server at port " + port);
@@ -230,6 +252,8 @@ public class Main implements Daemon {
 
 			server.start();
 
+			settings.startApplicationWatcher();
+
 		} catch (Exception e) {
 
 			log.error("Can't launch the web server.\nAn unexpected " + "exception occurred:", e);
@@ -261,6 +285,11 @@ public class Main implements Daemon {
 	@Override
 	public void stop() throws Exception {
 		server.stop();
+		server.getSettings().stopApplicationWatcher();
+		if (server.getWorkflowEngine() != null) {
+			// writes pending job updates
+			server.getWorkflowEngine().stop();
+		}
 		database.disconnect();
 	}
 
@@ -27,6 +27,8 @@ import cloudgene.mapred.api.v2.admin.GetStatistics;
 import cloudgene.mapred.api.v2.admin.GetUsers;
 import cloudgene.mapred.api.v2.admin.HotRetireJob;
 import cloudgene.mapred.api.v2.admin.ResetDownloads;
+import cloudgene.mapred.api.v2.admin.ResumeJob;
+import cloudgene.mapred.api.v2.admin.ResumeJobs;
 import cloudgene.mapred.api.v2.admin.RetireJobs;
 import cloudgene.mapred.api.v2.admin.server.BlockQueue;
 import cloudgene.mapred.api.v2.admin.server.EnterMaintenance;
@@ -45,6 +47,7 @@ import cloudgene.mapred.api.v2.jobs.GetChunk;
 import cloudgene.mapred.api.v2.jobs.GetJobDetails;
 import cloudgene.mapred.api.v2.jobs.GetJobStatus;
 import cloudgene.mapred.api.v2.jobs.GetJobs;
+import cloudgene.mapred.api.v2.jobs.GetLogFile;
 import cloudgene.mapred.api.v2.jobs.GetLogs;
 import cloudgene.mapred.api.v2.jobs.RestartJob;
 import cloudgene.mapred.api.v2.jobs.ShareResults;
@@ -131,6 +134,7 @@ public class WebApp extends Application {
 		router.attach(prefix + "/api/v2/jobs/{job}/cancel", CancelJob.class);
 		router.attach(prefix + "/api/v2/jobs/{job}/restart", RestartJob.class);
 		router.attach(prefix + "/api/v2/jobs/{job}/chunks/{filename}", GetChunk.class);
+		router.attach(prefix + "/api/v2/jobs/{job}/logs/{logfile}", GetLogFile.class);
 
 		// user registration
 		router.attach(prefix + "/api/v2/users/register", RegisterUser.class);
@@ -168,11 +172,13 @@ public class WebApp extends Application {
 		// admin jobs
 		router.attach(prefix + "/api/v2/admin/jobs", GetAllJobs.class);
 		router.attach(prefix + "/api/v2/admin/jobs/retire", RetireJobs.class);
+		router.attach(prefix + "/api/v2/admin/jobs/resume", ResumeJobs.class);
 		router.attach(prefix + "/api/v2/admin/jobs/{job}/reset", ResetDownloads.class);
 		router.attach(prefix + "/api/v2/admin/jobs/{job}/retire", HotRetireJob.class);
 		router.attach(prefix + "/api/v2/admin/jobs/{job}/priority", ChangePriority.class);
 		router.attach(prefix + "/api/v2/admin/jobs/{job}/change-retire/{days}", ChangeRetireDate.class);
 		router.attach(prefix + "/api/v2/admin/jobs/{job}/archive", ArchiveJob.class);
+		router.attach(prefix + "/api/v2/admin/jobs/{job}/resume", ResumeJob.class);
 
 		// admin users
 		router.attach(prefix + "/api/v2/admin/users", GetUsers.class);
@@ -1,7 +1,8 @@
 package cloudgene.mapred.api.v2.admin;
 
-import java.io.File;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Vector;
 
 import net.sf.json.JSONArray;
@@ -19,7 +20,6 @@ import cloudgene.mapred.database.JobDao;
 import cloudgene.mapred.jobs.AbstractJob;
 import cloudgene.mapred.jobs.WorkflowEngine;
 import cloudgene.mapred.util.BaseResource;
-import genepi.io.FileUtil;
 
 public class GetAllJobs extends BaseResource {
 
@@ -27,6 +27,10 @@ public class GetAllJobs extends BaseResource {
 	 * Resource to get job status information
 	 */
 
+	public static final int DEFAULT_PAGE_SIZE = 500;
+
+	public static final int MAX_PAGE_SIZE = 5000;
+
 	@Get
 	public Representation getJobs() {
 
@@ -47,6 +51,25 @@ public class GetAllJobs extends BaseResource {
 			state = getQuery().getFirst("state").getValue();
 		}
 
+		// keyset pagination: id of the last job of the previous page. Without
+		// limit and before all jobs are returned.
+		String before = getQueryValue("before");
+		boolean paged = before != null || getQueryValue("limit") != null;
+		int limit = DEFAULT_PAGE_SIZE;
+		if (getQueryValue("limit") != null) {
+			try {
+				limit = Math.min(Math.max(Integer.parseInt(getQueryValue("limit")), 1), MAX_PAGE_SIZE);
+			} catch (NumberFormatException e) {
+				setStatus(Status.CLIENT_ERROR_BAD_REQUEST);
+				return new StringRepresentation("Parameter limit has to be a number.");
+			}
+		}
+		String next = null;
+		// totals of paged lists are counted in the database with the filter of
+		// the list
+		Map<Integer, Integer> states = new HashMap<Integer, Integer>();
+		boolean counted = false;
+
 		WorkflowEngine engine = getWorkflowEngine();
 		JobDao dao = new JobDao(getDatabase());
 		List<AbstractJob> jobs = new Vector<AbstractJob>();
@@ -65,7 +88,14 @@ public class GetAllJobs extends BaseResource {
 
 		case "current":
 
-			jobs = dao.findAllNotRetiredJobs();
+			if (paged) {
+				jobs = dao.findAllNotRetiredJobs(before, limit);
+				next = getNext(jobs, limit);
+				states = dao.countAllNotRetiredJobsByState();
+				counted = true;
+			} else {
+				jobs = dao.findAllNotRetiredJobs(null, Integer.MAX_VALUE);
+			}
 			List<AbstractJob> toRemove = new Vector<AbstractJob>();
 			for (AbstractJob job : jobs) {
 				if (engine.isInQueue(job)) {
@@ -77,7 +107,19 @@ public class GetAllJobs extends BaseResource {
 
 		case "retired":
 
-			jobs = dao.findAllByState(AbstractJob.STATE_RETIRED);
+			if (paged) {
+				jobs = dao.findAllByState(AbstractJob.STATE_RETIRED, before, limit);
+				next = getNext(jobs, limit);
+				states = dao.countAllByState(AbstractJob.STATE_RETIRED);
+				counted = true;
+			} else {
+				jobs = dao.findAllByState(AbstractJob.STATE_RETIRED, null, Integer.MAX_VALUE);
+			}
+			break;
+
+		case "disk-usage":
+
+			jobs = dao.findAllByDiskUsage(limit);
 			break;
 
 		}
@@ -92,52 +134,30 @@ public class GetAllJobs extends BaseResource {
 
 		JSONObject object = new JSONObject();
 
-		int success = 0;
-		int failed = 0;
-		int pending = 0;
-		int waiting = 0;
-		int canceld = 0;
-		int running = 0;
-
 		for (AbstractJob job : jobs) {
-			
-			String workspace = getSettings().getLocalWorkspace();
-			String folder = FileUtil.path(workspace, job.getId());
-			File file = new File(folder);
-			if (file.exists()) {
-				long size = FileUtils.sizeOfDirectory(file);
-				job.setWorkspaceSize(FileUtils.byteCountToDisplaySize(size));
-			}
-			
-			if (job.getState() == AbstractJob.STATE_EXPORTING || job.getState() == AbstractJob.STATE_RUNNING) {
-				running++;
-			}
-			if (job.getState() == AbstractJob.STATE_SUCCESS
-					|| job.getState() == AbstractJob.STATE_SUCESS_AND_NOTIFICATION_SEND) {
-				success++;
-			}
-			if (job.getState() == AbstractJob.STATE_FAILED
-					|| job.getState() == AbstractJob.STATE_FAILED_AND_NOTIFICATION_SEND) {
-				failed++;
-			}
-			if (job.getState() == AbstractJob.STATE_DEAD) {
-				pending++;
-			}
-			if (job.getState() == AbstractJob.STATE_WAITING) {
-				waiting++;
+
+			// updated on export and by the disk usage scanner
+			if (job.getDiskUsage() > 0) {
+				job.setWorkspaceSize(FileUtils.byteCountToDisplaySize(job.getDiskUsage()));
 			}
-			if (job.getState() == AbstractJob.STATE_CANCELED) {
-				canceld++;
+
+			if (!counted) {
+				Integer count = states.get(job.getState());
+				states.put(job.getState(), count != null ? count + 1 : 1);
 			}
 		}
 
 		object.put("count", jobs.size());
-		object.put("success", success);
-		object.put("failed", failed);
-		object.put("pending", pending);
-		object.put("waiting", waiting);
-		object.put("running", running);
-		object.put("canceld", canceld);
+		object.put("success",
+				count(states, AbstractJob.STATE_SUCCESS, AbstractJob.STATE_SUCESS_AND_NOTIFICATION_SEND));
+		object.put("failed", count(states, AbstractJob.STATE_FAILED, AbstractJob.STATE_FAILED_AND_NOTIFICATION_SEND));
+		object.put("pending", count(states, AbstractJob.STATE_DEAD));
+		object.put("waiting", count(states, AbstractJob.STATE_WAITING));
+		object.put("running", count(states, AbstractJob.STATE_RUNNING, AbstractJob.STATE_EXPORTING));
+		object.put("canceld", count(states, AbstractJob.STATE_CANCELED));
+		if (next != null) {
+			object.put("next", next);
+		}
 
 		JSONArray jsonArray = JSONArray.fromObject(jobs, config);
 		object.put("data", jsonArray);
@@ -145,4 +165,23 @@ public class GetAllJobs extends BaseResource {
 		return new StringRepresentation(object.toString());
 
 	}
+
+	private int count(Map<Integer, Integer> states, int... keys) {
+		int count = 0;
+		for (int key : keys) {
+			Integer value = states.get(key);
+			if (value != null) {
+				count += value;
+			}
+		}
+		return count;
+	}
+
+	private String getNext(List<AbstractJob> jobs, int limit) {
+		if (jobs == null || jobs.size() < limit) {
+			return null;
+		}
+		return jobs.get(jobs.size() - 1).getId();
+	}
+
 }
@@ -45,11 +45,30 @@ public class GetStatistics extends BaseResource {
 					"The request requires administration rights.");
 		}
 
+		long end = System.currentTimeMillis();
+		long start = end - (1000L * 60L * 60L * 24L * days);
+
+		// 5m, hour or day. finest tier with data for the window if not set
+		long resolution = CounterHistoryDao.getResolution(start, end, end);
+		String resolutionValue = getQueryValue("resolution");
+		if (resolutionValue != null) {
+			if (resolutionValue.equals("5m")) {
+				resolution = CounterHistoryDao.RESOLUTION_RAW;
+			} else if (resolutionValue.equals("hour")) {
+				resolution = CounterHistoryDao.RESOLUTION_HOUR;
+			} else if (resolutionValue.equals("day")) {
+				resolution = CounterHistoryDao.RESOLUTION_DAY;
+			} else {
+				setStatus(Status.CLIENT_ERROR_BAD_REQUEST);
+				return new StringRepresentation(
+						"Unknown resolution '" + resolutionValue + "'.");
+			}
+		}
+
 		CounterHistoryDao dao = new CounterHistoryDao(getDatabase());
 
-		List<Map<String, String>> stats = dao.getAllBeetween(
-				System.currentTimeMillis() - (1000L * 60L * 60L * 24L * days),
-				System.currentTimeMillis());
+		List<Map<String, String>> stats = dao.getAllBetween(start, end,
+				resolution);
 
 		// minimize points
 		List<Map<String, String>> toRemove = new Vector<Map<String, String>>();
@@ -0,0 +1,58 @@
+package cloudgene.mapred.api.v2.admin;
+
+import org.restlet.data.Status;
+import org.restlet.representation.Representation;
+import org.restlet.representation.StringRepresentation;
+import org.restlet.resource.Get;
+
+import cloudgene.mapred.core.User;
+import cloudgene.mapred.cron.ResumeTasks;
+import cloudgene.mapred.database.JobDao;
+import cloudgene.mapred.jobs.AbstractJob;
+import cloudgene.mapred.util.BaseResource;
+
+public class ResumeJob extends BaseResource {
+
+	@Get
+	public Representation get() {
+
+		User user = getAuthUser();
+
+		if (user == null) {
+
+			setStatus(Status.CLIENT_ERROR_UNAUTHORIZED);
+			return new StringRepresentation("The request requires user authentication.");
+
+		}
+
+		if (!user.isAdmin()) {
+			setStatus(Status.CLIENT_ERROR_UNAUTHORIZED);
+			return new StringRepresentation("The request requires administration rights.");
+		}
+
+		String jobId = getAttribute("job");
+
+		if (jobId == null) {
+			return error404("no job id found.");
+		}
+
+		AbstractJob job = new JobDao(getDatabase()).findById(jobId);
+
+		if (job == null) {
+			return error404("Job " + jobId + " not found.");
+		}
+
+		if (job.getState() != AbstractJob.STATE_DEAD) {
+			return error400("Job " + jobId + " has wrong state for this operation.");
+		}
+
+		if (!ResumeTasks.prepare(job, getSettings())) {
+			return error400("Application '" + job.getApplicationId() + "' of job " + jobId + " not found.");
+		}
+
+		getWorkflowEngine().resume(job);
+
+		return new StringRepresentation("Resumed job " + jobId);
+
+	}
+}
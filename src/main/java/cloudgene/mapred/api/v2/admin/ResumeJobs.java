@@ -0,0 +1,37 @@
+package cloudgene.mapred.api.v2.admin;
+
+import org.restlet.data.Status;
+import org.restlet.representation.Representation;
+import org.restlet.representation.StringRepresentation;
+import org.restlet.resource.Get;
+
+import cloudgene.mapred.core.User;
+import cloudgene.mapred.cron.ResumeTasks;
+import cloudgene.mapred.util.BaseResource;
+
+public class ResumeJobs extends BaseResource {
+
+	@Get
+	public Representation get() {
+
+		User user = getAuthUser();
+
+		if (user == null) {
+
+			setStatus(Status.CLIENT_ERROR_UNAUTHORIZED);
+			return new StringRepresentation("The request requires user authentication.");
+
+		}
+
+		if (!user.isAdmin()) {
+			setStatus(Status.CLIENT_ERROR_UNAUTHORIZED);
+			return new StringRepresentation("The request requires administration rights.");
+		}
+
+		int resumed = ResumeTasks.resumeDeadJobs(getDatabase(), getSettings(), getWorkflowEngine());
+
+		return new StringRepresentation(resumed + " jobs resumed.");
+
+	}
+
+}
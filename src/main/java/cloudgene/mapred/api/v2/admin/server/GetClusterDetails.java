@@ -4,6 +4,7 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.util.Map;
 import java.util.jar.Attributes;
 import java.util.jar.Manifest;
 
@@ -21,6 +22,7 @@ import com.spotify.docker.client.exceptions.DockerException;
 
 import cloudgene.mapred.Main;
 import cloudgene.mapred.core.User;
+import cloudgene.mapred.jobs.queue.ResourceLedger;
 import cloudgene.mapred.util.BaseResource;
 import cloudgene.mapred.util.HadoopCluster;
 import cloudgene.mapred.util.RBinary;
@@ -59,6 +61,29 @@ public class GetClusterDetails extends BaseResource {
 		object.put("threads_setup", getSettings().getThreadsSetupQueue());
 		object.put("threads", getSettings().getThreadsQueue());
 		object.put("max_jobs_user", getSettings().getMaxRunningJobsPerUser());
+
+		// time between submission and start of jobs
+		Map<String, Long> waitTimes = getWorkflowEngine().getWaitTimes();
+		for (String key : waitTimes.keySet()) {
+			object.put(key, waitTimes.get(key));
+		}
+
+		// duration of the last progress sample of all running jobs
+		object.put("progress_sample_duration", getWorkflowEngine().getProgressSampler().getLastDuration());
+
+		// cores and memory reserved by running jobs
+		ResourceLedger ledger = getWorkflowEngine().getResourceLedger();
+		if (ledger != null) {
+			object.put("resources_enabled", true);
+			object.put("resources_cpus", ledger.getCpus());
+			object.put("resources_cpus_used", ledger.getUsedCpus());
+			object.put("resources_memory", ledger.getMemory());
+			object.put("resources_memory_used", ledger.getUsedMemory());
+			object.put("resources_jobs", ledger.getReservations());
+		} else {
+			object.put("resources_enabled", false);
+		}
+
 		URLClassLoader cl = (URLClassLoader) Main.class.getClassLoader();
 		try {
 			URL url = cl.findResource("META-INF/MANIFEST.MF");
@@ -45,6 +45,20 @@ public class UpdateSettings extends BaseResource {
 		String mailPassword = form.getFirstValue("mail-password");
 		String mailName = form.getFirstValue("mail-name");
 
+		// optional, used by the fair share scheduler
+		String maxRunningSlots = form.getFirstValue("max-running-slots-per-user");
+		String schedulerWeights = form.getFirstValue("scheduler-weights");
+
+		Integer maxRunningSlotsValue = null;
+		if (maxRunningSlots != null) {
+			try {
+				maxRunningSlotsValue = Integer.parseInt(maxRunningSlots.trim());
+			} catch (NumberFormatException e) {
+				setStatus(Status.CLIENT_ERROR_BAD_REQUEST);
+				return new StringRepresentation("Invalid number of slots: " + maxRunningSlots);
+			}
+		}
+
 		Settings settings = getSettings();
 		settings.setName(name);
 		settings.getColors().put("background", background);
@@ -63,6 +77,23 @@ public class UpdateSettings extends BaseResource {
 			getSettings().setMail(null);
 		}
 
+		if (maxRunningSlotsValue != null) {
+			settings.setMaxRunningSlotsPerUser(maxRunningSlotsValue);
+		}
+
+		// format: group:weight,group:weight
+		if (schedulerWeights != null) {
+			Map<String, String> weights = new HashMap<String, String>();
+			for (String weight : schedulerWeights.split(",")) {
+				String[] tiles = weight.split(":");
+				if (tiles.length != 2) {
+					continue;
+				}
+				weights.put(tiles[0].trim(), tiles[1].trim());
+			}
+			settings.setSchedulerWeights(weights);
+		}
+
 		getSettings().save();
 
 		return new StringRepresentation("OK.");
@@ -7,6 +7,7 @@ import org.restlet.representation.StringRepresentation;
 import org.restlet.resource.Get;
 
 import cloudgene.mapred.core.User;
+import cloudgene.mapred.database.JobDao;
 import cloudgene.mapred.jobs.AbstractJob;
 import cloudgene.mapred.util.BaseResource;
 import cloudgene.mapred.util.JSONConverter;
@@ -31,6 +32,15 @@ public class CancelJob extends BaseResource {
 
 		AbstractJob job = getWorkflowEngine().getJobById(id);
 
+		// job is executed by an other worker
+		if (job == null && getSettings().getWorker() != null) {
+			job = new JobDao(getDatabase()).findById(id, false);
+			if (job != null && job.getState() != AbstractJob.STATE_WAITING
+					&& job.getState() != AbstractJob.STATE_RUNNING && job.getState() != AbstractJob.STATE_EXPORTING) {
+				return error400("Job " + id + " is not running.");
+			}
+		}
+
 		if (job == null) {
 			return error404("Job " + id + " not found.");
 		}
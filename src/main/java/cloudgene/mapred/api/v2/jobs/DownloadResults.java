@@ -1,10 +1,11 @@
 package cloudgene.mapred.api.v2.jobs;
 
+import java.io.File;
+
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.restlet.data.MediaType;
 import org.restlet.data.Status;
-import org.restlet.representation.FileRepresentation;
 import org.restlet.representation.Representation;
 import org.restlet.resource.Get;
 
@@ -15,6 +16,8 @@ import cloudgene.mapred.jobs.AbstractJob;
 import cloudgene.mapred.jobs.CloudgeneParameterOutput;
 import cloudgene.mapred.jobs.Download;
 import cloudgene.mapred.util.BaseResource;
+import cloudgene.mapred.util.DownloadTransfers;
+import cloudgene.mapred.util.FileRange;
 import cloudgene.mapred.util.PublicUser;
 import genepi.io.FileUtil;
 
@@ -22,6 +25,13 @@ public class DownloadResults extends BaseResource {
 
 	private static final Log log = LogFactory.getLog(DownloadResults.class);
 
+	@Override
+	protected void doInit() {
+		super.doInit();
+		// conditions and ranges are evaluated by FileRange
+		setConditional(false);
+	}
+
 	@Get
 	public Representation get() {
 		try {
@@ -67,6 +77,8 @@ public class DownloadResults extends BaseResource {
 			DownloadDao dao = new DownloadDao(getDatabase());
 			Download download = dao.findByJobAndPath(jobId, FileUtil.path(paramId, filename));
 
+			boolean stored = download != null;
+
 			// job is running and not in database --> download possible of
 			// autoexport params
 			if (download == null) {
@@ -91,14 +103,41 @@ public class DownloadResults extends BaseResource {
 				return error400("number of max downloads exceeded.");
 			}
 
-			String resultFile = FileUtil.path(getSettings().getLocalWorkspace(), download.getPath());
+			File resultFile = new File(FileUtil.path(getSettings().getLocalWorkspace(), download.getPath()));
+			FileRange range = new FileRange(getRequest(), resultFile);
 
-			log.debug("Downloading file " + resultFile);
+			if (range.isNotModified()) {
+				setStatus(Status.REDIRECTION_NOT_MODIFIED);
+				return null;
+			}
+
+			if (!range.isSatisfiable()) {
+				return error(Status.CLIENT_ERROR_REQUESTED_RANGE_NOT_SATISFIABLE,
+						"Range not satisfiable. File size: " + range.getSize());
+			}
 
-			// update download counter
-			download.decCount();
-			dao.update(download);
-			return new FileRepresentation(resultFile, mediaType);
+			log.debug("Downloading file " + resultFile + " from byte " + range.getStart());
+
+			// every request from the first byte is charged. Later ranges of a transfer
+			// that was charged recently are free.
+			String client = getRequest().getClientInfo().getAddress();
+			if (range.getStart() == 0 || !DownloadTransfers.isOpen(download.getPath(), range.getRangeToken(), client)) {
+				boolean charged = stored ? dao.decrementCount(download) : download.tryDecCount();
+				if (!charged) {
+					return error400("number of max downloads exceeded.");
+				}
+				if (stored) {
+					download.decCount();
+				}
+				range.setToken(DownloadTransfers.open(download.getPath(), client));
+			} else {
+				range.setToken(range.getRangeToken());
+			}
+
+			if (range.isPartial()) {
+				setStatus(Status.SUCCESS_PARTIAL_CONTENT);
+			}
+			return range.createRepresentation(mediaType);
 
 		} catch (Exception e) {
 			e.printStackTrace();
@@ -8,11 +8,10 @@ import org.restlet.resource.Get;
 
 import cloudgene.mapred.core.User;
 import cloudgene.mapred.database.JobDao;
-import cloudgene.mapred.database.UserDao;
 import cloudgene.mapred.jobs.AbstractJob;
-import cloudgene.mapred.jobs.CloudgeneJob;
 import cloudgene.mapred.util.BaseResource;
 import cloudgene.mapred.util.JSONConverter;
+import cloudgene.mapred.util.PublicUser;
 
 public class GetJobStatus extends BaseResource {
 	
@@ -30,14 +29,6 @@ public class GetJobStatus extends BaseResource {
 			JobDao dao = new JobDao(getDatabase());
 			job = dao.findById(id, false);
 
-		} else {
-
-			if (job instanceof CloudgeneJob) {
-
-				((CloudgeneJob) job).updateProgress();
-
-			}
-
 		}
 
 		if (job == null) {
@@ -46,8 +37,7 @@ public class GetJobStatus extends BaseResource {
 
 		// public mode
 		if (user == null) {
-			UserDao dao = new UserDao(getDatabase());
-			user = dao.findByUsername("public");
+			user = PublicUser.getUser(getDatabase());
 		}
 
 		if (!user.isAdmin() && job.getUser().getId() != user.getId()) {
@@ -41,6 +41,9 @@ public class GetJobs extends BaseResource {
 		}
 
 		String page = getQueryValue("page");
+
+		// keyset pagination: id of the last job of the previous page
+		String before = getQueryValue("before");
 		
 		int offset = 0;
 		if (page != null) {
@@ -59,7 +62,9 @@ public class GetJobs extends BaseResource {
 		int count = dao.countAllByUser(user);
 		
 		List<AbstractJob> jobs = null;
-		if (page != null) {
+		if (before != null) {
+			jobs = dao.findAllByUser(user, before, MAX_PER_PAGE);
+		} else if (page != null) {
 			jobs = dao.findAllByUser(user, offset, MAX_PER_PAGE);	
 		}else{
 			jobs = dao.findAllByUser(user);
@@ -78,6 +83,9 @@ public class GetJobs extends BaseResource {
 
 		JSONObject object = new JSONObject();
 		object.put("count", count);
+		if (jobs != null && jobs.size() == MAX_PER_PAGE) {
+			object.put("next", jobs.get(jobs.size() - 1).getId());
+		}
 
 		JSONArray jsonArray = JSONArray.fromObject(jobs, config);
 		object.put("data", jsonArray);
@@ -0,0 +1,110 @@
+package cloudgene.mapred.api.v2.jobs;
+
+import java.io.File;
+
+import org.restlet.data.MediaType;
+import org.restlet.data.Status;
+import org.restlet.representation.Representation;
+import org.restlet.resource.Get;
+
+import cloudgene.mapred.core.User;
+import cloudgene.mapred.database.JobDao;
+import cloudgene.mapred.jobs.AbstractJob;
+import cloudgene.mapred.util.BaseResource;
+import cloudgene.mapred.util.FileRange;
+import cloudgene.mapred.util.PublicUser;
+import genepi.io.FileUtil;
+
+/**
+ * Streams job.txt or std.out of a job. Supports the query parameters offset
+ * (first byte) and tail (last n bytes), single HTTP ranges and conditional
+ * requests with ETag or Last-Modified.
+ */
+public class GetLogFile extends BaseResource {
+
+	public static final String[] LOG_FILES = new String[] { "job.txt", "std.out" };
+
+	@Override
+	protected void doInit() {
+		super.doInit();
+		// conditions and ranges are evaluated before the file is opened
+		setConditional(false);
+	}
+
+	@Get
+	public Representation get() {
+
+		User user = getAuthUser(false);
+
+		if (user == null) {
+			user = PublicUser.getUser(getDatabase());
+		}
+
+		String id = getAttribute("job");
+		String logfile = getAttribute("logfile");
+
+		if (!isLogFile(logfile)) {
+			return error404("Log file " + logfile + " not found.");
+		}
+
+		// running jobs are in the queue, no database access needed
+		AbstractJob job = getWorkflowEngine().getJobById(id);
+		if (job == null) {
+			JobDao jobDao = new JobDao(getDatabase());
+			job = jobDao.findById(id, false);
+		}
+
+		if (job == null) {
+			return error404("Job " + id + " not found.");
+		}
+
+		if (!user.isAdmin() && job.getUser().getId() != user.getId()) {
+			return error403("Access denied.");
+		}
+
+		File file = new File(FileUtil.path(getSettings().getLocalWorkspace(), id, logfile));
+		FileRange range = new FileRange(getRequest(), file);
+
+		if (range.isNotModified()) {
+			setStatus(Status.REDIRECTION_NOT_MODIFIED);
+			return null;
+		}
+
+		if (!range.isSatisfiable()) {
+			return error(Status.CLIENT_ERROR_REQUESTED_RANGE_NOT_SATISFIABLE,
+					"Range not satisfiable. File size: " + range.getSize());
+		}
+
+		if (!range.isPartial()) {
+			try {
+				String offset = getQueryValue("offset");
+				String tail = getQueryValue("tail");
+				if (offset != null) {
+					range.setStart(Long.parseLong(offset));
+				} else if (tail != null) {
+					range.setStart(range.getSize() - Long.parseLong(tail));
+				}
+			} catch (NumberFormatException e) {
+				return error400("Parameters offset and tail have to be numbers.");
+			}
+		}
+
+		Representation representation = range.createRepresentation(MediaType.TEXT_PLAIN);
+		if (range.isPartial()) {
+			setStatus(Status.SUCCESS_PARTIAL_CONTENT);
+		}
+
+		return representation;
+
+	}
+
+	private boolean isLogFile(String logfile) {
+		for (String name : LOG_FILES) {
+			if (name.equals(logfile)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
@@ -2,14 +2,20 @@ package cloudgene.mapred.api.v2.jobs;
 
 import genepi.io.FileUtil;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.restlet.data.MediaType;
+import org.restlet.representation.OutputRepresentation;
 import org.restlet.representation.Representation;
-import org.restlet.representation.StringRepresentation;
 import org.restlet.resource.Get;
 
 import cloudgene.mapred.core.User;
 import cloudgene.mapred.database.JobDao;
 import cloudgene.mapred.jobs.AbstractJob;
 import cloudgene.mapred.util.BaseResource;
+import cloudgene.mapred.util.FileChannelRepresentation;
 import cloudgene.mapred.util.PublicUser;
 import cloudgene.mapred.util.Settings;
 
@@ -26,11 +32,11 @@ public class GetLogs extends BaseResource {
 
 		String id = getAttribute("id");
 
-		JobDao jobDao = new JobDao(getDatabase());
-		AbstractJob job = jobDao.findById(id);
+		AbstractJob job = getWorkflowEngine().getJobById(id);
 
 		if (job == null) {
-			job = getWorkflowEngine().getJobById(id);
+			JobDao jobDao = new JobDao(getDatabase());
+			job = jobDao.findById(id, false);
 		}
 
 		if (job == null) {
@@ -43,33 +49,38 @@ public class GetLogs extends BaseResource {
 
 		Settings settings = getSettings();
 		// log file
-		String logFilename = FileUtil.path(settings.getLocalWorkspace(), id,
-				"job.txt");
-		String logContent = FileUtil.readFileAsString(logFilename);
+		final File logFile = new File(FileUtil.path(settings.getLocalWorkspace(), id, "job.txt"));
+		final long logSize = logFile.exists() ? logFile.length() : 0;
 
 		// std out
-		String outputFilename = FileUtil.path(settings.getLocalWorkspace(), id,
-				"std.out");
-		String outputContent = FileUtil.readFileAsString(outputFilename);
+		final File outputFile = new File(FileUtil.path(settings.getLocalWorkspace(), id, "std.out"));
+		final long outputSize = outputFile.exists() ? outputFile.length() : 0;
 
-		StringBuffer buffer = new StringBuffer();
+		// files are streamed, see GetLogFile for ranges and tails. Log content is
+		// not escaped, so it is never served as html.
+		return new OutputRepresentation(MediaType.TEXT_PLAIN) {
 
-		buffer.append("<code><pre>");
+			@Override
+			public void write(OutputStream outputStream) throws IOException {
 
-		if (!logContent.isEmpty()) {
-			buffer.append("job.txt:\n\n");
-			buffer.append(logContent);
+				outputStream.write("<code><pre>".getBytes());
 
-		}
+				if (logSize > 0) {
+					outputStream.write("job.txt:\n\n".getBytes());
+					FileChannelRepresentation.transfer(logFile, 0, logSize, outputStream);
+				}
 
-		if (!outputContent.isEmpty()) {
+				if (outputSize > 0) {
+					outputStream.write("\n\nstd.out:\n\n".getBytes());
+					FileChannelRepresentation.transfer(outputFile, 0, outputSize, outputStream);
+				}
 
-			buffer.append("\n\nstd.out:\n\n");
-			buffer.append(outputContent);
+				outputStream.write("</pre></code>".getBytes());
+				outputStream.flush();
 
-		}
-		buffer.append("</code></pre>");
-		return new StringRepresentation(buffer.toString());
+			}
+
+		};
 
 	}
 
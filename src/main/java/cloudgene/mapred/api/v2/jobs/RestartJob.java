@@ -7,15 +7,11 @@ import org.restlet.representation.Representation;
 import org.restlet.resource.Get;
 
 import cloudgene.mapred.core.User;
+import cloudgene.mapred.cron.ResumeTasks;
 import cloudgene.mapred.database.JobDao;
 import cloudgene.mapred.jobs.AbstractJob;
-import cloudgene.mapred.jobs.CloudgeneJob;
-import cloudgene.mapred.util.Application;
 import cloudgene.mapred.util.BaseResource;
 import cloudgene.mapred.util.PublicUser;
-import cloudgene.mapred.wdl.WdlApp;
-import genepi.hadoop.HdfsUtil;
-import genepi.io.FileUtil;
 
 public class RestartJob extends BaseResource {
 
@@ -47,27 +43,11 @@ public class RestartJob extends BaseResource {
 
 		if (job.getState() == AbstractJob.STATE_DEAD) {
 
-			String hdfsWorkspace = HdfsUtil.path(getSettings().getHdfsWorkspace(), id);
-			String localWorkspace = FileUtil.path(getSettings().getLocalWorkspace(), id);
-
-			job.setLocalWorkspace(localWorkspace);
-			job.setHdfsWorkspace(hdfsWorkspace);
-			job.setSettings(getSettings());
-			job.setRemoveHdfsWorkspace(getSettings().isRemoveHdfsWorkspace());
-
-			String appId = job.getApplicationId();
-			Application application = getSettings().getAppByIdAndUser(appId, job.getUser());
-			WdlApp app = null;
-			try {
-				app = application.getWdlApp();
-			} catch (Exception e1) {
-
-				return error400("Application '" + appId + "' not found or the request requires user authentication.");
-
+			if (!ResumeTasks.prepare(job, getSettings())) {
+				return error400("Application '" + job.getApplicationId()
+						+ "' not found or the request requires user authentication.");
 			}
 
-			((CloudgeneJob) job).loadConfig(app);
-
 			getWorkflowEngine().restart(job);
 
 			Map<String, Object> params = new HashMap<String, Object>();
@@ -2,21 +2,32 @@ package cloudgene.mapred.api.v2.jobs;
 
 import genepi.io.FileUtil;
 
+import java.io.File;
+
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.restlet.data.MediaType;
-import org.restlet.representation.FileRepresentation;
+import org.restlet.data.Status;
 import org.restlet.representation.Representation;
 import org.restlet.resource.Get;
 
 import cloudgene.mapred.database.DownloadDao;
 import cloudgene.mapred.jobs.Download;
 import cloudgene.mapred.util.BaseResource;
+import cloudgene.mapred.util.DownloadTransfers;
+import cloudgene.mapred.util.FileRange;
 
 public class ShareResults extends BaseResource {
 
 	private static final Log log = LogFactory.getLog(ShareResults.class);
 
+	@Override
+	protected void doInit() {
+		super.doInit();
+		// conditions and ranges are evaluated by FileRange
+		setConditional(false);
+	}
+
 	@Get
 	public Representation get() {
 
@@ -50,15 +61,39 @@ public class ShareResults extends BaseResource {
 			mediaType = MediaType.TEXT_HTML;
 		}
 
-		String resultFile = FileUtil.path(getSettings().getLocalWorkspace(),
-				download.getPath());
+		File resultFile = new File(FileUtil.path(getSettings().getLocalWorkspace(),
+				download.getPath()));
+		FileRange range = new FileRange(getRequest(), resultFile);
+
+		if (range.isNotModified()) {
+			setStatus(Status.REDIRECTION_NOT_MODIFIED);
+			return null;
+		}
 
-		log.debug("Downloading file " + resultFile);
+		if (!range.isSatisfiable()) {
+			return error(Status.CLIENT_ERROR_REQUESTED_RANGE_NOT_SATISFIABLE,
+					"Range not satisfiable. File size: " + range.getSize());
+		}
 
-		download.decCount();
-		dao.update(download);
+		log.debug("Downloading file " + resultFile + " from byte " + range.getStart());
+
+		// every request from the first byte is charged. Later ranges of a transfer
+		// that was charged recently are free.
+		String client = getRequest().getClientInfo().getAddress();
+		if (range.getStart() == 0 || !DownloadTransfers.isOpen(download.getPath(), range.getRangeToken(), client)) {
+			if (!dao.decrementCount(download)) {
+				return error400("number of max downloads exceeded.");
+			}
+			download.decCount();
+			range.setToken(DownloadTransfers.open(download.getPath(), client));
+		} else {
+			range.setToken(range.getRangeToken());
+		}
 
-		return new FileRepresentation(resultFile, mediaType);
+		if (range.isPartial()) {
+			setStatus(Status.SUCCESS_PARTIAL_CONTENT);
+		}
+		return range.createRepresentation(mediaType);
 
 	}
 
@@ -2,6 +2,10 @@ package cloudgene.mapred.api.v2.jobs;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.HashMap;
@@ -14,7 +18,12 @@ import org.apache.commons.fileupload.FileUploadBase.FileUploadIOException;
 import org.apache.commons.fileupload.FileUploadException;
 import org.apache.commons.fileupload.disk.DiskFileItemFactory;
 import org.apache.commons.fileupload.util.Streams;
-import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.restlet.data.Status;
 import org.restlet.ext.fileupload.RestletFileUpload;
 import org.restlet.representation.Representation;
 import org.restlet.resource.Post;
@@ -34,6 +43,10 @@ import genepi.io.FileUtil;
 
 public class SubmitJob extends BaseResource {
 
+	private static final Log log = LogFactory.getLog(SubmitJob.class);
+
+	private long uploadedBytes = 0;
+
 	@Post
 	public Representation post(Representation entity) {
 
@@ -66,7 +79,7 @@ public class SubmitJob extends BaseResource {
 			// private mode
 
 			int maxPerUser = settings.getMaxRunningJobsPerUser();
-			if (!user.isAdmin() && engine.getJobsByUser(user).size() >= maxPerUser) {
+			if (!user.isAdmin() && engine.countJobsByUser(user) >= maxPerUser) {
 				return error400("Only " + maxPerUser + " jobs per user can be executed simultaneously.");
 			}
 
@@ -87,6 +100,7 @@ public class SubmitJob extends BaseResource {
 
 		Map<String, String> inputParams = null;
 
+		long uploadStart = System.currentTimeMillis();
 		try {
 			inputParams = parseAndUpdateInputParams(entity, app, hdfsWorkspace, localWorkspace);
 		} catch (FileUploadIOException e) {
@@ -97,6 +111,13 @@ public class SubmitJob extends BaseResource {
 			return error400("Error during input parameter parsing.");
 		}
 
+		long uploadTime = Math.max(1, System.currentTimeMillis() - uploadStart);
+		double throughput = (uploadedBytes / 1024.0 / 1024.0) / (uploadTime / 1000.0);
+		if (uploadedBytes > 0) {
+			log.info("Job " + id + ": uploaded " + uploadedBytes + " bytes in " + uploadTime + " ms ("
+					+ String.format("%.2f", throughput) + " MB/s).");
+		}
+
 		String name = id;
 		if (!publicMode) {
 			if (inputParams.get("job-name") != null && !inputParams.get("job-name").trim().isEmpty()) {
@@ -114,10 +135,14 @@ public class SubmitJob extends BaseResource {
 		job.setApplication(app.getName() + " " + app.getVersion());
 		job.setApplicationId(appId);
 
-		engine.submit(job);
+		if (!engine.submit(job)) {
+			return error(Status.SERVER_ERROR_INTERNAL, "Job could not be added to the job queue.");
+		}
 
 		Map<String, Object> params = new HashMap<String, Object>();
 		params.put("id", id);
+		params.put("uploadedBytes", uploadedBytes);
+		params.put("uploadTime", uploadTime);
 		return ok("Your job was successfully added to the job queue.", params);
 
 	}
@@ -145,17 +170,12 @@ public class SubmitJob extends BaseResource {
 
 				if (name != null) {
 
-					File file = null;
+					// file parameter, streamed directly to its target
+					String hdfsTarget = null;
+					File localTarget = null;
 
 					try {
-						// file parameter
-						// write local file
-						String tmpFile = getSettings().getTempFilename(item.getName());
-						file = new File(tmpFile);
-
-						FileUtils.copyInputStreamToFile(item.openStream(), file);
 
-						// import into hdfs
 						String entryName = item.getName();
 
 						// remove upload indentification!
@@ -175,9 +195,19 @@ public class SubmitJob extends BaseResource {
 
 							String targetPath = HdfsUtil.path(hdfsWorkspace, fieldName);
 
-							String target = HdfsUtil.path(targetPath, entryName);
-
-							HdfsUtil.put(tmpFile, target);
+							hdfsTarget = HdfsUtil.makeAbsolute(HdfsUtil.path(targetPath, entryName));
+
+							// the HDFS client writes packets to the datanodes
+							// in its own thread while we read the next chunk
+							FileSystem fileSystem = HdfsUtil.getFileSystem();
+							InputStream in = item.openStream();
+							OutputStream out = fileSystem.create(new Path(hdfsTarget), true);
+							try {
+								uploadedBytes += IOUtils.copyLarge(in, out);
+							} finally {
+								out.close();
+								in.close();
+							}
 
 							if (folder) {
 								// folder
@@ -196,8 +226,14 @@ public class SubmitJob extends BaseResource {
 							FileUtil.createDirectory(targetPath);
 
 							String target = FileUtil.path(targetPath, entryName);
+							localTarget = new File(target);
 
-							FileUtil.copy(tmpFile, target);
+							InputStream in = item.openStream();
+							try {
+								uploadedBytes += Files.copy(in, localTarget.toPath(), StandardCopyOption.REPLACE_EXISTING);
+							} finally {
+								in.close();
+							}
 
 							if (folder) {
 								// folder
@@ -209,14 +245,12 @@ public class SubmitJob extends BaseResource {
 
 						}
 
-						// deletes temporary file
-						FileUtil.deleteFile(tmpFile);
-
 					} catch (FileUploadIOException e) {
-						file.delete();
+						deletePartialUpload(hdfsTarget, localTarget);
 						throw e;
 					} catch (Exception e) {
-						file.delete();
+						log.error("Upload of file '" + name + "' failed.", e);
+						deletePartialUpload(hdfsTarget, localTarget);
 						return null;
 
 					}
@@ -269,6 +303,15 @@ public class SubmitJob extends BaseResource {
 		return params;
 	}
 
+	private void deletePartialUpload(String hdfsTarget, File localTarget) {
+		if (hdfsTarget != null) {
+			HdfsUtil.delete(hdfsTarget);
+		}
+		if (localTarget != null) {
+			localTarget.delete();
+		}
+	}
+
 	private FileItemIterator parseRequest(Representation entity) throws FileUploadException, IOException {
 
 		// 1/ Create a factory for disk-based file items
@@ -8,10 +8,8 @@ import org.restlet.representation.Representation;
 import org.restlet.representation.StringRepresentation;
 import org.restlet.resource.Get;
 
-import cloudgene.mapred.database.CounterDao;
 import cloudgene.mapred.database.UserDao;
 import cloudgene.mapred.jobs.AbstractJob;
-import cloudgene.mapred.jobs.WorkflowEngine;
 import cloudgene.mapred.util.BaseResource;
 
 public class GetCounter extends BaseResource {
@@ -47,7 +45,7 @@ public class GetCounter extends BaseResource {
 		jsonCounters.put("waiting", jsonWaiting);
 
 		UserDao dao = new UserDao(getDatabase());		
-		jsonCounters.put("users", dao.findAll().size());
+		jsonCounters.put("users", dao.count());
 		
 		
 		return new StringRepresentation(jsonCounters.toString());
@@ -16,6 +16,7 @@ import com.nimbusds.jose.Payload;
 import com.nimbusds.jose.crypto.MACSigner;
 import com.nimbusds.jose.crypto.MACVerifier;
 
+import cloudgene.mapred.util.ExpiringCache;
 import net.minidev.json.JSONObject;
 
 public class JWT {
@@ -23,6 +24,10 @@ public class JWT {
 	// 1 day
 	public static long TOKEN_LIFETIME_MS = 24 * 60 * 60 * 1000;
 
+	// payloads of verified tokens, the signature is checked only once
+	private static ExpiringCache<String, JSONObject> verifiedTokens = new ExpiringCache<String, JSONObject>(1000,
+			5 * 60 * 1000);
+
 	public static String generate(JSONObject jsonObject, String key) {
 
 		// add valid-until to payload
@@ -80,6 +85,13 @@ public class JWT {
 
 	public static JSONObject validate(String token, String key) {
 
+		// key is part of the cache key, tokens are never valid for a new secret
+		String cacheKey = key + ":" + token;
+		JSONObject cached = verifiedTokens.get(cacheKey);
+		if (cached != null) {
+			return new JSONObject(cached);
+		}
+
 		try {
 
 			JWSVerifier verifier = new MACVerifier(key);
@@ -91,7 +103,9 @@ public class JWT {
 
 				payload.put("request-token", token);
 				
-				if (((Long) payload.get("expire")) > System.currentTimeMillis()) {
+				long expire = (Long) payload.get("expire");
+				if (expire > System.currentTimeMillis()) {
+					verifiedTokens.put(cacheKey, new JSONObject(payload), expire);
 					return payload;
 				} else {
 					return null;
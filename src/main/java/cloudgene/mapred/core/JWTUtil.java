@@ -6,7 +6,6 @@ import org.restlet.Request;
 import org.restlet.data.Parameter;
 import org.restlet.util.Series;
 
-import cloudgene.mapred.database.UserDao;
 import genepi.db.Database;
 
 public class JWTUtil {
@@ -46,8 +45,7 @@ public class JWTUtil {
 	public static User getUser(Database database, JSONObject payload) {
 		String username = payload.get("username").toString();
 		if (username != null) {
-			UserDao userDao = new UserDao(database);
-			return userDao.findByUsername(username);
+			return UserCache.findByUsername(database, username);
 		} else {
 			return null;
 		}
@@ -0,0 +1,73 @@
+package cloudgene.mapred.core;
+
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+
+import cloudgene.mapred.database.UserDao;
+import cloudgene.mapred.util.ExpiringCache;
+import genepi.db.Database;
+
+/**
+ * Caches users of authenticated requests. Entries are removed by UserDao
+ * whenever a user is updated or deleted. Every caller gets its own copy, so
+ * resources can change the user without touching the cached instance.
+ */
+public class UserCache {
+
+	public static final int MAX_SIZE = 1000;
+
+	// 1 minute
+	public static final long TIME_TO_LIVE_MS = 60 * 1000;
+
+	private static ExpiringCache<String, User> users = new ExpiringCache<String, User>(MAX_SIZE,
+			TIME_TO_LIVE_MS);
+
+	// changed by every invalidation, loads started before are not cached
+	private static AtomicLong generation = new AtomicLong();
+
+	public static User findByUsername(Database database, String username) {
+		String key = username.toLowerCase();
+		User user = users.get(key);
+		if (user == null) {
+			long started = generation.get();
+			UserDao userDao = new UserDao(database);
+			user = userDao.findByUsername(username);
+			if (user != null && started == generation.get()) {
+				users.put(key, copy(user));
+			}
+		} else {
+			user = copy(user);
+		}
+		return user;
+	}
+
+	public static void invalidate(String username) {
+		generation.incrementAndGet();
+		if (username != null) {
+			users.remove(username.toLowerCase());
+		}
+	}
+
+	public static void clear() {
+		generation.incrementAndGet();
+		users.clear();
+	}
+
+	private static User copy(User user) {
+		User copy = new User();
+		copy.setId(user.getId());
+		copy.setUsername(user.getUsername());
+		copy.setPassword(user.getPassword());
+		copy.setFullName(user.getFullName());
+		copy.setMail(user.getMail());
+		copy.setRoles(user.getRoles() != null ? user.getRoles().clone() : null);
+		copy.setActive(user.isActive());
+		copy.setActivationCode(user.getActivationCode());
+		copy.setApiToken(user.getApiToken());
+		copy.setLastLogin(user.getLastLogin() != null ? new Date(user.getLastLogin().getTime()) : null);
+		copy.setLockedUntil(user.getLockedUntil() != null ? new Date(user.getLockedUntil().getTime()) : null);
+		copy.setLoginAttempts(user.getLoginAttempts());
+		return copy;
+	}
+
+}
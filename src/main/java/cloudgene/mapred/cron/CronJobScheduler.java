@@ -71,6 +71,19 @@ public class CronJobScheduler {
 
 		}
 
+		if (settings.getDiskUsageScanInterval() > 0) {
+
+			// Disk usage of workspaces
+			JobDetail diskUsageJob = newJob(DiskUsageJob.class).withIdentity("disk-usage", "jobs").build();
+			diskUsageJob.getJobDataMap().put("application", app);
+			Trigger trigger = newTrigger().withIdentity("disk-usage-trigger", "jobs").startNow()
+					.withSchedule(simpleSchedule().withIntervalInMinutes(settings.getDiskUsageScanInterval())
+							.repeatForever())
+					.build();
+			sched.scheduleJob(diskUsageJob, trigger);
+
+		}
+
 		// Alerts (every 1 minutes)
 		JobDetail alerJobDetail = newJob(AlertJob.class).withIdentity("alerts", "jobs").build();
 		alerJobDetail.getJobDataMap().put("application", app);
@@ -0,0 +1,72 @@
+package cloudgene.mapred.cron;
+
+import java.io.File;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.quartz.DisallowConcurrentExecution;
+import org.quartz.Job;
+import org.quartz.JobDataMap;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+
+import cloudgene.mapred.WebApp;
+import cloudgene.mapred.database.JobDao;
+import cloudgene.mapred.jobs.AbstractJob;
+import cloudgene.mapred.util.Settings;
+import genepi.db.Database;
+import genepi.io.FileUtil;
+
+/**
+ * Refreshes the stored disk usage of jobs. Every run scans only a limited
+ * number of workspaces, starting with the jobs that were not scanned for the
+ * longest time.
+ */
+@DisallowConcurrentExecution
+public class DiskUsageJob implements Job {
+
+	private static final Log log = LogFactory.getLog(DiskUsageJob.class);
+
+	@Override
+	public void execute(JobExecutionContext context) throws JobExecutionException {
+
+		JobDataMap dataMap = context.getJobDetail().getJobDataMap();
+		WebApp application = (WebApp) dataMap.get("application");
+		Database database = application.getDatabase();
+		Settings settings = application.getSettings();
+
+		scan(database, settings, settings.getDiskUsageScanLimit());
+
+	}
+
+	public static synchronized int scan(Database database, Settings settings, int limit) {
+
+		JobDao dao = new JobDao(database);
+		// the scan time is stored, a restart continues with the same jobs
+		List<AbstractJob> jobs = dao.findAllByDiskUsageScan(limit);
+
+		if (jobs == null) {
+			return 0;
+		}
+
+		int updated = 0;
+		for (AbstractJob job : jobs) {
+
+			File folder = new File(FileUtil.path(settings.getLocalWorkspace(), job.getId()));
+			long diskUsage = folder.exists() ? FileUtils.sizeOfDirectory(folder) : 0;
+
+			if (dao.updateDiskUsage(job.getId(), diskUsage, System.currentTimeMillis())
+					&& diskUsage != job.getDiskUsage()) {
+				updated++;
+			}
+
+		}
+
+		log.info("Disk usage of " + jobs.size() + " jobs scanned, " + updated + " updated.");
+
+		return updated;
+	}
+
+}
@@ -0,0 +1,85 @@
+package cloudgene.mapred.cron;
+
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import cloudgene.mapred.database.JobDao;
+import cloudgene.mapred.jobs.AbstractJob;
+import cloudgene.mapred.jobs.CloudgeneJob;
+import cloudgene.mapred.jobs.WorkflowEngine;
+import cloudgene.mapred.util.Application;
+import cloudgene.mapred.util.Settings;
+import cloudgene.mapred.wdl.WdlApp;
+import genepi.db.Database;
+import genepi.hadoop.HdfsUtil;
+import genepi.io.FileUtil;
+
+public class ResumeTasks {
+
+	private static final Log log = LogFactory.getLog(ResumeTasks.class);
+
+	/**
+	 * Sets workspaces and loads the app of a job that was read from the
+	 * database.
+	 *
+	 * @return false if the app of the job is not installed anymore.
+	 */
+	public static boolean prepare(AbstractJob job, Settings settings) {
+
+		job.setLocalWorkspace(FileUtil.path(settings.getLocalWorkspace(), job.getId()));
+		job.setHdfsWorkspace(HdfsUtil.path(settings.getHdfsWorkspace(), job.getId()));
+		job.setSettings(settings);
+		job.setRemoveHdfsWorkspace(settings.isRemoveHdfsWorkspace());
+
+		String appId = job.getApplicationId();
+		WdlApp app = null;
+		try {
+			Application application = settings.getAppByIdAndUser(appId, job.getUser());
+			app = application.getWdlApp();
+		} catch (Exception e) {
+			log.error("Application '" + appId + "' of job " + job.getId() + " not found.");
+			return false;
+		}
+
+		((CloudgeneJob) job).loadConfig(app);
+
+		return true;
+	}
+
+	/**
+	 * Resumes all dead jobs. Completed steps are not executed again.
+	 *
+	 * @return number of resumed jobs.
+	 */
+	public static int resumeDeadJobs(Database database, Settings settings, WorkflowEngine engine) {
+
+		JobDao dao = new JobDao(database);
+
+		List<AbstractJob> deadJobs = dao.findAllByState(AbstractJob.STATE_DEAD);
+		if (deadJobs == null) {
+			return 0;
+		}
+
+		int resumed = 0;
+		for (AbstractJob deadJob : deadJobs) {
+
+			// load parameters
+			AbstractJob job = dao.findById(deadJob.getId());
+			if (job == null || !prepare(job, settings)) {
+				continue;
+			}
+
+			engine.resume(job);
+
+			log.info("Job " + job.getId() + " resumed.");
+			resumed++;
+
+		}
+
+		log.info(resumed + " dead jobs resumed.");
+		return resumed;
+	}
+
+}
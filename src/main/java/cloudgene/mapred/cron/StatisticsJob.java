@@ -2,6 +2,7 @@ package cloudgene.mapred.cron;
 
 import genepi.db.Database;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -11,8 +12,6 @@ import org.quartz.JobExecutionContext;
 import org.quartz.JobExecutionException;
 
 import cloudgene.mapred.WebApp;
-import cloudgene.mapred.core.User;
-import cloudgene.mapred.database.CounterDao;
 import cloudgene.mapred.database.CounterHistoryDao;
 import cloudgene.mapred.database.UserDao;
 import cloudgene.mapred.jobs.AbstractJob;
@@ -50,25 +49,29 @@ public class StatisticsJob implements Job {
 				.getCounters(AbstractJob.STATE_SUCCESS);
 
 		UserDao daoUser = new UserDao(database);
-		List<User> users = daoUser.findAll();
 
 		long timestamp = System.currentTimeMillis();
 
-		CounterHistoryDao daoHistory = new CounterHistoryDao(database);
-		daoHistory.insert(timestamp, "users", users.size());
-		daoHistory.insert(timestamp, "runningJobs", countRunning);
-		daoHistory.insert(timestamp, "waitingJobs", countWaiting);
-		daoHistory.insert(timestamp, "runningChromosomes",
+		Map<String, Long> values = new HashMap<String, Long>();
+		values.put("users", (long) daoUser.count());
+		values.put("runningJobs", countRunning);
+		values.put("waitingJobs", countWaiting);
+		values.put("runningChromosomes",
 				(countersRunning.get("chromosomes") == null ? 0
 						: countersRunning.get("chromosomes")));
-		daoHistory.insert(timestamp, "waitingChromosomes",
+		values.put("waitingChromosomes",
 				(countersWaiting.get("chromosomes") == null ? 0
 						: countersWaiting.get("chromosomes")));
-		daoHistory.insert(timestamp, "completeChromosomes",
+		values.put("completeChromosomes",
 				(countersComplete.get("chromosomes") == null ? 0
 						: countersComplete.get("chromosomes")));
-		daoHistory.insert(timestamp, "completeJobs", (countersComplete
+		values.put("completeJobs", (countersComplete
 				.get("runs") == null ? 0 : countersComplete.get("runs")));
 
+		// one batch instead of a statement per value
+		CounterHistoryDao daoHistory = new CounterHistoryDao(database);
+		daoHistory.insertBatch(timestamp, values);
+		daoHistory.prune(timestamp);
+
 	}
 }
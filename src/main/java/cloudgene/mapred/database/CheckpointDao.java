@@ -0,0 +1,210 @@
+package cloudgene.mapred.database;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import cloudgene.mapred.database.util.JdbcBatch;
+import cloudgene.mapred.jobs.engine.Checkpoint;
+import genepi.db.Database;
+import genepi.db.IRowMapper;
+import genepi.db.JdbcDataAccessObject;
+
+public class CheckpointDao extends JdbcDataAccessObject {
+
+	private static final Log log = LogFactory.getLog(CheckpointDao.class);
+
+	private static final String INSERT_SQL = "insert into job_checkpoints (job_id, step, outputs, completed_on) values (?,?,?,?)";
+
+	// checkpoints of jobs owned by a lease are only written by the worker with
+	// the current token
+	private static final String FENCED_INSERT_SQL = "insert into job_checkpoints (job_id, step, outputs, completed_on) "
+			+ "select ?,?,?,? from job_leases where job_id = ? and worker = ? and token = ?";
+
+	private static final String INSERT_COUNTER_SQL = "insert into job_checkpoint_counters (job_id, step, name, value, submitted) values (?,?,?,?,?)";
+
+	public CheckpointDao(Database database) {
+		super(database);
+	}
+
+	public boolean insert(String jobId, Checkpoint checkpoint) {
+		return insert(jobId, checkpoint, null, 0);
+	}
+
+	/**
+	 * Writes the checkpoint and its counters in one transaction. An existing
+	 * checkpoint of the same step is replaced. If the token is greater than 0,
+	 * nothing is written unless the worker still owns the lease of the job.
+	 *
+	 * @return false if the checkpoint was not written.
+	 */
+	public boolean insert(String jobId, Checkpoint checkpoint, String worker, long token) {
+
+		List<Object[]> counters = new Vector<Object[]>();
+		for (Map.Entry<String, Integer> counter : checkpoint.getCounters().entrySet()) {
+			if (counter.getValue() != null) {
+				counters.add(new Object[] { jobId, checkpoint.getStep(), counter.getKey(), counter.getValue(),
+						checkpoint.getSubmittedCounters().contains(counter.getKey()) });
+			}
+		}
+
+		Connection connection = null;
+		try {
+
+			connection = database.getDataSource().getConnection();
+			connection.setAutoCommit(false);
+
+			Object[] key = new Object[] { jobId, checkpoint.getStep() };
+			JdbcBatch.executeUpdate(connection, "delete from job_checkpoint_counters where job_id = ? and step = ?",
+					key);
+			JdbcBatch.executeUpdate(connection, "delete from job_checkpoints where job_id = ? and step = ?", key);
+
+			String outputs = String.join(",", checkpoint.getOutputs());
+			int rows;
+			if (token > 0) {
+				rows = JdbcBatch.executeUpdate(connection, FENCED_INSERT_SQL, new Object[] { jobId,
+						checkpoint.getStep(), outputs, checkpoint.getCompletedOn(), jobId, worker, token });
+			} else {
+				rows = JdbcBatch.executeUpdate(connection, INSERT_SQL,
+						new Object[] { jobId, checkpoint.getStep(), outputs, checkpoint.getCompletedOn() });
+			}
+
+			if (rows == 0) {
+				log.warn("insert checkpoint '" + checkpoint.getStep() + "' of job '" + jobId + "' rejected. Worker '"
+						+ worker + "' lost lease " + token + ".");
+				rollback(connection);
+				return false;
+			}
+
+			JdbcBatch.executeBatch(connection, INSERT_COUNTER_SQL, counters);
+
+			connection.commit();
+
+			log.debug("insert checkpoint '" + checkpoint.getStep() + "' of job '" + jobId + "' successful.");
+
+		} catch (SQLException e) {
+			log.error("insert checkpoint '" + checkpoint.getStep() + "' of job '" + jobId + "' failed.", e);
+			rollback(connection);
+			return false;
+		} finally {
+			close(connection);
+		}
+
+		return true;
+	}
+
+	/**
+	 * @return all checkpoints of the job by step, ordered by completion time.
+	 */
+	@SuppressWarnings("unchecked")
+	public Map<String, Checkpoint> findAllByJob(String jobId) {
+
+		Map<String, Checkpoint> result = new LinkedHashMap<String, Checkpoint>();
+
+		try {
+
+			List<Checkpoint> checkpoints = query(
+					"select step, outputs, completed_on from job_checkpoints where job_id = ? order by completed_on",
+					new Object[] { jobId }, new CheckpointMapper());
+			for (Checkpoint checkpoint : checkpoints) {
+				result.put(checkpoint.getStep(), checkpoint);
+			}
+
+			List<Object[]> counters = query(
+					"select step, name, value, submitted from job_checkpoint_counters where job_id = ?",
+					new Object[] { jobId }, new CounterMapper());
+			for (Object[] counter : counters) {
+				Checkpoint checkpoint = result.get(counter[0]);
+				if (checkpoint == null) {
+					continue;
+				}
+				checkpoint.getCounters().put((String) counter[1], (Integer) counter[2]);
+				if ((Boolean) counter[3]) {
+					checkpoint.getSubmittedCounters().add((String) counter[1]);
+				}
+			}
+
+			log.debug("find checkpoints of job '" + jobId + "' successful. results: " + result.size());
+
+		} catch (SQLException e) {
+			log.error("find checkpoints of job '" + jobId + "' failed.", e);
+		}
+
+		return result;
+	}
+
+	public boolean deleteByJob(String jobId) {
+
+		try {
+
+			update("delete from job_checkpoint_counters where job_id = ?", new Object[] { jobId });
+			update("delete from job_checkpoints where job_id = ?", new Object[] { jobId });
+
+			log.debug("delete checkpoints of job '" + jobId + "' successful.");
+
+		} catch (SQLException e) {
+			log.error("delete checkpoints of job '" + jobId + "' failed.", e);
+			return false;
+		}
+
+		return true;
+	}
+
+	class CheckpointMapper implements IRowMapper {
+
+		@Override
+		public Checkpoint mapRow(ResultSet rs, int row) throws SQLException {
+			Checkpoint checkpoint = new Checkpoint();
+			checkpoint.setStep(rs.getString("step"));
+			String outputs = rs.getString("outputs");
+			if (outputs != null && !outputs.isEmpty()) {
+				checkpoint.setOutputs(new Vector<String>(Arrays.asList(outputs.split(","))));
+			}
+			checkpoint.setCompletedOn(rs.getLong("completed_on"));
+			return checkpoint;
+		}
+
+	}
+
+	class CounterMapper implements IRowMapper {
+
+		@Override
+		public Object[] mapRow(ResultSet rs, int row) throws SQLException {
+			return new Object[] { rs.getString("step"), rs.getString("name"), rs.getInt("value"),
+					rs.getBoolean("submitted") };
+		}
+
+	}
+
+	private void rollback(Connection connection) {
+		if (connection == null) {
+			return;
+		}
+		try {
+			connection.rollback();
+		} catch (SQLException e) {
+			log.error("rollback failed.", e);
+		}
+	}
+
+	private void close(Connection connection) {
+		if (connection == null) {
+			return;
+		}
+		try {
+			connection.setAutoCommit(true);
+			connection.close();
+		} catch (SQLException e) {
+			log.error("closing connection failed.", e);
+		}
+	}
+
+}
@@ -4,14 +4,18 @@ import genepi.db.Database;
 import genepi.db.IRowMapMapper;
 import genepi.db.JdbcDataAccessObject;
 
+import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Vector;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import cloudgene.mapred.database.util.JdbcBatch;
 import cloudgene.mapred.jobs.AbstractJob;
 
 public class CounterDao extends JdbcDataAccessObject {
@@ -22,10 +26,15 @@ public class CounterDao extends JdbcDataAccessObject {
 		super(database);
 	}
 
+	private static final String INSERT_SQL = "insert into counters (name, job_id, value) values (?,?,?)";
+
+	private static final String UPSERT_TOTAL_MYSQL_SQL = "insert into counter_totals (name, value) values (?,?) "
+			+ "on duplicate key update value = value + values(value)";
+
+	private static final String UPSERT_TOTAL_H2_SQL = "merge into counter_totals (name, value) key (name) "
+			+ "values (?, coalesce((select value from counter_totals where name = ?), 0) + ?)";
+
 	public boolean insert(String name, int value, AbstractJob job) {
-		StringBuilder sql = new StringBuilder();
-		sql.append("insert into counters (name, job_id, value) ");
-		sql.append("values (?,?,?)");
 
 		try {
 
@@ -34,7 +43,7 @@ public class CounterDao extends JdbcDataAccessObject {
 			params[1] = job.getId();
 			params[2] = value;
 
-			update(sql.toString(), params);
+			update(INSERT_SQL, params);
 
 			log.debug("insert counter successful.");
 
@@ -46,13 +55,64 @@ public class CounterDao extends JdbcDataAccessObject {
 		return true;
 	}
 
+	/**
+	 * Inserts all counters of a job with one JDBC batch using the given
+	 * connection. Errors are not caught, the caller has to rollback the
+	 * transaction.
+	 */
+	public void insertBatch(Connection connection, Map<String, Integer> counters, AbstractJob job)
+			throws SQLException {
+
+		List<Object[]> rows = new Vector<Object[]>();
+		for (Map.Entry<String, Integer> counter : counters.entrySet()) {
+			if (counter.getValue() != null) {
+				rows.add(new Object[] { counter.getKey(), job.getId(), counter.getValue() });
+			}
+		}
+		JdbcBatch.executeBatch(connection, INSERT_SQL, rows);
+
+		log.debug("insert " + rows.size() + " counters successful.");
+
+	}
+
+	/**
+	 * Adds the counters of a completed job to the materialized totals using
+	 * the given connection. Each total is changed with one upsert, so
+	 * concurrent jobs and workers cannot insert the same name twice. Errors
+	 * are not caught, the caller has to rollback the transaction.
+	 */
+	public void updateTotals(Connection connection, Map<String, Integer> counters) throws SQLException {
+
+		String product = connection.getMetaData().getDatabaseProductName();
+		boolean mysql = product != null && product.toLowerCase().contains("mysql");
+
+		List<Object[]> rows = new Vector<Object[]>();
+		for (Map.Entry<String, Integer> counter : counters.entrySet()) {
+			if (counter.getValue() == null) {
+				continue;
+			}
+			if (mysql) {
+				rows.add(new Object[] { counter.getKey(), counter.getValue() });
+			} else {
+				rows.add(new Object[] { counter.getKey(), counter.getKey(), counter.getValue() });
+			}
+		}
+		JdbcBatch.executeBatch(connection, mysql ? UPSERT_TOTAL_MYSQL_SQL : UPSERT_TOTAL_H2_SQL, rows);
+
+		log.debug("update " + rows.size() + " counter totals successful.");
+
+	}
+
+	/**
+	 * Returns the totals of all counters. Values are read from counter_totals,
+	 * the counters table is not aggregated.
+	 */
 	@SuppressWarnings("unchecked")
 	public Map<String, Long> getAll() {
 
 		StringBuilder sql = new StringBuilder();
-		sql.append("select name, sum(value) ");
-		sql.append("from counters ");
-		sql.append("group by name");
+		sql.append("select name, value ");
+		sql.append("from counter_totals");
 
 		Map<String, Long> result = new HashMap<String, Long>();
 
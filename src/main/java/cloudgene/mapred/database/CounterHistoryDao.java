@@ -17,10 +17,49 @@ import java.util.Vector;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import cloudgene.mapred.database.util.JdbcBatch;
+
+/**
+ * Raw samples are stored in counters_history and are kept for
+ * RAW_RETENTION_MS. Every sample updates the hourly and daily rollups in
+ * counters_rollup (maximum value per interval).
+ */
 public class CounterHistoryDao extends JdbcDataAccessObject {
 
 	private static final Log log = LogFactory.getLog(CounterHistoryDao.class);
 
+	public static final long RESOLUTION_RAW = 5L * 60L * 1000L;
+
+	public static final long RESOLUTION_HOUR = 60L * 60L * 1000L;
+
+	public static final long RESOLUTION_DAY = 24L * RESOLUTION_HOUR;
+
+	public static final long[] RESOLUTIONS = new long[] { RESOLUTION_RAW, RESOLUTION_HOUR, RESOLUTION_DAY };
+
+	// 7 days
+	public static final long RAW_RETENTION_MS = 7L * RESOLUTION_DAY;
+
+	// 1 year
+	public static final long HOUR_RETENTION_MS = 365L * RESOLUTION_DAY;
+
+	// queries without resolution get the finest tier with at most n points
+	public static final int MAX_POINTS = 1000;
+
+	private static final String INSERT_SQL = "insert into counters_history (time_stamp, name, value) values (?,?,?)";
+
+	private static final String UPDATE_ROLLUP_SQL = "update counters_rollup set value = greatest(value, ?) "
+			+ "where resolution = ? and time_stamp = ? and name = ?";
+
+	private static final String INSERT_ROLLUP_SQL = "insert into counters_rollup (resolution, time_stamp, name, value) values (?,?,?,?)";
+
+	// queries below are checked for index usage by QueryPlanTest
+
+	static final String FIND_BETWEEN_SQL = "select time_stamp, name, value from counters_history "
+			+ "where time_stamp > ? and time_stamp < ? order by time_stamp desc, name";
+
+	static final String FIND_ROLLUP_BETWEEN_SQL = "select time_stamp, name, value from counters_rollup "
+			+ "where resolution = ? and time_stamp > ? and time_stamp < ? order by time_stamp desc, name";
+
 	private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat(
 			"yy-MM-dd HH:mm");
 
@@ -29,113 +68,196 @@ public class CounterHistoryDao extends JdbcDataAccessObject {
 	}
 
 	public boolean insert(long timestamp, String name, long value) {
-		StringBuilder sql = new StringBuilder();
-		sql.append("insert into counters_history (time_stamp, name, value) ");
-		sql.append("values (?,?,?)");
+		Map<String, Long> values = new HashMap<String, Long>();
+		values.put(name, value);
+		return insertBatch(timestamp, values);
+	}
 
-		try {
+	/**
+	 * Inserts a snapshot of several counters with one JDBC batch and updates
+	 * the rollups in the same transaction.
+	 */
+	public boolean insertBatch(long timestamp, Map<String, Long> values) {
+
+		List<Object[]> rows = new Vector<Object[]>();
+		for (Map.Entry<String, Long> value : values.entrySet()) {
+			rows.add(new Object[] { timestamp, value.getKey(), value.getValue() });
+		}
+
+		Connection connection = null;
+		// samples of concurrent calls could insert the same rollup twice
+		synchronized (CounterHistoryDao.class) {
+			try {
+
+				connection = database.getDataSource().getConnection();
+				connection.setAutoCommit(false);
+
+				JdbcBatch.executeBatch(connection, INSERT_SQL, rows);
+
+				for (long resolution : new long[] { RESOLUTION_HOUR, RESOLUTION_DAY }) {
+					long bucket = timestamp - (timestamp % resolution);
+					for (Map.Entry<String, Long> value : values.entrySet()) {
+						int updated = JdbcBatch.executeUpdate(connection, UPDATE_ROLLUP_SQL,
+								new Object[] { value.getValue(), resolution, bucket, value.getKey() });
+						if (updated == 0) {
+							JdbcBatch.executeUpdate(connection, INSERT_ROLLUP_SQL,
+									new Object[] { resolution, bucket, value.getKey(), value.getValue() });
+						}
+					}
+				}
+
+				connection.commit();
+
+				log.debug("insert " + rows.size() + " counter history values successful.");
+
+			} catch (SQLException e) {
+				log.error("insert counter history failed.", e);
+				rollback(connection);
+				return false;
+			} finally {
+				close(connection);
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Deletes raw samples and hourly rollups older than their retention time.
+	 */
+	public boolean prune(long now) {
 
-			Object[] params = new Object[3];
-			params[0] = timestamp;
-			params[1] = name;
-			params[2] = value;
+		try {
 
-			update(sql.toString(), params);
+			update("delete from counters_history where time_stamp < ?", new Object[] { now - RAW_RETENTION_MS });
+			update("delete from counters_rollup where resolution = ? and time_stamp < ?",
+					new Object[] { RESOLUTION_HOUR, now - HOUR_RETENTION_MS });
 
-			log.debug("insert counter history successful.");
+			log.debug("prune counter history successful.");
 
 		} catch (SQLException e) {
-			log.error("insert counter history failed.", e);
+			log.error("prune counter history failed.", e);
 			return false;
 		}
 
 		return true;
 	}
 
+	/**
+	 * Returns the finest resolution that still has data for the start of the
+	 * window and returns at most MAX_POINTS values per counter.
+	 */
+	public static long getResolution(long start, long end, long now) {
+		for (long resolution : RESOLUTIONS) {
+			if (resolution == RESOLUTION_RAW && start < now - RAW_RETENTION_MS) {
+				continue;
+			}
+			if (resolution == RESOLUTION_HOUR && start < now - HOUR_RETENTION_MS) {
+				continue;
+			}
+			if ((end - start) / resolution <= MAX_POINTS) {
+				return resolution;
+			}
+		}
+		return RESOLUTION_DAY;
+	}
+
 	public List<Map<String, String>> getAll(int limit) {
 
 		StringBuilder sql = new StringBuilder();
 		sql.append("select time_stamp, name, value ");
 		sql.append("from counters_history ");
 		sql.append("order by time_stamp desc, name ");
-		sql.append("limit " + limit);
+		sql.append("limit ?");
+
+		return query(sql.toString(), new Object[] { limit });
+	}
+
+	public List<Map<String, String>> getAllBeetween(long start, long end) {
+		return getAllBetween(start, end, RESOLUTION_RAW);
+	}
+
+	/**
+	 * Returns all samples of the given resolution between start and end,
+	 * newest first.
+	 */
+	public List<Map<String, String>> getAllBetween(long start, long end, long resolution) {
+
+		if (resolution == RESOLUTION_RAW) {
+			return query(FIND_BETWEEN_SQL, new Object[] { start, end });
+		} else {
+			// bucket containing start is included
+			return query(FIND_ROLLUP_BETWEEN_SQL, new Object[] { resolution, start - resolution, end });
+		}
+
+	}
+
+	private List<Map<String, String>> query(String sql, Object[] params) {
 
 		List<Map<String, String>> result = new Vector<Map<String, String>>();
 
+		Connection connection = null;
 		try {
 
-			String old = "";
+			connection = database.getDataSource().getConnection();
+			PreparedStatement statement = connection.prepareStatement(sql);
+			for (int i = 0; i < params.length; i++) {
+				statement.setObject(i + 1, params[i]);
+			}
+
+			// rows are ordered by time stamp, a new map starts with every
+			// new time stamp
+			long old = -1;
 			Map<String, String> counters = null;
 
-			Connection connection = database.getDataSource().getConnection();
-			PreparedStatement statement = connection.prepareStatement(sql.toString());
 			ResultSet rs = statement.executeQuery();
 			while (rs.next()) {
-
-				if (!old.equals(rs.getString(1))) {
+				long timestamp = rs.getLong(1);
+				if (counters == null || timestamp != old) {
 					counters = new HashMap<String, String>();
 					result.add(counters);
-					counters.put("timestamp",
-							DATE_FORMAT.format(new Date(rs.getLong(1))));
-					old = rs.getString(1);
+					synchronized (DATE_FORMAT) {
+						counters.put("timestamp", DATE_FORMAT.format(new Date(timestamp)));
+					}
+					old = timestamp;
 				}
 				counters.put(rs.getString(2), rs.getString(3));
 			}
 			rs.close();
-			connection.close();
+			statement.close();
 
-			log.debug("find counter history successful. results: "
-					+ result.size());
+			log.debug("find counter history successful. results: " + result.size());
 
-			return result;
 		} catch (SQLException e) {
-			log.error("find all counter history failed", e);
+			log.error("find counter history failed", e);
+		} finally {
+			close(connection);
 		}
 
 		return result;
 	}
 
-	public List<Map<String, String>> getAllBeetween(long start, long end) {
-
-		StringBuilder sql = new StringBuilder();
-		sql.append("select time_stamp, name, value ");
-		sql.append("from counters_history ");
-		sql.append("where time_stamp > " + start + " and time_stamp < " + end
-				+ " ");
-		sql.append("order by time_stamp desc, name ");
-
-		List<Map<String, String>> result = new Vector<Map<String, String>>();
-
+	private void rollback(Connection connection) {
+		if (connection == null) {
+			return;
+		}
 		try {
+			connection.rollback();
+		} catch (SQLException e) {
+			log.error("rollback failed.", e);
+		}
+	}
 
-			String old = "";
-			Map<String, String> counters = null;
-			Connection connection = database.getDataSource().getConnection();
-			PreparedStatement statement = connection.prepareStatement(sql.toString());
-			ResultSet rs = statement.executeQuery();
-			while (rs.next()) {
-
-				if (!old.equals(rs.getString(1))) {
-					counters = new HashMap<String, String>();
-					result.add(counters);
-					counters.put("timestamp",
-							DATE_FORMAT.format(new Date(rs.getLong(1))));
-					old = rs.getString(1);
-				}
-				counters.put(rs.getString(2), rs.getString(3));
-			}
-			rs.close();
+	private void close(Connection connection) {
+		if (connection == null) {
+			return;
+		}
+		try {
+			connection.setAutoCommit(true);
 			connection.close();
-
-			log.debug("find counter history successful. results: "
-					+ result.size());
-
-			return result;
 		} catch (SQLException e) {
-			log.error("find all counter history failed", e);
+			log.error("closing connection failed.", e);
 		}
-
-		return result;
 	}
 
 }
@@ -1,5 +1,6 @@
 package cloudgene.mapred.database;
 
+import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.List;
@@ -8,6 +9,7 @@ import java.util.Vector;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import cloudgene.mapred.database.util.JdbcBatch;
 import cloudgene.mapred.jobs.CloudgeneParameterOutput;
 import cloudgene.mapred.jobs.Download;
 import genepi.db.Database;
@@ -22,23 +24,22 @@ public class DownloadDao extends JdbcDataAccessObject {
 		super(database);
 	}
 
+	private static final String INSERT_SQL = "insert into downloads (parameter_id, name, path, hash, count, size, job_id) "
+			+ "values (?,?,?,?,?,?,?)";
+
+	// queries below are checked for index usage by QueryPlanTest
+
+	static final String FIND_ALL_BY_PARAMETER_SQL = "select * from downloads where parameter_id = ? order by path";
+
+	static final String FIND_BY_HASH_SQL = "select * from downloads where hash = ? order by path";
+
+	static final String FIND_BY_PATH_SQL = "select * from downloads where path = ? order by path";
+
 	public boolean insert(Download download) {
-		StringBuilder sql = new StringBuilder();
-		sql.append("insert into downloads (parameter_id, name, path, hash, count, size, job_id) ");
-		sql.append("values (?,?,?,?,?,?,?)");
 
 		try {
 
-			Object[] params = new Object[7];
-			params[0] = download.getParameterId();
-			params[1] = download.getName();
-			params[2] = download.getPath();
-			params[3] = download.getHash();
-			params[4] = download.getCount();
-			params[5] = download.getSize();
-			params[6] = download.getParameter().getId();
-
-			update(sql.toString(), params);
+			update(INSERT_SQL, getParams(download));
 
 			log.debug("insert download successful.");
 
@@ -50,6 +51,34 @@ public class DownloadDao extends JdbcDataAccessObject {
 		return true;
 	}
 
+	/**
+	 * Inserts all downloads with one JDBC batch using the given connection.
+	 * Errors are not caught, the caller has to rollback the transaction.
+	 */
+	public void insertBatch(Connection connection, List<Download> downloads) throws SQLException {
+
+		List<Object[]> rows = new Vector<Object[]>();
+		for (Download download : downloads) {
+			rows.add(getParams(download));
+		}
+		JdbcBatch.executeBatch(connection, INSERT_SQL, rows);
+
+		log.debug("insert " + downloads.size() + " downloads successful.");
+
+	}
+
+	private Object[] getParams(Download download) {
+		Object[] params = new Object[7];
+		params[0] = download.getParameterId();
+		params[1] = download.getName();
+		params[2] = download.getPath();
+		params[3] = download.getHash();
+		params[4] = download.getCount();
+		params[5] = download.getSize();
+		params[6] = download.getParameter().getId();
+		return params;
+	}
+
 	public boolean update(Download download) {
 		StringBuilder sql = new StringBuilder();
 		sql.append("update downloads set count = ? where hash = ? ");
@@ -72,15 +101,43 @@ public class DownloadDao extends JdbcDataAccessObject {
 		return true;
 	}
 
+	/**
+	 * Decrements the download counter in one statement. Concurrent downloads
+	 * cannot lose updates or exceed the maximal number of downloads.
+	 *
+	 * @return false if no downloads are left.
+	 */
+	public boolean decrementCount(Download download) {
+
+		Connection connection = null;
+		try {
+
+			connection = database.getDataSource().getConnection();
+			int updated = JdbcBatch.executeUpdate(connection,
+					"update downloads set count = count - 1 where hash = ? and count <> 0",
+					new Object[] { download.getHash() });
+
+			log.debug("decrement download counter successful.");
+
+			return updated > 0;
+
+		} catch (SQLException e) {
+			log.error("decrement download counter failed.", e);
+			return false;
+		} finally {
+			if (connection != null) {
+				try {
+					connection.close();
+				} catch (SQLException e) {
+					log.error("closing connection failed.", e);
+				}
+			}
+		}
+	}
+
 	@SuppressWarnings("unchecked")
 	public List<Download> findAllByParameter(CloudgeneParameterOutput parameter) {
 
-		StringBuilder sql = new StringBuilder();
-		sql.append("select * ");
-		sql.append("from downloads ");
-		sql.append("where parameter_id = ? ");
-		sql.append("order by path ");
-
 		Object[] params = new Object[1];
 		params[0] = parameter.getId();
 
@@ -88,7 +145,7 @@ public class DownloadDao extends JdbcDataAccessObject {
 
 		try {
 
-			result = query(sql.toString(), params, new DownloadMapper());
+			result = query(FIND_ALL_BY_PARAMETER_SQL, params, new DownloadMapper());
 
 			log.debug("find all downloads successful. results: "
 					+ result.size());
@@ -102,12 +159,6 @@ public class DownloadDao extends JdbcDataAccessObject {
 
 	public Download findByHash(String hash) {
 
-		StringBuilder sql = new StringBuilder();
-		sql.append("select * ");
-		sql.append("from downloads ");
-		sql.append("where hash = ? ");
-		sql.append("order by path ");
-
 		Object[] params = new Object[1];
 		params[0] = hash;
 
@@ -115,7 +166,7 @@ public class DownloadDao extends JdbcDataAccessObject {
 
 		try {
 
-			result = (Download) queryForObject(sql.toString(), params,
+			result = (Download) queryForObject(FIND_BY_HASH_SQL, params,
 					new DownloadMapper());
 
 			log.debug("find download by hash successful. results: " + result);
@@ -129,12 +180,6 @@ public class DownloadDao extends JdbcDataAccessObject {
 
 	public Download findByJobAndPath(String job, String path) {
 
-		StringBuilder sql = new StringBuilder();
-		sql.append("select * ");
-		sql.append("from downloads ");
-		sql.append("where path = ? ");
-		sql.append("order by path ");
-
 		Object[] params = new Object[1];
 		params[0] = job + "/" + path;
 
@@ -142,7 +187,7 @@ public class DownloadDao extends JdbcDataAccessObject {
 
 		try {
 
-			result = (Download) queryForObject(sql.toString(), params,
+			result = (Download) queryForObject(FIND_BY_PATH_SQL, params,
 					new DownloadMapper());
 
 			log.debug("find download by job " + job + " and path " + path
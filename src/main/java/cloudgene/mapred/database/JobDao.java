@@ -1,8 +1,11 @@
 package cloudgene.mapred.database;
 
+import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Vector;
 
 import org.apache.commons.logging.Log;
@@ -10,6 +13,7 @@ import org.apache.commons.logging.LogFactory;
 
 import cloudgene.mapred.core.User;
 import cloudgene.mapred.database.UserDao.UserMapper;
+import cloudgene.mapred.database.util.JdbcBatch;
 import cloudgene.mapred.jobs.AbstractJob;
 import cloudgene.mapred.jobs.CloudgeneJob;
 import cloudgene.mapred.jobs.CloudgeneParameterInput;
@@ -27,31 +31,34 @@ public class JobDao extends JdbcDataAccessObject {
 		super(database);
 	}
 
+	private static final String INSERT_SQL = "insert into job (id, name, state, start_time, end_time, user_id, s3_url, type, application, application_id, submitted_on, finished_on, setup_start_time, setup_end_time) "
+			+ "values (?,?,?,?,?,?,?,?,?,?,?,?,?,?)";
+
+	private static final String UPDATE_SQL = "update job set name = ?, state = ?, "
+			+ "  start_time = ?, end_time = ?, "
+			+ "  user_id = ?, s3_url = ?, type = ?, deleted_on = ?, application = ?, application_id = ?, submitted_on = ?, finished_on = ?, setup_start_time = ?, setup_end_time = ? "
+			+ "where id = ? ";
+
+	// jobs owned by a lease are only updated by the worker with the current
+	// token
+	private static final String FENCED_UPDATE_SQL = UPDATE_SQL
+			+ "and exists (select 1 from job_leases where job_id = ? and worker = ? and token = ?)";
+
+	// queries below are checked for index usage by QueryPlanTest
+
+	static final String FIND_ALL_BY_USER_SQL = "select * from job where user_id = ? and state != ? order by id desc";
+
+	static final String FIND_ALL_OLDER_THAN_SQL = "select * from job join user on job.user_id = user.id "
+			+ "where state = ? AND finished_on != 0 AND finished_on < ? order by job.id desc";
+
+	static final String FIND_ALL_BY_STATE_SQL = "select * from job join user on job.user_id = user.id "
+			+ "where state = ? order by job.id desc";
+
 	public boolean insert(AbstractJob job) {
-		StringBuilder sql = new StringBuilder();
-		sql.append(
-				"insert into job (id, name, state, start_time, end_time, user_id, s3_url, type, application, application_id, submitted_on, finished_on, setup_start_time, setup_end_time) ");
-		sql.append("values (?,?,?,?,?,?,?,?,?,?,?,?,?,?)");
 
 		try {
 
-			Object[] params = new Object[14];
-			params[0] = job.getId();
-			params[1] = job.getName();
-			params[2] = job.getState();
-			params[3] = job.getStartTime();
-			params[4] = job.getEndTime();
-			params[5] = job.getUser().getId();
-			params[6] = "";
-			params[7] = -1;
-			params[8] = job.getApplication();
-			params[9] = job.getApplicationId();
-			params[10] = job.getSubmittedOn();
-			params[11] = job.getFinishedOn();
-			params[12] = job.getSetupStartTime();
-			params[13] = job.getSetupEndTime();
-
-			update(sql.toString(), params);
+			update(INSERT_SQL, getInsertParams(job));
 
 			log.debug("insert job '" + job.getId() + "' successful.");
 
@@ -63,45 +70,130 @@ public class JobDao extends JdbcDataAccessObject {
 		return true;
 	}
 
-	public boolean update(AbstractJob job) {
-		StringBuilder sql = new StringBuilder();
-		sql.append("update job ");
-		sql.append("  set name = ?, state = ?, ");
-		sql.append("  start_time = ?, end_time = ?, ");
-		sql.append(
-				"  user_id = ?, s3_url = ?, type = ?, deleted_on = ?, application = ?, application_id = ?, submitted_on = ?, finished_on = ?, setup_start_time = ?, setup_end_time = ? ");
-		sql.append("where id = ? ");
-		try {
+	/**
+	 * Inserts the job using the given connection. Errors are not caught, the
+	 * caller has to rollback the transaction.
+	 */
+	public void insert(Connection connection, AbstractJob job) throws SQLException {
+		JdbcBatch.executeUpdate(connection, INSERT_SQL, getInsertParams(job));
+		log.debug("insert job '" + job.getId() + "' successful.");
+	}
 
-			Object[] params = new Object[15];
-			params[0] = job.getName();
-			params[1] = job.getState();
-			params[2] = job.getStartTime();
-			params[3] = job.getEndTime();
-			params[4] = job.getUser().getId();
-			params[5] = "";
-			params[6] = -1;
-			params[7] = job.getDeletedOn();
-			params[8] = job.getApplication();
-			params[9] = job.getApplicationId();
-			params[10] = job.getSubmittedOn();
-			params[11] = job.getFinishedOn();
-			params[12] = job.getSetupStartTime();
-			params[13] = job.getSetupEndTime();
-			params[14] = job.getId();
+	/**
+	 * @return false if the update failed or the lease of the job is owned by
+	 *         an other worker.
+	 */
+	public boolean update(AbstractJob job) {
 
-			update(sql.toString(), params);
+		Connection connection = null;
+		try {
 
-			log.debug("update job successful.");
+			connection = database.getDataSource().getConnection();
+			return update(connection, job);
 
 		} catch (SQLException e) {
 			log.error("update job '" + job.getId() + "' failed", e);
 			return false;
+		} finally {
+			if (connection != null) {
+				try {
+					connection.close();
+				} catch (SQLException e) {
+					log.error("closing connection failed.", e);
+				}
+			}
 		}
 
+	}
+
+	/**
+	 * Updates the job using the given connection. Errors are not caught, the
+	 * caller has to rollback the transaction.
+	 *
+	 * @return false if the lease of the job is owned by an other worker.
+	 */
+	public boolean update(Connection connection, AbstractJob job) throws SQLException {
+		int updated = JdbcBatch.executeUpdate(connection, getUpdateSql(job), getUpdateParams(job));
+		if (updated == 0 && isFenced(job)) {
+			log.warn("update job '" + job.getId() + "' rejected. lease " + job.getLeaseToken() + " of worker '"
+					+ job.getWorker() + "' is not valid anymore.");
+			return false;
+		}
+		log.debug("update job successful.");
 		return true;
 	}
 
+	/**
+	 * Updates all jobs with one JDBC batch using the given connection. Errors
+	 * are not caught, the caller has to rollback the transaction.
+	 */
+	public void updateBatch(Connection connection, List<AbstractJob> jobs) throws SQLException {
+		List<Object[]> rows = new Vector<Object[]>();
+		List<Object[]> fencedRows = new Vector<Object[]>();
+		for (AbstractJob job : jobs) {
+			if (isFenced(job)) {
+				fencedRows.add(getUpdateParams(job));
+			} else {
+				rows.add(getUpdateParams(job));
+			}
+		}
+		JdbcBatch.executeBatch(connection, UPDATE_SQL, rows);
+		JdbcBatch.executeBatch(connection, FENCED_UPDATE_SQL, fencedRows);
+		log.debug("update " + jobs.size() + " jobs successful.");
+	}
+
+	private Object[] getInsertParams(AbstractJob job) {
+		Object[] params = new Object[14];
+		params[0] = job.getId();
+		params[1] = job.getName();
+		params[2] = job.getState();
+		params[3] = job.getStartTime();
+		params[4] = job.getEndTime();
+		params[5] = job.getUser().getId();
+		params[6] = "";
+		params[7] = -1;
+		params[8] = job.getApplication();
+		params[9] = job.getApplicationId();
+		params[10] = job.getSubmittedOn();
+		params[11] = job.getFinishedOn();
+		params[12] = job.getSetupStartTime();
+		params[13] = job.getSetupEndTime();
+		return params;
+	}
+
+	private boolean isFenced(AbstractJob job) {
+		return job.getLeaseToken() > 0;
+	}
+
+	private String getUpdateSql(AbstractJob job) {
+		return isFenced(job) ? FENCED_UPDATE_SQL : UPDATE_SQL;
+	}
+
+	private Object[] getUpdateParams(AbstractJob job) {
+		Object[] params = new Object[isFenced(job) ? 18 : 15];
+		params[0] = job.getName();
+		params[1] = job.getState();
+		params[2] = job.getStartTime();
+		params[3] = job.getEndTime();
+		params[4] = job.getUser().getId();
+		params[5] = "";
+		params[6] = -1;
+		params[7] = job.getDeletedOn();
+		params[8] = job.getApplication();
+		params[9] = job.getApplicationId();
+		params[10] = job.getSubmittedOn();
+		params[11] = job.getFinishedOn();
+		params[12] = job.getSetupStartTime();
+		params[13] = job.getSetupEndTime();
+		params[14] = job.getId();
+		if (isFenced(job)) {
+			params[15] = job.getId();
+			params[16] = job.getWorker();
+			params[17] = job.getLeaseToken();
+		}
+		return params;
+	}
+
 	public boolean delete(AbstractJob job) {
 		StringBuilder sql = new StringBuilder();
 		sql.append("delete from job ");
@@ -126,12 +218,6 @@ public class JobDao extends JdbcDataAccessObject {
 	@SuppressWarnings("unchecked")
 	public List<AbstractJob> findAllByUser(User user) {
 
-		StringBuilder sql = new StringBuilder();
-		sql.append("select * ");
-		sql.append("from job ");
-		sql.append("where user_id = ? and state != ? ");
-		sql.append("order by id desc ");
-
 		Object[] params = new Object[2];
 		params[0] = user.getId();
 		params[1] = AbstractJob.STATE_DELETED;
@@ -140,7 +226,7 @@ public class JobDao extends JdbcDataAccessObject {
 
 		try {
 
-			result = query(sql.toString(), params, new JobMapper());
+			result = query(FIND_ALL_BY_USER_SQL, params, new JobMapper());
 
 			log.debug("find all jobs successful. results: " + result.size());
 
@@ -325,13 +411,6 @@ public class JobDao extends JdbcDataAccessObject {
 	@SuppressWarnings("unchecked")
 	public List<AbstractJob> findAllOlderThan(long time, int state) {
 
-		StringBuilder sql = new StringBuilder();
-		sql.append("select * ");
-		sql.append("from job ");
-		sql.append("join user on job.user_id = user.id ");
-		sql.append("where  state = ? AND finished_on != 0 AND finished_on < ? ");
-		sql.append("order by job.id desc ");
-
 		Object[] params = new Object[2];
 		params[0] = state;
 		params[1] = time;
@@ -340,7 +419,7 @@ public class JobDao extends JdbcDataAccessObject {
 
 		try {
 
-			result = query(sql.toString(), params, new JobAndUserMapper());
+			result = query(FIND_ALL_OLDER_THAN_SQL, params, new JobAndUserMapper());
 
 			log.debug("find all old jobs successful. results: " + result.size());
 
@@ -354,13 +433,6 @@ public class JobDao extends JdbcDataAccessObject {
 	@SuppressWarnings("unchecked")
 	public List<AbstractJob> findAllByState(int state) {
 
-		StringBuilder sql = new StringBuilder();
-		sql.append("select * ");
-		sql.append("from job ");
-		sql.append("join user on job.user_id = user.id ");
-		sql.append("where state = ? ");
-		sql.append("order by job.id desc ");
-
 		Object[] params = new Object[1];
 		params[0] = state;
 
@@ -368,7 +440,7 @@ public class JobDao extends JdbcDataAccessObject {
 
 		try {
 
-			result = query(sql.toString(), params, new JobAndUserMapper());
+			result = query(FIND_ALL_BY_STATE_SQL, params, new JobAndUserMapper());
 
 			log.debug("find all old jobs successful. results: " + result.size());
 
@@ -379,6 +451,252 @@ public class JobDao extends JdbcDataAccessObject {
 		}
 	}
 
+	/**
+	 * Columns needed by job listings. Large or sensitive columns of the user
+	 * table are not loaded.
+	 */
+	private static final String SUMMARY_COLUMNS = "job.id, job.name, job.state, job.start_time, job.end_time, job.deleted_on, "
+			+ "job.application, job.application_id, job.submitted_on, job.finished_on, job.setup_start_time, job.setup_end_time, job.disk_usage, "
+			+ "user.id, user.username, user.full_name, user.mail ";
+
+	/**
+	 * Returns one page of all jobs that are not retired or deleted, newest
+	 * first. Pages are selected by the id of the last job of the previous page
+	 * (keyset pagination on submit time and id), the first page is returned if
+	 * before is null.
+	 */
+	public List<AbstractJob> findAllNotRetiredJobs(String before, int limit) {
+		return findSummaries(NOT_RETIRED_WHERE, new Object[] { AbstractJob.STATE_RETIRED, AbstractJob.STATE_DELETED },
+				before, limit);
+	}
+
+	public List<AbstractJob> findAllByState(int state, String before, int limit) {
+		return findSummaries(BY_STATE_WHERE, new Object[] { state }, before, limit);
+	}
+
+	public List<AbstractJob> findAllByUser(User user, String before, int limit) {
+		return findSummaries(BY_USER_WHERE, new Object[] { user.getId(), AbstractJob.STATE_DELETED }, before, limit);
+	}
+
+	static final String NOT_RETIRED_WHERE = "state != ? AND state != ? ";
+
+	static final String BY_STATE_WHERE = "state = ? ";
+
+	static final String BY_USER_WHERE = "user_id = ? and state != ? ";
+
+	static String getSummariesSql(String where, boolean before) {
+		StringBuilder sql = new StringBuilder();
+		sql.append("select " + SUMMARY_COLUMNS);
+		sql.append("from job ");
+		sql.append("join user on job.user_id = user.id ");
+		sql.append("where " + where);
+		if (before) {
+			// jobs submitted at the same time are ordered by id
+			sql.append("AND (job.submitted_on < (select submitted_on from job where id = ?) ");
+			sql.append("OR (job.submitted_on = (select submitted_on from job where id = ?) AND job.id < ?)) ");
+		}
+		sql.append("order by job.submitted_on desc, job.id desc ");
+		sql.append("limit ?");
+		return sql.toString();
+	}
+
+	@SuppressWarnings("unchecked")
+	private List<AbstractJob> findSummaries(String where, Object[] whereParams, String before, int limit) {
+
+		Object[] params = new Object[whereParams.length + (before != null ? 4 : 1)];
+		System.arraycopy(whereParams, 0, params, 0, whereParams.length);
+		if (before != null) {
+			params[whereParams.length] = before;
+			params[whereParams.length + 1] = before;
+			params[whereParams.length + 2] = before;
+		}
+		params[params.length - 1] = limit;
+
+		List<AbstractJob> result = new Vector<AbstractJob>();
+
+		try {
+
+			result = query(getSummariesSql(where, before != null), params, new JobSummaryMapper());
+
+			log.debug("find job page successful. results: " + result.size());
+
+			return result;
+		} catch (SQLException e) {
+			log.error("find job page failed", e);
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the jobs that are not retired or deleted with the largest
+	 * workspaces.
+	 */
+	@SuppressWarnings("unchecked")
+	public List<AbstractJob> findAllByDiskUsage(int limit) {
+
+		StringBuilder sql = new StringBuilder();
+		sql.append("select " + SUMMARY_COLUMNS);
+		sql.append("from job ");
+		sql.append("join user on job.user_id = user.id ");
+		sql.append("where state != ? AND state != ? ");
+		sql.append("order by job.disk_usage desc ");
+		sql.append("limit ?");
+
+		Object[] params = new Object[3];
+		params[0] = AbstractJob.STATE_RETIRED;
+		params[1] = AbstractJob.STATE_DELETED;
+		params[2] = limit;
+
+		List<AbstractJob> result = new Vector<AbstractJob>();
+
+		try {
+
+			result = query(sql.toString(), params, new JobSummaryMapper());
+
+			log.debug("find jobs by disk usage successful. results: " + result.size());
+
+			return result;
+		} catch (SQLException e) {
+			log.error("find jobs by disk usage failed", e);
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the jobs that are not retired or deleted whose disk usage was
+	 * not scanned for the longest time.
+	 */
+	@SuppressWarnings("unchecked")
+	public List<AbstractJob> findAllByDiskUsageScan(int limit) {
+
+		StringBuilder sql = new StringBuilder();
+		sql.append("select " + SUMMARY_COLUMNS);
+		sql.append("from job ");
+		sql.append("join user on job.user_id = user.id ");
+		sql.append("where state != ? AND state != ? ");
+		sql.append("order by job.disk_usage_scanned_on asc ");
+		sql.append("limit ?");
+
+		Object[] params = new Object[3];
+		params[0] = AbstractJob.STATE_RETIRED;
+		params[1] = AbstractJob.STATE_DELETED;
+		params[2] = limit;
+
+		List<AbstractJob> result = new Vector<AbstractJob>();
+
+		try {
+
+			result = query(sql.toString(), params, new JobSummaryMapper());
+
+			log.debug("find jobs by disk usage scan successful. results: " + result.size());
+
+			return result;
+		} catch (SQLException e) {
+			log.error("find jobs by disk usage scan failed", e);
+			return null;
+		}
+	}
+
+	/**
+	 * Writes the size of the workspace measured by the disk usage scanner.
+	 * The column is not part of the full job update.
+	 */
+	public boolean updateDiskUsage(String id, long diskUsage, long scannedOn) {
+
+		StringBuilder sql = new StringBuilder();
+		sql.append("update job set disk_usage = ?, disk_usage_scanned_on = ? where id = ?");
+
+		try {
+
+			Object[] params = new Object[3];
+			params[0] = diskUsage;
+			params[1] = scannedOn;
+			params[2] = id;
+
+			update(sql.toString(), params);
+
+			log.debug("update disk usage of job '" + id + "' successful.");
+
+		} catch (SQLException e) {
+			log.error("update disk usage of job '" + id + "' failed", e);
+			return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Writes the size of the exported outputs of a completed job using the
+	 * given connection. Errors are not caught, the caller has to rollback the
+	 * transaction.
+	 */
+	public void updateDiskUsage(Connection connection, AbstractJob job) throws SQLException {
+		JdbcBatch.executeUpdate(connection, "update job set disk_usage = ? where id = ?",
+				new Object[] { job.getDiskUsage(), job.getId() });
+		log.debug("update disk usage of job '" + job.getId() + "' successful.");
+	}
+
+	/**
+	 * @return number of jobs per state.
+	 */
+	public Map<Integer, Integer> countAllByState() {
+		return countByState(null, new Object[0]);
+	}
+
+	/**
+	 * @return number of jobs per state that are not retired or deleted. Same
+	 *         filter as {@link #findAllNotRetiredJobs(String, int)}.
+	 */
+	public Map<Integer, Integer> countAllNotRetiredJobsByState() {
+		return countByState(NOT_RETIRED_WHERE,
+				new Object[] { AbstractJob.STATE_RETIRED, AbstractJob.STATE_DELETED });
+	}
+
+	/**
+	 * @return number of jobs with the given state. Same filter as
+	 *         {@link #findAllByState(int, String, int)}.
+	 */
+	public Map<Integer, Integer> countAllByState(int state) {
+		return countByState(BY_STATE_WHERE, new Object[] { state });
+	}
+
+	@SuppressWarnings("unchecked")
+	private Map<Integer, Integer> countByState(String where, Object[] params) {
+
+		StringBuilder sql = new StringBuilder();
+		sql.append("select state, count(*) ");
+		sql.append("from job ");
+		if (where != null) {
+			sql.append("where " + where);
+		}
+		sql.append("group by state");
+
+		Map<Integer, Integer> result = new HashMap<Integer, Integer>();
+
+		try {
+
+			List<int[]> rows = query(sql.toString(), params, new IRowMapper() {
+
+				@Override
+				public int[] mapRow(ResultSet rs, int row) throws SQLException {
+					return new int[] { rs.getInt(1), rs.getInt(2) };
+				}
+
+			});
+			for (int[] row : rows) {
+				result.put(row[0], row[1]);
+			}
+
+			log.debug("count jobs by state successful. results: " + result);
+
+			return result;
+		} catch (SQLException e) {
+			log.error("count jobs by state failed", e);
+		}
+
+		return result;
+	}
+
 	public AbstractJob findById(String id) {
 
 		return findById(id, true);
@@ -456,6 +774,29 @@ public class JobDao extends JdbcDataAccessObject {
 			job.setFinishedOn(rs.getLong("job.finished_on"));
 			job.setSetupStartTime(rs.getLong("job.setup_start_time"));
 			job.setSetupEndTime(rs.getLong("job.setup_end_time"));
+			job.setDiskUsage(rs.getLong("job.disk_usage"));
+
+			return job;
+		}
+
+	}
+
+	class JobSummaryMapper implements IRowMapper {
+
+		private JobMapper jobMaper = new JobMapper();
+
+		@Override
+		public Object mapRow(ResultSet rs, int row) throws SQLException {
+
+			AbstractJob job = jobMaper.mapRow(rs, row);
+
+			User user = new User();
+			user.setId(rs.getInt("user.id"));
+			user.setUsername(rs.getString("user.username"));
+			user.setFullName(rs.getString("user.full_name"));
+			user.setMail(rs.getString("user.mail"));
+			user.setRoles(new String[0]);
+			job.setUser(user);
 
 			return job;
 		}
@@ -0,0 +1,189 @@
+package cloudgene.mapred.database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import cloudgene.mapred.jobs.AbstractJob;
+import genepi.db.Database;
+
+/**
+ * Write-behind layer for job updates. Repeated updates of the same job are
+ * merged and written in one batch by a background thread at least every
+ * interval ms. Updates to a final state and close() flush immediately.
+ */
+public class JobUpdateJournal implements Runnable {
+
+	private static final Log log = LogFactory.getLog(JobUpdateJournal.class);
+
+	public static final long DEFAULT_INTERVAL = 2000;
+
+	public static final int MAX_PENDING = 500;
+
+	private Database database;
+
+	private JobDao dao;
+
+	private long interval;
+
+	private Map<String, AbstractJob> pending = new ConcurrentHashMap<String, AbstractJob>();
+
+	private Object signal = new Object();
+
+	private volatile boolean running = true;
+
+	private Thread thread;
+
+	public JobUpdateJournal(Database database) {
+		this(database, DEFAULT_INTERVAL);
+	}
+
+	public JobUpdateJournal(Database database, long interval) {
+		this.database = database;
+		this.dao = new JobDao(database);
+		this.interval = interval;
+		thread = new Thread(this, "JobUpdateJournal");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	public void update(AbstractJob job) {
+
+		if (!running) {
+			dao.update(job);
+			return;
+		}
+
+		// jobs are stored by reference, a flush always writes the latest state
+		pending.put(job.getId(), job);
+
+		if (isFinalState(job.getState())) {
+			flush();
+		} else if (pending.size() >= MAX_PENDING) {
+			synchronized (signal) {
+				signal.notifyAll();
+			}
+		}
+
+	}
+
+	/**
+	 * Drops a pending update, e.g. because the job was written by the caller.
+	 */
+	public void discard(AbstractJob job) {
+		pending.remove(job.getId(), job);
+	}
+
+	public int getPending() {
+		return pending.size();
+	}
+
+	/**
+	 * Writes all pending updates in one transaction.
+	 */
+	public synchronized void flush() {
+
+		if (pending.isEmpty()) {
+			return;
+		}
+
+		List<AbstractJob> jobs = new Vector<AbstractJob>();
+		for (String id : pending.keySet()) {
+			AbstractJob job = pending.remove(id);
+			if (job != null) {
+				jobs.add(job);
+			}
+		}
+
+		if (jobs.isEmpty()) {
+			return;
+		}
+
+		Connection connection = null;
+		try {
+
+			connection = database.getDataSource().getConnection();
+			connection.setAutoCommit(false);
+			dao.updateBatch(connection, jobs);
+			connection.commit();
+
+			log.debug("Flushed updates of " + jobs.size() + " jobs.");
+
+		} catch (SQLException e) {
+
+			log.error("Flushing updates of " + jobs.size() + " jobs failed.", e);
+			try {
+				if (connection != null) {
+					connection.rollback();
+				}
+			} catch (SQLException e1) {
+				log.error("Rollback failed.", e1);
+			}
+			// retry with the next flush, newer updates win
+			for (AbstractJob job : jobs) {
+				pending.putIfAbsent(job.getId(), job);
+			}
+
+		} finally {
+			if (connection != null) {
+				try {
+					connection.setAutoCommit(true);
+					connection.close();
+				} catch (SQLException e) {
+					log.error("Closing connection failed.", e);
+				}
+			}
+		}
+
+	}
+
+	@Override
+	public void run() {
+
+		while (running) {
+
+			synchronized (signal) {
+				try {
+					signal.wait(interval);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+			}
+
+			try {
+				flush();
+			} catch (Exception e) {
+				log.error("Job update journal failed.", e);
+			}
+
+		}
+
+	}
+
+	/**
+	 * Stops the background thread and writes all pending updates.
+	 */
+	public void close() {
+		running = false;
+		synchronized (signal) {
+			signal.notifyAll();
+		}
+		flush();
+	}
+
+	private boolean isFinalState(int state) {
+		return state == AbstractJob.STATE_SUCCESS || state == AbstractJob.STATE_FAILED
+				|| state == AbstractJob.STATE_CANCELED || state == AbstractJob.STATE_DEAD
+				|| state == AbstractJob.STATE_RETIRED || state == AbstractJob.STATE_DELETED
+				|| state == AbstractJob.STATE_SUCESS_AND_NOTIFICATION_SEND
+				|| state == AbstractJob.STATE_FAILED_AND_NOTIFICATION_SEND;
+	}
+
+}
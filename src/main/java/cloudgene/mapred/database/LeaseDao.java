@@ -0,0 +1,303 @@
+package cloudgene.mapred.database;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import cloudgene.mapred.database.util.JdbcBatch;
+import cloudgene.mapred.jobs.AbstractJob;
+import genepi.db.Database;
+import genepi.db.IRowMapper;
+import genepi.db.JdbcDataAccessObject;
+
+/**
+ * Leases of jobs in a cluster of workers that share one database. A worker
+ * owns a job as long as its lease is not expired. Every claim increments the
+ * token of the lease, updates of a job are only written if the token still
+ * matches (fencing).
+ */
+public class LeaseDao extends JdbcDataAccessObject {
+
+	private static final Log log = LogFactory.getLog(LeaseDao.class);
+
+	public LeaseDao(Database database) {
+		super(database);
+	}
+
+	/**
+	 * Claims the job for the worker if it has no lease or the lease is
+	 * expired.
+	 *
+	 * @return the new token or -1 if an other worker owns the job.
+	 */
+	public long claim(String jobId, String worker, long timeout) {
+
+		long now = System.currentTimeMillis();
+
+		Connection connection = null;
+		try {
+
+			connection = database.getDataSource().getConnection();
+
+			int updated = JdbcBatch.executeUpdate(connection,
+					"update job_leases set worker = ?, token = token + 1, expires_on = ?, cancel_requested = false "
+							+ "where job_id = ? and expires_on < ?",
+					new Object[] { worker, now + timeout, jobId, now });
+
+			if (updated == 0) {
+				try {
+					JdbcBatch.executeUpdate(connection,
+							"insert into job_leases (job_id, worker, token, expires_on, cancel_requested) values (?,?,?,?,?)",
+							new Object[] { jobId, worker, 1, now + timeout, false });
+				} catch (SQLException e) {
+					// primary key: lease exists and is not expired
+					log.debug("job '" + jobId + "' is owned by an other worker.");
+					return -1;
+				}
+			}
+
+			Long token = (Long) queryForObject("select token from job_leases where job_id = ? and worker = ?",
+					new Object[] { jobId, worker }, new LongMapper());
+
+			log.debug("worker '" + worker + "' claimed job '" + jobId + "'. token: " + token);
+
+			return token != null ? token : -1;
+
+		} catch (SQLException e) {
+			log.error("claim job '" + jobId + "' failed.", e);
+			return -1;
+		} finally {
+			close(connection);
+		}
+
+	}
+
+	/**
+	 * Extends the leases of the given jobs that the worker still owns. Leases
+	 * of jobs that are not running on the worker anymore expire.
+	 *
+	 * @return job id and token of all given jobs the worker still owns.
+	 */
+	@SuppressWarnings("unchecked")
+	public Map<String, Long> renew(String worker, List<String> jobIds, long timeout) {
+
+		long now = System.currentTimeMillis();
+		Map<String, Long> result = new HashMap<String, Long>();
+
+		if (jobIds.isEmpty()) {
+			return result;
+		}
+
+		StringBuilder ids = new StringBuilder();
+		for (int i = 0; i < jobIds.size(); i++) {
+			ids.append(i == 0 ? "?" : ",?");
+		}
+
+		List<Object> params = new Vector<Object>();
+		params.add(worker);
+		params.add(now);
+		params.addAll(jobIds);
+
+		try {
+
+			List<Object> updateParams = new Vector<Object>();
+			updateParams.add(now + timeout);
+			updateParams.addAll(params);
+			update("update job_leases set expires_on = ? where worker = ? and expires_on >= ? and job_id in (" + ids
+					+ ")", updateParams.toArray());
+
+			List<Object[]> leases = query("select job_id, token from job_leases where worker = ? and expires_on >= ? "
+					+ "and job_id in (" + ids + ")", params.toArray(), new LeaseMapper());
+			for (Object[] lease : leases) {
+				result.put((String) lease[0], (Long) lease[1]);
+			}
+
+			log.debug("renew leases of worker '" + worker + "' successful. leases: " + result.size());
+
+		} catch (SQLException e) {
+			log.error("renew leases of worker '" + worker + "' failed.", e);
+		}
+
+		return result;
+
+	}
+
+	/**
+	 * Expires all leases of the worker. Called at startup, jobs of a previous
+	 * run of the worker can be taken over immediately.
+	 */
+	public boolean expireAll(String worker) {
+
+		try {
+
+			update("update job_leases set expires_on = 0 where worker = ?", new Object[] { worker });
+
+			log.debug("expire leases of worker '" + worker + "' successful.");
+
+		} catch (SQLException e) {
+			log.error("expire leases of worker '" + worker + "' failed.", e);
+			return false;
+		}
+
+		return true;
+
+	}
+
+	public boolean release(String jobId, String worker, long token) {
+
+		try {
+
+			update("delete from job_leases where job_id = ? and worker = ? and token = ?",
+					new Object[] { jobId, worker, token });
+
+			log.debug("release lease of job '" + jobId + "' successful.");
+
+		} catch (SQLException e) {
+			log.error("release lease of job '" + jobId + "' failed.", e);
+			return false;
+		}
+
+		return true;
+
+	}
+
+	/**
+	 * Returns active jobs without lease or with an expired lease, oldest first.
+	 */
+	@SuppressWarnings("unchecked")
+	public List<String> findClaimableJobs(int limit) {
+
+		StringBuilder sql = new StringBuilder();
+		sql.append("select job.id from job ");
+		sql.append("left join job_leases on job.id = job_leases.job_id ");
+		sql.append("where job.state in (?, ?, ?) ");
+		sql.append("and (job_leases.job_id is null or job_leases.expires_on < ?) ");
+		sql.append("order by job.submitted_on asc ");
+		sql.append("limit ?");
+
+		Object[] params = new Object[] { AbstractJob.STATE_WAITING, AbstractJob.STATE_RUNNING,
+				AbstractJob.STATE_EXPORTING, System.currentTimeMillis(), limit };
+
+		try {
+
+			List<String> result = query(sql.toString(), params, new StringMapper());
+
+			log.debug("find claimable jobs successful. results: " + result.size());
+
+			return result;
+
+		} catch (SQLException e) {
+			log.error("find claimable jobs failed.", e);
+			return new Vector<String>();
+		}
+
+	}
+
+	/**
+	 * Marks the job as cancelled. The worker that owns the job cancels it with
+	 * its next heartbeat.
+	 *
+	 * @return false if the job has no valid lease.
+	 */
+	public boolean requestCancel(String jobId) {
+
+		Connection connection = null;
+		try {
+
+			connection = database.getDataSource().getConnection();
+			int updated = JdbcBatch.executeUpdate(connection,
+					"update job_leases set cancel_requested = true where job_id = ? and expires_on >= ?",
+					new Object[] { jobId, System.currentTimeMillis() });
+
+			log.debug("request cancel of job '" + jobId + "' successful.");
+
+			return updated > 0;
+
+		} catch (SQLException e) {
+			log.error("request cancel of job '" + jobId + "' failed.", e);
+			return false;
+		} finally {
+			close(connection);
+		}
+
+	}
+
+	@SuppressWarnings("unchecked")
+	public List<String> findCancelRequests(String worker) {
+
+		try {
+
+			return query("select job_id from job_leases where worker = ? and cancel_requested = true",
+					new Object[] { worker }, new StringMapper());
+
+		} catch (SQLException e) {
+			log.error("find cancel requests of worker '" + worker + "' failed.", e);
+			return new Vector<String>();
+		}
+
+	}
+
+	/**
+	 * @return the worker that owns the job or null if the job has no valid
+	 *         lease.
+	 */
+	public String findOwner(String jobId) {
+
+		try {
+
+			return (String) queryForObject("select worker from job_leases where job_id = ? and expires_on >= ?",
+					new Object[] { jobId, System.currentTimeMillis() }, new StringMapper());
+
+		} catch (SQLException e) {
+			log.error("find owner of job '" + jobId + "' failed.", e);
+			return null;
+		}
+
+	}
+
+	class StringMapper implements IRowMapper {
+
+		@Override
+		public String mapRow(ResultSet rs, int row) throws SQLException {
+			return rs.getString(1);
+		}
+
+	}
+
+	class LongMapper implements IRowMapper {
+
+		@Override
+		public Long mapRow(ResultSet rs, int row) throws SQLException {
+			return rs.getLong(1);
+		}
+
+	}
+
+	class LeaseMapper implements IRowMapper {
+
+		@Override
+		public Object[] mapRow(ResultSet rs, int row) throws SQLException {
+			return new Object[] { rs.getString(1), rs.getLong(2) };
+		}
+
+	}
+
+	private void close(Connection connection) {
+		if (connection == null) {
+			return;
+		}
+		try {
+			connection.close();
+		} catch (SQLException e) {
+			log.error("closing connection failed.", e);
+		}
+	}
+
+}
@@ -4,6 +4,7 @@ import genepi.db.Database;
 import genepi.db.IRowMapper;
 import genepi.db.JdbcDataAccessObject;
 
+import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.List;
@@ -12,6 +13,7 @@ import java.util.Vector;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import cloudgene.mapred.database.util.JdbcBatch;
 import cloudgene.mapred.jobs.CloudgeneStep;
 import cloudgene.mapred.jobs.Message;
 
@@ -23,20 +25,17 @@ public class MessageDao extends JdbcDataAccessObject {
 		super(database);
 	}
 
+	private static final String INSERT_SQL = "insert into log_messages (time, type, message, step_id) "
+			+ "values (?,?,?,?)";
+
+	// checked for index usage by QueryPlanTest
+	static final String FIND_ALL_BY_STEP_SQL = "select * from log_messages where step_id = ? order by time";
+
 	public boolean insert(Message logMessage) {
-		StringBuilder sql = new StringBuilder();
-		sql.append("insert into log_messages (time, type, message, step_id) ");
-		sql.append("values (?,?,?,?)");
 
 		try {
 
-			Object[] params = new Object[4];
-			params[0] = System.currentTimeMillis();
-			params[1] = logMessage.getType();
-			params[2] = logMessage.getMessage().substring(0,
-					Math.min(logMessage.getMessage().length(), 1000));
-			params[3] = logMessage.getStep().getId();
-			update(sql.toString(), params);
+			update(INSERT_SQL, getParams(logMessage));
 
 			log.debug("insert log messages successful.");
 
@@ -48,15 +47,35 @@ public class MessageDao extends JdbcDataAccessObject {
 		return true;
 	}
 
+	/**
+	 * Inserts all messages with one JDBC batch using the given connection.
+	 * Errors are not caught, the caller has to rollback the transaction.
+	 */
+	public void insertBatch(Connection connection, List<Message> logMessages) throws SQLException {
+
+		List<Object[]> rows = new Vector<Object[]>();
+		for (Message logMessage : logMessages) {
+			rows.add(getParams(logMessage));
+		}
+		JdbcBatch.executeBatch(connection, INSERT_SQL, rows);
+
+		log.debug("insert " + logMessages.size() + " log messages successful.");
+
+	}
+
+	private Object[] getParams(Message logMessage) {
+		Object[] params = new Object[4];
+		params[0] = System.currentTimeMillis();
+		params[1] = logMessage.getType();
+		params[2] = logMessage.getMessage().substring(0,
+				Math.min(logMessage.getMessage().length(), 1000));
+		params[3] = logMessage.getStep().getId();
+		return params;
+	}
+
 	@SuppressWarnings("unchecked")
 	public List<Message> findAllByStep(CloudgeneStep step) {
 
-		StringBuilder sql = new StringBuilder();
-		sql.append("select * ");
-		sql.append("from log_messages ");
-		sql.append("where step_id = ? ");
-		sql.append("order by time ");
-
 		Object[] params = new Object[1];
 		params[0] = step.getId();
 
@@ -64,7 +83,7 @@ public class MessageDao extends JdbcDataAccessObject {
 
 		try {
 
-			result = query(sql.toString(), params, new MessageMapper(step));
+			result = query(FIND_ALL_BY_STEP_SQL, params, new MessageMapper(step));
 
 			log.debug("find all log messages successful. results: "
 					+ result.size());
@@ -1,5 +1,6 @@
 package cloudgene.mapred.database;
 
+import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.List;
@@ -8,6 +9,7 @@ import java.util.Vector;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import cloudgene.mapred.database.util.JdbcBatch;
 import cloudgene.mapred.jobs.AbstractJob;
 import cloudgene.mapred.jobs.CloudgeneParameterInput;
 import cloudgene.mapred.jobs.CloudgeneParameterOutput;
@@ -26,29 +28,20 @@ public class ParameterDao extends JdbcDataAccessObject {
 		super(database);
 	}
 
+	private static final String INSERT_SQL = "insert into parameter (name, value, input, job_id, type, variable, download, format, admin_only) "
+			+ "values (?,?,?,?,?,?,?,?,?)";
+
+	// queries below are checked for index usage by QueryPlanTest
+
+	static final String FIND_ALL_INPUT_BY_JOB_SQL = "select * from parameter where job_id = ? and input = true";
+
+	static final String FIND_ALL_OUTPUT_BY_JOB_SQL = "select * from parameter where job_id = ? and input = false";
+
 	public boolean insert(CloudgeneParameterInput parameter) {
-		StringBuilder sql = new StringBuilder();
-		sql.append("insert into parameter (name, value, input, job_id, type, variable, download, format, admin_only) ");
-		sql.append("values (?,?,?,?,?,?,?,?,?)");
 
 		try {
 
-			Object[] params = new Object[9];
-			if (parameter.getDescription() != null) {
-				params[0] = parameter.getDescription().substring(0, Math.min(parameter.getDescription().length(), 100));
-			} else {
-				params[0] = "";
-			}
-			params[1] = parameter.getValue();
-			params[2] = true;
-			params[3] = parameter.getJob().getId();
-			params[4] = parameter.getType().toString();
-			params[5] = parameter.getName();
-			params[6] = false;
-			params[7] = "";
-			params[8] = parameter.isAdminOnly();
-
-			int paramId = insert(sql.toString(), params);
+			int paramId = insert(INSERT_SQL, getParams(parameter));
 			parameter.setId(paramId);
 
 			log.debug("insert parameter '" + parameter.getId() + "' successful.");
@@ -62,24 +55,10 @@ public class ParameterDao extends JdbcDataAccessObject {
 	}
 
 	public boolean insert(CloudgeneParameterOutput parameter) {
-		StringBuilder sql = new StringBuilder();
-		sql.append("insert into parameter (name, value, input, job_id, type, variable, download, format, admin_only) ");
-		sql.append("values (?,?,?,?,?,?,?,?,?)");
 
 		try {
 
-			Object[] params = new Object[9];
-			params[0] = parameter.getDescription().substring(0, Math.min(parameter.getDescription().length(), 100));
-			params[1] = parameter.getValue();
-			params[2] = false;
-			params[3] = parameter.getJob().getId();
-			params[4] = parameter.getType().toString();
-			params[5] = parameter.getName();
-			params[6] = parameter.isDownload();
-			params[7] = "";
-			params[8] = parameter.isAdminOnly();
-
-			int paramId = insert(sql.toString(), params);
+			int paramId = insert(INSERT_SQL, getParams(parameter));
 			parameter.setId(paramId);
 
 			log.debug("insert parameter '" + parameter.getId() + "' successful.");
@@ -92,14 +71,91 @@ public class ParameterDao extends JdbcDataAccessObject {
 		return true;
 	}
 
+	/**
+	 * Inserts all input and output parameters of a job using the given
+	 * connection and sets their ids. Errors are not caught, the caller has to
+	 * rollback the transaction.
+	 */
+	public void insertBatch(Connection connection, List<CloudgeneParameterInput> inputs,
+			List<CloudgeneParameterOutput> outputs) throws SQLException {
+
+		List<Object[]> rows = new Vector<Object[]>();
+		for (CloudgeneParameterInput parameter : inputs) {
+			rows.add(getParams(parameter));
+		}
+		for (CloudgeneParameterOutput parameter : outputs) {
+			rows.add(getParams(parameter));
+		}
+
+		int[] ids = JdbcBatch.executeInserts(connection, INSERT_SQL, rows);
+		for (int i = 0; i < inputs.size(); i++) {
+			inputs.get(i).setId(ids[i]);
+		}
+		for (int i = 0; i < outputs.size(); i++) {
+			outputs.get(i).setId(ids[inputs.size() + i]);
+		}
+
+		log.debug("insert " + rows.size() + " parameters successful.");
+
+	}
+
+	/**
+	 * Writes the export metrics of all exported output parameters using the
+	 * given connection. Errors are not caught, the caller has to rollback the
+	 * transaction.
+	 */
+	public void updateExportMetrics(Connection connection, List<CloudgeneParameterOutput> outputs)
+			throws SQLException {
+
+		List<Object[]> rows = new Vector<Object[]>();
+		for (CloudgeneParameterOutput parameter : outputs) {
+			if (parameter.getExportedFiles() > 0) {
+				rows.add(new Object[] { parameter.getExportedFiles(), parameter.getExportedBytes(),
+						parameter.getExportTime(), parameter.getId() });
+			}
+		}
+		JdbcBatch.executeBatch(connection,
+				"update parameter set export_files = ?, export_bytes = ?, export_time = ? where id = ?", rows);
+
+		log.debug("update export metrics of " + rows.size() + " parameters successful.");
+
+	}
+
+	private Object[] getParams(CloudgeneParameterInput parameter) {
+		Object[] params = new Object[9];
+		if (parameter.getDescription() != null) {
+			params[0] = parameter.getDescription().substring(0, Math.min(parameter.getDescription().length(), 100));
+		} else {
+			params[0] = "";
+		}
+		params[1] = parameter.getValue();
+		params[2] = true;
+		params[3] = parameter.getJob().getId();
+		params[4] = parameter.getType().toString();
+		params[5] = parameter.getName();
+		params[6] = false;
+		params[7] = "";
+		params[8] = parameter.isAdminOnly();
+		return params;
+	}
+
+	private Object[] getParams(CloudgeneParameterOutput parameter) {
+		Object[] params = new Object[9];
+		params[0] = parameter.getDescription().substring(0, Math.min(parameter.getDescription().length(), 100));
+		params[1] = parameter.getValue();
+		params[2] = false;
+		params[3] = parameter.getJob().getId();
+		params[4] = parameter.getType().toString();
+		params[5] = parameter.getName();
+		params[6] = parameter.isDownload();
+		params[7] = "";
+		params[8] = parameter.isAdminOnly();
+		return params;
+	}
+
 	@SuppressWarnings("unchecked")
 	public List<CloudgeneParameterInput> findAllInputByJob(AbstractJob job) {
 
-		StringBuilder sql = new StringBuilder();
-		sql.append("select * ");
-		sql.append("from parameter ");
-		sql.append("where job_id = ? and input = true");
-
 		Object[] params = new Object[1];
 		params[0] = job.getId();
 
@@ -107,7 +163,7 @@ public class ParameterDao extends JdbcDataAccessObject {
 
 		try {
 
-			result = query(sql.toString(), params, new ParameterInputMapper());
+			result = query(FIND_ALL_INPUT_BY_JOB_SQL, params, new ParameterInputMapper());
 
 			log.debug("find all input parameters for job '" + job.getId() + "' successful. results: " + result.size());
 
@@ -121,11 +177,6 @@ public class ParameterDao extends JdbcDataAccessObject {
 	@SuppressWarnings("unchecked")
 	public List<CloudgeneParameterOutput> findAllOutputByJob(AbstractJob job) {
 
-		StringBuilder sql = new StringBuilder();
-		sql.append("select * ");
-		sql.append("from parameter ");
-		sql.append("where job_id = ? and input = false");
-
 		Object[] params = new Object[1];
 		params[0] = job.getId();
 
@@ -133,7 +184,7 @@ public class ParameterDao extends JdbcDataAccessObject {
 
 		try {
 
-			result = query(sql.toString(), params, new ParameterOutputMapper());
+			result = query(FIND_ALL_OUTPUT_BY_JOB_SQL, params, new ParameterOutputMapper());
 
 			DownloadDao downloadDao = new DownloadDao(database);
 			for (CloudgeneParameterOutput parameter : result) {
@@ -184,6 +235,9 @@ public class ParameterDao extends JdbcDataAccessObject {
 			parameter.setDownload(rs.getBoolean("download"));
 			parameter.setId(rs.getInt("id"));
 			parameter.setAdminOnly(rs.getBoolean("admin_only"));
+			parameter.setExportedFiles(rs.getLong("export_files"));
+			parameter.setExportedBytes(rs.getLong("export_bytes"));
+			parameter.setExportTime(rs.getLong("export_time"));
 			return parameter;
 
 		}
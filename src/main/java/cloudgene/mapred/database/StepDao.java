@@ -4,6 +4,7 @@ import genepi.db.Database;
 import genepi.db.IRowMapper;
 import genepi.db.JdbcDataAccessObject;
 
+import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.List;
@@ -12,6 +13,7 @@ import java.util.Vector;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import cloudgene.mapred.database.util.JdbcBatch;
 import cloudgene.mapred.jobs.CloudgeneJob;
 import cloudgene.mapred.jobs.CloudgeneStep;
 import cloudgene.mapred.jobs.Message;
@@ -25,21 +27,17 @@ public class StepDao extends JdbcDataAccessObject {
 		super(database);
 	}
 
+	private static final String INSERT_SQL = "insert into steps (state, name, start_time, end_time, job_id) "
+			+ "values (?,?,?,?,?)";
+
+	// checked for index usage by QueryPlanTest
+	static final String FIND_ALL_BY_JOB_SQL = "select * from steps where job_id = ? order by start_time";
+
 	public boolean insert(CloudgeneStep step) {
-		StringBuilder sql = new StringBuilder();
-		sql.append("insert into steps (state, name, start_time, end_time, job_id) ");
-		sql.append("values (?,?,?,?,?)");
 
 		try {
 
-			Object[] params = new Object[5];
-			params[0] = 0;
-			params[1] = step.getName();
-			params[2] = System.currentTimeMillis();
-			params[3] = System.currentTimeMillis();
-			params[4] = step.getJob().getId();
-
-			int id = insert(sql.toString(), params);
+			int id = insert(INSERT_SQL, getParams(step));
 			step.setId(id);
 
 			log.debug("insert step successful.");
@@ -52,15 +50,39 @@ public class StepDao extends JdbcDataAccessObject {
 		return true;
 	}
 
+	/**
+	 * Inserts all steps using the given connection and sets their ids. Errors
+	 * are not caught, the caller has to rollback the transaction.
+	 */
+	public void insertBatch(Connection connection, List<CloudgeneStep> steps) throws SQLException {
+
+		List<Object[]> rows = new Vector<Object[]>();
+		for (CloudgeneStep step : steps) {
+			rows.add(getParams(step));
+		}
+
+		int[] ids = JdbcBatch.executeInserts(connection, INSERT_SQL, rows);
+		for (int i = 0; i < steps.size(); i++) {
+			steps.get(i).setId(ids[i]);
+		}
+
+		log.debug("insert " + steps.size() + " steps successful.");
+
+	}
+
+	private Object[] getParams(CloudgeneStep step) {
+		Object[] params = new Object[5];
+		params[0] = 0;
+		params[1] = step.getName();
+		params[2] = System.currentTimeMillis();
+		params[3] = System.currentTimeMillis();
+		params[4] = step.getJob().getId();
+		return params;
+	}
+
 	@SuppressWarnings("unchecked")
 	public List<CloudgeneStep> findAllByJob(CloudgeneJob job) {
 
-		StringBuilder sql = new StringBuilder();
-		sql.append("select * ");
-		sql.append("from steps ");
-		sql.append("where job_id = ? ");
-		sql.append("order by start_time ");
-
 		Object[] params = new Object[1];
 		params[0] = job.getId();
 
@@ -68,7 +90,7 @@ public class StepDao extends JdbcDataAccessObject {
 
 		try {
 
-			result = query(sql.toString(), params, new CloudgeneStepMapper());
+			result = query(FIND_ALL_BY_JOB_SQL, params, new CloudgeneStepMapper());
 
 			// load messages for all steps
 			MessageDao messageDao = new MessageDao(database);
@@ -13,11 +13,15 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import cloudgene.mapred.core.User;
+import cloudgene.mapred.core.UserCache;
 
 public class UserDao extends JdbcDataAccessObject {	
 	
 	private static final Log log = LogFactory.getLog(UserDao.class);
 
+	// checked for index usage by QueryPlanTest
+	static final String FIND_BY_USERNAME_SQL = "select * from user where username = ?";
+
 	public UserDao(Database database) {
 		super(database);
 	}
@@ -90,6 +94,7 @@ public class UserDao extends JdbcDataAccessObject {
 			params[17] = user.getId();
 
 			update(sql.toString(), params);
+			UserCache.invalidate(user.getUsername());
 
 			log.debug("update user '" + user.getUsername() + "' successful.");
 
@@ -103,12 +108,6 @@ public class UserDao extends JdbcDataAccessObject {
 
 	public User findByUsername(String user) {
 
-		StringBuffer sql = new StringBuffer();
-
-		sql.append("select * ");
-		sql.append("from user ");
-		sql.append("where username = ?");
-
 		Object[] params = new Object[1];
 		params[0] = user.toLowerCase();
 
@@ -116,7 +115,7 @@ public class UserDao extends JdbcDataAccessObject {
 
 		try {
 
-			result = (User) queryForObject(sql.toString(), params,
+			result = (User) queryForObject(FIND_BY_USERNAME_SQL, params,
 					new UserMapper());
 
 			log.debug("find user by username '" + user + "' successful.");
@@ -184,6 +183,34 @@ public class UserDao extends JdbcDataAccessObject {
 		return result;
 	}
 
+	public int count() {
+
+		StringBuffer sql = new StringBuffer();
+
+		sql.append("select count(*) ");
+		sql.append("from user ");
+
+		try {
+
+			Integer result = (Integer) queryForObject(sql.toString(), new Object[0], new IRowMapper() {
+
+				@Override
+				public Object mapRow(ResultSet rs, int row) throws SQLException {
+					return rs.getInt(1);
+				}
+
+			});
+
+			return result != null ? result : 0;
+
+		} catch (SQLException e1) {
+
+			log.error("count users failed.", e1);
+
+		}
+		return 0;
+	}
+
 	@SuppressWarnings("unchecked")
 	public List<User> findAll() {
 
@@ -217,6 +244,7 @@ public class UserDao extends JdbcDataAccessObject {
 			params[0] = user.getId();
 
 			update(sql.toString(), params);
+			UserCache.invalidate(user.getUsername());
 
 			log.debug("delete user successful.");
 
@@ -0,0 +1,98 @@
+package cloudgene.mapred.database.util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Helpers to execute inserts on a caller-owned connection. The caller is
+ * responsible for commit, rollback and closing the connection.
+ */
+public class JdbcBatch {
+
+	public static final int BATCH_SIZE = 500;
+
+	/**
+	 * Executes the statement for all rows using JDBC batches.
+	 */
+	public static void executeBatch(Connection connection, String sql, List<Object[]> rows) throws SQLException {
+
+		if (rows.isEmpty()) {
+			return;
+		}
+
+		PreparedStatement statement = connection.prepareStatement(sql);
+		try {
+			int count = 0;
+			for (Object[] row : rows) {
+				setParameters(statement, row);
+				statement.addBatch();
+				count++;
+				if (count % BATCH_SIZE == 0) {
+					statement.executeBatch();
+				}
+			}
+			if (count % BATCH_SIZE != 0) {
+				statement.executeBatch();
+			}
+		} finally {
+			statement.close();
+		}
+
+	}
+
+	/**
+	 * Executes the statement for all rows and returns the generated keys. The
+	 * statement is prepared only once, but rows are sent one by one because
+	 * not all drivers return generated keys for batches.
+	 */
+	public static int[] executeInserts(Connection connection, String sql, List<Object[]> rows) throws SQLException {
+
+		int[] keys = new int[rows.size()];
+
+		if (rows.isEmpty()) {
+			return keys;
+		}
+
+		PreparedStatement statement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+		try {
+			for (int i = 0; i < rows.size(); i++) {
+				setParameters(statement, rows.get(i));
+				statement.executeUpdate();
+				ResultSet rs = statement.getGeneratedKeys();
+				try {
+					if (rs.next()) {
+						keys[i] = rs.getInt(1);
+					}
+				} finally {
+					rs.close();
+				}
+			}
+		} finally {
+			statement.close();
+		}
+
+		return keys;
+
+	}
+
+	public static int executeUpdate(Connection connection, String sql, Object[] params) throws SQLException {
+		PreparedStatement statement = connection.prepareStatement(sql);
+		try {
+			setParameters(statement, params);
+			return statement.executeUpdate();
+		} finally {
+			statement.close();
+		}
+	}
+
+	private static void setParameters(PreparedStatement statement, Object[] params) throws SQLException {
+		for (int i = 0; i < params.length; i++) {
+			statement.setObject(i + 1, params[i]);
+		}
+	}
+
+}
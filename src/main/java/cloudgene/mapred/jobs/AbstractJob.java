@@ -16,6 +16,7 @@ import java.util.Vector;
 import org.apache.commons.logging.LogFactory;
 
 import cloudgene.mapred.core.User;
+import cloudgene.mapred.jobs.engine.Checkpoints;
 import cloudgene.mapred.jobs.queue.PriorityRunnable;
 import cloudgene.mapred.util.Settings;
 import genepi.io.FileUtil;
@@ -80,7 +81,7 @@ abstract public class AbstractJob extends PriorityRunnable {
 
 	private String error = "";
 
-	private int progress = -1;
+	private volatile int progress = -1;
 
 	private boolean setupComplete = false;
 
@@ -117,6 +118,15 @@ abstract public class AbstractJob extends PriorityRunnable {
 	private boolean forceInstallation = false;
 
 	private String workspaceSize = null;
+
+	private long diskUsage = 0;
+
+	private String worker = null;
+
+	// 0: job is not owned by a lease
+	private long leaseToken = 0;
+
+	private Checkpoints checkpoints = null;
 	
 	public String getId() {
 		return id;
@@ -253,6 +263,17 @@ abstract public class AbstractJob extends PriorityRunnable {
 	public String getWorkspaceSize() {
 		return workspaceSize;
 	}
+
+	/**
+	 * @return size of the local workspace in bytes.
+	 */
+	public long getDiskUsage() {
+		return diskUsage;
+	}
+
+	public void setDiskUsage(long diskUsage) {
+		this.diskUsage = diskUsage;
+	}
 	
 	public boolean afterSubmission() {
 		try {
@@ -587,7 +608,7 @@ abstract public class AbstractJob extends PriorityRunnable {
 
 	}
 
-	public void writeOutput(String line) {
+	public synchronized void writeOutput(String line) {
 
 		try {
 			if (stdOutStream != null && line != null) {
@@ -601,7 +622,7 @@ abstract public class AbstractJob extends PriorityRunnable {
 
 	}
 
-	public void writeOutputln(String line) {
+	public synchronized void writeOutputln(String line) {
 
 		try {
 			if (stdOutStream == null) {
@@ -617,7 +638,7 @@ abstract public class AbstractJob extends PriorityRunnable {
 
 	}
 
-	public void writeLog(String line) {
+	public synchronized void writeLog(String line) {
 
 		try {
 			if (logStream == null) {
@@ -777,6 +798,47 @@ abstract public class AbstractJob extends PriorityRunnable {
 
 	}
 
+	/**
+	 * Cores needed to execute the workflow steps.
+	 */
+	public int getRequiredCpus() {
+		return 1;
+	}
+
+	/**
+	 * Memory in MB needed to execute the workflow steps, 0 if unknown.
+	 */
+	public int getRequiredMemory() {
+		return 0;
+	}
+
+	public String getWorker() {
+		return worker;
+	}
+
+	public void setWorker(String worker) {
+		this.worker = worker;
+	}
+
+	public long getLeaseToken() {
+		return leaseToken;
+	}
+
+	public void setLeaseToken(long leaseToken) {
+		this.leaseToken = leaseToken;
+	}
+
+	/**
+	 * @return null if the completion state of steps is not persisted.
+	 */
+	public Checkpoints getCheckpoints() {
+		return checkpoints;
+	}
+
+	public void setCheckpoints(Checkpoints checkpoints) {
+		this.checkpoints = checkpoints;
+	}
+
 	public void forceInstallation(boolean forceInstallation) {
 		this.forceInstallation = forceInstallation;
 	}
@@ -7,11 +7,14 @@ import genepi.io.FileUtil;
 import java.io.File;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 
 import cloudgene.mapred.core.User;
 import cloudgene.mapred.util.MailUtil;
@@ -41,19 +44,22 @@ public class CloudgeneContext extends WorkflowContext {
 
 	private CloudgeneStep step;
 
+	// steps of parallel workflows are executed in their own threads
+	private ThreadLocal<CloudgeneStep> threadStep = new ThreadLocal<CloudgeneStep>();
+
 	private User user;
 
 	private Map<String, CloudgeneParameterInput> inputParameters;
 
 	private Map<String, CloudgeneParameterOutput> outputParameters;
 
-	private Map<String, Integer> counters = new HashMap<String, Integer>();
+	private Map<String, Integer> counters = new ConcurrentHashMap<String, Integer>();
 
-	private Map<String, Boolean> submitCounters = new HashMap<String, Boolean>();
+	private Map<String, Boolean> submitCounters = new ConcurrentHashMap<String, Boolean>();
 
 	private AbstractJob job;
 
-	private Map<String, Object> data = new HashMap<String, Object>();
+	private Map<String, Object> data = Collections.synchronizedMap(new HashMap<String, Object>());
 
 	private Map<String, String> config;
 
@@ -99,24 +105,43 @@ public class CloudgeneContext extends WorkflowContext {
 
 	public void setCurrentStep(CloudgeneStep currentStep) {
 		this.step = currentStep;
+		threadStep.set(currentStep);
 	}
 
 	public CloudgeneStep getCurrentStep() {
+		CloudgeneStep current = threadStep.get();
+		if (current != null) {
+			return current;
+		}
 		return step;
 	}
 
 	public void setupOutputParameters(boolean hasHdfsOutputs) {
+		setupOutputParameters(hasHdfsOutputs, new HashSet<String>());
+	}
+
+	/**
+	 * @param keep
+	 *            output parameters whose files are not deleted (e.g. outputs of
+	 *            steps completed before a restart).
+	 */
+	public void setupOutputParameters(boolean hasHdfsOutputs, Set<String> keep) {
+
+		// cleanup temp directories, they contain outputs of completed steps
+		// if parameters are kept
+		if (keep.isEmpty()) {
 
-		// cleanup temp directories
-		if (hasHdfsOutputs) {
-			try {
-				HdfsUtil.delete(getHdfsTemp());
-			} catch (Exception e) {
-				System.out.println("Warning: problems during hdfs init.");
+			if (hasHdfsOutputs) {
+				try {
+					HdfsUtil.delete(getHdfsTemp());
+				} catch (Exception e) {
+					System.out.println("Warning: problems during hdfs init.");
+				}
 			}
-		}
 
-		FileUtil.deleteDirectory(getLocalTemp());
+			FileUtil.deleteDirectory(getLocalTemp());
+
+		}
 
 		// create output directories
 		FileUtil.createDirectory(getLocalOutput());
@@ -141,10 +166,12 @@ public class CloudgeneContext extends WorkflowContext {
 					value = HdfsUtil.makeAbsolute(value);
 				}
 				// delete (needed for restart)
-				try {
-					HdfsUtil.delete(value);
-				} catch (Exception e) {
-					System.out.println("Warning: problems during hdfs init.");
+				if (!keep.contains(param.getName())) {
+					try {
+						HdfsUtil.delete(value);
+					} catch (Exception e) {
+						System.out.println("Warning: problems during hdfs init.");
+					}
 				}
 				param.setValue(value);
 				break;
@@ -157,7 +184,9 @@ public class CloudgeneContext extends WorkflowContext {
 				String folder = FileUtil.path(parent, param.getName());
 				String filename = FileUtil.path(folder, param.getName());
 				// delete and create (needed for restart)
-				FileUtil.deleteDirectory(folder);
+				if (!keep.contains(param.getName())) {
+					FileUtil.deleteDirectory(folder);
+				}
 				FileUtil.createDirectory(folder);
 				param.setValue(filename);
 				break;
@@ -170,7 +199,9 @@ public class CloudgeneContext extends WorkflowContext {
 
 				String folder2 = FileUtil.path(parent2, param.getName());
 				// delete and create (needed for restart)
-				FileUtil.deleteDirectory(folder2);
+				if (!keep.contains(param.getName())) {
+					FileUtil.deleteDirectory(folder2);
+				}
 				FileUtil.createDirectory(folder2);
 				param.setValue(folder2);
 				break;
@@ -329,7 +360,7 @@ public class CloudgeneContext extends WorkflowContext {
 
 	}
 
-	public void incCounter(String name, int value) {
+	public synchronized void incCounter(String name, int value) {
 
 		Integer oldvalue = counters.get(name);
 		if (oldvalue == null) {
@@ -387,6 +418,7 @@ public class CloudgeneContext extends WorkflowContext {
 	}
 
 	public void message(String message, int type) {
+		CloudgeneStep step = getCurrentStep();
 		Message status = new Message(step, type, message);
 
 		List<Message> logs = step.getLogMessages();
@@ -399,6 +431,7 @@ public class CloudgeneContext extends WorkflowContext {
 	}
 
 	public void beginTask(String name) {
+		CloudgeneStep step = getCurrentStep();
 		Message status = new Message(step, Message.RUNNING, name);
 
 		List<Message> logs = step.getLogMessages();
@@ -414,23 +447,27 @@ public class CloudgeneContext extends WorkflowContext {
 	}
 
 	public void endTask(String message, int type) {
+		CloudgeneStep step = getCurrentStep();
 		Message status = step.getLogMessages().get(step.getLogMessages().size() - 1);
 		status.setType(type);
 		status.setMessage(message);
 	}
 
 	public void updateTask(String message, int type) {
+		CloudgeneStep step = getCurrentStep();
 		Message status = step.getLogMessages().get(step.getLogMessages().size() - 1);
 		status.setType(type);
 		status.setMessage(message);
 	}
 
 	public void updateTask(String message) {
+		CloudgeneStep step = getCurrentStep();
 		Message status = step.getLogMessages().get(step.getLogMessages().size() - 1);
 		status.setMessage(message);
 	}
 
 	public void endTask(int type) {
+		CloudgeneStep step = getCurrentStep();
 		Message status = step.getLogMessages().get(step.getLogMessages().size() - 1);
 		status.setType(type);
 	}
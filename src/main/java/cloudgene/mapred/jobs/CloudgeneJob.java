@@ -7,23 +7,27 @@ import genepi.io.FileUtil;
 
 import java.io.File;
 import java.io.IOException;
+import java.security.SecureRandom;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import cloudgene.mapred.core.User;
 import cloudgene.mapred.jobs.engine.Executor;
 import cloudgene.mapred.jobs.engine.Planner;
+import cloudgene.mapred.jobs.engine.StepCache;
 import cloudgene.mapred.jobs.engine.graph.Graph;
 import cloudgene.mapred.jobs.engine.graph.GraphNode;
 import cloudgene.mapred.util.Application;
 import cloudgene.mapred.util.ApplicationInstaller;
-import cloudgene.mapred.util.HashUtil;
 import cloudgene.mapred.util.Settings;
 import cloudgene.mapred.wdl.WdlApp;
 import cloudgene.mapred.wdl.WdlParameterInput;
@@ -36,14 +40,23 @@ public class CloudgeneJob extends AbstractJob {
 
 	private WdlApp app;
 
+	// app with evaluated velocity directives, shared by all phases of the job
+	private WdlApp evaluatedApp;
+
+	private List<String> evaluatedValues;
+
 	private String workingDirectory;
 
 	private Executor executor;
 
+	private Map<String, Long> outputSizes = new ConcurrentHashMap<String, Long>();
+
 	public static final int MAX_DOWNLOAD = 10;
 
 	private static final Log log = LogFactory.getLog(CloudgeneJob.class);
 
+	private static final SecureRandom random = new SecureRandom();
+
 	public CloudgeneJob() {
 		super();
 	}
@@ -106,8 +119,15 @@ public class CloudgeneJob extends AbstractJob {
 	public boolean setup() {
 
 		context = new CloudgeneContext(this);
+		evaluatedApp = null;
+		evaluatedValues = null;
 		// context.updateInputParameters();
-		context.setupOutputParameters(app.getWorkflow().hasHdfsOutputs());
+		if (getCheckpoints() != null && !getCheckpoints().isEmpty()) {
+			// resumed job: keep outputs of completed steps
+			context.setupOutputParameters(app.getWorkflow().hasHdfsOutputs(), getCheckpoints().getOutputs());
+		} else {
+			context.setupOutputParameters(app.getWorkflow().hasHdfsOutputs());
+		}
 
 		return true;
 
@@ -118,7 +138,7 @@ public class CloudgeneJob extends AbstractJob {
 		try {
 			// evaluate WDL derictives
 			Planner planner = new Planner();
-			WdlApp app = planner.evaluateWDL(this.app, context, getSettings());
+			WdlApp app = evaluateWDL(planner);
 			return app.getWorkflow().getSteps().size() > 0;
 		} catch (Exception e) {
 			// e.printStackTrace();
@@ -137,13 +157,17 @@ public class CloudgeneJob extends AbstractJob {
 
 			// evaluate WDL derictives
 			Planner planner = new Planner();
-			WdlApp app = planner.evaluateWDL(this.app, context, getSettings());
+			WdlApp app = evaluateWDL(planner);
 
 			// create dag from wdl document
 			Graph graph = planner.buildDAG(app.getWorkflow().getSteps(), app.getWorkflow(), context);
 
 			// execute optimzed dag
-			executor = new Executor();
+			executor = new Executor(getParallelSteps(app));
+			if (getSettings().isStepCache()) {
+				executor.setCache(StepCache.getInstance(getSettings()));
+			}
+			executor.setCheckpoints(getCheckpoints());
 			boolean successful = executor.execute(graph);
 
 			if (!successful) {
@@ -165,21 +189,55 @@ public class CloudgeneJob extends AbstractJob {
 
 	}
 
+	/**
+	 * Evaluates the manifest once per job. Setup, hasSteps and execution use
+	 * the same app as long as no setup step has changed a parameter value.
+	 */
+	protected synchronized WdlApp evaluateWDL(Planner planner) throws Exception {
+		List<String> values = new Vector<String>();
+		for (WdlParameterInput input : app.getWorkflow().getInputs()) {
+			values.add(context.getInput(input.getId()));
+		}
+		for (WdlParameterOutput output : app.getWorkflow().getOutputs()) {
+			values.add(context.getOutput(output.getId()));
+		}
+		if (evaluatedApp == null || !values.equals(evaluatedValues)) {
+			evaluatedApp = planner.evaluateWDL(app, context, getSettings());
+			evaluatedValues = values;
+		}
+		return evaluatedApp;
+	}
+
+	/**
+	 * Returns the number of steps that can be executed in parallel. Limited by
+	 * the app and by the server settings.
+	 */
+	protected int getParallelSteps(WdlApp app) {
+		if (!app.getWorkflow().isParallel()) {
+			return 1;
+		}
+		int threads = getSettings().getMaxParallelSteps();
+		if (app.getWorkflow().getThreads() > 0) {
+			threads = Math.min(threads, app.getWorkflow().getThreads());
+		}
+		return Math.max(1, threads);
+	}
+
 	@Override
 	public boolean executeSetupSteps() {
 
 		try {
 			// evaluate WDL
 			Planner planner = new Planner();
-			WdlApp app = planner.evaluateWDL(this.app, context, getSettings());
+			WdlApp app = evaluateWDL(planner);
 
 			// if a single setup step is set, add it to setups
 			WdlStep setup = app.getWorkflow().getSetup();
-			if (setup != null) {
+			if (setup != null && !app.getWorkflow().getSetups().contains(setup)) {
 				app.getWorkflow().getSetups().add(0, setup);
 			}
 
-			Graph graph = planner.buildDAG(app.getWorkflow().getSetups(), app.getWorkflow(), context);
+			Graph graph = planner.buildDAG(app.getWorkflow().getSetups(), app.getWorkflow(), context, false);
 
 			// execute optimized DAG
 			executor = new Executor();
@@ -388,111 +446,72 @@ public class CloudgeneJob extends AbstractJob {
 	@Override
 	public boolean after() {
 
-		// create output zip file for hdfs folders
-		for (CloudgeneParameterOutput out : getOutputParams()) {
+		// create output zip file for hdfs folders. parameters and part files
+		// are exported in parallel.
+		final OutputExporter exporter = new OutputExporter(getSettings().getExportThreads());
+		final List<Boolean> results = Collections.synchronizedList(new Vector<Boolean>());
+		List<Callable<Void>> tasks = new Vector<Callable<Void>>();
+
+		for (final CloudgeneParameterOutput out : getOutputParams()) {
 
 			if (out.isDownload() && !out.isAutoExport()) {
 				// export to local folder for faster download
-				exportParameter(out);
-
+				tasks.add(new Callable<Void>() {
+					@Override
+					public Void call() {
+						results.add(exportParameter(out, exporter));
+						return null;
+					}
+				});
 			}
 
 		}
 
-		return true;
+		// parameters need their own threads, part files use the exporter
+		OutputExporter parameters = new OutputExporter(getSettings().getExportThreads());
+		try {
+			parameters.invokeAll(tasks);
+		} catch (IOException e) {
+			log.error("Job " + getId() + ": export failed.", e);
+			return false;
+		} finally {
+			parameters.close();
+			exporter.close();
+		}
+
+		return !results.contains(false);
 	}
 
 	public boolean exportParameter(CloudgeneParameterOutput out) {
-
-		writeLog("  Exporting parameter " + out.getId() + "...");
-
-		String localOutput = context.getLocalOutput();
-		String workspace = getHdfsWorkspace();
-
-		if (out.getType() == WdlParameterOutputType.HDFS_FOLDER) {
-
-			String localOutputDirectory = FileUtil.path(localOutput, out.getName());
-
-			FileUtil.createDirectory(localOutputDirectory);
-
-			String filename = context.getOutput(out.getName());
-			String hdfsPath = null;
-			if (filename.startsWith("hdfs://") || filename.startsWith("file:/")) {
-				hdfsPath = filename;
-
-			} else {
-
-				hdfsPath = HdfsUtil.makeAbsolute(HdfsUtil.path(workspace, filename));
-			}
-
-			if (HdfsUtil.exists(hdfsPath)) {
-
-				if (out.isZip()) {
-
-					String zipName = FileUtil.path(localOutputDirectory, out.getName() + ".zip");
-
-					if (out.isMergeOutput()) {
-
-						HdfsUtil.compressAndMerge(zipName, hdfsPath, out.isRemoveHeader());
-
-					} else {
-
-						HdfsUtil.compress(zipName, hdfsPath);
-
-					}
-
-				} else {
-
-					if (out.isMergeOutput()) {
-
-						HdfsUtil.exportDirectoryAndMerge(localOutputDirectory, out.getName(), hdfsPath,
-								out.isRemoveHeader());
-
-					} else {
-
-						HdfsUtil.exportDirectory(localOutputDirectory, out.getName(), hdfsPath);
-
-					}
-
-				}
-
-			}
-
+		OutputExporter exporter = new OutputExporter(getSettings().getExportThreads());
+		try {
+			return exportParameter(out, exporter);
+		} finally {
+			exporter.close();
 		}
+	}
 
-		if (out.getType() == WdlParameterOutputType.HDFS_FILE) {
-
-			String localOutputDirectory = FileUtil.path(localOutput, out.getName());
-
-			FileUtil.createDirectory(localOutputDirectory);
-
-			String filename = context.getOutput(out.getName());
-			String hdfsPath = null;
-			if (filename.startsWith("hdfs://") || filename.startsWith("file:/")) {
-
-				hdfsPath = filename;
-
-			} else {
-
-				hdfsPath = HdfsUtil.makeAbsolute(HdfsUtil.path(workspace, filename));
-			}
-
-			if (!out.isZip()) {
+	protected boolean exportParameter(CloudgeneParameterOutput out, OutputExporter exporter) {
 
-				if (HdfsUtil.exists(hdfsPath)) {
-					HdfsUtil.exportFile(localOutputDirectory, hdfsPath);
-				}
+		writeLog("  Exporting parameter " + out.getId() + "...");
 
-			} else {
-				if (HdfsUtil.exists(hdfsPath)) {
-					HdfsUtil.compressFile(localOutputDirectory, hdfsPath);
-				}
+		try {
+			OutputExporter.Metrics metrics = exportHdfsParameter(out, exporter);
+			if (metrics != null) {
+				writeLog("  Exported parameter " + out.getId() + ": " + metrics);
+				out.setExportedFiles(metrics.getFiles());
+				out.setExportedBytes(metrics.getBytes());
+				out.setExportTime(metrics.getTime());
 			}
-
+		} catch (IOException e) {
+			log.error("Job " + getId() + ": exporting parameter " + out.getId() + " failed.", e);
+			writeLog("  Exporting parameter " + out.getId() + " failed: " + e.getMessage());
+			return false;
 		}
 
 		out.setJobId(getId());
 
+		String localOutput = context.getLocalOutput();
 		String n = FileUtil.path(localOutput, out.getName());
 
 		File f = new File(n);
@@ -504,13 +523,11 @@ public class CloudgeneJob extends AbstractJob {
 			List<Download> files = new Vector<Download>();
 
 			for (FileItem item : items) {
-				String hash = HashUtil
-						.getMD5(item.getText() + item.getId() + item.getSize() + getId() + (Math.random() * 100000));
 				Download download = new Download();
 				download.setName(item.getText());
 				download.setPath(FileUtil.path(getId(), item.getId()));
 				download.setSize(item.getSize());
-				download.setHash(hash);
+				download.setHash(createDownloadHash());
 				download.setParameter(out);
 				download.setCount(MAX_DOWNLOAD);
 				files.add(download);
@@ -519,9 +536,76 @@ public class CloudgeneJob extends AbstractJob {
 			out.setFiles(files);
 		}
 
+		// only the exported folder is walked, not the whole workspace
+		if (f.exists()) {
+			long size = FileUtils.sizeOf(f);
+			// parameters are exported in parallel
+			synchronized (outputSizes) {
+				outputSizes.put(out.getName(), size);
+				long diskUsage = 0;
+				for (long outputSize : outputSizes.values()) {
+					diskUsage += outputSize;
+				}
+				setDiskUsage(diskUsage);
+			}
+		}
+
 		return true;
 	}
 
+	/**
+	 * Copies hdfs files and folders to the local output folder.
+	 *
+	 * @return metrics of the export or null if nothing was exported.
+	 */
+	private OutputExporter.Metrics exportHdfsParameter(CloudgeneParameterOutput out, OutputExporter exporter)
+			throws IOException {
+
+		if (out.getType() != WdlParameterOutputType.HDFS_FOLDER && out.getType() != WdlParameterOutputType.HDFS_FILE) {
+			return null;
+		}
+
+		String localOutputDirectory = FileUtil.path(context.getLocalOutput(), out.getName());
+
+		FileUtil.createDirectory(localOutputDirectory);
+
+		String filename = context.getOutput(out.getName());
+		String hdfsPath = null;
+		if (filename.startsWith("hdfs://") || filename.startsWith("file:/")) {
+
+			hdfsPath = filename;
+
+		} else {
+
+			hdfsPath = HdfsUtil.makeAbsolute(HdfsUtil.path(getHdfsWorkspace(), filename));
+		}
+
+		if (!HdfsUtil.exists(hdfsPath)) {
+			return null;
+		}
+
+		if (out.getType() == WdlParameterOutputType.HDFS_FOLDER) {
+			return exporter.exportFolder(hdfsPath, localOutputDirectory, out.getName(), out.isZip(),
+					out.isMergeOutput(), out.isRemoveHeader());
+		} else {
+			return exporter.exportFile(hdfsPath, localOutputDirectory, out.isZip());
+		}
+
+	}
+
+	/**
+	 * Creates the random part of a share link.
+	 */
+	private static String createDownloadHash() {
+		byte[] bytes = new byte[16];
+		random.nextBytes(bytes);
+		StringBuilder hash = new StringBuilder();
+		for (byte b : bytes) {
+			hash.append(String.format("%02x", b));
+		}
+		return hash.toString();
+	}
+
 	public String getWorkingDirectory() {
 		return workingDirectory;
 	}
@@ -537,6 +621,28 @@ public class CloudgeneJob extends AbstractJob {
 		}
 	}
 
+	@Override
+	public int getRequiredCpus() {
+		if (app == null || app.getWorkflow() == null) {
+			return super.getRequiredCpus();
+		}
+		return Math.max(1, app.getWorkflow().getRequiredCpus(getRequiredParallelSteps()));
+	}
+
+	@Override
+	public int getRequiredMemory() {
+		if (app == null || app.getWorkflow() == null) {
+			return super.getRequiredMemory();
+		}
+		return app.getWorkflow().getRequiredMemory(getRequiredParallelSteps());
+	}
+
+	// independent steps of parallel workflows need their resources at the same
+	// time
+	private int getRequiredParallelSteps() {
+		return getSettings() != null ? getParallelSteps(app) : 1;
+	}
+
 	public void updateProgress() {
 
 		if (executor != null) {
@@ -39,6 +39,13 @@ public class CloudgeneParameterOutput {
 
 	private boolean adminOnly = false;
 
+	// metrics of the export to the local workspace
+	private long exportedFiles = 0;
+
+	private long exportedBytes = 0;
+
+	private long exportTime = 0;
+
 	public CloudgeneParameterOutput() {
 
 	}
@@ -177,4 +184,31 @@ public class CloudgeneParameterOutput {
 		return adminOnly;
 	}
 
+	public long getExportedFiles() {
+		return exportedFiles;
+	}
+
+	public void setExportedFiles(long exportedFiles) {
+		this.exportedFiles = exportedFiles;
+	}
+
+	public long getExportedBytes() {
+		return exportedBytes;
+	}
+
+	public void setExportedBytes(long exportedBytes) {
+		this.exportedBytes = exportedBytes;
+	}
+
+	/**
+	 * @return time of the export in ms.
+	 */
+	public long getExportTime() {
+		return exportTime;
+	}
+
+	public void setExportTime(long exportTime) {
+		this.exportTime = exportTime;
+	}
+
 }
@@ -0,0 +1,53 @@
+package cloudgene.mapred.jobs;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe counters. Jobs completing at the same time can add values
+ * without locking, reading all counters is O(number of counter names).
+ */
+public class CounterRegistry {
+
+	private Map<String, LongAdder> counters = new ConcurrentHashMap<String, LongAdder>();
+
+	public CounterRegistry() {
+
+	}
+
+	public CounterRegistry(Map<String, Long> values) {
+		for (Map.Entry<String, Long> value : values.entrySet()) {
+			if (value.getValue() != null) {
+				add(value.getKey(), value.getValue());
+			}
+		}
+	}
+
+	public void add(String name, long value) {
+		counters.computeIfAbsent(name, key -> new LongAdder()).add(value);
+	}
+
+	public void addAll(Map<String, Integer> values) {
+		for (Map.Entry<String, Integer> value : values.entrySet()) {
+			if (value.getValue() != null) {
+				add(value.getKey(), value.getValue());
+			}
+		}
+	}
+
+	public long get(String name) {
+		LongAdder counter = counters.get(name);
+		return counter != null ? counter.sum() : 0;
+	}
+
+	public Map<String, Long> getAll() {
+		Map<String, Long> result = new HashMap<String, Long>();
+		for (Map.Entry<String, LongAdder> counter : counters.entrySet()) {
+			result.put(counter.getKey(), counter.getValue().sum());
+		}
+		return result;
+	}
+
+}
@@ -68,10 +68,23 @@ public class Download implements Comparable<Download> {
 		return parameterId;
 	}
 
-	public void decCount() {
+	public synchronized void decCount() {
 		count--;
 	}
 
+	/**
+	 * Decrements the counter of a download that is not stored in the database.
+	 *
+	 * @return false if no downloads are left.
+	 */
+	public synchronized boolean tryDecCount() {
+		if (count == 0) {
+			return false;
+		}
+		count--;
+		return true;
+	}
+
 	public void setUsername(String user) {
 		this.user = user;
 	}
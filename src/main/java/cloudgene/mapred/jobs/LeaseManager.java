@@ -0,0 +1,166 @@
+package cloudgene.mapred.jobs;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import cloudgene.mapred.cron.ResumeTasks;
+import cloudgene.mapred.database.JobDao;
+import cloudgene.mapred.database.LeaseDao;
+import cloudgene.mapred.util.Settings;
+import genepi.db.Database;
+
+/**
+ * Heartbeat of a worker that shares the job database with other workers.
+ * Renews the leases of all local jobs, cancels jobs on request of other
+ * workers and takes over jobs whose lease has expired.
+ */
+public class LeaseManager implements Runnable {
+
+	private static final Log log = LogFactory.getLog(LeaseManager.class);
+
+	private PersistentWorkflowEngine engine;
+
+	private Settings settings;
+
+	private LeaseDao leaseDao;
+
+	private JobDao jobDao;
+
+	private ScheduledExecutorService scheduler;
+
+	public LeaseManager(Database database, PersistentWorkflowEngine engine, Settings settings) {
+		this.engine = engine;
+		this.settings = settings;
+		this.leaseDao = new LeaseDao(database);
+		this.jobDao = new JobDao(database);
+	}
+
+	public synchronized void start() {
+		if (scheduler != null) {
+			return;
+		}
+		scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "LeaseManager");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		scheduler.scheduleWithFixedDelay(this, 0, settings.getHeartbeatInterval(), TimeUnit.SECONDS);
+	}
+
+	public synchronized void stop() {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+			scheduler = null;
+		}
+	}
+
+	@Override
+	public void run() {
+		// exceptions would cancel all further heartbeats
+		try {
+			renewLeases();
+			processCancelRequests();
+			claimJobs();
+		} catch (Exception e) {
+			log.error("Heartbeat of worker '" + settings.getWorker() + "' failed.", e);
+		}
+	}
+
+	private void renewLeases() {
+
+		List<AbstractJob> jobs = new Vector<AbstractJob>();
+		List<String> ids = new Vector<String>();
+		for (AbstractJob job : getLocalJobs()) {
+			if (job.getLeaseToken() > 0) {
+				jobs.add(job);
+				ids.add(job.getId());
+			}
+		}
+
+		// only leases of running jobs are extended
+		Map<String, Long> leases = leaseDao.renew(settings.getWorker(), ids, getLeaseTimeout());
+
+		for (AbstractJob job : jobs) {
+			Long token = leases.get(job.getId());
+			if (token == null || token != job.getLeaseToken()) {
+				// an other worker restarted the job, all further updates
+				// are rejected by the database
+				log.warn("Worker '" + settings.getWorker() + "' lost lease of job " + job.getId() + ". Cancel job.");
+				engine.cancel(job);
+			}
+		}
+
+	}
+
+	private void processCancelRequests() {
+
+		for (String id : leaseDao.findCancelRequests(settings.getWorker())) {
+			AbstractJob job = engine.getJobById(id);
+			if (job != null) {
+				log.info("Cancel job " + id + " on request of an other worker.");
+				engine.cancel(job);
+			}
+		}
+
+	}
+
+	private void claimJobs() {
+
+		int free = settings.getThreadsQueue() - getLocalJobs().size();
+		if (free <= 0 || !engine.isRunning()) {
+			return;
+		}
+
+		List<String> ids = leaseDao.findClaimableJobs(free);
+		for (String id : ids) {
+
+			long token = leaseDao.claim(id, settings.getWorker(), getLeaseTimeout());
+			if (token <= 0) {
+				continue;
+			}
+
+			AbstractJob job = jobDao.findById(id);
+			if (job == null) {
+				leaseDao.release(id, settings.getWorker(), token);
+				continue;
+			}
+			job.setWorker(settings.getWorker());
+			job.setLeaseToken(token);
+
+			if (!ResumeTasks.prepare(job, settings)) {
+				job.setState(AbstractJob.STATE_DEAD);
+				jobDao.update(job);
+				leaseDao.release(id, settings.getWorker(), token);
+				continue;
+			}
+
+			// completed steps of the previous owner are skipped
+			log.info("Worker '" + settings.getWorker() + "' took over job " + id + " (lease " + token + ").");
+			engine.resume(job);
+
+		}
+
+	}
+
+	private List<AbstractJob> getLocalJobs() {
+		List<AbstractJob> jobs = engine.getAllJobsInShortTimeQueue();
+		jobs.addAll(engine.getAllJobsInLongTimeQueue());
+		return jobs;
+	}
+
+	private long getLeaseTimeout() {
+		return settings.getLeaseTimeout() * 1000L;
+	}
+
+}
@@ -0,0 +1,259 @@
+package cloudgene.mapred.jobs;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.PathFilter;
+
+import genepi.hadoop.HdfsUtil;
+import genepi.io.FileUtil;
+
+/**
+ * Exports hdfs files and folders to the local workspace. Part files are
+ * streamed from hdfs directly into the target file or zip file without
+ * intermediate files. Files of folders that are neither merged nor zipped are
+ * copied in parallel.
+ */
+public class OutputExporter {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private ExecutorService executor;
+
+	public OutputExporter(int threads) {
+		executor = Executors.newFixedThreadPool(Math.max(1, threads));
+	}
+
+	public Metrics exportFolder(String hdfsPath, String localDirectory, String name, boolean zip, boolean merge,
+			boolean removeHeader) throws IOException {
+
+		Metrics metrics = new Metrics();
+		Path folder = new Path(hdfsPath);
+		FileSystem fileSystem = getFileSystem(folder);
+		List<FileStatus> parts = getParts(fileSystem, folder);
+
+		if (zip) {
+
+			String zipName = FileUtil.path(localDirectory, name + ".zip");
+			try (ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(zipName),
+					BUFFER_SIZE))) {
+				if (merge) {
+					out.putNextEntry(new ZipEntry(name));
+					for (int i = 0; i < parts.size(); i++) {
+						copy(fileSystem, parts.get(i), out, removeHeader && i > 0, metrics);
+					}
+					out.closeEntry();
+				} else {
+					for (FileStatus part : parts) {
+						out.putNextEntry(new ZipEntry(part.getPath().getName()));
+						copy(fileSystem, part, out, false, metrics);
+						out.closeEntry();
+					}
+				}
+			}
+
+		} else if (merge) {
+
+			String filename = FileUtil.path(localDirectory, name);
+			try (OutputStream out = new BufferedOutputStream(new FileOutputStream(filename), BUFFER_SIZE)) {
+				for (int i = 0; i < parts.size(); i++) {
+					copy(fileSystem, parts.get(i), out, removeHeader && i > 0, metrics);
+				}
+			}
+
+		} else {
+
+			List<Callable<Void>> tasks = new Vector<Callable<Void>>();
+			for (final FileStatus part : parts) {
+				final File target = new File(localDirectory, part.getPath().getName());
+				tasks.add(new Callable<Void>() {
+					@Override
+					public Void call() throws IOException {
+						try (OutputStream out = new BufferedOutputStream(new FileOutputStream(target), BUFFER_SIZE)) {
+							copy(fileSystem, part, out, false, metrics);
+						}
+						return null;
+					}
+				});
+			}
+			invokeAll(tasks);
+
+		}
+
+		metrics.finish();
+		return metrics;
+
+	}
+
+	public Metrics exportFile(String hdfsPath, String localDirectory, boolean zip) throws IOException {
+
+		Metrics metrics = new Metrics();
+		Path path = new Path(hdfsPath);
+		FileSystem fileSystem = getFileSystem(path);
+		FileStatus file = fileSystem.getFileStatus(path);
+		String name = file.getPath().getName();
+
+		if (zip) {
+			String zipName = FileUtil.path(localDirectory, name + ".zip");
+			try (ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(zipName),
+					BUFFER_SIZE))) {
+				out.putNextEntry(new ZipEntry(name));
+				copy(fileSystem, file, out, false, metrics);
+				out.closeEntry();
+			}
+		} else {
+			String filename = FileUtil.path(localDirectory, name);
+			try (OutputStream out = new BufferedOutputStream(new FileOutputStream(filename), BUFFER_SIZE)) {
+				copy(fileSystem, file, out, false, metrics);
+			}
+		}
+
+		metrics.finish();
+		return metrics;
+
+	}
+
+	/**
+	 * Runs the tasks on the export threads and waits until all are finished.
+	 */
+	public void invokeAll(List<? extends Callable<Void>> tasks) throws IOException {
+		try {
+			List<Future<Void>> futures = new Vector<Future<Void>>();
+			for (Callable<Void> task : tasks) {
+				futures.add(executor.submit(task));
+			}
+			for (Future<Void> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Export interrupted.", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		}
+	}
+
+	public void close() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Paths with a scheme (e.g. file:/) are read from their own filesystem.
+	 */
+	private FileSystem getFileSystem(Path path) throws IOException {
+		return path.getFileSystem(HdfsUtil.getFileSystem().getConf());
+	}
+
+	private List<FileStatus> getParts(FileSystem fileSystem, Path folder) throws IOException {
+
+		FileStatus[] statuses = fileSystem.listStatus(folder, new PathFilter() {
+			@Override
+			public boolean accept(Path path) {
+				// skip _SUCCESS, _logs and crc files
+				String name = path.getName();
+				return !name.startsWith("_") && !name.startsWith(".");
+			}
+		});
+
+		List<FileStatus> parts = new Vector<FileStatus>();
+		for (FileStatus status : statuses) {
+			if (status.isFile()) {
+				parts.add(status);
+			}
+		}
+		parts.sort((a, b) -> a.getPath().getName().compareTo(b.getPath().getName()));
+		return parts;
+
+	}
+
+	private static void copy(FileSystem fileSystem, FileStatus file, OutputStream out, boolean skipHeader,
+			Metrics metrics) throws IOException {
+
+		try (InputStream in = fileSystem.open(file.getPath(), BUFFER_SIZE)) {
+
+			long bytes = 0;
+			if (skipHeader) {
+				int b;
+				while ((b = in.read()) != -1) {
+					bytes++;
+					if (b == '\n') {
+						break;
+					}
+				}
+			}
+
+			bytes += IOUtils.copyLarge(in, out, new byte[BUFFER_SIZE]);
+			metrics.add(bytes);
+
+		}
+
+	}
+
+	public static class Metrics {
+
+		private long start = System.currentTimeMillis();
+
+		private long time = 0;
+
+		private AtomicLong files = new AtomicLong();
+
+		private AtomicLong bytes = new AtomicLong();
+
+		private void add(long bytes) {
+			this.files.incrementAndGet();
+			this.bytes.addAndGet(bytes);
+		}
+
+		private void finish() {
+			time = System.currentTimeMillis() - start;
+		}
+
+		public long getFiles() {
+			return files.get();
+		}
+
+		public long getBytes() {
+			return bytes.get();
+		}
+
+		public long getTime() {
+			return time;
+		}
+
+		/**
+		 * @return throughput in MB/s.
+		 */
+		public double getThroughput() {
+			return (bytes.get() / (1024.0 * 1024.0)) / Math.max(time / 1000.0, 0.001);
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d files, %.1f MB in %.1f s (%.1f MB/s)", getFiles(),
+					getBytes() / (1024.0 * 1024.0), getTime() / 1000.0, getThroughput());
+		}
+
+	}
+
+}
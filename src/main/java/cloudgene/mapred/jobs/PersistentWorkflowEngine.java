@@ -1,17 +1,24 @@
 package cloudgene.mapred.jobs;
 
+import java.sql.Connection;
+import java.sql.SQLException;
 import java.util.List;
 import java.util.Map;
+import java.util.Vector;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import cloudgene.mapred.database.CheckpointDao;
 import cloudgene.mapred.database.CounterDao;
 import cloudgene.mapred.database.DownloadDao;
 import cloudgene.mapred.database.JobDao;
+import cloudgene.mapred.database.JobUpdateJournal;
+import cloudgene.mapred.database.LeaseDao;
 import cloudgene.mapred.database.MessageDao;
 import cloudgene.mapred.database.ParameterDao;
 import cloudgene.mapred.database.StepDao;
+import cloudgene.mapred.jobs.engine.Checkpoints;
 import genepi.db.Database;
 
 public class PersistentWorkflowEngine extends WorkflowEngine {
@@ -22,43 +29,81 @@ public class PersistentWorkflowEngine extends WorkflowEngine {
 
 	private JobDao dao;
 
+	private JobUpdateJournal journal;
+
 	private CounterDao counterDao;
 
-	private Map<String, Long> counters;
+	private CounterRegistry counters;
+
+	private LeaseDao leaseDao;
+
+	private CheckpointDao checkpointDao;
+
+	private String worker;
+
+	private long leaseTimeout;
 
 	public PersistentWorkflowEngine(Database database, int ltqThreads, int stqThreads) {
+		this(database, ltqThreads, stqThreads, null, 0);
+	}
+
+	/**
+	 * @param worker
+	 *            unique name of this instance if several workers share the
+	 *            database, null otherwise.
+	 */
+	public PersistentWorkflowEngine(Database database, int ltqThreads, int stqThreads, String worker,
+			long leaseTimeout) {
 		super(ltqThreads, stqThreads);
 		this.database = database;
+		this.worker = worker;
+		this.leaseTimeout = leaseTimeout;
+		this.leaseDao = new LeaseDao(database);
+		this.checkpointDao = new CheckpointDao(database);
 
 		log.info("Init Counters....");
 
 		counterDao = new CounterDao(database);
-		counters = counterDao.getAll();
+		counters = new CounterRegistry(counterDao.getAll());
 
 		dao = new JobDao(database);
 
-		List<AbstractJob> deadJobs = dao.findAllByState(AbstractJob.STATE_WAITING);
-		deadJobs.addAll(dao.findAllByState(AbstractJob.STATE_RUNNING));
-		deadJobs.addAll(dao.findAllByState(AbstractJob.STATE_EXPORTING));
+		// active jobs of other workers are taken over by the lease manager
+		// when their lease expires. checkpoints of dead jobs are kept, they
+		// can be resumed by an admin
+		if (isCluster()) {
+
+			// jobs of a previous run of this worker are lost and can be taken
+			// over without waiting for the timeout
+			leaseDao.expireAll(worker);
+
+		} else {
+
+			List<AbstractJob> deadJobs = dao.findAllByState(AbstractJob.STATE_WAITING);
+			deadJobs.addAll(dao.findAllByState(AbstractJob.STATE_RUNNING));
+			deadJobs.addAll(dao.findAllByState(AbstractJob.STATE_EXPORTING));
+
+			for (AbstractJob job : deadJobs) {
+				log.info("lost control over job " + job.getId() + " -> Dead");
+				job.setState(AbstractJob.STATE_DEAD);
+				dao.update(job);
+			}
 
-		for (AbstractJob job : deadJobs) {
-			log.info("lost control over job " + job.getId() + " -> Dead");
-			job.setState(AbstractJob.STATE_DEAD);
-			dao.update(job);
 		}
 
+		journal = new JobUpdateJournal(database);
+
 	}
 
 	@Override
 	protected void statusUpdated(AbstractJob job) {
-		dao.update(job);
+		journal.update(job);
 	}
 
 	@Override
 	protected void jobCompleted(AbstractJob job) {
 
-		DownloadDao downloadDao = new DownloadDao(database);
-
+		List<Download> downloads = new Vector<Download>();
 		for (CloudgeneParameterOutput parameter : job.getOutputParams()) {
 
 			if (parameter.isDownload()) {
@@ -68,7 +113,7 @@ public class PersistentWorkflowEngine extends WorkflowEngine {
 					for (Download download : parameter.getFiles()) {
 						download.setParameterId(parameter.getId());
 						download.setParameter(parameter);
-						downloadDao.insert(download);
+						downloads.add(download);
 					}
 
 				}
@@ -77,66 +122,218 @@ public class PersistentWorkflowEngine extends WorkflowEngine {
 
 		}
 
-		if (job.getSteps() != null) {
-			StepDao dao2 = new StepDao(database);
-			for (CloudgeneStep step : job.getSteps()) {
-				dao2.insert(step);
+		Map<String, Integer> submittedCounters = job.getContext().getSubmittedCounters();
+
+		// downloads, steps, messages, counters and job state are written in
+		// one transaction
+		Connection connection = null;
+		try {
+
+			connection = database.getDataSource().getConnection();
+			connection.setAutoCommit(false);
+
+			new DownloadDao(database).insertBatch(connection, downloads);
+			new ParameterDao(database).updateExportMetrics(connection, job.getOutputParams());
+
+			if (job.getSteps() != null) {
 
-				MessageDao messageDao = new MessageDao(database);
-				if (step.getLogMessages() != null) {
-					for (Message logMessage : step.getLogMessages()) {
-						messageDao.insert(logMessage);
+				List<CloudgeneStep> steps = new Vector<CloudgeneStep>(job.getSteps());
+				new StepDao(database).insertBatch(connection, steps);
+
+				// messages need the generated step ids
+				List<Message> logMessages = new Vector<Message>();
+				for (CloudgeneStep step : steps) {
+					if (step.getLogMessages() != null) {
+						logMessages.addAll(step.getLogMessages());
 					}
 				}
+				new MessageDao(database).insertBatch(connection, logMessages);
 
 			}
-		}
 
-		// write all submitted counters into database
-		for (String name : job.getContext().getSubmittedCounters().keySet()) {
-			Integer value = job.getContext().getSubmittedCounters().get(name);
+			// write all submitted counters into database
+			counterDao.insertBatch(connection, submittedCounters, job);
+			counterDao.updateTotals(connection, submittedCounters);
 
-			if (value != null) {
+			// update job updates (state, endtime, ....)
+			journal.discard(job);
+			if (!dao.update(connection, job)) {
+				// job was taken over by an other worker
+				rollback(connection);
+				return;
+			}
+			// later updates are written by the disk usage scanner only
+			dao.updateDiskUsage(connection, job);
 
-				Long counterValue = counters.get(name);
-				if (counterValue == null) {
-					counterValue = 0L + value;
-				} else {
-					counterValue = counterValue + value;
-				}
-				counters.put(name, counterValue);
+			connection.commit();
 
-				counterDao.insert(name, value, job);
+		} catch (SQLException e) {
 
-			}
+			log.error("Writing results of job " + job.getId() + " failed.", e);
+			rollback(connection);
+			// state has to be updated anyway
+			dao.update(job);
+			releaseLease(job);
+			return;
+
+		} finally {
+			close(connection);
 		}
-		
-		//update job updates (state, endtime, ....)
-		dao.update(job);
+
+		releaseLease(job);
+		checkpointDao.deleteByJob(job.getId());
+
+		counters.addAll(submittedCounters);
 
 	}
 
+	/**
+	 * Writes the job and its parameters in one transaction. Returns false if
+	 * the transaction failed, the job is not queued in this case.
+	 */
 	@Override
-	protected void jobSubmitted(AbstractJob job) {
-		dao.insert(job);
-
-		ParameterDao dao = new ParameterDao(database);
+	protected boolean jobSubmitted(AbstractJob job) {
 
 		for (CloudgeneParameterInput parameter : job.getInputParams()) {
 			parameter.setJobId(job.getId());
-			dao.insert(parameter);
 		}
 
 		for (CloudgeneParameterOutput parameter : job.getOutputParams()) {
 			parameter.setJobId(job.getId());
-			dao.insert(parameter);
+		}
+
+		job.setCheckpoints(new Checkpoints(checkpointDao, job.getId()));
+
+		// new jobs are executed by the worker that received them
+		if (isCluster()) {
+			job.setWorker(worker);
+			job.setLeaseToken(leaseDao.claim(job.getId(), worker, leaseTimeout));
+		}
+
+		Connection connection = null;
+		try {
+
+			connection = database.getDataSource().getConnection();
+			connection.setAutoCommit(false);
+
+			dao.insert(connection, job);
+			new ParameterDao(database).insertBatch(connection, job.getInputParams(), job.getOutputParams());
+
+			connection.commit();
+
+		} catch (SQLException e) {
+			log.error("Writing job " + job.getId() + " failed.", e);
+			rollback(connection);
+			releaseLease(job);
+			return false;
+		} finally {
+			close(connection);
+		}
+
+		return true;
+	}
+
+	@Override
+	protected void jobRestarted(AbstractJob job, boolean resume) {
+
+		Checkpoints checkpoints = new Checkpoints(checkpointDao, job.getId());
+		if (resume) {
+			checkpoints.load();
+		} else {
+			checkpoints.clear();
+		}
+		job.setCheckpoints(checkpoints);
+
+		// dead jobs have no lease
+		if (isCluster() && job.getLeaseToken() <= 0) {
+			long token = leaseDao.claim(job.getId(), worker, leaseTimeout);
+			if (token > 0) {
+				job.setWorker(worker);
+				job.setLeaseToken(token);
+			}
+		}
+
+	}
+
+	/**
+	 * Cancels local jobs directly. Jobs of other workers are cancelled by
+	 * their owner, waiting jobs without lease are cancelled in the database.
+	 */
+	@Override
+	public void cancel(AbstractJob job) {
+
+		if (!isCluster() || isInQueue(job)) {
+			super.cancel(job);
+			return;
+		}
+
+		if (leaseDao.requestCancel(job.getId())) {
+			log.info("Cancel of job " + job.getId() + " requested.");
+			return;
+		}
+
+		long token = leaseDao.claim(job.getId(), worker, leaseTimeout);
+		if (token > 0) {
+			job.setWorker(worker);
+			job.setLeaseToken(token);
+			job.setState(AbstractJob.STATE_CANCELED);
+			job.setFinishedOn(System.currentTimeMillis());
+			dao.update(job);
+			leaseDao.release(job.getId(), worker, token);
+		} else {
+			// claimed in the meantime
+			leaseDao.requestCancel(job.getId());
+		}
+
+	}
+
+	public boolean isCluster() {
+		return worker != null;
+	}
+
+	public String getWorker() {
+		return worker;
+	}
+
+	private void releaseLease(AbstractJob job) {
+		if (job.getLeaseToken() > 0) {
+			leaseDao.release(job.getId(), job.getWorker(), job.getLeaseToken());
+		}
+	}
+
+	@Override
+	public void stop() {
+		journal.close();
+		super.stop();
+	}
+
+	private void rollback(Connection connection) {
+		if (connection == null) {
+			return;
+		}
+		try {
+			connection.rollback();
+		} catch (SQLException e) {
+			log.error("Rollback failed.", e);
+		}
+	}
+
+	private void close(Connection connection) {
+		if (connection == null) {
+			return;
+		}
+		try {
+			connection.setAutoCommit(true);
+			connection.close();
+		} catch (SQLException e) {
+			log.error("Closing connection failed.", e);
 		}
 	}
 
 	@Override
 	public Map<String, Long> getCounters(int state) {
 		if (state == AbstractJob.STATE_SUCCESS) {
-			return counters;
+			return counters.getAll();
 		} else {
 			return super.getCounters(state);
 		}
@@ -0,0 +1,118 @@
+package cloudgene.mapred.jobs;
+
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import cloudgene.mapred.jobs.queue.Queue;
+
+/**
+ * Polls the progress of all jobs in the given queues on a fixed cadence.
+ * Requests to external engines (e.g. the JobTracker) are made only by this
+ * thread, status requests read the last sampled value from the job. Jobs in
+ * the setup queue are sampled too, their state is waiting while setup steps
+ * are executed.
+ */
+public class ProgressSampler implements Runnable {
+
+	private static final Log log = LogFactory.getLog(ProgressSampler.class);
+
+	public static final long DEFAULT_INTERVAL = 5000;
+
+	private List<Queue> queues;
+
+	private long interval;
+
+	private ScheduledExecutorService scheduler;
+
+	private volatile long lastSample = 0;
+
+	private volatile long lastDuration = 0;
+
+	public ProgressSampler(List<Queue> queues) {
+		this(queues, DEFAULT_INTERVAL);
+	}
+
+	public ProgressSampler(List<Queue> queues, long interval) {
+		this.queues = queues;
+		this.interval = interval;
+	}
+
+	public synchronized void start() {
+		if (scheduler != null) {
+			return;
+		}
+		scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "ProgressSampler");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		scheduler.scheduleWithFixedDelay(this, 0, interval, TimeUnit.MILLISECONDS);
+	}
+
+	public synchronized void stop() {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+			scheduler = null;
+		}
+	}
+
+	@Override
+	public void run() {
+
+		long start = System.currentTimeMillis();
+
+		List<AbstractJob> jobs = new Vector<AbstractJob>();
+		for (Queue queue : queues) {
+			jobs.addAll(queue.getAllJobs());
+		}
+
+		for (AbstractJob job : jobs) {
+
+			if (!(job instanceof CloudgeneJob)) {
+				continue;
+			}
+
+			if (job.getState() != AbstractJob.STATE_WAITING && job.getState() != AbstractJob.STATE_RUNNING
+					&& job.getState() != AbstractJob.STATE_EXPORTING) {
+				continue;
+			}
+
+			try {
+				((CloudgeneJob) job).updateProgress();
+			} catch (Exception e) {
+				// next sample will try again
+				log.warn("Sampling progress of job " + job.getId() + " failed.", e);
+			}
+
+		}
+
+		lastSample = System.currentTimeMillis();
+		lastDuration = lastSample - start;
+
+	}
+
+	/**
+	 * @return time of the last completed sample.
+	 */
+	public long getLastSample() {
+		return lastSample;
+	}
+
+	/**
+	 * @return duration of the last sample in ms.
+	 */
+	public long getLastDuration() {
+		return lastDuration;
+	}
+
+}
@@ -1,5 +1,6 @@
 package cloudgene.mapred.jobs;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -11,6 +12,9 @@ import org.apache.commons.logging.LogFactory;
 import cloudgene.mapred.core.User;
 import cloudgene.mapred.jobs.queue.PriorityRunnable;
 import cloudgene.mapred.jobs.queue.Queue;
+import cloudgene.mapred.jobs.queue.ResourceLedger;
+import cloudgene.mapred.jobs.queue.ResourcePolicy;
+import cloudgene.mapred.jobs.queue.SchedulingPolicy;
 
 public class WorkflowEngine implements Runnable {
 
@@ -22,6 +26,8 @@ public class WorkflowEngine implements Runnable {
 
 	private Queue shortTimeQueue;
 
+	private ProgressSampler progressSampler;
+
 	private boolean running = false;
 
 	private AtomicLong priorityCounter = new AtomicLong();
@@ -78,17 +84,28 @@ public class WorkflowEngine implements Runnable {
 
 		};
 
+		progressSampler = new ProgressSampler(Arrays.asList(shortTimeQueue, longTimeQueue));
+
 	}
 
-	public void submit(AbstractJob job) {
-		submit(job, priorityCounter.incrementAndGet());
+	public boolean submit(AbstractJob job) {
+		return submit(job, priorityCounter.incrementAndGet());
 	}
 
-	public void submit(AbstractJob job, long priority) {
+	/**
+	 * Submits the job. Returns false and marks the job as failed without
+	 * queueing it if the job could not be stored.
+	 */
+	public boolean submit(AbstractJob job, long priority) {
 
 		job.setPriority(priority);
 		job.setSubmittedOn(System.currentTimeMillis());
-		jobSubmitted(job);
+		if (!jobSubmitted(job)) {
+			job.setState(AbstractJob.STATE_FAILED);
+			job.setFinishedOn(System.currentTimeMillis());
+			job.setComplete(true);
+			return false;
+		}
 
 		boolean okey = job.afterSubmission();
 		if (okey) {
@@ -99,6 +116,7 @@ public class WorkflowEngine implements Runnable {
 			job.setComplete(true);			
 
 		}
+		return true;
 	}
 
 	public void restart(AbstractJob job) {
@@ -106,6 +124,20 @@ public class WorkflowEngine implements Runnable {
 	}
 
 	public void restart(AbstractJob job, long priority) {
+		restart(job, priority, false);
+	}
+
+	/**
+	 * Restarts the job and skips all steps that were completed before the
+	 * job died.
+	 */
+	public void resume(AbstractJob job) {
+		restart(job, priorityCounter.incrementAndGet(), true);
+	}
+
+	private void restart(AbstractJob job, long priority, boolean resume) {
+
+		jobRestarted(job, resume);
 
 		job.setPriority(priority);
 		job.setSubmittedOn(System.currentTimeMillis());
@@ -133,6 +165,25 @@ public class WorkflowEngine implements Runnable {
 		longTimeQueue.updatePriority(job, priority);
 	}
 
+	public void setSchedulingPolicy(SchedulingPolicy policy) {
+		longTimeQueue.setPolicy(policy);
+	}
+
+	public SchedulingPolicy getSchedulingPolicy() {
+		return longTimeQueue.getPolicy();
+	}
+
+	/**
+	 * @return null if jobs are not admitted by their resources.
+	 */
+	public ResourceLedger getResourceLedger() {
+		SchedulingPolicy policy = longTimeQueue.getPolicy();
+		if (policy instanceof ResourcePolicy) {
+			return ((ResourcePolicy) policy).getLedger();
+		}
+		return null;
+	}
+
 	public void cancel(AbstractJob job) {
 
 		if (shortTimeQueue.isInQueue(job)) {
@@ -151,13 +202,19 @@ public class WorkflowEngine implements Runnable {
 		threadShortTimeQueue.start();
 		threadLongTimeQueue = new Thread(longTimeQueue);
 		threadLongTimeQueue.start();
+		progressSampler.start();
 		running = true;
 
 	}
 
 	public void stop() {
-		threadShortTimeQueue.stop();
-		threadLongTimeQueue.stop();
+		progressSampler.stop();
+		if (threadShortTimeQueue != null) {
+			threadShortTimeQueue.stop();
+		}
+		if (threadLongTimeQueue != null) {
+			threadLongTimeQueue.stop();
+		}
 	}
 
 	public void block() {
@@ -180,6 +237,23 @@ public class WorkflowEngine implements Runnable {
 		return shortTimeQueue.getActiveCount() + longTimeQueue.getActiveCount();
 	}
 
+	/**
+	 * Returns the time between submission and start of jobs (in ms) for the
+	 * setup queue and the execution queue.
+	 */
+	public Map<String, Long> getWaitTimes() {
+		Map<String, Long> result = new HashMap<String, Long>();
+		result.put("setup_started", shortTimeQueue.getStartedJobs());
+		result.put("setup_wait_avg", shortTimeQueue.getAverageWaitTime());
+		result.put("setup_wait_max", shortTimeQueue.getMaxWaitTime());
+		result.put("setup_wait_last", shortTimeQueue.getLastWaitTime());
+		result.put("queue_started", longTimeQueue.getStartedJobs());
+		result.put("queue_wait_avg", longTimeQueue.getAverageWaitTime());
+		result.put("queue_wait_max", longTimeQueue.getMaxWaitTime());
+		result.put("queue_wait_last", longTimeQueue.getLastWaitTime());
+		return result;
+	}
+
 	public AbstractJob getJobById(String id) {
 		AbstractJob job = longTimeQueue.getJobById(id);
 		if (job == null) {
@@ -190,75 +264,42 @@ public class WorkflowEngine implements Runnable {
 
 	public Map<String, Long> getCounters(int state) {
 
-		Map<String, Long> result = new HashMap<String, Long>();
+		CounterRegistry result = new CounterRegistry();
 		List<AbstractJob> jobs = longTimeQueue.getAllJobs();
 		for (AbstractJob job : jobs) {
 			if (job.getState() == state) {
-				Map<String, Integer> counters = job.getContext().getCounters();
-				for (String name : counters.keySet()) {
-					Integer value = counters.get(name);
-					Long oldvalue = result.get(name);
-					if (oldvalue == null) {
-						oldvalue = new Long(0);
-					}
-					result.put(name, oldvalue + value);
-				}
+				result.addAll(job.getContext().getCounters());
 			}
 		}
-		return result;
+		return result.getAll();
 
 	}
 
 	public List<AbstractJob> getJobsByUser(User user) {
 
+		// progress is updated by the progress sampler
 		List<AbstractJob> jobs = shortTimeQueue.getJobsByUser(user);
 		jobs.addAll(longTimeQueue.getJobsByUser(user));
 
-		for (AbstractJob job : jobs) {
-
-			if (job instanceof CloudgeneJob) {
-
-				((CloudgeneJob) job).updateProgress();
-
-			}
-
-		}
-
 		return jobs;
 	}
 
-	public List<AbstractJob> getAllJobsInShortTimeQueue() {
-
-		List<AbstractJob> jobs = shortTimeQueue.getAllJobs();
-
-		for (AbstractJob job : jobs) {
-
-			if (job instanceof CloudgeneJob) {
-
-				((CloudgeneJob) job).updateProgress();
-
-			}
+	public int countJobsByUser(User user) {
+		return shortTimeQueue.countJobsByUser(user) + longTimeQueue.countJobsByUser(user);
+	}
 
-		}
+	public List<AbstractJob> getAllJobsInShortTimeQueue() {
 
 		return shortTimeQueue.getAllJobs();
 	}
 
 	public List<AbstractJob> getAllJobsInLongTimeQueue() {
 
-		List<AbstractJob> jobs = longTimeQueue.getAllJobs();
-
-		for (AbstractJob job : jobs) {
-
-			if (job instanceof CloudgeneJob) {
-
-				((CloudgeneJob) job).updateProgress();
-
-			}
-
-		}
+		return longTimeQueue.getAllJobs();
+	}
 
-		return jobs;
+	public ProgressSampler getProgressSampler() {
+		return progressSampler;
 	}
 
 	class SetupThread extends PriorityRunnable {
@@ -298,7 +339,11 @@ public class WorkflowEngine implements Runnable {
 
 	}
 
-	protected void jobSubmitted(AbstractJob job) {
+	protected boolean jobSubmitted(AbstractJob job) {
+		return true;
+	}
+
+	protected void jobRestarted(AbstractJob job, boolean resume) {
 
 	}
 
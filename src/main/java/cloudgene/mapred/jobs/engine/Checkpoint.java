@@ -0,0 +1,66 @@
+package cloudgene.mapred.jobs.engine;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Vector;
+
+/**
+ * Completion state of one workflow step: the output parameters it produced
+ * and a snapshot of the job counters after the step.
+ */
+public class Checkpoint {
+
+	private String step;
+
+	private List<String> outputs = new Vector<String>();
+
+	private Map<String, Integer> counters = new HashMap<String, Integer>();
+
+	private Set<String> submittedCounters = new HashSet<String>();
+
+	private long completedOn;
+
+	public String getStep() {
+		return step;
+	}
+
+	public void setStep(String step) {
+		this.step = step;
+	}
+
+	public List<String> getOutputs() {
+		return outputs;
+	}
+
+	public void setOutputs(List<String> outputs) {
+		this.outputs = outputs;
+	}
+
+	public Map<String, Integer> getCounters() {
+		return counters;
+	}
+
+	public void setCounters(Map<String, Integer> counters) {
+		this.counters = counters;
+	}
+
+	public Set<String> getSubmittedCounters() {
+		return submittedCounters;
+	}
+
+	public void setSubmittedCounters(Set<String> submittedCounters) {
+		this.submittedCounters = submittedCounters;
+	}
+
+	public long getCompletedOn() {
+		return completedOn;
+	}
+
+	public void setCompletedOn(long completedOn) {
+		this.completedOn = completedOn;
+	}
+
+}
@@ -0,0 +1,120 @@
+package cloudgene.mapred.jobs.engine;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.Vector;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import cloudgene.mapred.database.CheckpointDao;
+import cloudgene.mapred.jobs.AbstractJob;
+import cloudgene.mapred.jobs.CloudgeneContext;
+import cloudgene.mapred.jobs.engine.graph.GraphNode;
+
+/**
+ * Persists the completion state of every successful step of a job. A resumed
+ * job loads the checkpoints of its previous run and the executor skips all
+ * completed steps whose predecessors were not executed again.
+ */
+public class Checkpoints {
+
+	private static final Log log = LogFactory.getLog(Checkpoints.class);
+
+	private CheckpointDao dao;
+
+	private String jobId;
+
+	// checkpoints of the previous run by step id
+	private Map<String, Checkpoint> completed = new LinkedHashMap<String, Checkpoint>();
+
+	public Checkpoints(CheckpointDao dao, String jobId) {
+		this.dao = dao;
+		this.jobId = jobId;
+	}
+
+	/**
+	 * Loads the checkpoints of the previous run.
+	 */
+	public void load() {
+		completed = dao.findAllByJob(jobId);
+		log.info("Job " + jobId + ": " + completed.size() + " completed steps found.");
+	}
+
+	/**
+	 * Removes the checkpoints of the previous run, all steps are executed
+	 * again.
+	 */
+	public void clear() {
+		completed.clear();
+		dao.deleteByJob(jobId);
+	}
+
+	public boolean isEmpty() {
+		return completed.isEmpty();
+	}
+
+	/**
+	 * @return all output parameters produced by completed steps. Their files
+	 *         are kept when the job is set up again.
+	 */
+	public Set<String> getOutputs() {
+		Set<String> outputs = new HashSet<String>();
+		for (Checkpoint checkpoint : completed.values()) {
+			outputs.addAll(checkpoint.getOutputs());
+		}
+		return outputs;
+	}
+
+	public boolean isCompleted(GraphNode node) {
+		return completed.containsKey(node.getId());
+	}
+
+	/**
+	 * Restores the counters of a completed step.
+	 *
+	 * @return false if the step has no checkpoint.
+	 */
+	public boolean restore(GraphNode node, CloudgeneContext context) {
+
+		Checkpoint checkpoint = completed.get(node.getId());
+		if (checkpoint == null) {
+			return false;
+		}
+
+		// counters only grow, snapshots of parallel steps overlap
+		for (Map.Entry<String, Integer> counter : checkpoint.getCounters().entrySet()) {
+			Integer value = context.getCounters().get(counter.getKey());
+			int current = value != null ? value : 0;
+			if (counter.getValue() > current) {
+				context.incCounter(counter.getKey(), counter.getValue() - current);
+			}
+		}
+		for (String name : checkpoint.getSubmittedCounters()) {
+			context.submitCounter(name);
+		}
+
+		return true;
+	}
+
+	/**
+	 * Stores the checkpoint of a successful step. Workers that lost the lease
+	 * of the job can not overwrite the checkpoints of the new owner.
+	 */
+	public void save(GraphNode node, CloudgeneContext context) {
+
+		Checkpoint checkpoint = new Checkpoint();
+		checkpoint.setStep(node.getId());
+		checkpoint.setOutputs(new Vector<String>(node.getOutputs()));
+		checkpoint.setCounters(new LinkedHashMap<String, Integer>(context.getCounters()));
+		checkpoint.setSubmittedCounters(new HashSet<String>(context.getSubmittedCounters().keySet()));
+		checkpoint.setCompletedOn(System.currentTimeMillis());
+
+		AbstractJob job = context.getJob();
+		dao.insert(jobId, checkpoint, job.getWorker(), job.getLeaseToken());
+
+	}
+
+}
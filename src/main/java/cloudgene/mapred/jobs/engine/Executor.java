@@ -1,6 +1,14 @@
 package cloudgene.mapred.jobs.engine;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.Vector;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import cloudgene.mapred.jobs.CloudgeneJob;
 import cloudgene.mapred.jobs.CloudgeneParameterOutput;
@@ -11,10 +19,48 @@ public class Executor {
 
 	private GraphNode executableNode;
 
+	private int threads = 1;
+
+	private List<GraphNode> runningNodes = new Vector<GraphNode>();
+
+	private volatile boolean killed = false;
+
+	private StepCache cache;
+
+	private Checkpoints checkpoints;
+
+	// nodes with an executed predecessor, their checkpoints are outdated
+	private Set<GraphNode> outdated = new HashSet<GraphNode>();
+
+	public Executor() {
+		this(1);
+	}
+
+	/**
+	 * @param threads
+	 *            maximal number of nodes that are executed at the same time.
+	 */
+	public Executor(int threads) {
+		this.threads = Math.max(1, threads);
+	}
+
+	public void setCache(StepCache cache) {
+		this.cache = cache;
+	}
+
+	public void setCheckpoints(Checkpoints checkpoints) {
+		this.checkpoints = checkpoints;
+	}
+
 	public boolean execute(Graph graph) {
 
 		graph.getContext().log("Executor: execute DAG...");
 
+		if (threads > 1) {
+			graph.getContext().log("Executor: execute up to " + threads + " steps in parallel.");
+			return executeNodesParallel(graph);
+		}
+
 		while (graph.getSize() > 0) {
 			List<GraphNode> nodes = graph.getSources();
 			boolean successful = false;
@@ -32,16 +78,30 @@ public class Executor {
 
 		for (GraphNode node : nodes) {
 
+			if (restore(graph, node)) {
+				continue;
+			}
+
 			executableNode = node;
+			outdated.addAll(graph.getSuccessors(node));
+			runningNodes.add(node);
 
 			executableNode.run();
+
+			runningNodes.remove(node);
+
 			// export results
 			exportResults(graph, node);
 
 			if (!executableNode.isSuccessful()) {
 				return false;
 			}
-			// TODO: cache.addToCache(node, graph.getContext());
+
+			if (cache != null) {
+				cache.addToCache(node, graph.getContext());
+			}
+
+			saveCheckpoint(graph, node);
 
 			graph.remove(node);
 		}
@@ -49,22 +109,178 @@ public class Executor {
 		return true;
 	}
 
+	private boolean executeNodesParallel(Graph graph) {
+
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		CompletionService<GraphNode> completionService = new ExecutorCompletionService<GraphNode>(pool);
+
+		Set<GraphNode> submitted = new HashSet<GraphNode>();
+		boolean successful = true;
+
+		try {
+
+			while (graph.getSize() > 0) {
+
+				// submit all nodes whose dependencies are completed
+				if (successful && !killed) {
+					boolean restored = true;
+					while (restored) {
+						// restored nodes can release new sources
+						restored = false;
+						for (GraphNode node : graph.getSources()) {
+							if (!submitted.contains(node)) {
+								if (restore(graph, node)) {
+									restored = true;
+									continue;
+								}
+								submitted.add(node);
+								outdated.addAll(graph.getSuccessors(node));
+								runningNodes.add(node);
+								completionService.submit(node, node);
+							}
+						}
+					}
+				}
+
+				if (runningNodes.isEmpty()) {
+					break;
+				}
+
+				GraphNode node = completionService.take().get();
+				runningNodes.remove(node);
+
+				// export results
+				exportResults(graph, node);
+
+				if (!node.isSuccessful()) {
+					if (successful) {
+						// first failed node. stop all other branches.
+						executableNode = node;
+						successful = false;
+						for (GraphNode runningNode : new Vector<GraphNode>(runningNodes)) {
+							runningNode.kill();
+						}
+					}
+					continue;
+				}
+
+				if (cache != null) {
+					cache.addToCache(node, graph.getContext());
+				}
+
+				saveCheckpoint(graph, node);
+
+				graph.remove(node);
+
+			}
+
+		} catch (InterruptedException | ExecutionException e) {
+			graph.getContext().log("Executor: execution interrupted. " + e.getMessage());
+			for (GraphNode runningNode : new Vector<GraphNode>(runningNodes)) {
+				runningNode.kill();
+				if (executableNode == null) {
+					executableNode = runningNode;
+				}
+			}
+			successful = false;
+		} finally {
+			pool.shutdown();
+		}
+
+		if (successful && graph.getSize() > 0) {
+			// killed before all nodes were submitted
+			List<GraphNode> sources = graph.getSources();
+			if (!sources.isEmpty()) {
+				executableNode = sources.get(0);
+			}
+			return false;
+		}
+
+		return successful;
+	}
+
 	public void kill() {
-		executableNode.kill();
+		killed = true;
+		for (GraphNode node : new Vector<GraphNode>(runningNodes)) {
+			node.kill();
+		}
 	}
 
 	public void updateProgress() {
-		if (executableNode != null) {
+		List<GraphNode> nodes = new Vector<GraphNode>(runningNodes);
+		if (nodes.isEmpty() && executableNode != null) {
 			executableNode.updateProgress();
 		}
+		for (GraphNode node : nodes) {
+			node.updateProgress();
+		}
 	}
 
+	/**
+	 * @return the average progress of all running nodes.
+	 */
 	public int getProgress() {
-		if (executableNode != null) {
-			return executableNode.getProgress();
-		} else {
-			return 0;
+		List<GraphNode> nodes = new Vector<GraphNode>(runningNodes);
+		if (nodes.isEmpty()) {
+			return executableNode != null ? executableNode.getProgress() : 0;
+		}
+		int progress = 0;
+		for (GraphNode node : nodes) {
+			progress += node.getProgress();
+		}
+		return progress / nodes.size();
+	}
+
+	private boolean restore(Graph graph, GraphNode node) {
+		return restoreFromCheckpoint(graph, node) || restoreFromCache(graph, node);
+	}
+
+	/**
+	 * Skips the node if it was completed by a previous run of the job and no
+	 * predecessor was executed again.
+	 *
+	 * @return true if the node was restored and removed from the graph.
+	 */
+	private boolean restoreFromCheckpoint(Graph graph, GraphNode node) {
+
+		if (checkpoints == null || outdated.contains(node) || !checkpoints.restore(node, graph.getContext())) {
+			return false;
+		}
+
+		graph.getContext().log("Executor: step '" + node.getStep().getName() + "' completed by previous run.");
+		graph.getContext().println("Step '" + node.getStep().getName() + "' completed by previous run. Skipped.");
+
+		exportResults(graph, node);
+		graph.remove(node);
+
+		return true;
+	}
+
+	private void saveCheckpoint(Graph graph, GraphNode node) {
+		if (checkpoints != null) {
+			checkpoints.save(node, graph.getContext());
+		}
+	}
+
+	/**
+	 * Skips the node if its outputs are found in the step cache.
+	 *
+	 * @return true if the node was restored and removed from the graph.
+	 */
+	private boolean restoreFromCache(Graph graph, GraphNode node) {
+
+		if (cache == null || !cache.restore(node, graph.getContext())) {
+			return false;
 		}
+
+		graph.getContext().log("Executor: step '" + node.getStep().getName() + "' restored from cache.");
+		graph.getContext().println("Step '" + node.getStep().getName() + "' restored from cache.");
+
+		exportResults(graph, node);
+		saveCheckpoint(graph, node);
+		graph.remove(node);
+
+		return true;
 	}
 
 	private void exportResults(Graph graph, GraphNode node) {
@@ -8,6 +8,7 @@ import cloudgene.mapred.jobs.engine.graph.GraphNode;
 import cloudgene.mapred.jobs.engine.plugins.ParameterValueInput;
 import cloudgene.mapred.jobs.engine.plugins.ParameterValueOutput;
 import cloudgene.mapred.util.Settings;
+import cloudgene.mapred.util.TemplateCache;
 import cloudgene.mapred.wdl.WdlApp;
 import cloudgene.mapred.wdl.WdlParameter;
 import cloudgene.mapred.wdl.WdlParameterInput;
@@ -15,15 +16,15 @@ import cloudgene.mapred.wdl.WdlParameterOutput;
 import cloudgene.mapred.wdl.WdlReader;
 import cloudgene.mapred.wdl.WdlStep;
 import cloudgene.mapred.wdl.WdlWorkflow;
-import org.apache.velocity.Template;
 import org.apache.velocity.VelocityContext;
-import org.apache.velocity.app.Velocity;
 
 import java.io.File;
 import java.io.StringWriter;
 import java.net.MalformedURLException;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Vector;
 
 public class Planner {
 
@@ -33,7 +34,6 @@ public class Planner {
             context.log("Load workflow app: " + app.getPath());
         }
 
-		Velocity.setProperty("file.resource.loader.path", "/");
 		VelocityContext context2 = new VelocityContext();
 
 		// add input values to context
@@ -60,16 +60,9 @@ public class Planner {
 
 		File manifest = new File(app.getManifestFile());
 
-		StringWriter sw;
-		try {
-
-			Template template = Velocity.getTemplate(manifest.getAbsolutePath(), "UTF-8");
-			sw = new StringWriter();
-			template.merge(context2, sw);
-
-		} catch (Exception e) {
-			throw e;
-		}
+		// parsed manifest is cached until the file is modified
+		StringWriter sw = new StringWriter();
+		TemplateCache.getInstance().merge(manifest, context2, sw);
 
 		if (settings.isMaintenance()) {
             context.log("Load app from manifest template: " + manifest.getAbsolutePath());
@@ -98,6 +91,11 @@ public class Planner {
 
 	public Graph buildDAG(List<WdlStep> steps, WdlWorkflow config, CloudgeneContext context)
 			throws MalformedURLException, ClassNotFoundException, InstantiationException, IllegalAccessException {
+		return buildDAG(steps, config, context, config.isParallel());
+	}
+
+	public Graph buildDAG(List<WdlStep> steps, WdlWorkflow config, CloudgeneContext context, boolean parallel)
+			throws MalformedURLException, ClassNotFoundException, InstantiationException, IllegalAccessException {
 
 		Graph graph = new Graph(context);
 
@@ -106,7 +104,7 @@ public class Planner {
 		for (WdlStep step : steps) {
 			GraphNode node = new GraphNode(step, context);
 			graph.addNode(node);
-			if (lastNode != null) {
+			if (lastNode != null && !parallel) {
 				graph.connect(lastNode, node, null);
 			}
 			lastNode = node;
@@ -133,6 +131,14 @@ public class Planner {
 			}
 		}
 
+		if (parallel) {
+			connectDataDependencies(graph, config);
+		}
+
+		if (graph.hasCycle()) {
+			throw new IllegalStateException("Planner: DAG contains a cycle.");
+		}
+
 		context.log("Planner: DAG created.");
 		context.log("  Nodes: " + graph.getSize());
 		for (GraphNode node : graph.getNodes()) {
@@ -149,7 +155,7 @@ public class Planner {
 			context.log("      Outputs: " + outputs);
 		}
 
-		context.log("  Dipendencies: " + graph.getEdges().size());
+		context.log("  Dipendencies: " + graph.getEdgeCount());
 		for (GraphEdge edge : graph.getEdges()) {
 			context.log("    " + edge.getSource().getStep().getName() + "->" + edge.getTarget().getStep().getName());
 		}
@@ -158,6 +164,57 @@ public class Planner {
 
 	}
 
+	/**
+	 * Connects steps by the output parameters they read and write. The order
+	 * of the manifest is kept for each parameter: a step reading a parameter
+	 * waits for the last step writing it and a step writing a parameter waits
+	 * for all previous readers and writers.
+	 */
+	private void connectDataDependencies(Graph graph, WdlWorkflow config) {
+
+		Map<String, GraphNode> lastWriters = new HashMap<String, GraphNode>();
+		Map<String, List<GraphNode>> readers = new HashMap<String, List<GraphNode>>();
+
+		for (GraphNode node : graph.getNodes()) {
+
+			for (WdlParameter param : config.getOutputs()) {
+
+				String id = param.getId();
+				GraphNode lastWriter = lastWriters.get(id);
+
+				if (node.getInputs().contains(id)) {
+					if (lastWriter != null) {
+						graph.connect(lastWriter, node, param);
+					}
+					List<GraphNode> list = readers.get(id);
+					if (list == null) {
+						list = new Vector<GraphNode>();
+						readers.put(id, list);
+					}
+					list.add(node);
+				}
+
+				if (node.getOutputs().contains(id)) {
+					if (lastWriter != null) {
+						graph.connect(lastWriter, node, param);
+					}
+					List<GraphNode> list = readers.get(id);
+					if (list != null) {
+						for (GraphNode reader : list) {
+							if (reader != node) {
+								graph.connect(reader, node, param);
+							}
+						}
+						list.clear();
+					}
+					lastWriters.put(id, node);
+				}
+
+			}
+		}
+
+	}
+
 	private boolean stepConsumesParameter(WdlStep step, WdlParameter param, CloudgeneContext context) {
 
 		if (step.get("params") != null) {
@@ -0,0 +1,519 @@
+package cloudgene.mapred.jobs.engine;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.Vector;
+import java.util.stream.Stream;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.fs.FileChecksum;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+
+import cloudgene.mapred.jobs.CloudgeneContext;
+import cloudgene.mapred.jobs.CloudgeneJob;
+import cloudgene.mapred.jobs.CloudgeneParameterInput;
+import cloudgene.mapred.jobs.CloudgeneParameterOutput;
+import cloudgene.mapred.jobs.engine.graph.GraphNode;
+import cloudgene.mapred.util.Settings;
+import cloudgene.mapred.wdl.WdlApp;
+import cloudgene.mapred.wdl.WdlParameterInputType;
+import cloudgene.mapred.wdl.WdlParameterOutputType;
+import genepi.hadoop.HdfsUtil;
+import genepi.io.FileUtil;
+
+/**
+ * Stores the local outputs of successful steps. Entries are keyed by a
+ * fingerprint of the step definition, the app version and the content of all
+ * resolved inputs. A restarted or resubmitted job with the same fingerprint
+ * skips the step and copies the outputs from the cache. The least recently
+ * used entries are removed when the cache exceeds its maximal size.
+ * 
+ * Only output files are stored. Counters and messages of a restored step are
+ * not restored, the step is not executed.
+ */
+public class StepCache {
+
+	private static final Log log = LogFactory.getLog(StepCache.class);
+
+	private static final String JOB_ID_PLACEHOLDER = "${job_id}";
+
+	private static StepCache instance;
+
+	private String path;
+
+	private long maxSize;
+
+	private long size = 0;
+
+	// entries in access order, values are the sizes in bytes
+	private LinkedHashMap<String, Long> entries = new LinkedHashMap<String, Long>(16, 0.75f, true);
+
+	// entries that are restored at the moment and must not be evicted
+	private Map<String, Integer> pins = new HashMap<String, Integer>();
+
+	public StepCache(String path, long maxSize) {
+		this.path = path;
+		this.maxSize = maxSize;
+		FileUtil.createDirectory(path);
+		load();
+	}
+
+	public static synchronized StepCache getInstance(Settings settings) {
+		if (instance == null || !instance.path.equals(settings.getStepCachePath())) {
+			instance = new StepCache(settings.getStepCachePath(), settings.getStepCacheSize() * 1024L * 1024L);
+		}
+		return instance;
+	}
+
+	private void load() {
+
+		File[] folders = new File(path).listFiles(File::isDirectory);
+		if (folders == null) {
+			return;
+		}
+
+		// oldest entries first
+		Arrays.sort(folders, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+
+		for (File folder : folders) {
+			if (folder.getName().contains(".tmp")) {
+				// incomplete entry from a crashed instance
+				FileUtil.deleteDirectory(folder.getAbsolutePath());
+				continue;
+			}
+			long entrySize = getSize(folder.toPath());
+			entries.put(folder.getName(), entrySize);
+			size += entrySize;
+		}
+
+		log.info("Step cache: " + entries.size() + " entries (" + size + " bytes) found in '" + path + "'.");
+
+	}
+
+	/**
+	 * @return true if all outputs of the node are local files or folders. Steps
+	 *         with HDFS outputs or with the property 'cache: false' are never
+	 *         cached.
+	 */
+	public boolean isCacheable(GraphNode node, CloudgeneContext context) {
+
+		if (node.getStep() == null || node.getStep().get("cache", "true").equalsIgnoreCase("false")) {
+			return false;
+		}
+
+		if (node.getOutputs().isEmpty()) {
+			return false;
+		}
+
+		for (String output : node.getOutputs()) {
+			CloudgeneParameterOutput param = getOutputParameter(context, output);
+			if (param == null) {
+				return false;
+			}
+			if (param.getType() != WdlParameterOutputType.LOCAL_FILE
+					&& param.getType() != WdlParameterOutputType.LOCAL_FOLDER) {
+				return false;
+			}
+		}
+
+		return true;
+
+	}
+
+	public String getFingerprint(GraphNode node, CloudgeneContext context) throws IOException {
+
+		MessageDigest digest = createDigest();
+		String jobId = context.getJobId();
+
+		WdlApp app = ((CloudgeneJob) context.getJob()).getApp();
+		if (app != null) {
+			update(digest, "app", app.getId() + ":" + app.getVersion());
+		}
+
+		// step definition. job specific paths are replaced by a placeholder
+		for (Map.Entry<String, String> entry : new TreeMap<String, String>(node.getStep()).entrySet()) {
+			String value = entry.getValue() != null ? entry.getValue().replace(jobId, JOB_ID_PLACEHOLDER) : "";
+			update(digest, "step." + entry.getKey(), value);
+		}
+
+		// resolved inputs
+		for (String input : new TreeSet<String>(node.getInputs())) {
+
+			String value = context.get(input);
+			update(digest, "input", input);
+
+			if (value == null) {
+				continue;
+			}
+
+			if (isHdfsParameter(context, input)) {
+				updateHdfs(digest, value);
+			} else if (isLocalParameter(context, input)) {
+				updateLocal(digest, new File(value));
+			} else {
+				update(digest, "value", value.replace(jobId, JOB_ID_PLACEHOLDER));
+			}
+
+		}
+
+		return toHex(digest.digest());
+
+	}
+
+	/**
+	 * Inputs are read once per node: the fingerprint of a miss is stored on
+	 * the node and used again when its outputs are added after the execution.
+	 */
+	private String getNodeFingerprint(GraphNode node, CloudgeneContext context) throws IOException {
+		if (node.getFingerprint() == null) {
+			node.setFingerprint(getFingerprint(node, context));
+		}
+		return node.getFingerprint();
+	}
+
+	/**
+	 * Copies the outputs of the node from the cache to the job workspace.
+	 *
+	 * @return true if the node was found in the cache and all outputs were
+	 *         restored.
+	 */
+	public boolean restore(GraphNode node, CloudgeneContext context) {
+
+		if (!isCacheable(node, context)) {
+			return false;
+		}
+
+		try {
+
+			String fingerprint = getNodeFingerprint(node, context);
+
+			if (!pin(fingerprint)) {
+				return false;
+			}
+
+			// copy outputs outside of the lock, the pinned entry is not evicted
+			try {
+				File entry = new File(FileUtil.path(path, fingerprint));
+				for (String output : node.getOutputs()) {
+					Path source = new File(entry, output).toPath();
+					Path target = new File(context.getOutput(output)).toPath();
+					if (!Files.exists(source)) {
+						log.warn("Step cache: entry " + fingerprint + " is incomplete.");
+						return false;
+					}
+					if (Files.isDirectory(source)) {
+						copy(source, target);
+					} else {
+						Files.createDirectories(target.getParent());
+						Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+					}
+				}
+				entry.setLastModified(System.currentTimeMillis());
+			} finally {
+				unpin(fingerprint);
+			}
+
+			log.info("Step cache: restored step '" + node.getStep().getName() + "' of job " + context.getJobId()
+					+ " from entry " + fingerprint + ".");
+			return true;
+
+		} catch (Exception e) {
+			log.warn("Step cache: restoring step '" + node.getStep().getName() + "' failed.", e);
+			return false;
+		}
+
+	}
+
+	/**
+	 * Stores the local outputs of a successful node.
+	 */
+	public void addToCache(GraphNode node, CloudgeneContext context) {
+
+		if (!isCacheable(node, context)) {
+			return;
+		}
+
+		String fingerprint = null;
+		File temp = null;
+
+		try {
+
+			fingerprint = getNodeFingerprint(node, context);
+
+			synchronized (this) {
+				if (entries.containsKey(fingerprint)) {
+					return;
+				}
+			}
+
+			// copy outputs outside of the lock to a temporary folder
+			temp = new File(FileUtil.path(path, fingerprint + ".tmp-" + UUID.randomUUID()));
+			for (String output : node.getOutputs()) {
+				Path source = new File(context.getOutput(output)).toPath();
+				Path target = new File(temp, output).toPath();
+				if (Files.isDirectory(source)) {
+					copy(source, target);
+				} else if (Files.exists(source)) {
+					Files.createDirectories(target.getParent());
+					Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+				} else {
+					// output was not created, nothing to cache
+					FileUtil.deleteDirectory(temp.getAbsolutePath());
+					return;
+				}
+			}
+
+			long entrySize = getSize(temp.toPath());
+			if (entrySize > maxSize) {
+				FileUtil.deleteDirectory(temp.getAbsolutePath());
+				return;
+			}
+
+			synchronized (this) {
+				File entry = new File(FileUtil.path(path, fingerprint));
+				if (entries.containsKey(fingerprint) || !temp.renameTo(entry)) {
+					FileUtil.deleteDirectory(temp.getAbsolutePath());
+					return;
+				}
+				entries.put(fingerprint, entrySize);
+				size += entrySize;
+				evict();
+			}
+
+			log.info("Step cache: stored step '" + node.getStep().getName() + "' of job " + context.getJobId()
+					+ " as entry " + fingerprint + " (" + entrySize + " bytes).");
+
+		} catch (Exception e) {
+			log.warn("Step cache: storing step '" + node.getStep().getName() + "' failed.", e);
+			if (temp != null) {
+				FileUtil.deleteDirectory(temp.getAbsolutePath());
+			}
+		}
+
+	}
+
+	/**
+	 * Protects an entry against eviction until {@link #unpin(String)} is
+	 * called.
+	 *
+	 * @return false if the cache contains no entry with this fingerprint.
+	 */
+	synchronized boolean pin(String fingerprint) {
+		if (entries.get(fingerprint) == null) {
+			return false;
+		}
+		Integer count = pins.get(fingerprint);
+		pins.put(fingerprint, count == null ? 1 : count + 1);
+		return true;
+	}
+
+	synchronized void unpin(String fingerprint) {
+		Integer count = pins.get(fingerprint);
+		if (count == null || count <= 1) {
+			pins.remove(fingerprint);
+		} else {
+			pins.put(fingerprint, count - 1);
+		}
+	}
+
+	private void evict() {
+
+		Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+		while (size > maxSize && iterator.hasNext()) {
+			Map.Entry<String, Long> eldest = iterator.next();
+			if (pins.containsKey(eldest.getKey())) {
+				continue;
+			}
+			FileUtil.deleteDirectory(FileUtil.path(path, eldest.getKey()));
+			size -= eldest.getValue();
+			iterator.remove();
+			log.info("Step cache: evicted entry " + eldest.getKey() + ".");
+		}
+
+	}
+
+	public synchronized long getSize() {
+		return size;
+	}
+
+	public synchronized int getEntries() {
+		return entries.size();
+	}
+
+	public synchronized boolean contains(String fingerprint) {
+		return entries.containsKey(fingerprint);
+	}
+
+	private boolean isHdfsParameter(CloudgeneContext context, String name) {
+		CloudgeneParameterInput input = getInputParameter(context, name);
+		if (input != null) {
+			return input.getType() == WdlParameterInputType.HDFS_FILE
+					|| input.getType() == WdlParameterInputType.HDFS_FOLDER;
+		}
+		CloudgeneParameterOutput output = getOutputParameter(context, name);
+		if (output != null) {
+			return output.getType() == WdlParameterOutputType.HDFS_FILE
+					|| output.getType() == WdlParameterOutputType.HDFS_FOLDER;
+		}
+		return false;
+	}
+
+	private boolean isLocalParameter(CloudgeneContext context, String name) {
+		CloudgeneParameterInput input = getInputParameter(context, name);
+		if (input != null) {
+			return input.getType() == WdlParameterInputType.LOCAL_FILE
+					|| input.getType() == WdlParameterInputType.LOCAL_FOLDER;
+		}
+		CloudgeneParameterOutput output = getOutputParameter(context, name);
+		if (output != null) {
+			return output.getType() == WdlParameterOutputType.LOCAL_FILE
+					|| output.getType() == WdlParameterOutputType.LOCAL_FOLDER;
+		}
+		return false;
+	}
+
+	private CloudgeneParameterInput getInputParameter(CloudgeneContext context, String name) {
+		for (CloudgeneParameterInput param : context.getJob().getInputParams()) {
+			if (param.getName().equals(name)) {
+				return param;
+			}
+		}
+		return null;
+	}
+
+	private CloudgeneParameterOutput getOutputParameter(CloudgeneContext context, String name) {
+		for (CloudgeneParameterOutput param : context.getJob().getOutputParams()) {
+			if (param.getName().equals(name)) {
+				return param;
+			}
+		}
+		return null;
+	}
+
+	private void updateLocal(MessageDigest digest, File file) throws IOException {
+
+		if (!file.exists()) {
+			update(digest, "missing", file.getName());
+			return;
+		}
+
+		if (file.isDirectory()) {
+			File[] children = file.listFiles();
+			if (children != null) {
+				Arrays.sort(children);
+				for (File child : children) {
+					update(digest, "name", child.getName());
+					updateLocal(digest, child);
+				}
+			}
+			return;
+		}
+
+		byte[] buffer = new byte[64 * 1024];
+		try (InputStream in = new FileInputStream(file)) {
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				digest.update(buffer, 0, read);
+			}
+		}
+
+	}
+
+	private void updateHdfs(MessageDigest digest, String value) throws IOException {
+
+		FileSystem fileSystem = HdfsUtil.getFileSystem();
+		org.apache.hadoop.fs.Path hdfsPath = new org.apache.hadoop.fs.Path(HdfsUtil.makeAbsolute(value));
+
+		if (!fileSystem.exists(hdfsPath)) {
+			update(digest, "missing", value);
+			return;
+		}
+
+		// file content is not read, length, modification time and checksum
+		// (if provided by the file system) identify a file.
+		List<FileStatus> files = new Vector<FileStatus>();
+		FileStatus status = fileSystem.getFileStatus(hdfsPath);
+		if (status.isDirectory()) {
+			files.addAll(Arrays.asList(fileSystem.listStatus(hdfsPath)));
+		} else {
+			files.add(status);
+		}
+		files.sort((a, b) -> a.getPath().getName().compareTo(b.getPath().getName()));
+
+		for (FileStatus file : files) {
+			update(digest, "name", file.getPath().getName());
+			update(digest, "length", Long.toString(file.getLen()));
+			update(digest, "modified", Long.toString(file.getModificationTime()));
+			if (file.isFile()) {
+				FileChecksum checksum = fileSystem.getFileChecksum(file.getPath());
+				if (checksum != null) {
+					digest.update(checksum.getBytes());
+				}
+			}
+		}
+
+	}
+
+	private static void update(MessageDigest digest, String key, String value) {
+		digest.update(key.getBytes());
+		digest.update((byte) 0);
+		digest.update(value.getBytes());
+		digest.update((byte) 0);
+	}
+
+	private static MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance("MD5");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String toHex(byte[] bytes) {
+		StringBuilder builder = new StringBuilder();
+		for (byte b : bytes) {
+			builder.append(String.format("%02x", b));
+		}
+		return builder.toString();
+	}
+
+	private static void copy(Path source, Path target) throws IOException {
+		try (Stream<Path> files = Files.walk(source)) {
+			for (Path file : (Iterable<Path>) files::iterator) {
+				Path destination = target.resolve(source.relativize(file).toString());
+				if (Files.isDirectory(file)) {
+					Files.createDirectories(destination);
+				} else {
+					Files.copy(file, destination, StandardCopyOption.REPLACE_EXISTING);
+				}
+			}
+		}
+	}
+
+	private static long getSize(Path folder) {
+		try (Stream<Path> files = Files.walk(folder)) {
+			return files.filter(Files::isRegularFile).mapToLong(file -> file.toFile().length()).sum();
+		} catch (IOException e) {
+			return 0;
+		}
+	}
+
+}
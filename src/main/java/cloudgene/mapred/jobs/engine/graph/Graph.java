@@ -1,16 +1,37 @@
 package cloudgene.mapred.jobs.engine.graph;
 
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeSet;
 import java.util.Vector;
 
 import cloudgene.mapred.jobs.CloudgeneContext;
 import cloudgene.mapred.wdl.WdlParameter;
 
+/**
+ * DAG of workflow steps. Edges are stored in per-node adjacency maps, degree
+ * queries and connection checks need constant time. Nodes without incoming
+ * edges are kept in a ready set ordered by insertion, removing a node moves
+ * all nodes that depended only on it to this set.
+ */
 public class Graph {
 
-	private List<GraphNode> nodes;
+	private Map<GraphNode, Integer> nodes;
 
-	private List<GraphEdge> edges;
+	private Map<GraphNode, Map<GraphNode, GraphEdge>> outgoing;
+
+	private Map<GraphNode, Map<GraphNode, GraphEdge>> incoming;
+
+	private TreeSet<GraphNode> ready;
+
+	private int edges = 0;
+
+	private int index = 0;
 
 	private CloudgeneContext context;
 
@@ -18,8 +39,15 @@ public class Graph {
 
 		this.context = context;
 
-		nodes = new Vector<GraphNode>();
-		edges = new Vector<GraphEdge>();
+		nodes = new LinkedHashMap<GraphNode, Integer>();
+		outgoing = new HashMap<GraphNode, Map<GraphNode, GraphEdge>>();
+		incoming = new HashMap<GraphNode, Map<GraphNode, GraphEdge>>();
+		ready = new TreeSet<GraphNode>(new Comparator<GraphNode>() {
+			@Override
+			public int compare(GraphNode o1, GraphNode o2) {
+				return Integer.compare(nodes.get(o1), nodes.get(o2));
+			}
+		});
 
 	}
 
@@ -28,86 +56,97 @@ public class Graph {
 	}
 
 	public List<GraphNode> getNodes() {
-		return nodes;
+		return new Vector<GraphNode>(nodes.keySet());
 	}
 
 	public List<GraphEdge> getEdges() {
-		return edges;
+		List<GraphEdge> result = new Vector<GraphEdge>();
+		for (GraphNode node : nodes.keySet()) {
+			result.addAll(outgoing.get(node).values());
+		}
+		return result;
 	}
 
 	public void connect(GraphNode source, GraphNode target, WdlParameter param) {
+
+		if (!nodes.containsKey(source) || !nodes.containsKey(target)) {
+			throw new IllegalArgumentException("Nodes have to be added to the graph before they can be connected.");
+		}
+
+		if (areConnected(source, target)) {
+			return;
+		}
+
 		GraphEdge edge = new GraphEdge(source, target, param);
-		edges.add(edge);
+		outgoing.get(source).put(target, edge);
+		incoming.get(target).put(source, edge);
+		ready.remove(target);
+		edges++;
 	}
 
 	public boolean areConnected(GraphNode source, GraphNode target) {
-		for (GraphEdge edge : edges) {
-			if (edge.getSource() == source && edge.getTarget() == target) {
-				return true;
-			}
-		}
-		return false;
+		Map<GraphNode, GraphEdge> targets = outgoing.get(source);
+		return targets != null && targets.containsKey(target);
 	}
 
 	public boolean remove(GraphNode node) {
 
-		List<GraphEdge> remove = new Vector<GraphEdge>();
+		if (!nodes.containsKey(node)) {
+			return false;
+		}
 
-		nodes.remove(node);
-		for (GraphEdge edge : edges) {
-			if (edge.getSource() == node || edge.getTarget() == node) {
-				remove.add(edge);
+		for (GraphNode target : outgoing.get(node).keySet()) {
+			Map<GraphNode, GraphEdge> sources = incoming.get(target);
+			sources.remove(node);
+			edges--;
+			if (sources.isEmpty()) {
+				ready.add(target);
 			}
 		}
-		edges.removeAll(remove);
-
-		return true;
-	}
-
-	public int getInDegree(GraphNode node) {
-		int degree = 0;
 
-		for (GraphEdge edge : edges) {
-			if (edge.getTarget() == node) {
-				degree++;
-			}
+		for (GraphNode source : incoming.get(node).keySet()) {
+			outgoing.get(source).remove(node);
+			edges--;
 		}
 
-		return degree;
+		ready.remove(node);
+		outgoing.remove(node);
+		incoming.remove(node);
+		nodes.remove(node);
 
+		return true;
 	}
 
-	public int getOutDegree(GraphNode node) {
-		int degree = 0;
+	/**
+	 * @return all nodes that depend directly on the node.
+	 */
+	public List<GraphNode> getSuccessors(GraphNode node) {
+		Map<GraphNode, GraphEdge> targets = outgoing.get(node);
+		return targets != null ? new Vector<GraphNode>(targets.keySet()) : new Vector<GraphNode>();
+	}
 
-		for (GraphEdge edge : edges) {
-			if (edge.getSource() == node) {
-				degree++;
-			}
-		}
+	public int getInDegree(GraphNode node) {
+		Map<GraphNode, GraphEdge> sources = incoming.get(node);
+		return sources != null ? sources.size() : 0;
+	}
 
-		return degree;
+	public int getOutDegree(GraphNode node) {
+		Map<GraphNode, GraphEdge> targets = outgoing.get(node);
+		return targets != null ? targets.size() : 0;
 	}
 
+	/**
+	 * @return all nodes without incoming edges in insertion order.
+	 */
 	public List<GraphNode> getSources() {
-
-		List<GraphNode> sources = new Vector<GraphNode>();
-
-		for (GraphNode node : nodes) {
-			if (getInDegree(node) == 0) {
-				sources.add(node);
-			}
-		}
-
-		return sources;
-
+		return new Vector<GraphNode>(ready);
 	}
 
 	public List<GraphNode> getTargets() {
 
 		List<GraphNode> targets = new Vector<GraphNode>();
 
-		for (GraphNode node : nodes) {
+		for (GraphNode node : nodes.keySet()) {
 			if (getOutDegree(node) == 0) {
 				targets.add(node);
 			}
@@ -120,8 +159,52 @@ public class Graph {
 		return nodes.size();
 	}
 
+	public int getEdgeCount() {
+		return edges;
+	}
+
 	public void addNode(GraphNode node) {
-		nodes.add(node);
+		if (nodes.containsKey(node)) {
+			return;
+		}
+		nodes.put(node, index++);
+		outgoing.put(node, new LinkedHashMap<GraphNode, GraphEdge>());
+		incoming.put(node, new LinkedHashMap<GraphNode, GraphEdge>());
+		ready.add(node);
+	}
+
+	/**
+	 * Checks with Kahn's algorithm if all nodes can be ordered topologically.
+	 *
+	 * @return true if the graph contains at least one cycle.
+	 */
+	public boolean hasCycle() {
+
+		Map<GraphNode, Integer> degrees = new HashMap<GraphNode, Integer>();
+		Queue<GraphNode> sources = new ArrayDeque<GraphNode>();
+
+		for (GraphNode node : nodes.keySet()) {
+			int degree = getInDegree(node);
+			degrees.put(node, degree);
+			if (degree == 0) {
+				sources.add(node);
+			}
+		}
+
+		int visited = 0;
+		while (!sources.isEmpty()) {
+			GraphNode node = sources.poll();
+			visited++;
+			for (GraphNode target : outgoing.get(node).keySet()) {
+				int degree = degrees.get(target) - 1;
+				degrees.put(target, degree);
+				if (degree == 0) {
+					sources.add(target);
+				}
+			}
+		}
+
+		return visited != nodes.size();
 	}
 
 }
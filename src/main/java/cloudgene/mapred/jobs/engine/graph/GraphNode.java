@@ -55,6 +55,9 @@ public class GraphNode implements Runnable {
 
 	private String id = "";
 
+	// fingerprint of the step cache, computed once per node
+	private String fingerprint = null;
+
 	public GraphNode(WdlStep step, CloudgeneContext context)
 			throws MalformedURLException, ClassNotFoundException, InstantiationException, IllegalAccessException {
 		this.step = step;
@@ -65,6 +68,21 @@ public class GraphNode implements Runnable {
 		instance();
 	}
 
+	/**
+	 * Creates a node without a step instance. Used to test and benchmark
+	 * graphs.
+	 */
+	GraphNode(WdlStep step) {
+		this.step = step;
+		inputs = new Vector<String>();
+		outputs = new Vector<String>();
+		id = step.getName().toLowerCase().replace(" ", "_");
+	}
+
+	public String getId() {
+		return id;
+	}
+
 	public WdlStep getStep() {
 		return step;
 	}
@@ -255,4 +273,12 @@ public class GraphNode implements Runnable {
 		return time;
 	}
 
+	public void setFingerprint(String fingerprint) {
+		this.fingerprint = fingerprint;
+	}
+
+	public String getFingerprint() {
+		return fingerprint;
+	}
+
 }
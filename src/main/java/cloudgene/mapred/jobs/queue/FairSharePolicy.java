@@ -0,0 +1,136 @@
+package cloudgene.mapred.jobs.queue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import cloudgene.mapred.core.User;
+import cloudgene.mapred.jobs.AbstractJob;
+import cloudgene.mapred.util.Settings;
+
+/**
+ * Weighted fair share between users (start-time fair queuing). Every user has
+ * a virtual clock that advances by 1 / weight for each submitted job. A new job
+ * gets the current clock of its user as priority, but never less than the
+ * priority of the last started job. Users with many waiting jobs are therefore
+ * interleaved with other users instead of blocking them.
+ * 
+ * The weight of a user is the highest weight of its groups (default 1). In
+ * addition, a user can run at most maxRunningSlotsPerUser jobs at the same
+ * time. Weights and limit are read from the settings on every decision and
+ * can be changed at runtime.
+ */
+public class FairSharePolicy implements SchedulingPolicy {
+
+	public static final long COST = 1000;
+
+	private Settings settings;
+
+	// priority of the last started job
+	private long virtualTime = 1;
+
+	private Map<String, Long> finishTags = new HashMap<String, Long>();
+
+	private Map<String, Integer> running = new HashMap<String, Integer>();
+
+	private static final Log log = LogFactory.getLog(FairSharePolicy.class);
+
+	public FairSharePolicy(Settings settings) {
+		this.settings = settings;
+	}
+
+	@Override
+	public synchronized long getPriority(PriorityRunnable runnable) {
+
+		User user = getUser(runnable);
+		if (user == null) {
+			return runnable.getPriority();
+		}
+
+		Long finishTag = finishTags.get(user.getUsername());
+		long start = finishTag != null ? Math.max(virtualTime, finishTag) : virtualTime;
+		finishTags.put(user.getUsername(), start + COST / getWeight(user));
+
+		return start;
+
+	}
+
+	@Override
+	public synchronized boolean acquire(PriorityRunnable runnable) {
+
+		User user = getUser(runnable);
+		if (user == null) {
+			return true;
+		}
+
+		Integer slots = running.get(user.getUsername());
+		int maxSlots = settings.getMaxRunningSlotsPerUser();
+		if (maxSlots > 0 && slots != null && slots >= maxSlots) {
+			return false;
+		}
+
+		running.put(user.getUsername(), slots != null ? slots + 1 : 1);
+		virtualTime = Math.max(virtualTime, runnable.getPriority());
+		return true;
+
+	}
+
+	@Override
+	public synchronized void release(PriorityRunnable runnable) {
+
+		User user = getUser(runnable);
+		if (user == null) {
+			return;
+		}
+
+		Integer slots = running.get(user.getUsername());
+		if (slots == null || slots <= 1) {
+			running.remove(user.getUsername());
+			// idle users start at the virtual time, no need to remember them
+			Long finishTag = finishTags.get(user.getUsername());
+			if (finishTag != null && finishTag <= virtualTime) {
+				finishTags.remove(user.getUsername());
+			}
+		} else {
+			running.put(user.getUsername(), slots - 1);
+		}
+
+	}
+
+	public synchronized int getRunningSlots(User user) {
+		Integer slots = running.get(user.getUsername());
+		return slots != null ? slots : 0;
+	}
+
+	public int getWeight(User user) {
+
+		int weight = 1;
+		Map<String, String> weights = settings.getSchedulerWeights();
+		if (weights == null) {
+			return weight;
+		}
+
+		for (Map.Entry<String, String> entry : weights.entrySet()) {
+			if (entry.getValue() == null || !user.hasRole(entry.getKey())) {
+				continue;
+			}
+			try {
+				weight = Math.max(weight, Integer.parseInt(entry.getValue().trim()));
+			} catch (NumberFormatException e) {
+				log.warn("Invalid scheduler weight for group '" + entry.getKey() + "': " + entry.getValue());
+			}
+		}
+		return weight;
+
+	}
+
+	private User getUser(PriorityRunnable runnable) {
+		if (runnable instanceof AbstractJob) {
+			return ((AbstractJob) runnable).getUser();
+		}
+		return null;
+	}
+
+}
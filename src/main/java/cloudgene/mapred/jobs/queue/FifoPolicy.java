@@ -0,0 +1,24 @@
+package cloudgene.mapred.jobs.queue;
+
+/**
+ * Executes runnables in the order of their priority (the global submit
+ * counter of the workflow engine) without any limits.
+ */
+public class FifoPolicy implements SchedulingPolicy {
+
+	@Override
+	public long getPriority(PriorityRunnable runnable) {
+		return runnable.getPriority();
+	}
+
+	@Override
+	public boolean acquire(PriorityRunnable runnable) {
+		return true;
+	}
+
+	@Override
+	public void release(PriorityRunnable runnable) {
+
+	}
+
+}
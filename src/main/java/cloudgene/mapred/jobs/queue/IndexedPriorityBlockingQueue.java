@@ -0,0 +1,373 @@
+package cloudgene.mapred.jobs.queue;
+
+import java.util.AbstractQueue;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Blocking binary heap with an index from element to heap slot. Insert,
+ * remove of an arbitrary element and reprioritization are O(log n).
+ * Elements are ordered by their natural order (if they are comparable) and
+ * by insertion order for equal elements. An optional admission skips elements
+ * that are not allowed to start yet when taking the next element.
+ */
+public class IndexedPriorityBlockingQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable> {
+
+	private Node[] heap = new Node[16];
+
+	private int size = 0;
+
+	private Map<Runnable, Node> index = new HashMap<Runnable, Node>();
+
+	private long sequence = 0;
+
+	private ReentrantLock lock = new ReentrantLock();
+
+	private Condition notEmpty = lock.newCondition();
+
+	private volatile Admission admission;
+
+	public interface Admission {
+
+		public boolean acquire(Runnable element);
+
+	}
+
+	public void setAdmission(Admission admission) {
+		this.admission = admission;
+	}
+
+	/**
+	 * Wakes up all waiting consumers, e.g. after the admission of skipped
+	 * elements has changed.
+	 */
+	public void signalAll() {
+		lock.lock();
+		try {
+			notEmpty.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean offer(Runnable element) {
+		if (element == null) {
+			throw new NullPointerException();
+		}
+		lock.lock();
+		try {
+			if (index.containsKey(element)) {
+				return false;
+			}
+			insert(new Node(element, sequence++));
+			notEmpty.signal();
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void put(Runnable element) {
+		offer(element);
+	}
+
+	@Override
+	public boolean offer(Runnable element, long timeout, TimeUnit unit) {
+		return offer(element);
+	}
+
+	@Override
+	public Runnable poll() {
+		lock.lock();
+		try {
+			return removeFirstAdmitted();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public Runnable take() throws InterruptedException {
+		lock.lockInterruptibly();
+		try {
+			Runnable element;
+			while ((element = removeFirstAdmitted()) == null) {
+				notEmpty.await();
+			}
+			return element;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException {
+		long nanos = unit.toNanos(timeout);
+		lock.lockInterruptibly();
+		try {
+			Runnable element;
+			while ((element = removeFirstAdmitted()) == null) {
+				if (nanos <= 0) {
+					return null;
+				}
+				nanos = notEmpty.awaitNanos(nanos);
+			}
+			return element;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public Runnable peek() {
+		lock.lock();
+		try {
+			return size == 0 ? null : heap[0].element;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean remove(Object element) {
+		lock.lock();
+		try {
+			Node node = index.get(element);
+			if (node == null) {
+				return false;
+			}
+			removeAt(node.slot);
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean contains(Object element) {
+		lock.lock();
+		try {
+			return index.containsKey(element);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Applies the change (e.g. a new priority) to the element and moves it to
+	 * its new position. The element is queued behind all elements with the
+	 * same priority.
+	 *
+	 * @return false if the element is not in the queue. The change is not
+	 *         applied in this case.
+	 */
+	public boolean update(Runnable element, Runnable change) {
+		lock.lock();
+		try {
+			Node node = index.get(element);
+			if (node == null) {
+				return false;
+			}
+			change.run();
+			node.sequence = sequence++;
+			siftDown(siftUp(node.slot));
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int size() {
+		lock.lock();
+		try {
+			return size;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int remainingCapacity() {
+		return Integer.MAX_VALUE;
+	}
+
+	@Override
+	public void clear() {
+		lock.lock();
+		try {
+			Arrays.fill(heap, 0, size, null);
+			size = 0;
+			index.clear();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int drainTo(Collection<? super Runnable> collection) {
+		return drainTo(collection, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public int drainTo(Collection<? super Runnable> collection, int maxElements) {
+		lock.lock();
+		try {
+			int count = 0;
+			while (size > 0 && count < maxElements) {
+				collection.add(removeAt(0));
+				count++;
+			}
+			return count;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Iterates over a snapshot of the queue in no particular order.
+	 */
+	@Override
+	public Iterator<Runnable> iterator() {
+		List<Runnable> snapshot = new Vector<Runnable>();
+		lock.lock();
+		try {
+			for (int i = 0; i < size; i++) {
+				snapshot.add(heap[i].element);
+			}
+		} finally {
+			lock.unlock();
+		}
+		return snapshot.iterator();
+	}
+
+	/**
+	 * Removes the first element that passes the admission. Skipped elements
+	 * keep their sequence number and therefore their position.
+	 */
+	private Runnable removeFirstAdmitted() {
+		Admission admission = this.admission;
+		if (admission == null) {
+			return size == 0 ? null : removeAt(0);
+		}
+		List<Node> skipped = new Vector<Node>();
+		try {
+			while (size > 0) {
+				Node node = heap[0];
+				removeAt(0);
+				if (admission.acquire(node.element)) {
+					return node.element;
+				}
+				skipped.add(node);
+			}
+			return null;
+		} finally {
+			for (Node node : skipped) {
+				insert(node);
+			}
+		}
+	}
+
+	private void insert(Node node) {
+		if (size == heap.length) {
+			heap = Arrays.copyOf(heap, size * 2);
+		}
+		node.slot = size;
+		heap[size] = node;
+		size++;
+		index.put(node.element, node);
+		siftUp(node.slot);
+	}
+
+	private Runnable removeAt(int slot) {
+		Node node = heap[slot];
+		index.remove(node.element);
+		size--;
+		if (slot != size) {
+			Node last = heap[size];
+			heap[size] = null;
+			heap[slot] = last;
+			last.slot = slot;
+			siftDown(siftUp(slot));
+		} else {
+			heap[size] = null;
+		}
+		return node.element;
+	}
+
+	private int siftUp(int slot) {
+		Node node = heap[slot];
+		while (slot > 0) {
+			int parent = (slot - 1) >>> 1;
+			if (compare(node, heap[parent]) >= 0) {
+				break;
+			}
+			move(heap[parent], slot);
+			slot = parent;
+		}
+		move(node, slot);
+		return slot;
+	}
+
+	private int siftDown(int slot) {
+		Node node = heap[slot];
+		int half = size >>> 1;
+		while (slot < half) {
+			int child = 2 * slot + 1;
+			int right = child + 1;
+			if (right < size && compare(heap[right], heap[child]) < 0) {
+				child = right;
+			}
+			if (compare(node, heap[child]) <= 0) {
+				break;
+			}
+			move(heap[child], slot);
+			slot = child;
+		}
+		move(node, slot);
+		return slot;
+	}
+
+	private void move(Node node, int slot) {
+		heap[slot] = node;
+		node.slot = slot;
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private int compare(Node a, Node b) {
+		if (a.element instanceof Comparable) {
+			int result = ((Comparable) a.element).compareTo(b.element);
+			if (result != 0) {
+				return result;
+			}
+		}
+		return Long.compare(a.sequence, b.sequence);
+	}
+
+	private static class Node {
+
+		private Runnable element;
+
+		private long sequence;
+
+		private int slot;
+
+		public Node(Runnable element, long sequence) {
+			this.element = element;
+			this.sequence = sequence;
+		}
+
+	}
+
+}
@@ -0,0 +1,86 @@
+package cloudgene.mapred.jobs.queue;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+
+import cloudgene.mapred.core.User;
+import cloudgene.mapred.jobs.AbstractJob;
+
+/**
+ * Concurrent index of all jobs in a queue. Jobs are indexed by id and by user
+ * id, lookups need no lock and are independent of the queue size. Jobs of a
+ * user are returned in submit order.
+ */
+public class JobRegistry {
+
+	private Map<String, AbstractJob> jobsById = new ConcurrentHashMap<String, AbstractJob>();
+
+	private ConcurrentHashMap<Integer, Set<AbstractJob>> jobsByUser = new ConcurrentHashMap<Integer, Set<AbstractJob>>();
+
+	public void add(AbstractJob job) {
+		jobsById.put(job.getId(), job);
+		if (job.getUser() != null) {
+			jobsByUser.compute(job.getUser().getId(), (id, jobs) -> {
+				if (jobs == null) {
+					jobs = Collections.synchronizedSet(new LinkedHashSet<AbstractJob>());
+				}
+				jobs.add(job);
+				return jobs;
+			});
+		}
+	}
+
+	public void remove(AbstractJob job) {
+		jobsById.remove(job.getId(), job);
+		if (job.getUser() != null) {
+			// users without jobs are removed
+			jobsByUser.computeIfPresent(job.getUser().getId(), (id, jobs) -> {
+				jobs.remove(job);
+				return jobs.isEmpty() ? null : jobs;
+			});
+		}
+	}
+
+	public AbstractJob getJobById(String id) {
+		if (id == null) {
+			return null;
+		}
+		return jobsById.get(id);
+	}
+
+	public boolean contains(AbstractJob job) {
+		return jobsById.containsKey(job.getId());
+	}
+
+	public List<AbstractJob> getJobsByUser(User user) {
+		Set<AbstractJob> jobs = jobsByUser.get(user.getId());
+		if (jobs == null) {
+			return new Vector<AbstractJob>();
+		}
+		synchronized (jobs) {
+			return new Vector<AbstractJob>(jobs);
+		}
+	}
+
+	public int countJobsByUser(User user) {
+		Set<AbstractJob> jobs = jobsByUser.get(user.getId());
+		if (jobs == null) {
+			return 0;
+		}
+		return jobs.size();
+	}
+
+	public int getSize() {
+		return jobsById.size();
+	}
+
+	int getUsers() {
+		return jobsByUser.size();
+	}
+
+}
@@ -109,6 +109,10 @@ public class PausableThreadPoolExecutor extends ThreadPoolExecutor {
             object = runnable;
         }
 
+        public Object getObject() {
+            return object;
+        }
+
         @Override
         @SuppressWarnings({ "unchecked", "rawtypes" })
         public int compareTo(ComparableFutureTask<T> o) {
@@ -1,9 +1,12 @@
 package cloudgene.mapred.jobs.queue;
 
+import java.util.Map;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableFuture;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.logging.Log;
@@ -13,30 +16,144 @@ public class PriorityThreadPoolExecutor {
 	private PausableThreadPoolExecutor executor;
 	private BlockingQueue<Runnable> queue;
 
+	// null for FIFO queues
+	private IndexedPriorityBlockingQueue priorityQueue;
+
+	// the executor queues the future tasks created by submit, not the runnables
+	private Map<PriorityRunnable, Future<?>> tasks = new ConcurrentHashMap<PriorityRunnable, Future<?>>();
+
+	private QueueListener listener;
+
+	private volatile SchedulingPolicy policy;
+
 	private static final Log log = LogFactory.getLog(PriorityThreadPoolExecutor.class);
 
 	public PriorityThreadPoolExecutor(int threads, boolean priority) {
 		if (priority) {
-			queue = new PriorityBlockingQueue<Runnable>();
+			priorityQueue = new IndexedPriorityBlockingQueue();
+			queue = priorityQueue;
 		} else {
 			queue = new LinkedBlockingQueue<Runnable>();
 
 		}
-		executor = new PausableThreadPoolExecutor(threads, threads, 10, TimeUnit.SECONDS, queue);
+		executor = new PausableThreadPoolExecutor(threads, threads, 10, TimeUnit.SECONDS, queue) {
+
+			@Override
+			protected void beforeExecute(Thread thread, Runnable runnable) {
+				super.beforeExecute(thread, runnable);
+				if (listener != null && runnable instanceof ComparableFutureTask) {
+					Object object = ((ComparableFutureTask<?>) runnable).getObject();
+					if (object instanceof PriorityRunnable) {
+						try {
+							listener.beforeExecute((PriorityRunnable) object, (Future<?>) runnable);
+						} catch (Exception e) {
+							log.warn("Before execute listener failed.", e);
+						}
+					}
+				}
+			}
+
+			@Override
+			protected void afterExecute(Runnable runnable, Throwable throwable) {
+				super.afterExecute(runnable, throwable);
+				if (runnable instanceof ComparableFutureTask) {
+					Object object = ((ComparableFutureTask<?>) runnable).getObject();
+					tasks.remove(object, runnable);
+					if (policy != null && priorityQueue != null && object instanceof PriorityRunnable) {
+						// frees the slot and re-checks skipped tasks
+						policy.release((PriorityRunnable) object);
+						priorityQueue.signalAll();
+					}
+					if (listener != null && object instanceof PriorityRunnable) {
+						try {
+							listener.afterExecute((PriorityRunnable) object, (Future<?>) runnable);
+						} catch (Exception e) {
+							log.warn("After execute listener failed.", e);
+						}
+					}
+				}
+			}
+
+		};
+	}
+
+	public void setListener(QueueListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Tasks are taken from the queue only if the policy acquires them. Needs a
+	 * priority queue.
+	 */
+	public void setPolicy(SchedulingPolicy policy) {
+		if (priorityQueue == null) {
+			throw new IllegalStateException("Scheduling policies need a priority queue.");
+		}
+		this.policy = policy;
+		priorityQueue.setAdmission(new IndexedPriorityBlockingQueue.Admission() {
+			@Override
+			public boolean acquire(Runnable element) {
+				if (element instanceof ComparableFutureTask) {
+					Object object = ((ComparableFutureTask<?>) element).getObject();
+					if (object instanceof PriorityRunnable) {
+						return policy.acquire((PriorityRunnable) object);
+					}
+				}
+				return true;
+			}
+		});
+		// otherwise the first tasks are handed to new threads without the queue
+		executor.prestartAllCoreThreads();
 	}
 
 	public Future submit(PriorityRunnable runnable) {
-		return executor.submit(runnable);
+		// registered before execute, afterExecute of a fast task removes it
+		RunnableFuture<Object> future = executor.newTaskFor(runnable, null);
+		tasks.put(runnable, future);
+		try {
+			executor.execute(future);
+		} catch (RejectedExecutionException e) {
+			tasks.remove(runnable, future);
+			throw e;
+		}
+		return future;
 	}
 
+	/**
+	 * Removes the task of the runnable from the queue. A task that was already
+	 * taken by a worker is cancelled and does not run.
+	 */
 	public void kill(PriorityRunnable runnable) {
-		executor.remove(runnable);
+		Future<?> future = tasks.remove(runnable);
+		if (future != null) {
+			executor.remove((Runnable) future);
+			future.cancel(false);
+		}
 	}
 
 	public Future resubmit(PriorityRunnable runnable) {
-		executor.remove(runnable);
-		Future future = executor.submit(runnable);
-		return future;
+		kill(runnable);
+		return submit(runnable);
+	}
+
+	/**
+	 * Changes the priority of a waiting runnable. The task is moved inside the
+	 * heap in O(log n) and the future stays the same.
+	 *
+	 * @return null if the runnable is not waiting anymore.
+	 */
+	public Future updatePriority(PriorityRunnable runnable, long priority) {
+		if (priorityQueue == null) {
+			runnable.setPriority(priority);
+			return resubmit(runnable);
+		}
+		Future<?> future = tasks.get(runnable);
+		if (future == null) {
+			return null;
+		}
+		boolean updated = priorityQueue.update((Runnable) future,
+				() -> runnable.setPriority(priority));
+		return updated ? future : null;
 	}
 
 	public boolean isRunning() {
@@ -57,6 +174,7 @@ public class PriorityThreadPoolExecutor {
 
 	public void clear() {
 		queue.clear();
+		tasks.clear();
 	}
 
 	public boolean isEmpty() {
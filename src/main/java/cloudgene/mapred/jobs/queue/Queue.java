@@ -3,9 +3,16 @@ package cloudgene.mapred.jobs.queue;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -13,22 +20,49 @@ import org.apache.commons.logging.LogFactory;
 import cloudgene.mapred.core.User;
 import cloudgene.mapred.jobs.AbstractJob;
 
-public abstract class Queue implements Runnable {
+public abstract class Queue implements Runnable, QueueListener {
 
 	private List<AbstractJob> queue;
 
+	private JobRegistry registry;
+
 	private HashMap<AbstractJob, Future<?>> futures;
 
 	private HashMap<AbstractJob, PriorityRunnable> runnables;
 
+	private HashMap<Future<?>, AbstractJob> jobsByFuture;
+
+	// submit order, used for jobs with the same priority
+	private HashMap<AbstractJob, Long> sequences;
+
+	private long sequence = 0;
+
+	// jobs taken by a worker. they are kept in front of all jobs that were not
+	// started yet, also if a policy starts them out of order.
+	private Set<AbstractJob> started;
+
 	private PriorityThreadPoolExecutor scheduler;
 
+	private SchedulingPolicy policy = new FifoPolicy();
+
 	private String name = "";
 
 	private boolean updatePositions = false;
 
 	private boolean priority = false;
 
+	private BlockingQueue<Future<?>> finished = new LinkedBlockingQueue<Future<?>>();
+
+	private Map<PriorityRunnable, Long> submittedOn = new ConcurrentHashMap<PriorityRunnable, Long>();
+
+	private AtomicLong startedJobs = new AtomicLong();
+
+	private AtomicLong totalWaitTime = new AtomicLong();
+
+	private AtomicLong maxWaitTime = new AtomicLong();
+
+	private AtomicLong lastWaitTime = new AtomicLong();
+
 	private static final Log log = LogFactory.getLog(Queue.class);
 
 	public Queue(String name, int threads, boolean updatePositions, boolean priority) {
@@ -37,8 +71,13 @@ public abstract class Queue implements Runnable {
 		this.priority = priority;
 		futures = new HashMap<AbstractJob, Future<?>>();
 		runnables = new HashMap<AbstractJob, PriorityRunnable>();
+		jobsByFuture = new HashMap<Future<?>, AbstractJob>();
+		sequences = new HashMap<AbstractJob, Long>();
+		started = new HashSet<AbstractJob>();
 		queue = new Vector<AbstractJob>();
+		registry = new JobRegistry();
 		scheduler = new PriorityThreadPoolExecutor(threads, priority);
+		scheduler.setListener(this);
 	}
 
 	public void submit(AbstractJob job) {
@@ -48,20 +87,26 @@ public abstract class Queue implements Runnable {
 			synchronized (queue) {
 
 				PriorityRunnable runnable = createRunnable(job);
+				if (priority) {
+					job.setPriority(policy.getPriority(runnable));
+				}
 				runnables.put(job, runnable);
+				sequences.put(job, sequence++);
+				submittedOn.put(runnable, System.currentTimeMillis());
 
 				Future<?> future = scheduler.submit(runnable);
 				futures.put(job, future);
-				queue.add(job);
-				log.info(name + ": Submit job" + (priority ? " (P: " + job.getPriority() + ")" : "") + "...");
+				jobsByFuture.put(future, job);
 
-				if (priority) {
-					// sorty by state and by priority
-					Collections.sort(queue, new PriorityComparator());
-				}
+				// jobs with the lowest priority are appended. only the positions
+				// of jobs behind the new job change.
+				int index = priority ? getInsertionIndex(job) : queue.size();
+				queue.add(index, job);
+				registry.add(job);
+				log.info(name + ": Submit job" + (priority ? " (P: " + job.getPriority() + ")" : "") + "...");
 
 				if (updatePositions) {
-					updatePositionInQueue();
+					updatePositionInQueue(index);
 				}
 
 			}
@@ -94,9 +139,16 @@ public abstract class Queue implements Runnable {
 			synchronized (futures) {
 
 				synchronized (queue) {
+
+					// job was moved to an other queue in the meantime
+					if (!queue.contains(job)) {
+						return;
+					}
+
 					PriorityRunnable runnable = runnables.get(job);
 					if (runnable != null) {
 						scheduler.kill(runnable);
+						submittedOn.remove(runnable);
 					}
 					if (job.getSetupStartTime() > 0 && job.getSetupEndTime() == 0){
 						job.setSetupEndTime(System.currentTimeMillis());
@@ -104,7 +156,11 @@ public abstract class Queue implements Runnable {
 					
 					job.cancel();
 					queue.remove(job);
-					futures.remove(job);
+					started.remove(job);
+					registry.remove(job);
+					jobsByFuture.remove(futures.remove(job));
+					runnables.remove(job);
+					sequences.remove(job);
 					onComplete(job);
 					log.info(name + ": Cancel Job...");
 
@@ -122,37 +178,45 @@ public abstract class Queue implements Runnable {
 	@Override
 	public void run() {
 
-		List<AbstractJob> complete = new Vector<AbstractJob>();
-
 		while (true) {
+
+			Future<?> future = null;
+			try {
+				future = finished.take();
+			} catch (InterruptedException e) {
+				log.info(name + ": Interrupted.");
+				return;
+			}
+
 			try {
 
 				synchronized (futures) {
 
 					synchronized (queue) {
 
-						complete.clear();
-
-						for (AbstractJob job : futures.keySet()) {
-							Future<?> future = futures.get(job);
-							if (future.isDone() || future.isCancelled()) {
-								log.info(name + ": Job " + job.getId() + ": finished");
-								queue.remove(job);
-								complete.add(job);
-							}
+						AbstractJob job = jobsByFuture.get(future);
 
+						// job was canceled or resubmitted. future is stale.
+						if (job == null) {
+							continue;
 						}
 
-						for (AbstractJob job : complete) {
-							try {
-								onComplete(job);
-							} catch (Exception e) {
-								log.warn(name + ": Job " + job.getId() + ": On complete failed. ", e);
-							}
-							futures.remove(job);
-							if (updatePositions) {
-								updatePositionInQueue();
-							}
+						log.info(name + ": Job " + job.getId() + ": finished");
+						queue.remove(job);
+						started.remove(job);
+
+						try {
+							onComplete(job);
+						} catch (Exception e) {
+							log.warn(name + ": Job " + job.getId() + ": On complete failed. ", e);
+						}
+						jobsByFuture.remove(futures.remove(job));
+						runnables.remove(job);
+						sequences.remove(job);
+						// remove after onComplete: job is always found in one queue
+						registry.remove(job);
+						if (updatePositions) {
+							updatePositionInQueue();
 						}
 
 					}
@@ -162,12 +226,96 @@ public abstract class Queue implements Runnable {
 				log.warn(name + ": Concurrency Exception!! ", e);
 			}
 
-			try {
-				Thread.sleep(5000);
-			} catch (InterruptedException e) {
-				e.printStackTrace();
+		}
+	}
+
+	@Override
+	public void beforeExecute(PriorityRunnable runnable, Future<?> future) {
+
+		if (future.isCancelled()) {
+			return;
+		}
+
+		Long submitted = submittedOn.remove(runnable);
+		if (submitted != null) {
+			long waitTime = System.currentTimeMillis() - submitted;
+			startedJobs.incrementAndGet();
+			totalWaitTime.addAndGet(waitTime);
+			lastWaitTime.set(waitTime);
+			maxWaitTime.accumulateAndGet(waitTime, Math::max);
+		}
+
+		synchronized (futures) {
+
+			synchronized (queue) {
+
+				AbstractJob job = jobsByFuture.get(future);
+				if (job == null || started.contains(job)) {
+					return;
+				}
+
+				// moves the job behind the other started jobs
+				int index = Collections.binarySearch(queue, job, new PriorityComparator());
+				if (index < 0) {
+					index = queue.indexOf(job);
+				}
+				if (index == -1) {
+					return;
+				}
+				queue.remove(index);
+				started.add(job);
+				queue.add(started.size() - 1, job);
+
+				if (updatePositions) {
+					updatePositionInQueue(started.size() - 1);
+				}
+
 			}
+
+		}
+
+	}
+
+	@Override
+	public void afterExecute(PriorityRunnable runnable, Future<?> future) {
+		finished.offer(future);
+	}
+
+	public long getStartedJobs() {
+		return startedJobs.get();
+	}
+
+	/**
+	 * @return average time in ms between submit and start of a job.
+	 */
+	public long getAverageWaitTime() {
+		long count = startedJobs.get();
+		if (count == 0) {
+			return 0;
 		}
+		return totalWaitTime.get() / count;
+	}
+
+	public long getMaxWaitTime() {
+		return maxWaitTime.get();
+	}
+
+	public long getLastWaitTime() {
+		return lastWaitTime.get();
+	}
+
+	/**
+	 * Replaces the default FIFO order. Has to be set before the first job is
+	 * submitted.
+	 */
+	public void setPolicy(SchedulingPolicy policy) {
+		log.info(name + ": Scheduling policy " + policy.getClass().getSimpleName());
+		this.policy = policy;
+		scheduler.setPolicy(policy);
+	}
+
+	public SchedulingPolicy getPolicy() {
+		return policy;
 	}
 
 	public void pause() {
@@ -189,22 +337,11 @@ public abstract class Queue implements Runnable {
 	}
 
 	public List<AbstractJob> getJobsByUser(User user) {
+		return registry.getJobsByUser(user);
+	}
 
-		List<AbstractJob> result = new Vector<AbstractJob>();
-
-		synchronized (queue) {
-
-			for (AbstractJob job : queue) {
-
-				if (job.getUser().getId() == user.getId()) {
-					result.add(job);
-				}
-
-			}
-
-		}
-
-		return result;
+	public int countJobsByUser(User user) {
+		return registry.countJobsByUser(user);
 	}
 
 	public List<AbstractJob> getAllJobs() {
@@ -225,34 +362,58 @@ public abstract class Queue implements Runnable {
 	}
 
 	public AbstractJob getJobById(String id) {
+		return registry.getJobById(id);
+	}
 
+	protected void updatePositionInQueue() {
 		synchronized (queue) {
-
+			int position = 0;
 			for (AbstractJob job : queue) {
-
-				if (job.getId().equals(id)) {
-					return job;
+				job.setPositionInQueue(position);
+				if (!started.contains(job)) {
+					position++;
 				}
-
 			}
-
 		}
-
-		return null;
 	}
 
-	protected void updatePositionInQueue() {
+	/**
+	 * Updates the positions of all jobs starting at the given index. Started
+	 * jobs are always in front of the jobs that were not started yet.
+	 */
+	protected void updatePositionInQueue(int from) {
 		synchronized (queue) {
-			int position = 0;
-			for (AbstractJob job : queue) {
-				job.setPositionInQueue(position);
-				if (job.getState() == AbstractJob.STATE_WAITING) {
-					position++;
+			int firstWaiting = started.size();
+			for (int i = from; i < queue.size(); i++) {
+				AbstractJob job = queue.get(i);
+				if (i >= firstWaiting) {
+					job.setPositionInQueue(i - firstWaiting);
+				} else {
+					job.setPositionInQueue(0);
 				}
 			}
 		}
 	}
 
+	/**
+	 * Binary search for the index behind all jobs that are scheduled before the
+	 * given job.
+	 */
+	private int getInsertionIndex(AbstractJob job) {
+		PriorityComparator comparator = new PriorityComparator();
+		int low = 0;
+		int high = queue.size();
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (comparator.compare(queue.get(middle), job) <= 0) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
 	public boolean updatePriority(AbstractJob job, long priority) {
 		log.info("Update priority");
 		if (!this.priority) {
@@ -270,39 +431,45 @@ public abstract class Queue implements Runnable {
 		synchronized (futures) {
 
 			synchronized (queue) {
+
+				PriorityRunnable runnable = runnables.get(job);
+				int oldIndex = queue.indexOf(job);
+				if (runnable == null || oldIndex == -1) {
+					return false;
+				}
+
+				// moves the waiting task inside the heap, no resubmit
 				Future<?> oldFuture = futures.get(job);
-				if (oldFuture != null) {
-					oldFuture.cancel(false);
+				Future<?> future = scheduler.updatePriority(runnable, priority);
+				if (future == null) {
+					return false;
 				}
 				job.setPriority(priority);
-				Future<?> future = scheduler.resubmit(job);
-				if (future != null) {
+				if (future != oldFuture) {
+					jobsByFuture.remove(oldFuture);
+					jobsByFuture.put(future, job);
 					futures.put(job, future);
-					log.info(name + ": Update priority of " + job.getId()
-							+ (this.priority ? " (P: " + job.getPriority() + ")" : "") + "...");
+				}
+				sequences.put(job, sequence++);
+				log.info(name + ": Update priority of " + job.getId()
+						+ (this.priority ? " (P: " + job.getPriority() + ")" : "") + "...");
 
-					// sorty by state and by priority
-					Collections.sort(queue, new PriorityComparator());
+				queue.remove(oldIndex);
+				int index = getInsertionIndex(job);
+				queue.add(index, job);
 
-					if (updatePositions) {
-						updatePositionInQueue();
-					}
-					return true;
+				if (updatePositions) {
+					updatePositionInQueue(Math.min(oldIndex, index));
 				}
+				return true;
 
 			}
 		}
-		return false;
 
 	}
 
 	public boolean isInQueue(AbstractJob job) {
-
-		synchronized (queue) {
-
-			return queue.contains(job);
-
-		}
+		return registry.contains(job);
 	}
 
 	protected class PriorityComparator implements Comparator<AbstractJob> {
@@ -310,16 +477,15 @@ public abstract class Queue implements Runnable {
 		@Override
 		public int compare(AbstractJob o1, AbstractJob o2) {
 
-			if (o1.getState() != o2.getState()) {
-				if (o1.getState() == AbstractJob.STATE_RUNNING) {
-					return -1;
-				} else {
-					return 1;
-				}
+			boolean started1 = started.contains(o1);
+			boolean started2 = started.contains(o2);
+			if (started1 != started2) {
+				// waiting jobs are always behind started jobs
+				return started1 ? -1 : 1;
 			}
 
 			if (o1.getPriority() == o2.getPriority()) {
-				return 0;
+				return Long.compare(getSequence(o1), getSequence(o2));
 			} else {
 				if (o1.getPriority() < o2.getPriority()) {
 					return -1;
@@ -328,6 +494,11 @@ public abstract class Queue implements Runnable {
 				}
 			}
 		}
+
+		private long getSequence(AbstractJob job) {
+			Long sequence = sequences.get(job);
+			return sequence != null ? sequence : Long.MAX_VALUE;
+		}
 	}
 
 	abstract public void onComplete(AbstractJob job);
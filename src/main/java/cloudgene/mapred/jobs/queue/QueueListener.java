@@ -0,0 +1,16 @@
+package cloudgene.mapred.jobs.queue;
+
+import java.util.concurrent.Future;
+
+/**
+ * Callbacks fired by {@link PriorityThreadPoolExecutor} on the worker thread
+ * that executes a task. The future is the instance returned by submit, which
+ * allows stale tasks (e.g. after a priority update) to be detected.
+ */
+public interface QueueListener {
+
+	public void beforeExecute(PriorityRunnable runnable, Future<?> future);
+
+	public void afterExecute(PriorityRunnable runnable, Future<?> future);
+
+}
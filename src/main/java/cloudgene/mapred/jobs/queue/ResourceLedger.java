@@ -0,0 +1,93 @@
+package cloudgene.mapred.jobs.queue;
+
+/**
+ * Cores and memory of the host that are reserved by running jobs. Requests
+ * larger than the capacity are reduced to the capacity, such jobs run alone.
+ */
+public class ResourceLedger {
+
+	private int cpus;
+
+	private int memory;
+
+	private int usedCpus = 0;
+
+	private int usedMemory = 0;
+
+	private int reservations = 0;
+
+	/**
+	 * @param cpus
+	 *            available cores
+	 * @param memory
+	 *            available memory in MB, 0 for no limit
+	 */
+	public ResourceLedger(int cpus, int memory) {
+		this.cpus = cpus;
+		this.memory = memory;
+	}
+
+	public synchronized boolean fits(int cpus, int memory) {
+		if (reservations == 0) {
+			return true;
+		}
+		return usedCpus + limitCpus(cpus) <= this.cpus && usedMemory + limitMemory(memory) <= this.memory;
+	}
+
+	/**
+	 * Returns true if a request fits next to the request of a waiting job that
+	 * holds a reservation.
+	 */
+	public synchronized boolean fits(int cpus, int memory, int reservedCpus, int reservedMemory) {
+		return usedCpus + limitCpus(cpus) + limitCpus(reservedCpus) <= this.cpus
+				&& usedMemory + limitMemory(memory) + limitMemory(reservedMemory) <= this.memory;
+	}
+
+	public synchronized boolean reserve(int cpus, int memory) {
+		if (!fits(cpus, memory)) {
+			return false;
+		}
+		usedCpus += limitCpus(cpus);
+		usedMemory += limitMemory(memory);
+		reservations++;
+		return true;
+	}
+
+	public synchronized void release(int cpus, int memory) {
+		usedCpus = Math.max(0, usedCpus - limitCpus(cpus));
+		usedMemory = Math.max(0, usedMemory - limitMemory(memory));
+		reservations = Math.max(0, reservations - 1);
+	}
+
+	private int limitCpus(int cpus) {
+		return Math.min(Math.max(cpus, 0), this.cpus);
+	}
+
+	private int limitMemory(int memory) {
+		if (this.memory <= 0) {
+			return 0;
+		}
+		return Math.min(Math.max(memory, 0), this.memory);
+	}
+
+	public int getCpus() {
+		return cpus;
+	}
+
+	public int getMemory() {
+		return memory;
+	}
+
+	public synchronized int getUsedCpus() {
+		return usedCpus;
+	}
+
+	public synchronized int getUsedMemory() {
+		return usedMemory;
+	}
+
+	public synchronized int getReservations() {
+		return reservations;
+	}
+
+}
@@ -0,0 +1,129 @@
+package cloudgene.mapred.jobs.queue;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import cloudgene.mapred.jobs.AbstractJob;
+
+/**
+ * Admits a job only if its declared cores and memory fit into the free
+ * capacity of the ledger. The order of the jobs is defined by the wrapped
+ * policy. Jobs behind a job that does not fit are started if they fit
+ * (backfilling).
+ * 
+ * A job that did not fit for longer than maxBackfillTime gets a reservation.
+ * Other jobs are only started if they fit next to its request, so the free
+ * capacity grows until the reserved job can start.
+ */
+public class ResourcePolicy implements SchedulingPolicy {
+
+	// 10 minutes
+	public static final long MAX_BACKFILL_TIME_MS = 10 * 60 * 1000;
+
+	private SchedulingPolicy policy;
+
+	private ResourceLedger ledger;
+
+	private long maxBackfillTime;
+
+	// reserved resources of running jobs: cores and memory
+	private Map<PriorityRunnable, int[]> reservations = new HashMap<PriorityRunnable, int[]>();
+
+	// time a waiting job did not fit for the first time
+	private Map<PriorityRunnable, Long> skipped = new HashMap<PriorityRunnable, Long>();
+
+	public ResourcePolicy(SchedulingPolicy policy, ResourceLedger ledger) {
+		this(policy, ledger, MAX_BACKFILL_TIME_MS);
+	}
+
+	public ResourcePolicy(SchedulingPolicy policy, ResourceLedger ledger, long maxBackfillTime) {
+		this.policy = policy;
+		this.ledger = ledger;
+		this.maxBackfillTime = maxBackfillTime;
+	}
+
+	@Override
+	public long getPriority(PriorityRunnable runnable) {
+		return policy.getPriority(runnable);
+	}
+
+	@Override
+	public synchronized boolean acquire(PriorityRunnable runnable) {
+
+		int[] resources = getResources(runnable);
+		if (!ledger.fits(resources[0], resources[1])) {
+			if (!skipped.containsKey(runnable)) {
+				skipped.put(runnable, System.currentTimeMillis());
+			}
+			return false;
+		}
+		PriorityRunnable reserved = getReservedRunnable();
+		if (reserved != null && reserved != runnable) {
+			int[] reservedResources = getResources(reserved);
+			if (!ledger.fits(resources[0], resources[1], reservedResources[0], reservedResources[1])) {
+				return false;
+			}
+		}
+		if (!policy.acquire(runnable)) {
+			return false;
+		}
+		ledger.reserve(resources[0], resources[1]);
+		reservations.put(runnable, resources);
+		skipped.remove(runnable);
+		return true;
+
+	}
+
+	@Override
+	public synchronized void release(PriorityRunnable runnable) {
+		int[] resources = reservations.remove(runnable);
+		if (resources != null) {
+			ledger.release(resources[0], resources[1]);
+		}
+		policy.release(runnable);
+	}
+
+	/**
+	 * Returns the job with the highest priority that did not fit for longer
+	 * than maxBackfillTime, null if there is none.
+	 */
+	public synchronized PriorityRunnable getReservedRunnable() {
+		long now = System.currentTimeMillis();
+		PriorityRunnable result = null;
+		Iterator<Map.Entry<PriorityRunnable, Long>> iterator = skipped.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Map.Entry<PriorityRunnable, Long> entry = iterator.next();
+			PriorityRunnable candidate = entry.getKey();
+			// canceled jobs are never acquired
+			if (candidate instanceof AbstractJob && ((AbstractJob) candidate).getState() != AbstractJob.STATE_WAITING) {
+				iterator.remove();
+				continue;
+			}
+			if (now - entry.getValue() < maxBackfillTime) {
+				continue;
+			}
+			if (result == null || candidate.getPriority() < result.getPriority()) {
+				result = candidate;
+			}
+		}
+		return result;
+	}
+
+	public ResourceLedger getLedger() {
+		return ledger;
+	}
+
+	public SchedulingPolicy getPolicy() {
+		return policy;
+	}
+
+	private int[] getResources(PriorityRunnable runnable) {
+		if (runnable instanceof AbstractJob) {
+			AbstractJob job = (AbstractJob) runnable;
+			return new int[] { job.getRequiredCpus(), job.getRequiredMemory() };
+		}
+		return new int[] { 1, 0 };
+	}
+
+}
@@ -0,0 +1,24 @@
+package cloudgene.mapred.jobs.queue;
+
+/**
+ * Decides in which order the waiting tasks of a queue are executed and if a
+ * task can start now.
+ */
+public interface SchedulingPolicy {
+
+	/**
+	 * Returns the priority of a runnable that enters the queue. Smaller values
+	 * are executed first.
+	 */
+	public long getPriority(PriorityRunnable runnable);
+
+	/**
+	 * Called before a waiting runnable is taken from the queue. Returns false
+	 * if the runnable has to wait, e.g. because its user has no free slot.
+	 * Every acquired runnable is released after its execution.
+	 */
+	public boolean acquire(PriorityRunnable runnable);
+
+	public void release(PriorityRunnable runnable);
+
+}
@@ -5,14 +5,13 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.StringWriter;
 
-import org.apache.velocity.Template;
 import org.apache.velocity.VelocityContext;
-import org.apache.velocity.app.Velocity;
 
 import cloudgene.mapred.jobs.CloudgeneContext;
 import cloudgene.mapred.jobs.CloudgeneStep;
 import cloudgene.mapred.jobs.Message;
 import cloudgene.mapred.util.Technology;
+import cloudgene.mapred.util.TemplateCache;
 import cloudgene.mapred.wdl.WdlStep;
 import genepi.io.FileUtil;
 import genepi.io.text.LineWriter;
@@ -37,7 +36,6 @@ public class HtmlWidgetStep extends CloudgeneStep {
 			return false;
 		}
 
-		Velocity.setProperty("file.resource.loader.path", "/");
 		VelocityContext context2 = new VelocityContext();
 
 		// add input values to context
@@ -73,8 +71,7 @@ public class HtmlWidgetStep extends CloudgeneStep {
 
 			StringWriter sw = new StringWriter();
 
-			Template velocityTemplate = Velocity.getTemplate(templateFile.getAbsolutePath());
-			velocityTemplate.merge(context2, sw);
+			TemplateCache.getInstance().merge(templateFile, context2, sw);
 
 			// create html page with embeeded css and js
 
@@ -1,10 +1,12 @@
 package cloudgene.mapred.util;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 
 import cloudgene.mapred.wdl.WdlApp;
 import cloudgene.mapred.wdl.WdlReader;
-import genepi.io.FileUtil;
 
 public class Application implements Comparable<Application> {
 
@@ -24,7 +26,14 @@ public class Application implements Comparable<Application> {
 
 	private boolean enabled = true;
 
-	private String wdlContent;
+	// fingerprint of the loaded manifest
+	private String loadedFilename;
+
+	private long lastModified = -1;
+
+	private long length = -1;
+
+	private String hash;
 
 	public Application(String id, String permission, String filename) {
 		this.id = id;
@@ -60,21 +69,60 @@ public class Application implements Comparable<Application> {
 		return id;
 	}
 
-	public void loadWdlApp() throws IOException {
+	public synchronized void loadWdlApp() throws IOException {
+
+		File file = new File(getFilename());
+		loadedFilename = getFilename();
+		lastModified = file.lastModified();
+		length = file.length();
+		hash = null;
+
 		try {
-			wdlApp = WdlReader.loadAppFromFile(getFilename());
+			// file is read only once, content is used for parsing and hashing
+			String content = readContent(file);
+			hash = HashUtil.getMD5(content);
+			wdlApp = WdlReader.loadAppFromString(getFilename(), content);
 			syntaxError = false;
 			errorMessage = "";
-			wdlContent = FileUtil.readFileAsString(getFilename());
 		} catch (IOException e) {
 			syntaxError = true;
 			wdlApp = null;
 			errorMessage = e.getMessage();
-			wdlContent = FileUtil.readFileAsString(getFilename());
 			throw e;
 		}
 	}
 
+	/**
+	 * Returns true if the manifest was never loaded or differs from the loaded
+	 * version. The content is hashed only if modification time or size have
+	 * changed.
+	 */
+	public synchronized boolean isModified() {
+
+		if (loadedFilename == null || !loadedFilename.equals(getFilename())) {
+			return true;
+		}
+
+		File file = new File(getFilename());
+		if (file.lastModified() == lastModified && file.length() == length) {
+			return false;
+		}
+
+		try {
+			String newHash = HashUtil.getMD5(readContent(file));
+			if (newHash.equals(hash)) {
+				// touched but not changed
+				lastModified = file.lastModified();
+				return false;
+			}
+		} catch (IOException e) {
+			// deleted or not readable
+		}
+
+		return true;
+
+	}
+
 	public WdlApp getWdlApp() {
 		return wdlApp;
 	}
@@ -108,8 +156,7 @@ public class Application implements Comparable<Application> {
 	}
 
 	public void checkForChanges() {
-		String newWdlContent = FileUtil.readFileAsString(getFilename());
-		setChanged(!wdlContent.equals(newWdlContent));
+		setChanged(isModified());
 	}
 
 	public boolean isInstalled(String hdfsAppFolder) {
@@ -132,6 +179,10 @@ public class Application implements Comparable<Application> {
 		}
 	}
 
+	private static String readContent(File file) throws IOException {
+		return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+	}
+
 	@Override
 	public int compareTo(Application o) {
 		// sort by category
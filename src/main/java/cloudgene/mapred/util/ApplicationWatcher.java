@@ -0,0 +1,138 @@
+package cloudgene.mapred.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.Vector;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Watches the folders of all installed manifests and reloads the applications
+ * when a yaml file was created, modified or deleted. Only changed manifests
+ * are parsed again by Settings.reloadApplications.
+ */
+public class ApplicationWatcher implements Runnable {
+
+	private static final Log log = LogFactory.getLog(ApplicationWatcher.class);
+
+	// events of one installation or editor save are handled together
+	public static final long QUIET_PERIOD = 1000;
+
+	private Settings settings;
+
+	private WatchService watchService;
+
+	private Set<Path> directories = new HashSet<Path>();
+
+	private Thread thread;
+
+	public ApplicationWatcher(Settings settings) {
+		this.settings = settings;
+	}
+
+	public synchronized void start() throws IOException {
+		if (thread != null) {
+			return;
+		}
+		watchService = FileSystems.getDefault().newWatchService();
+		registerDirectories();
+		thread = new Thread(this, "ApplicationWatcher");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	public synchronized void stop() {
+		if (thread == null) {
+			return;
+		}
+		try {
+			watchService.close();
+		} catch (IOException e) {
+			log.warn("Closing watch service failed.", e);
+		}
+		thread.interrupt();
+		thread = null;
+	}
+
+	@Override
+	public void run() {
+
+		while (!Thread.currentThread().isInterrupted()) {
+
+			try {
+
+				WatchKey key = watchService.take();
+				boolean changed = handle(key);
+
+				// collect all events until the folders are quiet
+				while ((key = watchService.poll(QUIET_PERIOD, TimeUnit.MILLISECONDS)) != null) {
+					changed = handle(key) || changed;
+				}
+
+				if (changed) {
+					log.info("Manifest files changed. Reload applications...");
+					settings.reloadApplications();
+					registerDirectories();
+				}
+
+			} catch (InterruptedException | ClosedWatchServiceException e) {
+				return;
+			} catch (Exception e) {
+				log.error("Reloading applications failed.", e);
+			}
+
+		}
+
+	}
+
+	private boolean handle(WatchKey key) {
+		boolean changed = false;
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+				changed = true;
+			} else if (event.context().toString().endsWith(".yaml")) {
+				changed = true;
+			}
+		}
+		if (!key.reset()) {
+			synchronized (this) {
+				directories.remove(key.watchable());
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Registers folders of applications installed since the last call.
+	 */
+	private synchronized void registerDirectories() throws IOException {
+		List<Application> apps = new Vector<Application>(settings.getApps());
+		for (Application app : apps) {
+			if (app.getFilename() == null) {
+				continue;
+			}
+			File folder = new File(app.getFilename()).getAbsoluteFile().getParentFile();
+			if (folder == null || !folder.exists()) {
+				continue;
+			}
+			Path path = folder.toPath();
+			if (directories.add(path)) {
+				path.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+						StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,55 @@
+package cloudgene.mapred.util;
+
+import java.util.UUID;
+
+/**
+ * Transfers of downloads that were charged recently. A range that does not
+ * start at the first byte continues such a transfer and is not charged again,
+ * if it carries the token of the transfer or comes from the same client.
+ */
+public class DownloadTransfers {
+
+	public static final int MAX_SIZE = 10000;
+
+	// 30 minutes
+	public static final long TIME_TO_LIVE_MS = 30 * 60 * 1000;
+
+	// token -> path of the download
+	private static ExpiringCache<String, String> tokens = new ExpiringCache<String, String>(MAX_SIZE,
+			TIME_TO_LIVE_MS);
+
+	// client address and path of the download
+	private static ExpiringCache<String, Boolean> clients = new ExpiringCache<String, Boolean>(MAX_SIZE,
+			TIME_TO_LIVE_MS);
+
+	/**
+	 * Opens a transfer after the download was charged.
+	 * 
+	 * @return a new token that is sent with the ETag of the response.
+	 */
+	public static String open(String path, String client) {
+		String token = UUID.randomUUID().toString().replace("-", "");
+		tokens.put(token, path);
+		if (client != null) {
+			clients.put(client + ":" + path, true);
+		}
+		return token;
+	}
+
+	/**
+	 * @return true if the token or the client belongs to an open transfer of
+	 *         the download.
+	 */
+	public static boolean isOpen(String path, String token, String client) {
+		if (token != null && path.equals(tokens.get(token))) {
+			return true;
+		}
+		return client != null && clients.get(client + ":" + path) != null;
+	}
+
+	public static void clear() {
+		tokens.clear();
+		clients.clear();
+	}
+
+}
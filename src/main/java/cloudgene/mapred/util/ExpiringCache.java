@@ -0,0 +1,78 @@
+package cloudgene.mapred.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU map whose entries expire after a fixed time to live.
+ */
+public class ExpiringCache<K, V> {
+
+	private final int maxSize;
+
+	private final long timeToLive;
+
+	private final LinkedHashMap<K, Entry<V>> entries;
+
+	public ExpiringCache(final int maxSize, long timeToLive) {
+		this.maxSize = maxSize;
+		this.timeToLive = timeToLive;
+		entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+				return size() > ExpiringCache.this.maxSize;
+			}
+		};
+	}
+
+	public synchronized V get(K key) {
+		Entry<V> entry = entries.get(key);
+		if (entry == null) {
+			return null;
+		}
+		if (entry.expires < System.currentTimeMillis()) {
+			entries.remove(key);
+			return null;
+		}
+		return entry.value;
+	}
+
+	public synchronized void put(K key, V value) {
+		put(key, value, System.currentTimeMillis() + timeToLive);
+	}
+
+	/**
+	 * Adds an entry that expires at the given time or after the time to live,
+	 * whichever comes first.
+	 */
+	public synchronized void put(K key, V value, long expires) {
+		Entry<V> entry = new Entry<V>();
+		entry.value = value;
+		entry.expires = Math.min(expires, System.currentTimeMillis() + timeToLive);
+		entries.put(key, entry);
+	}
+
+	public synchronized void remove(K key) {
+		entries.remove(key);
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	private static class Entry<V> {
+
+		private V value;
+
+		private long expires;
+
+	}
+
+}
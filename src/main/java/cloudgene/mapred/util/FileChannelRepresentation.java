@@ -0,0 +1,64 @@
+package cloudgene.mapred.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+
+import org.restlet.data.MediaType;
+import org.restlet.representation.OutputRepresentation;
+
+/**
+ * Streams a region of a file with FileChannel.transferTo. The file is not read
+ * into memory at once, files can grow while they are streamed.
+ */
+public class FileChannelRepresentation extends OutputRepresentation {
+
+	private File file;
+
+	private long start;
+
+	private long length;
+
+	public FileChannelRepresentation(File file, long start, long length, MediaType mediaType) {
+		super(mediaType, length);
+		this.file = file;
+		this.start = start;
+		this.length = length;
+	}
+
+	@Override
+	public void write(OutputStream outputStream) throws IOException {
+		transfer(file, start, length, outputStream);
+	}
+
+	/**
+	 * Writes length bytes of the file beginning at start to the stream.
+	 */
+	public static void transfer(File file, long start, long length, OutputStream outputStream) throws IOException {
+
+		if (length <= 0 || !file.exists()) {
+			return;
+		}
+
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			WritableByteChannel target = Channels.newChannel(outputStream);
+			long position = start;
+			long end = start + length;
+			while (position < end) {
+				long transferred = channel.transferTo(position, end - position, target);
+				if (transferred <= 0) {
+					// file was truncated
+					break;
+				}
+				position += transferred;
+			}
+		}
+		outputStream.flush();
+
+	}
+
+}
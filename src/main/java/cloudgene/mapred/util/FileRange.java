@@ -0,0 +1,176 @@
+package cloudgene.mapred.util;
+
+import java.io.File;
+import java.util.Date;
+import java.util.List;
+
+import org.restlet.Request;
+import org.restlet.data.Conditions;
+import org.restlet.data.MediaType;
+import org.restlet.data.Range;
+import org.restlet.data.Tag;
+
+/**
+ * Evaluates conditional headers (If-None-Match, If-Modified-Since, If-Range)
+ * and a single byte range of a request for a file. Ranges are removed from the
+ * request, so that they are not applied a second time by the range service.
+ */
+public class FileRange {
+
+	private File file;
+
+	private long size;
+
+	private long modified;
+
+	private String fileTag;
+
+	private Tag tag;
+
+	private long start = 0;
+
+	private long end;
+
+	private boolean partial = false;
+
+	private boolean notModified = false;
+
+	private boolean satisfiable = true;
+
+	private String rangeToken = null;
+
+	public FileRange(Request request, File file) {
+
+		this.file = file;
+		size = file.exists() ? file.length() : 0;
+		modified = file.exists() ? file.lastModified() : 0;
+		fileTag = Long.toHexString(size) + "-" + Long.toHexString(modified);
+		setToken(null);
+		end = size;
+
+		Conditions conditions = request.getConditions();
+
+		List<Tag> noneMatch = conditions.getNoneMatch();
+		Date modifiedSince = conditions.getModifiedSince();
+		boolean hasNoneMatch = noneMatch != null && !noneMatch.isEmpty();
+		if ((hasNoneMatch && containsFileTag(noneMatch))
+				|| (!hasNoneMatch && modifiedSince != null && modified / 1000 <= modifiedSince.getTime() / 1000)) {
+			notModified = true;
+			return;
+		}
+
+		List<Range> ranges = request.getRanges();
+		if (ranges == null || ranges.isEmpty()) {
+			return;
+		}
+
+		// If-Range: send the whole file if it was changed
+		Tag rangeTag = conditions.getRangeTag();
+		boolean changed = (rangeTag != null && !isFileTag(rangeTag))
+				|| (conditions.getRangeDate() != null && modified / 1000 > conditions.getRangeDate().getTime() / 1000);
+
+		if (!changed) {
+
+			if (ranges.size() > 1) {
+				satisfiable = false;
+			} else {
+				Range range = ranges.get(0);
+				if (range.getIndex() == Range.INDEX_LAST) {
+					start = Math.max(0, size - range.getSize());
+				} else {
+					start = range.getIndex();
+					if (range.getSize() != Range.SIZE_MAX) {
+						end = Math.min(size, start + range.getSize());
+					}
+				}
+				if (start > size || (start == size && size > 0)) {
+					satisfiable = false;
+				}
+				partial = true;
+				if (satisfiable && start > 0 && rangeTag != null && rangeTag.getName().startsWith(fileTag + "-")) {
+					rangeToken = rangeTag.getName().substring(fileTag.length() + 1);
+				}
+			}
+
+		}
+
+		ranges.clear();
+
+	}
+
+	/**
+	 * Changes the token that is appended to the ETag of the response.
+	 */
+	public void setToken(String token) {
+		tag = new Tag(token != null ? fileTag + "-" + token : fileTag, false);
+	}
+
+	/**
+	 * @return the token of the If-Range ETag, if the request is a range that
+	 *         does not start at the first byte of the unchanged file. Null
+	 *         otherwise.
+	 */
+	public String getRangeToken() {
+		return rangeToken;
+	}
+
+	private boolean isFileTag(Tag other) {
+		return other.getName().equals(fileTag) || other.getName().startsWith(fileTag + "-");
+	}
+
+	private boolean containsFileTag(List<Tag> tags) {
+		for (Tag other : tags) {
+			if (isFileTag(other)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Sets the first byte, e.g. for offsets given as query parameters.
+	 */
+	public void setStart(long start) {
+		this.start = Math.min(size, Math.max(0, start));
+	}
+
+	public FileChannelRepresentation createRepresentation(MediaType mediaType) {
+		FileChannelRepresentation representation = new FileChannelRepresentation(file, start, end - start,
+				mediaType);
+		representation.setTag(tag);
+		representation.setModificationDate(new Date(modified));
+		if (partial) {
+			representation.setRange(new Range(start, end - start));
+		}
+		return representation;
+	}
+
+	public boolean isNotModified() {
+		return notModified;
+	}
+
+	public boolean isSatisfiable() {
+		return satisfiable;
+	}
+
+	public boolean isPartial() {
+		return partial;
+	}
+
+	public long getStart() {
+		return start;
+	}
+
+	public long getEnd() {
+		return end;
+	}
+
+	public long getSize() {
+		return size;
+	}
+
+	public Tag getTag() {
+		return tag;
+	}
+
+}
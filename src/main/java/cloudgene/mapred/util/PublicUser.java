@@ -2,14 +2,15 @@ package cloudgene.mapred.util;
 
 import genepi.db.Database;
 import cloudgene.mapred.core.User;
+import cloudgene.mapred.core.UserCache;
 import cloudgene.mapred.database.UserDao;
 
 public class PublicUser {
 
 	public static User getUser(Database database) {
-		UserDao dao = new UserDao(database);
-		User user = dao.findByUsername("public");
+		User user = UserCache.findByUsername(database, "public");
 		if (user == null) {
+			UserDao dao = new UserDao(database);
 			user = new User();
 			user.setUsername("public");
 			String password = HashUtil.getMD5("public-password");
@@ -14,6 +14,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.logging.Log;
@@ -84,6 +87,40 @@ public class Settings {
 
 	private int maxRunningJobsPerUser = 2;
 
+	private int maxParallelSteps = 4;
+
+	private boolean stepCache = false;
+
+	private String stepCachePath = "cache";
+
+	private int stepCacheSize = 10240;
+
+	private int diskUsageScanInterval = 10;
+
+	private int diskUsageScanLimit = 100;
+
+	private boolean watchApps = false;
+
+	private int exportThreads = 4;
+
+	private String scheduler = "fifo";
+
+	private int maxRunningSlotsPerUser = 0;
+
+	private Map<String, String> schedulerWeights;
+
+	private int resourceCpus = 0;
+
+	private int resourceMemory = 0;
+
+	private int maxBackfillTime = 600;
+
+	private String worker = null;
+
+	private int leaseTimeout = 60;
+
+	private int heartbeatInterval = 15;
+
 	private boolean autoRetire = false;
 
 	private boolean streaming = true;
@@ -106,7 +143,10 @@ public class Settings {
 
 	private String slack = null;
 
-	private Map<String, Application> indexApps;
+	// replaced on every change, lookups never wait for a reload
+	private volatile Map<String, Application> indexApps = new HashMap<String, Application>();
+
+	private ApplicationWatcher applicationWatcher;
 
 	private String urlPrefix = "";
 
@@ -405,24 +445,83 @@ public class Settings {
 		reloadApplications();
 	}
 
-	public void reloadApplications() {
-		indexApps = new HashMap<String, Application>();
+	/**
+	 * Loads all new or modified manifests in parallel and replaces the index.
+	 * Unchanged applications are not parsed again.
+	 */
+	public synchronized void reloadApplications() {
+
+		List<Application> modified = new Vector<Application>();
+		Map<String, Application> index = new HashMap<String, Application>();
+
 		for (Application app : apps) {
-			log.info("Register application " + app.getId());
-			// load application
+			index.put(app.getId(), app);
+			if (app.isModified()) {
+				modified.add(app);
+			}
+		}
+
+		if (modified.size() == 1) {
+			loadApplication(modified.get(0));
+		} else if (modified.size() > 1) {
+			List<Callable<Void>> tasks = new Vector<Callable<Void>>();
+			for (final Application app : modified) {
+				tasks.add(new Callable<Void>() {
+					@Override
+					public Void call() {
+						loadApplication(app);
+						return null;
+					}
+				});
+			}
+			int threads = Math.min(tasks.size(), Runtime.getRuntime().availableProcessors());
+			ExecutorService executor = Executors.newFixedThreadPool(threads);
 			try {
-				log.info("Load workflow file " + app.getFilename());
-				app.loadWdlApp();
-				WdlApp wdlApp = app.getWdlApp();
-				// update wdl id with id from application
-				if (wdlApp != null) {
-					wdlApp.setId(app.getId());
-				}
-			} catch (IOException e) {
-				log.error("Application " + app.getId() + " has syntax errors.", e);
+				executor.invokeAll(tasks);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				executor.shutdown();
 			}
-			indexApps.put(app.getId(), app);
+		}
 
+		if (modified.size() > 0) {
+			log.info(modified.size() + " of " + apps.size() + " applications loaded.");
+		}
+
+		indexApps = index;
+
+	}
+
+	private void loadApplication(Application app) {
+		log.info("Register application " + app.getId());
+		try {
+			log.info("Load workflow file " + app.getFilename());
+			app.loadWdlApp();
+			WdlApp wdlApp = app.getWdlApp();
+			// update wdl id with id from application
+			if (wdlApp != null) {
+				wdlApp.setId(app.getId());
+			}
+		} catch (IOException e) {
+			log.error("Application " + app.getId() + " has syntax errors.", e);
+		}
+	}
+
+	/**
+	 * Reloads modified applications automatically when watchApps is set.
+	 */
+	public synchronized void startApplicationWatcher() throws IOException {
+		if (watchApps && applicationWatcher == null) {
+			applicationWatcher = new ApplicationWatcher(this);
+			applicationWatcher.start();
+		}
+	}
+
+	public synchronized void stopApplicationWatcher() {
+		if (applicationWatcher != null) {
+			applicationWatcher.stop();
+			applicationWatcher = null;
 		}
 	}
 
@@ -520,7 +619,7 @@ public class Settings {
 
 	}
 
-	public void deleteApplication(Application application) throws IOException {
+	public synchronized void deleteApplication(Application application) throws IOException {
 
 		// delete application in app folder
 		String id = application.getId();
@@ -679,7 +778,7 @@ public class Settings {
 
 	}
 
-	public Application installApplicationFromYaml(String id, String filename) throws IOException {
+	public synchronized Application installApplicationFromYaml(String id, String filename) throws IOException {
 
 		if (indexApps.get(id) != null) {
 			throw new IOException("Application " + id + " is already installed");
@@ -701,7 +800,9 @@ public class Settings {
 		if (wdlApp != null) {
 			wdlApp.setId(id);
 		}
-		indexApps.put(application.getId(), application);
+		Map<String, Application> index = new HashMap<String, Application>(indexApps);
+		index.put(application.getId(), application);
+		indexApps = index;
 
 		return application;
 
@@ -825,6 +926,142 @@ public class Settings {
 		this.maxRunningJobsPerUser = maxRunningJobsPerUser;
 	}
 
+	public int getMaxParallelSteps() {
+		return maxParallelSteps;
+	}
+
+	public void setMaxParallelSteps(int maxParallelSteps) {
+		this.maxParallelSteps = maxParallelSteps;
+	}
+
+	public boolean isStepCache() {
+		return stepCache;
+	}
+
+	public void setStepCache(boolean stepCache) {
+		this.stepCache = stepCache;
+	}
+
+	public String getStepCachePath() {
+		return stepCachePath;
+	}
+
+	public void setStepCachePath(String stepCachePath) {
+		this.stepCachePath = stepCachePath;
+	}
+
+	public int getStepCacheSize() {
+		return stepCacheSize;
+	}
+
+	public void setStepCacheSize(int stepCacheSize) {
+		this.stepCacheSize = stepCacheSize;
+	}
+
+	public int getDiskUsageScanInterval() {
+		return diskUsageScanInterval;
+	}
+
+	public void setDiskUsageScanInterval(int diskUsageScanInterval) {
+		this.diskUsageScanInterval = diskUsageScanInterval;
+	}
+
+	public int getDiskUsageScanLimit() {
+		return diskUsageScanLimit;
+	}
+
+	public void setDiskUsageScanLimit(int diskUsageScanLimit) {
+		this.diskUsageScanLimit = diskUsageScanLimit;
+	}
+
+	public int getExportThreads() {
+		return exportThreads;
+	}
+
+	public void setExportThreads(int exportThreads) {
+		this.exportThreads = exportThreads;
+	}
+
+	public String getScheduler() {
+		return scheduler;
+	}
+
+	public void setScheduler(String scheduler) {
+		this.scheduler = scheduler;
+	}
+
+	public int getMaxRunningSlotsPerUser() {
+		return maxRunningSlotsPerUser;
+	}
+
+	public void setMaxRunningSlotsPerUser(int maxRunningSlotsPerUser) {
+		this.maxRunningSlotsPerUser = maxRunningSlotsPerUser;
+	}
+
+	public Map<String, String> getSchedulerWeights() {
+		return schedulerWeights;
+	}
+
+	public void setSchedulerWeights(Map<String, String> schedulerWeights) {
+		this.schedulerWeights = schedulerWeights;
+	}
+
+	public int getResourceCpus() {
+		return resourceCpus;
+	}
+
+	public void setResourceCpus(int resourceCpus) {
+		this.resourceCpus = resourceCpus;
+	}
+
+	public int getResourceMemory() {
+		return resourceMemory;
+	}
+
+	public void setResourceMemory(int resourceMemory) {
+		this.resourceMemory = resourceMemory;
+	}
+
+	public int getMaxBackfillTime() {
+		return maxBackfillTime;
+	}
+
+	public void setMaxBackfillTime(int maxBackfillTime) {
+		this.maxBackfillTime = maxBackfillTime;
+	}
+
+	public String getWorker() {
+		return worker;
+	}
+
+	public void setWorker(String worker) {
+		this.worker = worker;
+	}
+
+	public int getLeaseTimeout() {
+		return leaseTimeout;
+	}
+
+	public void setLeaseTimeout(int leaseTimeout) {
+		this.leaseTimeout = leaseTimeout;
+	}
+
+	public int getHeartbeatInterval() {
+		return heartbeatInterval;
+	}
+
+	public void setHeartbeatInterval(int heartbeatInterval) {
+		this.heartbeatInterval = heartbeatInterval;
+	}
+
+	public boolean isWatchApps() {
+		return watchApps;
+	}
+
+	public void setWatchApps(boolean watchApps) {
+		this.watchApps = watchApps;
+	}
+
 	public void setUrlPrefix(String urlPrefix) {
 		this.urlPrefix = urlPrefix;
 	}
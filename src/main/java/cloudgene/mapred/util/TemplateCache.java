@@ -0,0 +1,84 @@
+package cloudgene.mapred.util;
+
+import java.io.File;
+import java.io.Writer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.velocity.Template;
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.app.VelocityEngine;
+
+/**
+ * Velocity engine with a cache of parsed templates. A template is parsed again
+ * when the modification time or the size of its file has changed. Parsed
+ * templates are immutable and can be merged by several threads at once.
+ */
+public class TemplateCache {
+
+	private static TemplateCache instance;
+
+	private VelocityEngine engine;
+
+	private Map<String, CachedTemplate> templates = new ConcurrentHashMap<String, CachedTemplate>();
+
+	public static synchronized TemplateCache getInstance() {
+		if (instance == null) {
+			instance = new TemplateCache();
+		}
+		return instance;
+	}
+
+	private TemplateCache() {
+		engine = new VelocityEngine();
+		engine.setProperty("file.resource.loader.path", "/");
+		// modification times are checked by this class
+		engine.setProperty("file.resource.loader.cache", "false");
+		engine.init();
+	}
+
+	public Template getTemplate(File file) throws Exception {
+
+		String path = file.getAbsolutePath();
+		long lastModified = file.lastModified();
+		long length = file.length();
+
+		CachedTemplate cached = templates.get(path);
+		if (cached != null && cached.lastModified == lastModified && cached.length == length) {
+			return cached.template;
+		}
+
+		// parsing the same file twice by concurrent threads is harmless
+		CachedTemplate parsed = new CachedTemplate();
+		parsed.template = engine.getTemplate(path, "UTF-8");
+		parsed.lastModified = lastModified;
+		parsed.length = length;
+		templates.put(path, parsed);
+
+		return parsed.template;
+
+	}
+
+	public void merge(File file, VelocityContext context, Writer writer) throws Exception {
+		getTemplate(file).merge(context, writer);
+	}
+
+	public int getSize() {
+		return templates.size();
+	}
+
+	public void clear() {
+		templates.clear();
+	}
+
+	private static class CachedTemplate {
+
+		private Template template;
+
+		private long lastModified;
+
+		private long length;
+
+	}
+
+}
@@ -25,6 +25,32 @@ public class WdlStep extends HashMap<String, String>{
 		return get("generates");
 	}
 	
+	/**
+	 * Number of cores the step needs, 0 if not declared.
+	 */
+	public int getCpus() {
+		return getInt("cpus");
+	}
+
+	/**
+	 * Memory in MB the step needs, 0 if not declared.
+	 */
+	public int getMemory() {
+		return getInt("memory");
+	}
+
+	private int getInt(String key) {
+		String value = get(key);
+		if (value == null) {
+			return 0;
+		}
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
 	public String get(String key, String defaultValue){
 		String value = get(key);
 		if (value == null){
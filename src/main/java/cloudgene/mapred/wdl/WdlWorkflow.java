@@ -1,5 +1,6 @@
 package cloudgene.mapred.wdl;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Vector;
 
@@ -13,6 +14,13 @@ public class WdlWorkflow {
 
 	private String type = "sequence";
 
+	private int threads = -1;
+
+	// resources needed by a job, 0 if not declared
+	private int cpus = 0;
+
+	private int memory = 0;
+
 	private WdlStep setup = null;
 
 	private List<WdlStep> setups = new Vector<WdlStep>();
@@ -51,6 +59,89 @@ public class WdlWorkflow {
 		return type;
 	}
 
+	/**
+	 * Steps of a parallel workflow are ordered by their data dependencies and
+	 * independent steps are executed at the same time.
+	 */
+	public boolean isParallel() {
+		return type != null && type.equalsIgnoreCase("parallel");
+	}
+
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	public void setCpus(int cpus) {
+		this.cpus = cpus;
+	}
+
+	public int getCpus() {
+		return cpus;
+	}
+
+	public void setMemory(int memory) {
+		this.memory = memory;
+	}
+
+	public int getMemory() {
+		return memory;
+	}
+
+	/**
+	 * Cores a job of this workflow needs: the declared value of the workflow
+	 * or the largest value of a single step.
+	 */
+	public int getRequiredCpus() {
+		return getRequiredCpus(1);
+	}
+
+	/**
+	 * Cores a job of this workflow needs if up to parallelSteps steps are
+	 * executed at the same time: the declared value of the workflow or the sum
+	 * of the parallelSteps largest step values (at least one core per step).
+	 */
+	public int getRequiredCpus(int parallelSteps) {
+		List<Integer> values = new Vector<Integer>();
+		for (WdlStep step : steps) {
+			values.add(parallelSteps > 1 ? Math.max(1, step.getCpus()) : step.getCpus());
+		}
+		return Math.max(cpus, sumOfLargest(values, parallelSteps));
+	}
+
+	/**
+	 * Memory in MB a job of this workflow needs: the declared value of the
+	 * workflow or the largest value of a single step.
+	 */
+	public int getRequiredMemory() {
+		return getRequiredMemory(1);
+	}
+
+	/**
+	 * Memory in MB a job of this workflow needs if up to parallelSteps steps
+	 * are executed at the same time: the declared value of the workflow or the
+	 * sum of the parallelSteps largest step values.
+	 */
+	public int getRequiredMemory(int parallelSteps) {
+		List<Integer> values = new Vector<Integer>();
+		for (WdlStep step : steps) {
+			values.add(step.getMemory());
+		}
+		return Math.max(memory, sumOfLargest(values, parallelSteps));
+	}
+
+	private int sumOfLargest(List<Integer> values, int count) {
+		Collections.sort(values, Collections.reverseOrder());
+		int result = 0;
+		for (int i = 0; i < Math.min(Math.max(1, count), values.size()); i++) {
+			result += values.get(i);
+		}
+		return result;
+	}
+
 	public void setSetup(WdlStep setup) {
 		this.setup = setup;
 	}
@@ -85,3 +85,70 @@ alter table job add column submitted_on bigint not null default 0;
 alter table job add column finished_on bigint not null default 0;
 alter table job add column setup_start_time bigint not null default 0;
 alter table job add column setup_end_time bigint not null default 0;
+
+-- 1.30.5
+
+create index idx_job_submitted_on_id on job (submitted_on, id);
+create index idx_job_state_submitted_on_id on job (state, submitted_on, id);
+create index idx_job_user_submitted_on_id on job (user_id, submitted_on, id);
+create index idx_job_state_finished_on on job (state, finished_on);
+alter table job add column disk_usage bigint not null default 0;
+create index idx_job_disk_usage on job (disk_usage);
+alter table job add column disk_usage_scanned_on bigint not null default 0;
+create index idx_job_disk_usage_scanned_on on job (disk_usage_scanned_on);
+
+create index idx_user_username on user (username);
+create index idx_downloads_hash on downloads (hash);
+create index idx_downloads_path on downloads (path);
+create index idx_downloads_parameter_id on downloads (parameter_id);
+create index idx_parameter_job_id_input on parameter (job_id, input);
+alter table parameter add column export_files bigint not null default 0;
+alter table parameter add column export_bytes bigint not null default 0;
+alter table parameter add column export_time bigint not null default 0;
+create index idx_steps_job_id on steps (job_id);
+create index idx_log_messages_step_id on log_messages (step_id);
+create index idx_counters_name on counters (name);
+create index idx_counters_history_time_stamp on counters_history (time_stamp);
+
+create table counter_totals (
+	name		varchar(300) not null primary key,
+	value		bigint not null
+);
+insert into counter_totals (name, value) select name, sum(value) from counters where name is not null group by name;
+
+create table counters_rollup (
+	resolution	bigint not null,
+	time_stamp	bigint not null,
+	name		varchar(300) not null,
+	value		bigint not null,
+	primary key (resolution, time_stamp, name)
+);
+insert into counters_rollup (resolution, time_stamp, name, value) select 3600000, time_stamp - mod(time_stamp, 3600000), name, max(value) from counters_history where name is not null group by time_stamp - mod(time_stamp, 3600000), name;
+insert into counters_rollup (resolution, time_stamp, name, value) select 86400000, time_stamp - mod(time_stamp, 86400000), name, max(value) from counters_history where name is not null group by time_stamp - mod(time_stamp, 86400000), name;
+
+create table job_leases (
+	job_id		varchar(100) not null primary key,
+	worker		varchar(100) not null,
+	token		bigint not null,
+	expires_on	bigint not null,
+	cancel_requested	boolean not null default false
+);
+create index idx_job_leases_worker on job_leases (worker);
+create index idx_job_leases_expires_on on job_leases (expires_on);
+
+create table job_checkpoints (
+	job_id		varchar(100) not null,
+	step		varchar(255) not null,
+	outputs		varchar(1000),
+	completed_on	bigint not null,
+	primary key (job_id, step)
+);
+
+create table job_checkpoint_counters (
+	job_id		varchar(100) not null,
+	step		varchar(255) not null,
+	name		varchar(300) not null,
+	value		integer not null,
+	submitted	boolean not null default false,
+	primary key (job_id, step, name)
+);
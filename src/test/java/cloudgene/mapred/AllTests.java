@@ -24,6 +24,7 @@ import cloudgene.mapred.database.JobDaoTest;
 import cloudgene.mapred.jobs.PriorityThreadPoolExecutorTest;
 import cloudgene.mapred.jobs.WorkflowEngineTest;
 import cloudgene.mapred.jobs.WrongWorkspaceTest;
+import cloudgene.mapred.jobs.engine.graph.GraphTest;
 import cloudgene.mapred.steps.TestCommand;
 
 @RunWith(Suite.class)
@@ -31,7 +32,7 @@ import cloudgene.mapred.steps.TestCommand;
 		DeleteJobTest.class, DownloadResultsTest.class, ShareResultsTest.class, GetLogsTest.class, GetJobsTest.class,
 		TestCommand.class, JobDaoTest.class, PriorityThreadPoolExecutorTest.class, WrongWorkspaceTest.class,
 		UserTest.class, UserProfileTest.class, RegisterUserTest.class, ActivateUserTest.class, LoginUserTest.class,
-		LogoutUserTest.class, ResetPasswordTest.class, UpdatePasswordTest.class })
+		LogoutUserTest.class, ResetPasswordTest.class, UpdatePasswordTest.class, GraphTest.class })
 public class AllTests {
 
 }
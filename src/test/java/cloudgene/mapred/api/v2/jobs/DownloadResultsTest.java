@@ -4,6 +4,8 @@ import java.io.IOException;
 
 import org.json.JSONException;
 import org.json.JSONObject;
+import org.restlet.data.Range;
+import org.restlet.data.Tag;
 import org.restlet.ext.html.FormDataSet;
 import org.restlet.resource.ClientResource;
 
@@ -247,6 +249,89 @@ public class DownloadResultsTest extends JobsApiTestCase {
 		resource.release();
 	}
 
+	public void testDownloadRange() throws IOException, JSONException,
+			InterruptedException {
+
+		// form data
+
+		FormDataSet form = new FormDataSet();
+		form.setMultipart(true);
+		form.add("input-inputtext", "lukas_text");
+
+		// submit job
+		String id = submitJobPublic("write-files-to-folder", form);
+
+		// check feedback
+		waitForJob(id);
+
+		// TODO: change!
+		Thread.sleep(5000);
+
+		// get details
+		JSONObject result = getJobDetails(id);
+
+		assertEquals(AbstractJob.STATE_SUCCESS, result.get("state"));
+
+		JSONObject ouput = result.getJSONArray("outputParams").getJSONObject(0);
+		String path1 = ouput.getJSONArray("files").getJSONObject(0)
+				.getString("path");
+
+		// first download is charged
+		ClientResource resource = createClientResource("/results/" + path1);
+		resource.get();
+		assertEquals(200, resource.getStatus().getCode());
+		Tag tag = resource.getResponseEntity().getTag();
+		assertEquals("lukas_text", resource.getResponseEntity().getText());
+		resource.release();
+
+		// ranges of the same transfer are not counted
+		for (int i = 0; i < CloudgeneJob.MAX_DOWNLOAD + 1; i++) {
+			resource = createClientResource("/results/" + path1);
+			resource.getRanges().add(new Range(6, Range.SIZE_MAX));
+			resource.getConditions().setRangeTag(tag);
+			resource.get();
+			assertEquals(206, resource.getStatus().getCode());
+			assertEquals("text", resource.getResponseEntity().getText());
+			resource.release();
+		}
+
+		// the same client resumes without If-Range
+		resource = createClientResource("/results/" + path1);
+		resource.getRanges().add(new Range(1, Range.SIZE_MAX));
+		resource.get();
+		assertEquals(206, resource.getStatus().getCode());
+		assertEquals("ukas_text", resource.getResponseEntity().getText());
+		resource.release();
+
+		// ranges from the first byte are always counted
+		for (int i = 0; i < CloudgeneJob.MAX_DOWNLOAD - 1; i++) {
+			resource = createClientResource("/results/" + path1);
+			resource.getRanges().add(new Range(0, Range.SIZE_MAX));
+			resource.getConditions().setRangeTag(tag);
+			resource.get();
+			assertEquals(206, resource.getStatus().getCode());
+			assertEquals("lukas_text", resource.getResponseEntity().getText());
+			assertFalse(tag.equals(resource.getResponseEntity().getTag()));
+			resource.release();
+		}
+
+		// no downloads left
+		resource = createClientResource("/results/" + path1);
+		resource.getRanges().add(new Range(6, Range.SIZE_MAX));
+		resource.getConditions().setRangeTag(tag);
+		try {
+			resource.get();
+		} catch (Exception e) {
+
+		}
+		assertEquals(400, resource.getStatus().getCode());
+		JSONObject object = new JSONObject(resource.getResponseEntity()
+				.getText());
+		assertEquals(object.get("message"), "number of max downloads exceeded.");
+		resource.release();
+
+	}
+
 	public void testJobNotFound() throws IOException, JSONException,
 			InterruptedException {
 
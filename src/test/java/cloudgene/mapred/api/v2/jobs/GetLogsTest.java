@@ -7,6 +7,7 @@ import org.json.JSONObject;
 import org.restlet.data.MediaType;
 import org.restlet.ext.html.FormData;
 import org.restlet.ext.html.FormDataSet;
+import org.restlet.resource.ClientResource;
 import org.restlet.representation.FileRepresentation;
 
 import cloudgene.mapred.jobs.AbstractJob;
@@ -121,6 +122,50 @@ public class GetLogsTest extends JobsApiTestCase {
 
 	}
 
+	public void testLogFileWithOffsetTailAndCondition() throws IOException, JSONException,
+			InterruptedException {
+
+		FormDataSet form = new FormDataSet();
+		form.setMultipart(true);
+		form.getEntries().add(new FormData("input-input", "input-file"));
+
+		String id = submitJobPublic("write-text-to-std-out", form);
+		waitForJob(id);
+
+		String content = downloadURL("/api/v2/jobs/" + id + "/logs/std.out");
+		assertTrue(content.contains("taks write to system out"));
+
+		// offset
+		String offset = downloadURL("/api/v2/jobs/" + id + "/logs/std.out?offset=5");
+		assertEquals(content.substring(5), offset);
+
+		// tail
+		String tail = downloadURL("/api/v2/jobs/" + id + "/logs/std.out?tail=10");
+		assertEquals(content.substring(content.length() - 10), tail);
+
+		// unchanged file
+		ClientResource resource = createClientResource("/api/v2/jobs/" + id + "/logs/std.out");
+		resource.get();
+		resource.getConditions().getNoneMatch().add(resource.getResponseEntity().getTag());
+		resource.release();
+		try {
+			resource.get();
+		} catch (Exception e) {
+		}
+		assertEquals(304, resource.getStatus().getCode());
+		resource.release();
+
+		// unknown log file
+		ClientResource unknown = createClientResource("/api/v2/jobs/" + id + "/logs/settings.yaml");
+		try {
+			unknown.get();
+		} catch (Exception e) {
+		}
+		assertEquals(404, unknown.getStatus().getCode());
+		unknown.release();
+
+	}
+
 	// TODO: wrong permissions
 
 	// TODO: wrong id
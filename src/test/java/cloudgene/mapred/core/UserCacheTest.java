@@ -0,0 +1,37 @@
+package cloudgene.mapred.core;
+
+import cloudgene.mapred.util.junit.TestServer;
+import genepi.db.Database;
+import junit.framework.TestCase;
+
+public class UserCacheTest extends TestCase {
+
+	private Database database;
+
+	@Override
+	protected void setUp() throws Exception {
+		TestServer.getInstance().start();
+		database = TestServer.getInstance().getDatabase();
+		UserCache.clear();
+	}
+
+	public void testCachedUserIsNotShared() {
+
+		User user1 = UserCache.findByUsername(database, "admin");
+		User user2 = UserCache.findByUsername(database, "admin");
+		assertNotSame(user1, user2);
+
+		// changes are not visible to other requests until they are written
+		String apiToken = user2.getApiToken();
+		user1.setApiToken("changed-token");
+		user1.getRoles()[0] = "changed-role";
+		user1.setLoginAttempts(user1.getLoginAttempts() + 1);
+
+		User user3 = UserCache.findByUsername(database, "admin");
+		assertEquals(apiToken, user3.getApiToken());
+		assertTrue(user3.isAdmin());
+		assertEquals(user2.getLoginAttempts(), user3.getLoginAttempts());
+
+	}
+
+}
@@ -0,0 +1,72 @@
+package cloudgene.mapred.cron;
+
+import cloudgene.mapred.core.User;
+import cloudgene.mapred.database.JobDao;
+import cloudgene.mapred.database.UserDao;
+import cloudgene.mapred.jobs.AbstractJob;
+import cloudgene.mapred.jobs.CloudgeneJob;
+import cloudgene.mapred.util.Settings;
+import cloudgene.mapred.util.junit.TestServer;
+import genepi.db.Database;
+import genepi.io.FileUtil;
+import junit.framework.TestCase;
+
+public class DiskUsageJobTest extends TestCase {
+
+	@Override
+	protected void setUp() throws Exception {
+		TestServer.getInstance().start();
+	}
+
+	public void testScanWorkspace() throws Exception {
+
+		Database database = TestServer.getInstance().getDatabase();
+		Settings settings = TestServer.getInstance().getSettings();
+
+		User user = new UserDao(database).findByUsername("admin");
+		JobDao jobDao = new JobDao(database);
+
+		CloudgeneJob job = new CloudgeneJob();
+		job.setId("disk-usage-job-" + System.currentTimeMillis());
+		job.setName(job.getId());
+		job.setState(AbstractJob.STATE_SUCCESS);
+		job.setSubmittedOn(System.currentTimeMillis());
+		job.setUser(user);
+		job.setApplication("appplication");
+		job.setApplicationId("appplication-id");
+		jobDao.insert(job);
+
+		String workspace = FileUtil.path(settings.getLocalWorkspace(), job.getId());
+		FileUtil.createDirectory(FileUtil.path(workspace, "output"));
+		FileUtil.writeStringBufferToFile(FileUtil.path(workspace, "output", "file1.txt"),
+				new StringBuffer("0123456789"));
+		FileUtil.writeStringBufferToFile(FileUtil.path(workspace, "file2.txt"), new StringBuffer("01234"));
+
+		// jobs that were never scanned come first
+		DiskUsageJob.scan(database, settings, Integer.MAX_VALUE);
+		assertEquals(15, jobDao.findById(job.getId(), false).getDiskUsage());
+
+		// full updates do not overwrite the scanned value
+		job.setDiskUsage(10);
+		job.setState(AbstractJob.STATE_SUCESS_AND_NOTIFICATION_SEND);
+		assertTrue(jobDao.update(job));
+		AbstractJob jobInDatabase = jobDao.findById(job.getId(), false);
+		assertEquals(AbstractJob.STATE_SUCESS_AND_NOTIFICATION_SEND, jobInDatabase.getState());
+		assertEquals(15, jobInDatabase.getDiskUsage());
+
+		// the job with the oldest scan is scanned next
+		FileUtil.deleteFile(FileUtil.path(workspace, "file2.txt"));
+		for (int i = 0; i < jobDao.findAllByDiskUsageScan(Integer.MAX_VALUE).size()
+				&& jobDao.findById(job.getId(), false).getDiskUsage() != 10; i++) {
+			// scan times have to differ
+			Thread.sleep(2);
+			DiskUsageJob.scan(database, settings, 1);
+		}
+		assertEquals(10, jobDao.findById(job.getId(), false).getDiskUsage());
+
+		jobDao.delete(job);
+		FileUtil.deleteDirectory(workspace);
+
+	}
+
+}
@@ -0,0 +1,90 @@
+package cloudgene.mapred.database;
+
+import java.util.Map;
+
+import cloudgene.mapred.jobs.engine.Checkpoint;
+import cloudgene.mapred.util.junit.TestServer;
+import junit.framework.TestCase;
+
+public class CheckpointDaoTest extends TestCase {
+
+	@Override
+	protected void setUp() throws Exception {
+		TestServer.getInstance().start();
+	}
+
+	public void testInsertAndFind() {
+
+		CheckpointDao dao = new CheckpointDao(TestServer.getInstance().getDatabase());
+
+		String jobId = "checkpoint-job-" + System.currentTimeMillis();
+
+		Checkpoint first = new Checkpoint();
+		first.setStep("qc");
+		first.getOutputs().add("qc_report");
+		first.getOutputs().add("statistics");
+		first.getCounters().put("steps.success.qc", 1);
+		first.getCounters().put("samples", 10);
+		first.getSubmittedCounters().add("samples");
+		first.setCompletedOn(1000);
+		assertTrue(dao.insert(jobId, first));
+
+		Checkpoint second = new Checkpoint();
+		second.setStep("impute");
+		second.getCounters().put("steps.success.qc", 1);
+		second.getCounters().put("steps.success.impute", 1);
+		second.setCompletedOn(2000);
+		assertTrue(dao.insert(jobId, second));
+
+		// a step executed again replaces its checkpoint
+		first.getCounters().put("samples", 12);
+		assertTrue(dao.insert(jobId, first));
+
+		Map<String, Checkpoint> checkpoints = dao.findAllByJob(jobId);
+		assertEquals(2, checkpoints.size());
+
+		Checkpoint qc = checkpoints.get("qc");
+		assertEquals(2, qc.getOutputs().size());
+		assertTrue(qc.getOutputs().contains("qc_report"));
+		assertEquals(12, (int) qc.getCounters().get("samples"));
+		assertTrue(qc.getSubmittedCounters().contains("samples"));
+		assertFalse(qc.getSubmittedCounters().contains("steps.success.qc"));
+
+		Checkpoint impute = checkpoints.get("impute");
+		assertEquals(0, impute.getOutputs().size());
+		assertEquals(2, impute.getCounters().size());
+
+		assertTrue(dao.deleteByJob(jobId));
+		assertEquals(0, dao.findAllByJob(jobId).size());
+
+	}
+
+	public void testInsertWithLease() {
+
+		CheckpointDao dao = new CheckpointDao(TestServer.getInstance().getDatabase());
+		LeaseDao leaseDao = new LeaseDao(TestServer.getInstance().getDatabase());
+
+		String jobId = "checkpoint-lease-" + System.currentTimeMillis();
+		long token = leaseDao.claim(jobId, "worker-a", 60000);
+		assertEquals(1, token);
+
+		Checkpoint checkpoint = new Checkpoint();
+		checkpoint.setStep("qc");
+		checkpoint.getCounters().put("samples", 10);
+		checkpoint.setCompletedOn(1000);
+		assertTrue(dao.insert(jobId, checkpoint, "worker-a", token));
+
+		// workers without the current lease can not replace the checkpoint
+		checkpoint.getCounters().put("samples", 12);
+		assertFalse(dao.insert(jobId, checkpoint, "worker-b", token));
+		assertFalse(dao.insert(jobId, checkpoint, "worker-a", token + 1));
+
+		Map<String, Checkpoint> checkpoints = dao.findAllByJob(jobId);
+		assertEquals(1, checkpoints.size());
+		assertEquals(10, (int) checkpoints.get("qc").getCounters().get("samples"));
+
+		assertTrue(dao.deleteByJob(jobId));
+
+	}
+
+}
@@ -0,0 +1,52 @@
+package cloudgene.mapred.database;
+
+import java.sql.Connection;
+import java.util.HashMap;
+import java.util.Map;
+
+import cloudgene.mapred.util.junit.TestServer;
+import genepi.db.Database;
+import junit.framework.TestCase;
+
+public class CounterDaoTest extends TestCase {
+
+	@Override
+	protected void setUp() throws Exception {
+		TestServer.getInstance().start();
+	}
+
+	public void testUpdateTotals() throws Exception {
+
+		Database database = TestServer.getInstance().getDatabase();
+		CounterDao dao = new CounterDao(database);
+
+		String name = "total-" + System.currentTimeMillis();
+		Map<String, Integer> counters = new HashMap<String, Integer>();
+		counters.put(name, 5);
+
+		Connection connection = database.getDataSource().getConnection();
+		try {
+
+			connection.setAutoCommit(false);
+
+			// first upsert inserts, second one adds
+			dao.updateTotals(connection, counters);
+			dao.updateTotals(connection, counters);
+			connection.commit();
+
+			assertEquals(10, (long) dao.getAll().get(name));
+
+			// totals are part of the transaction
+			dao.updateTotals(connection, counters);
+			connection.rollback();
+
+			assertEquals(10, (long) dao.getAll().get(name));
+
+		} finally {
+			connection.setAutoCommit(true);
+			connection.close();
+		}
+
+	}
+
+}
@@ -0,0 +1,56 @@
+package cloudgene.mapred.database;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import cloudgene.mapred.util.junit.TestServer;
+import junit.framework.TestCase;
+
+public class CounterHistoryDaoTest extends TestCase {
+
+	@Override
+	protected void setUp() throws Exception {
+		TestServer.getInstance().start();
+	}
+
+	public void testRollups() {
+
+		CounterHistoryDao dao = new CounterHistoryDao(TestServer.getInstance().getDatabase());
+
+		// some hour far in the past, no other samples there
+		long hour = 1000L * CounterHistoryDao.RESOLUTION_HOUR;
+		for (int i = 0; i < 12; i++) {
+			Map<String, Long> values = new HashMap<String, Long>();
+			values.put("rollupTest", (long) (i % 5));
+			assertTrue(dao.insertBatch(hour + i * CounterHistoryDao.RESOLUTION_RAW, values));
+		}
+
+		List<Map<String, String>> raw = dao.getAllBetween(hour - 1, hour + CounterHistoryDao.RESOLUTION_HOUR,
+				CounterHistoryDao.RESOLUTION_RAW);
+		assertEquals(12, raw.size());
+
+		List<Map<String, String>> hourly = dao.getAllBetween(hour, hour + CounterHistoryDao.RESOLUTION_HOUR,
+				CounterHistoryDao.RESOLUTION_HOUR);
+		assertEquals(1, hourly.size());
+		assertEquals("4", hourly.get(0).get("rollupTest"));
+
+		// raw samples are older than the retention time
+		assertTrue(dao.prune(hour + CounterHistoryDao.RAW_RETENTION_MS + CounterHistoryDao.RESOLUTION_HOUR));
+		raw = dao.getAllBetween(hour - 1, hour + CounterHistoryDao.RESOLUTION_HOUR, CounterHistoryDao.RESOLUTION_RAW);
+		assertEquals(0, raw.size());
+
+	}
+
+	public void testResolution() {
+
+		long now = 1000L * CounterHistoryDao.RESOLUTION_DAY;
+		long day = CounterHistoryDao.RESOLUTION_DAY;
+
+		assertEquals(CounterHistoryDao.RESOLUTION_RAW, CounterHistoryDao.getResolution(now - day, now, now));
+		assertEquals(CounterHistoryDao.RESOLUTION_HOUR, CounterHistoryDao.getResolution(now - 30 * day, now, now));
+		assertEquals(CounterHistoryDao.RESOLUTION_DAY, CounterHistoryDao.getResolution(now - 500 * day, now, now));
+
+	}
+
+}
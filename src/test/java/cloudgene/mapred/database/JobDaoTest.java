@@ -3,6 +3,7 @@ package cloudgene.mapred.database;
 import genepi.db.Database;
 
 import java.util.List;
+import java.util.Map;
 
 import org.junit.Test;
 
@@ -176,4 +177,70 @@ public class JobDaoTest extends JobsApiTestCase {
 		
 	}
 
+	@Test
+	public void testKeysetPagination() throws Exception {
+
+		Database database = TestServer.getInstance().getDatabase();
+
+		UserDao userDao = new UserDao(database);
+		User user = new User();
+		user.setUsername("paging-user-" + System.currentTimeMillis());
+		user.setPassword("paging-password");
+		userDao.insert(user);
+		user = userDao.findByUsername(user.getUsername());
+
+		JobDao jobDao = new JobDao(database);
+
+		Map<Integer, Integer> countsBefore = jobDao.countAllByState();
+
+		// job 1 was submitted last, all other jobs at the same time
+		long now = System.currentTimeMillis();
+		String prefix = "paging-job-" + now + "-";
+		for (int i = 1; i <= 5; i++) {
+			CloudgeneJob job = new CloudgeneJob();
+			job.setId(prefix + i);
+			job.setName(prefix + i);
+			job.setState(CloudgeneJob.STATE_SUCCESS);
+			job.setSubmittedOn(i == 1 ? now + 1000 : now);
+			job.setUser(user);
+			job.setApplication("appplication");
+			job.setApplicationId("appplication-id");
+			jobDao.insert(job);
+		}
+
+		// pages are ordered by submit time and id, newest first
+		List<AbstractJob> page1 = jobDao.findAllByUser(user, null, 2);
+		assertEquals(2, page1.size());
+		assertEquals(prefix + 1, page1.get(0).getId());
+		assertEquals(prefix + 5, page1.get(1).getId());
+
+		List<AbstractJob> page2 = jobDao.findAllByUser(user, page1.get(1).getId(), 2);
+		assertEquals(2, page2.size());
+		assertEquals(prefix + 4, page2.get(0).getId());
+		assertEquals(prefix + 3, page2.get(1).getId());
+
+		List<AbstractJob> page3 = jobDao.findAllByUser(user, page2.get(1).getId(), 2);
+		assertEquals(1, page3.size());
+		assertEquals(prefix + 2, page3.get(0).getId());
+
+		assertEquals(0, jobDao.findAllByUser(user, page3.get(0).getId(), 2).size());
+
+		// totals are independent of the page size
+		Map<Integer, Integer> countsAfter = jobDao.countAllByState();
+		Integer successBefore = countsBefore.get(CloudgeneJob.STATE_SUCCESS);
+		assertEquals((successBefore != null ? successBefore : 0) + 5,
+				(int) countsAfter.get(CloudgeneJob.STATE_SUCCESS));
+
+		// totals of a list use the filter of the list
+		Map<Integer, Integer> successCounts = jobDao.countAllByState(CloudgeneJob.STATE_SUCCESS);
+		assertEquals(1, successCounts.size());
+		assertEquals(countsAfter.get(CloudgeneJob.STATE_SUCCESS), successCounts.get(CloudgeneJob.STATE_SUCCESS));
+		assertNull(jobDao.countAllNotRetiredJobsByState().get(CloudgeneJob.STATE_RETIRED));
+
+		for (AbstractJob job : jobDao.findAllByUser(user, null, 10)) {
+			jobDao.delete(job);
+		}
+
+	}
+
 }
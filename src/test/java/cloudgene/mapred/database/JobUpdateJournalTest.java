@@ -0,0 +1,160 @@
+package cloudgene.mapred.database;
+
+import cloudgene.mapred.core.User;
+import cloudgene.mapred.jobs.AbstractJob;
+import cloudgene.mapred.jobs.CloudgeneJob;
+import cloudgene.mapred.util.junit.TestServer;
+import genepi.db.Database;
+import junit.framework.TestCase;
+
+public class JobUpdateJournalTest extends TestCase {
+
+	// background flushes are not triggered during a test
+	public static final long INTERVAL = 60 * 60 * 1000;
+
+	private Database database;
+
+	private JobDao dao;
+
+	private int jobs = 0;
+
+	@Override
+	protected void setUp() throws Exception {
+		TestServer.getInstance().start();
+		database = TestServer.getInstance().getDatabase();
+		dao = new JobDao(database);
+	}
+
+	public void testMergeUpdates() {
+
+		JobUpdateJournal journal = new JobUpdateJournal(database, INTERVAL);
+
+		AbstractJob job = createJob();
+		job.setState(AbstractJob.STATE_RUNNING);
+		journal.update(job);
+		job.setState(AbstractJob.STATE_EXPORTING);
+		job.setName("exporting");
+		journal.update(job);
+
+		// both updates are merged and not written yet
+		assertEquals(1, journal.getPending());
+		assertEquals(AbstractJob.STATE_WAITING, getState(job));
+
+		journal.flush();
+		assertEquals(0, journal.getPending());
+		AbstractJob jobInDatabase = dao.findById(job.getId(), false);
+		assertEquals(AbstractJob.STATE_EXPORTING, jobInDatabase.getState());
+		assertEquals("exporting", jobInDatabase.getName());
+
+		journal.close();
+		dao.delete(job);
+
+	}
+
+	public void testFlushFinalState() {
+
+		JobUpdateJournal journal = new JobUpdateJournal(database, INTERVAL);
+
+		AbstractJob job1 = createJob();
+		job1.setState(AbstractJob.STATE_RUNNING);
+		journal.update(job1);
+
+		// final states are written at once together with all pending updates
+		AbstractJob job2 = createJob();
+		job2.setState(AbstractJob.STATE_SUCCESS);
+		journal.update(job2);
+
+		assertEquals(0, journal.getPending());
+		assertEquals(AbstractJob.STATE_RUNNING, getState(job1));
+		assertEquals(AbstractJob.STATE_SUCCESS, getState(job2));
+
+		journal.close();
+		dao.delete(job1);
+		dao.delete(job2);
+
+	}
+
+	public void testDiscard() {
+
+		JobUpdateJournal journal = new JobUpdateJournal(database, INTERVAL);
+
+		AbstractJob job = createJob();
+		job.setState(AbstractJob.STATE_RUNNING);
+		journal.update(job);
+		journal.discard(job);
+
+		assertEquals(0, journal.getPending());
+		journal.flush();
+		assertEquals(AbstractJob.STATE_WAITING, getState(job));
+
+		journal.close();
+		dao.delete(job);
+
+	}
+
+	public void testFlushInBackground() throws Exception {
+
+		JobUpdateJournal journal = new JobUpdateJournal(database, 100);
+
+		AbstractJob job = createJob();
+		job.setState(AbstractJob.STATE_RUNNING);
+		journal.update(job);
+
+		for (int i = 0; i < 50 && getState(job) != AbstractJob.STATE_RUNNING; i++) {
+			Thread.sleep(100);
+		}
+		assertEquals(AbstractJob.STATE_RUNNING, getState(job));
+		assertEquals(0, journal.getPending());
+
+		journal.close();
+		dao.delete(job);
+
+	}
+
+	public void testClose() {
+
+		JobUpdateJournal journal = new JobUpdateJournal(database, INTERVAL);
+
+		AbstractJob job = createJob();
+		job.setState(AbstractJob.STATE_RUNNING);
+		journal.update(job);
+		assertEquals(AbstractJob.STATE_WAITING, getState(job));
+
+		// pending updates are written on close
+		journal.close();
+		assertEquals(0, journal.getPending());
+		assertEquals(AbstractJob.STATE_RUNNING, getState(job));
+
+		// later updates are written directly
+		job.setState(AbstractJob.STATE_EXPORTING);
+		journal.update(job);
+		assertEquals(0, journal.getPending());
+		assertEquals(AbstractJob.STATE_EXPORTING, getState(job));
+
+		dao.delete(job);
+
+	}
+
+	private AbstractJob createJob() {
+
+		User user = new UserDao(database).findByUsername("admin");
+
+		CloudgeneJob job = new CloudgeneJob();
+		job.setId("journal-job-" + System.currentTimeMillis() + "-" + (jobs++));
+		job.setName(job.getId());
+		job.setState(AbstractJob.STATE_WAITING);
+		job.setSubmittedOn(System.currentTimeMillis());
+		job.setUser(user);
+		job.setApplication("appplication");
+		job.setApplicationId("appplication-id");
+		assertTrue(dao.insert(job));
+
+		return job;
+
+	}
+
+	private int getState(AbstractJob job) {
+		return dao.findById(job.getId(), false).getState();
+	}
+
+}
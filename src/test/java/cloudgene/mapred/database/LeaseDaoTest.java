@@ -0,0 +1,105 @@
+package cloudgene.mapred.database;
+
+import java.util.Arrays;
+import java.util.Vector;
+
+import cloudgene.mapred.core.User;
+import cloudgene.mapred.jobs.AbstractJob;
+import cloudgene.mapred.jobs.CloudgeneJob;
+import cloudgene.mapred.util.junit.TestServer;
+import genepi.db.Database;
+import junit.framework.TestCase;
+
+public class LeaseDaoTest extends TestCase {
+
+	@Override
+	protected void setUp() throws Exception {
+		TestServer.getInstance().start();
+	}
+
+	public void testClaimLiveLease() {
+
+		Database database = TestServer.getInstance().getDatabase();
+		LeaseDao dao = new LeaseDao(database);
+
+		String id = "lease-job-live-" + System.currentTimeMillis();
+
+		assertEquals(1, dao.claim(id, "worker-1", 60000));
+		assertEquals(-1, dao.claim(id, "worker-2", 60000));
+		assertEquals("worker-1", dao.findOwner(id));
+
+		assertTrue(dao.renew("worker-1", Arrays.asList(id), 60000).containsKey(id));
+		assertFalse(dao.renew("worker-2", Arrays.asList(id), 60000).containsKey(id));
+		assertTrue(dao.renew("worker-1", new Vector<String>(), 60000).isEmpty());
+
+		assertTrue(dao.release(id, "worker-1", 1));
+		assertNull(dao.findOwner(id));
+
+	}
+
+	public void testExpireLeasesOfRestartedWorker() {
+
+		Database database = TestServer.getInstance().getDatabase();
+		LeaseDao dao = new LeaseDao(database);
+
+		String id = "lease-job-restart-" + System.currentTimeMillis();
+		assertEquals(1, dao.claim(id, "worker-3", 60000));
+
+		// leases of jobs that are not running anymore are not renewed
+		assertFalse(dao.renew("worker-3", Arrays.asList("other-job"), 60000).containsKey(id));
+
+		assertTrue(dao.expireAll("worker-3"));
+		assertNull(dao.findOwner(id));
+		assertEquals(2, dao.claim(id, "worker-3", 60000));
+
+	}
+
+	public void testTakeOverExpiredLease() {
+
+		Database database = TestServer.getInstance().getDatabase();
+		LeaseDao dao = new LeaseDao(database);
+		JobDao jobDao = new JobDao(database);
+
+		User user = new UserDao(database).findByUsername("admin");
+
+		CloudgeneJob job = new CloudgeneJob();
+		job.setId("lease-job-expired-" + System.currentTimeMillis());
+		job.setName(job.getId());
+		job.setState(AbstractJob.STATE_RUNNING);
+		job.setSubmittedOn(System.currentTimeMillis());
+		job.setUser(user);
+		job.setApplication("appplication");
+		job.setApplicationId("appplication-id");
+		assertTrue(jobDao.insert(job));
+
+		// lease of worker-1 is already expired
+		long token = dao.claim(job.getId(), "worker-1", -1000);
+		assertEquals(1, token);
+		job.setWorker("worker-1");
+		job.setLeaseToken(token);
+		assertTrue(dao.findClaimableJobs(1000).contains(job.getId()));
+
+		long newToken = dao.claim(job.getId(), "worker-2", 60000);
+		assertEquals(2, newToken);
+		assertEquals("worker-2", dao.findOwner(job.getId()));
+		assertFalse(dao.findClaimableJobs(1000).contains(job.getId()));
+
+		// updates of the old owner are rejected
+		job.setState(AbstractJob.STATE_SUCCESS);
+		assertFalse(jobDao.update(job));
+		assertEquals(AbstractJob.STATE_RUNNING, jobDao.findById(job.getId(), false).getState());
+
+		job.setWorker("worker-2");
+		job.setLeaseToken(newToken);
+		job.setState(AbstractJob.STATE_CANCELED);
+		assertTrue(jobDao.update(job));
+		assertEquals(AbstractJob.STATE_CANCELED, jobDao.findById(job.getId(), false).getState());
+
+		// cancel requests are delivered to the owner
+		assertTrue(dao.requestCancel(job.getId()));
+		assertTrue(dao.findCancelRequests("worker-2").contains(job.getId()));
+		assertFalse(dao.findCancelRequests("worker-1").contains(job.getId()));
+
+	}
+
+}
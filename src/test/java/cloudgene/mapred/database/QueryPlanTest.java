@@ -0,0 +1,85 @@
+package cloudgene.mapred.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import cloudgene.mapred.util.junit.TestServer;
+import genepi.db.Database;
+import junit.framework.TestCase;
+
+/**
+ * Checks that the where clauses of frequently used DAO queries are answered
+ * by an index and not by a full table scan.
+ */
+public class QueryPlanTest extends TestCase {
+
+	@Override
+	protected void setUp() throws Exception {
+		TestServer.getInstance().start();
+	}
+
+	public void testHotQueriesUseIndexes() throws SQLException {
+
+		Database database = TestServer.getInstance().getDatabase();
+
+		Connection connection = database.getDataSource().getConnection();
+		try {
+
+			assertIndexUsed(connection, "job", JobDao.FIND_ALL_BY_STATE_SQL, 1);
+			assertIndexUsed(connection, "job", JobDao.FIND_ALL_OLDER_THAN_SQL, 4, 100);
+			assertIndexUsed(connection, "job", JobDao.FIND_ALL_BY_USER_SQL, 1, 7);
+			assertIndexUsed(connection, "job", JobDao.getSummariesSql(JobDao.BY_STATE_WHERE, true), 1, "job", "job", "job",
+					25);
+			assertIndexUsed(connection, "job", JobDao.getSummariesSql(JobDao.BY_USER_WHERE, true), 1, 7, "job", "job",
+					"job", 25);
+
+			assertIndexUsed(connection, "downloads", DownloadDao.FIND_BY_HASH_SQL, "hash");
+			assertIndexUsed(connection, "downloads", DownloadDao.FIND_BY_PATH_SQL, "path");
+			assertIndexUsed(connection, "downloads", DownloadDao.FIND_ALL_BY_PARAMETER_SQL, 1);
+
+			assertIndexUsed(connection, "parameter", ParameterDao.FIND_ALL_INPUT_BY_JOB_SQL, "job");
+			assertIndexUsed(connection, "parameter", ParameterDao.FIND_ALL_OUTPUT_BY_JOB_SQL, "job");
+			assertIndexUsed(connection, "steps", StepDao.FIND_ALL_BY_JOB_SQL, "job");
+			assertIndexUsed(connection, "log_messages", MessageDao.FIND_ALL_BY_STEP_SQL, 1);
+			assertIndexUsed(connection, "user", UserDao.FIND_BY_USERNAME_SQL, "admin");
+
+			assertIndexUsed(connection, "counters_history", CounterHistoryDao.FIND_BETWEEN_SQL, 0, 100);
+			assertIndexUsed(connection, "counters_rollup", CounterHistoryDao.FIND_ROLLUP_BETWEEN_SQL, 3600000, 0,
+					100);
+
+		} finally {
+			connection.close();
+		}
+
+	}
+
+	/**
+	 * Explains the statement with the given parameters and fails if the table
+	 * is read by a full table scan.
+	 */
+	private void assertIndexUsed(Connection connection, String table, String query, Object... params)
+			throws SQLException {
+		String plan = explain(connection, query, params);
+		assertFalse("Full table scan: " + plan, plan.toLowerCase().contains("." + table + ".tablescan"));
+	}
+
+	private String explain(Connection connection, String query, Object... params) throws SQLException {
+		PreparedStatement statement = connection.prepareStatement("explain " + query);
+		try {
+			for (int i = 0; i < params.length; i++) {
+				statement.setObject(i + 1, params[i]);
+			}
+			ResultSet result = statement.executeQuery();
+			StringBuilder plan = new StringBuilder();
+			while (result.next()) {
+				plan.append(result.getString(1));
+			}
+			return plan.toString();
+		} finally {
+			statement.close();
+		}
+	}
+
+}
@@ -0,0 +1,45 @@
+package cloudgene.mapred.jobs;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Vector;
+
+import junit.framework.TestCase;
+
+public class CounterRegistryTest extends TestCase {
+
+	public void testConcurrentAdds() throws InterruptedException {
+
+		Map<String, Long> totals = new HashMap<String, Long>();
+		totals.put("runs", 10L);
+		final CounterRegistry registry = new CounterRegistry(totals);
+
+		final Map<String, Integer> job = new HashMap<String, Integer>();
+		job.put("runs", 1);
+		job.put("chromosomes", 22);
+
+		Vector<Thread> threads = new Vector<Thread>();
+		for (int i = 0; i < 8; i++) {
+			Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (int j = 0; j < 100; j++) {
+						registry.addAll(job);
+					}
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertEquals(810, registry.get("runs"));
+		assertEquals(800 * 22, registry.get("chromosomes"));
+		assertEquals(0, registry.get("unknown"));
+		assertEquals(2, registry.getAll().size());
+
+	}
+
+}
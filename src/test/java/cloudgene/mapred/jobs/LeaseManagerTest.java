@@ -0,0 +1,144 @@
+package cloudgene.mapred.jobs;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import cloudgene.mapred.core.User;
+import cloudgene.mapred.database.JobDao;
+import cloudgene.mapred.database.LeaseDao;
+import cloudgene.mapred.util.Config;
+import cloudgene.mapred.util.Settings;
+import cloudgene.mapred.util.junit.TestServer;
+import cloudgene.mapred.wdl.WdlApp;
+import cloudgene.mapred.wdl.WdlReader;
+import genepi.db.Database;
+import genepi.hadoop.HdfsUtil;
+import genepi.io.FileUtil;
+import junit.framework.TestCase;
+
+public class LeaseManagerTest extends TestCase {
+
+	private Database database;
+
+	@Override
+	protected void setUp() throws Exception {
+		TestServer.getInstance().start();
+		database = TestServer.getInstance().getDatabase();
+	}
+
+	/**
+	 * Two workers share the database. The first worker stops its heartbeat, the
+	 * second one takes over the job and the first one cancels its copy.
+	 */
+	public void testTakeOverJobOfCrashedWorker() throws Exception {
+
+		Settings settingsA = createSettings("worker-a");
+		PersistentWorkflowEngine engineA = createEngine(settingsA);
+		LeaseManager managerA = new LeaseManager(database, engineA, settingsA);
+
+		Settings settingsB = createSettings("worker-b");
+		PersistentWorkflowEngine engineB = createEngine(settingsB);
+		LeaseManager managerB = new LeaseManager(database, engineB, settingsB);
+
+		AbstractJob job = createJob(settingsA, "lease-takeover-" + System.currentTimeMillis());
+		engineA.submit(job);
+		while (job.getState() != AbstractJob.STATE_RUNNING) {
+			Thread.sleep(500);
+		}
+
+		// one heartbeat of worker-a
+		managerA.run();
+
+		LeaseDao leaseDao = new LeaseDao(database);
+		assertEquals("worker-a", leaseDao.findOwner(job.getId()));
+		assertEquals(1, job.getLeaseToken());
+
+		// worker-a misses its heartbeats, the lease expires
+		Thread.sleep(3000);
+		assertNull(leaseDao.findOwner(job.getId()));
+
+		managerB.run();
+
+		AbstractJob jobB = engineB.getJobById(job.getId());
+		assertNotNull(jobB);
+		assertEquals(2, jobB.getLeaseToken());
+		assertEquals("worker-b", leaseDao.findOwner(job.getId()));
+
+		// worker-a comes back, detects the lost lease and stops its copy
+		managerA.run();
+		Thread.sleep(3000);
+		assertNull(engineA.getJobById(job.getId()));
+		assertEquals(AbstractJob.STATE_CANCELED, job.getState());
+
+		// updates of worker-a were rejected
+		AbstractJob jobInDatabase = new JobDao(database).findById(job.getId(), false);
+		assertTrue(jobInDatabase.getState() != AbstractJob.STATE_CANCELED);
+
+		engineB.cancel(jobB);
+		while (!jobB.isComplete()) {
+			Thread.sleep(500);
+		}
+		assertEquals(AbstractJob.STATE_CANCELED, new JobDao(database).findById(job.getId(), false).getState());
+
+		engineA.stop();
+		engineB.stop();
+
+	}
+
+	public void testRestartedWorkerReleasesOldLeases() throws Exception {
+
+		LeaseDao leaseDao = new LeaseDao(database);
+
+		String id = "lease-restart-" + System.currentTimeMillis();
+		assertEquals(1, leaseDao.claim(id, "worker-c", 60000));
+		assertEquals("worker-c", leaseDao.findOwner(id));
+
+		// a new instance with the same name owns none of the old jobs
+		PersistentWorkflowEngine engine = createEngine(createSettings("worker-c"));
+		assertNull(leaseDao.findOwner(id));
+		engine.stop();
+
+	}
+
+	private Settings createSettings(String worker) {
+		Settings settings = new Settings(new Config());
+		settings.setApps(TestServer.getInstance().getSettings().getApps());
+		settings.setWorker(worker);
+		settings.setLeaseTimeout(2);
+		return settings;
+	}
+
+	private PersistentWorkflowEngine createEngine(Settings settings) {
+		PersistentWorkflowEngine engine = new PersistentWorkflowEngine(database, 1, 1, settings.getWorker(),
+				settings.getLeaseTimeout() * 1000L);
+		new Thread(engine).start();
+		return engine;
+	}
+
+	private AbstractJob createJob(Settings settings, String id) throws Exception {
+
+		WdlApp app = WdlReader.loadAppFromFile("test-data/long-sleep.yaml");
+
+		Map<String, String> inputs = new HashMap<String, String>();
+		inputs.put("input", "input-file");
+
+		User user = TestServer.getInstance().getUser();
+
+		String hdfsWorkspace = HdfsUtil.path(settings.getHdfsWorkspace(), id);
+		String localWorkspace = FileUtil.path(settings.getLocalWorkspace(), id);
+		FileUtil.createDirectory(localWorkspace);
+
+		CloudgeneJob job = new CloudgeneJob(user, id, app, inputs);
+		job.setId(id);
+		job.setName(id);
+		job.setLocalWorkspace(localWorkspace);
+		job.setHdfsWorkspace(hdfsWorkspace);
+		job.setSettings(settings);
+		job.setRemoveHdfsWorkspace(true);
+		job.setApplication(app.getName() + " " + app.getVersion());
+		job.setApplicationId("long-sleep");
+
+		return job;
+	}
+
+}
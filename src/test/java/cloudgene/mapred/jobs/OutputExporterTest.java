@@ -0,0 +1,167 @@
+package cloudgene.mapred.jobs;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.commons.io.IOUtils;
+
+import genepi.io.FileUtil;
+import junit.framework.TestCase;
+
+public class OutputExporterTest extends TestCase {
+
+	public static final String FOLDER = "test-output-exporter";
+
+	private OutputExporter exporter;
+
+	private String hdfsFolder;
+
+	@Override
+	protected void setUp() throws Exception {
+
+		FileUtil.deleteDirectory(FOLDER);
+
+		// hadoop output folder with two part files
+		String input = FileUtil.path(FOLDER, "input");
+		FileUtil.createDirectory(input);
+		write(FileUtil.path(input, "part-r-00001"), "header\nline2\n");
+		write(FileUtil.path(input, "part-r-00000"), "header\nline1\n");
+		write(FileUtil.path(input, "_SUCCESS"), "");
+		write(FileUtil.path(input, ".hidden"), "hidden");
+		FileUtil.createDirectory(FileUtil.path(input, "subfolder"));
+		write(FileUtil.path(input, "subfolder", "part-r-00000"), "subfolder\n");
+
+		hdfsFolder = "file:" + new File(input).getAbsolutePath();
+		exporter = new OutputExporter(2);
+
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		exporter.close();
+		FileUtil.deleteDirectory(FOLDER);
+	}
+
+	public void testMergeAndRemoveHeader() throws IOException {
+
+		String output = createOutput("merge");
+		OutputExporter.Metrics metrics = exporter.exportFolder(hdfsFolder, output, "result.txt", false, true, true);
+
+		// parts are merged by name, the header is kept once
+		assertEquals("header\nline1\nline2\n", read(FileUtil.path(output, "result.txt")));
+		assertEquals(1, new File(output).list().length);
+
+		assertEquals(2, metrics.getFiles());
+		assertEquals(26, metrics.getBytes());
+
+	}
+
+	public void testMergeWithHeaders() throws IOException {
+
+		String output = createOutput("merge-headers");
+		exporter.exportFolder(hdfsFolder, output, "result.txt", false, true, false);
+
+		assertEquals("header\nline1\nheader\nline2\n", read(FileUtil.path(output, "result.txt")));
+
+	}
+
+	public void testZipAndMerge() throws IOException {
+
+		String output = createOutput("zip-merge");
+		exporter.exportFolder(hdfsFolder, output, "result.txt", true, true, true);
+
+		// one entry named after the parameter
+		Map<String, String> entries = readZip(FileUtil.path(output, "result.txt.zip"));
+		assertEquals(1, entries.size());
+		assertEquals("header\nline1\nline2\n", entries.get("result.txt"));
+		assertEquals(1, new File(output).list().length);
+
+	}
+
+	public void testZip() throws IOException {
+
+		String output = createOutput("zip");
+		OutputExporter.Metrics metrics = exporter.exportFolder(hdfsFolder, output, "result", true, false, true);
+
+		// one entry per part file, headers are not removed
+		Map<String, String> entries = readZip(FileUtil.path(output, "result.zip"));
+		assertEquals(2, entries.size());
+		assertEquals("header\nline1\n", entries.get("part-r-00000"));
+		assertEquals("header\nline2\n", entries.get("part-r-00001"));
+
+		assertEquals(2, metrics.getFiles());
+
+	}
+
+	public void testCopyParts() throws IOException {
+
+		String output = createOutput("copy");
+		OutputExporter.Metrics metrics = exporter.exportFolder(hdfsFolder, output, "result", false, false, true);
+
+		// part files are copied side by side, subfolders and hidden files
+		// are skipped
+		assertEquals("header\nline1\n", read(FileUtil.path(output, "part-r-00000")));
+		assertEquals("header\nline2\n", read(FileUtil.path(output, "part-r-00001")));
+		assertEquals(2, new File(output).list().length);
+
+		assertEquals(2, metrics.getFiles());
+		assertEquals(26, metrics.getBytes());
+
+	}
+
+	public void testExportFile() throws IOException {
+
+		String file = hdfsFolder + "/part-r-00000";
+
+		String output = createOutput("file");
+		exporter.exportFile(file, output, false);
+		assertEquals("header\nline1\n", read(FileUtil.path(output, "part-r-00000")));
+
+		String zipOutput = createOutput("file-zip");
+		OutputExporter.Metrics metrics = exporter.exportFile(file, zipOutput, true);
+		Map<String, String> entries = readZip(FileUtil.path(zipOutput, "part-r-00000.zip"));
+		assertEquals(1, entries.size());
+		assertEquals("header\nline1\n", entries.get("part-r-00000"));
+
+		assertEquals(1, metrics.getFiles());
+		assertEquals(13, metrics.getBytes());
+
+	}
+
+	private String createOutput(String name) {
+		String output = FileUtil.path(FOLDER, "output", name);
+		FileUtil.createDirectory(output);
+		return output;
+	}
+
+	private void write(String filename, String content) throws IOException {
+		Files.write(Paths.get(filename), content.getBytes("UTF-8"));
+	}
+
+	private String read(String filename) throws IOException {
+		return new String(Files.readAllBytes(Paths.get(filename)), "UTF-8");
+	}
+
+	private Map<String, String> readZip(String filename) throws IOException {
+		Map<String, String> entries = new HashMap<String, String>();
+		ZipFile zip = new ZipFile(filename);
+		try {
+			Enumeration<? extends ZipEntry> enumeration = zip.entries();
+			while (enumeration.hasMoreElements()) {
+				ZipEntry entry = enumeration.nextElement();
+				entries.put(entry.getName(), IOUtils.toString(zip.getInputStream(entry), "UTF-8"));
+			}
+		} finally {
+			zip.close();
+		}
+		return entries;
+	}
+
+}
@@ -0,0 +1,165 @@
+package cloudgene.mapred.jobs;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import cloudgene.mapred.database.CounterDao;
+import cloudgene.mapred.database.JobDao;
+import cloudgene.mapred.database.ParameterDao;
+import cloudgene.mapred.database.StepDao;
+import cloudgene.mapred.steps.ErrorStep;
+import cloudgene.mapred.util.Settings;
+import cloudgene.mapred.util.junit.TestServer;
+import cloudgene.mapred.wdl.WdlApp;
+import cloudgene.mapred.wdl.WdlReader;
+import genepi.db.Database;
+import genepi.hadoop.HdfsUtil;
+import genepi.io.FileUtil;
+import junit.framework.TestCase;
+
+public class PersistentWorkflowEngineTest extends TestCase {
+
+	private Database database;
+
+	private PersistentWorkflowEngine engine;
+
+	private JobDao dao;
+
+	@Override
+	protected void setUp() throws Exception {
+		TestServer.getInstance().start();
+		database = TestServer.getInstance().getDatabase();
+		engine = new PersistentWorkflowEngine(database, 1, 1);
+		dao = new JobDao(database);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		engine.stop();
+	}
+
+	public void testJobSubmitted() throws Exception {
+
+		CloudgeneJob job = createJob("submitted", "hello");
+		assertTrue(engine.jobSubmitted(job));
+
+		// job and parameters are written together
+		assertNotNull(dao.findById(job.getId(), false));
+		assertEquals(1, new ParameterDao(database).findAllInputByJob(job).size());
+		assertEquals(1, new ParameterDao(database).findAllOutputByJob(job).size());
+
+	}
+
+	public void testJobSubmittedRollback() throws Exception {
+
+		// value does not fit into the parameter table
+		CloudgeneJob job = createJob("submitted-rollback", repeat("x", 300));
+		assertFalse(engine.jobSubmitted(job));
+
+		assertNull(dao.findById(job.getId(), false));
+		assertEquals(0, new ParameterDao(database).findAllInputByJob(job).size());
+
+	}
+
+	public void testSubmitRejected() throws Exception {
+
+		// jobs without database row are not queued
+		CloudgeneJob job = createJob("submit-rejected", repeat("x", 300));
+		assertFalse(engine.submit(job));
+
+		assertEquals(AbstractJob.STATE_FAILED, job.getState());
+		assertTrue(job.isComplete());
+		assertFalse(engine.isInQueue(job));
+		assertNull(engine.getJobById(job.getId()));
+		assertNull(dao.findById(job.getId(), false));
+
+	}
+
+	public void testJobCompleted() throws Exception {
+
+		CloudgeneJob job = createJob("completed", "hello");
+		engine.jobSubmitted(job);
+
+		String counter = "counter-" + job.getId();
+		complete(job, "Step1", counter);
+		engine.jobCompleted(job);
+
+		assertEquals(AbstractJob.STATE_SUCCESS, dao.findById(job.getId(), false).getState());
+		assertEquals(1, new StepDao(database).findAllByJob(job).size());
+		assertEquals(5, (long) new CounterDao(database).getAll().get(counter));
+		assertEquals(5, (long) engine.getCounters(AbstractJob.STATE_SUCCESS).get(counter));
+
+	}
+
+	public void testJobCompletedRollback() throws Exception {
+
+		CloudgeneJob job = createJob("completed-rollback", "hello");
+		engine.jobSubmitted(job);
+
+		// step name does not fit into the steps table
+		String counter = "counter-" + job.getId();
+		complete(job, repeat("x", 400), counter);
+		engine.jobCompleted(job);
+
+		// steps and counters are rolled back, the state is written anyway
+		assertEquals(AbstractJob.STATE_SUCCESS, dao.findById(job.getId(), false).getState());
+		assertEquals(0, new StepDao(database).findAllByJob(job).size());
+		assertNull(new CounterDao(database).getAll().get(counter));
+		assertNull(engine.getCounters(AbstractJob.STATE_SUCCESS).get(counter));
+
+	}
+
+	private void complete(CloudgeneJob job, String stepName, String counter) {
+
+		job.setup();
+
+		ErrorStep step = new ErrorStep("");
+		step.setName(stepName);
+		step.setJob(job);
+		job.getSteps().add(step);
+
+		job.getContext().incCounter(counter, 5);
+		job.getContext().submitCounter(counter);
+
+		job.setState(AbstractJob.STATE_SUCCESS);
+		job.setFinishedOn(System.currentTimeMillis());
+
+	}
+
+	private CloudgeneJob createJob(String name, String text) throws Exception {
+
+		WdlApp app = WdlReader.loadAppFromFile("test-data/write-text-to-file.yaml");
+		Settings settings = TestServer.getInstance().getSettings();
+
+		Map<String, String> inputs = new HashMap<String, String>();
+		inputs.put("inputtext", text);
+
+		String id = "engine-" + name + "-" + System.currentTimeMillis();
+
+		String localWorkspace = FileUtil.path(settings.getLocalWorkspace(), id);
+		FileUtil.createDirectory(localWorkspace);
+
+		CloudgeneJob job = new CloudgeneJob(TestServer.getInstance().getUser(), id, app, inputs);
+		job.setId(id);
+		job.setName(id);
+		job.setLocalWorkspace(localWorkspace);
+		job.setHdfsWorkspace(HdfsUtil.path(settings.getHdfsWorkspace(), id));
+		job.setSettings(settings);
+		job.setApplication(app.getName() + " " + app.getVersion());
+		job.setApplicationId("write-text-to-file");
+		job.setState(AbstractJob.STATE_WAITING);
+		job.setSubmittedOn(System.currentTimeMillis());
+
+		return job;
+
+	}
+
+	private String repeat(String text, int times) {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < times; i++) {
+			builder.append(text);
+		}
+		return builder.toString();
+	}
+
+}
@@ -3,6 +3,7 @@ package cloudgene.mapred.jobs;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.BooleanSupplier;
 
 import cloudgene.mapred.core.User;
 import cloudgene.mapred.util.Settings;
@@ -15,6 +16,8 @@ import junit.framework.TestCase;
 
 public class PriorityThreadPoolExecutorTest extends TestCase {
 
+	public static final long TIMEOUT = 60000;
+
 	private WorkflowEngine engine;
 
 	@Override
@@ -432,6 +435,109 @@ public class PriorityThreadPoolExecutorTest extends TestCase {
 		}
 	}
 
+	/**
+	 * Submits 2 jobs, the second one waits until the first one is canceled.
+	 * Checks started jobs and wait times of both queues.
+	 */
+	public void testWaitTimes() throws Exception {
+
+		waitFor(() -> isEmpty());
+
+		WdlApp app = WdlReader.loadAppFromFile("test-data/long-sleep.yaml");
+
+		Map<String, String> inputs = new HashMap<String, String>();
+		inputs.put("input", "input-file");
+
+		Map<String, Long> waitTimesBefore = engine.getWaitTimes();
+
+		AbstractJob job1 = createJobFromWdl(app, "job_wait_a_" + System.currentTimeMillis(), inputs);
+		engine.submit(job1);
+		waitFor(() -> job1.getState() == AbstractJob.STATE_RUNNING);
+
+		long submitted = System.currentTimeMillis();
+		AbstractJob job2 = createJobFromWdl(app, "job_wait_b_" + System.currentTimeMillis(), inputs);
+		engine.submit(job2);
+		waitFor(() -> engine.getAllJobsInLongTimeQueue().contains(job2));
+		long queued = System.currentTimeMillis();
+
+		assertEquals(AbstractJob.STATE_RUNNING, job1.getState());
+		assertEquals(AbstractJob.STATE_WAITING, job2.getState());
+
+		Map<String, Long> waitTimes = engine.getWaitTimes();
+		assertEquals(waitTimesBefore.get("setup_started") + 2, (long) waitTimes.get("setup_started"));
+		assertEquals(waitTimesBefore.get("queue_started") + 1, (long) waitTimes.get("queue_started"));
+
+		// job2 starts as soon as job1 is canceled
+		long canceled = System.currentTimeMillis();
+		engine.cancel(job1);
+		waitFor(() -> job2.getState() == AbstractJob.STATE_RUNNING);
+
+		// job2 entered the queue before 'queued' and started after 'canceled'
+		waitTimes = engine.getWaitTimes();
+		assertEquals(waitTimesBefore.get("queue_started") + 2, (long) waitTimes.get("queue_started"));
+		assertTrue(waitTimes.get("queue_wait_last") >= canceled - queued);
+		assertTrue(waitTimes.get("queue_wait_max") >= waitTimes.get("queue_wait_last"));
+		assertTrue(waitTimes.get("queue_wait_avg") <= waitTimes.get("queue_wait_max"));
+		assertTrue(waitTimes.get("setup_wait_last") <= queued - submitted);
+
+		engine.cancel(job2);
+		waitFor(() -> isEmpty());
+
+	}
+
+	/**
+	 * Submits 3 short jobs. Finished jobs are removed from the queue by the
+	 * completion loop and the next job is started.
+	 */
+	public void testCompletedJobsLeaveQueue() throws Exception {
+
+		waitFor(() -> isEmpty());
+
+		WdlApp app = WdlReader.loadAppFromFile("test-data/return-true.yaml");
+
+		Map<String, String> inputs = new HashMap<String, String>();
+		inputs.put("input", "input-file");
+
+		long startedBefore = engine.getWaitTimes().get("queue_started");
+
+		AbstractJob job1 = createJobFromWdl(app, "job_complete_a_" + System.currentTimeMillis(), inputs);
+		AbstractJob job2 = createJobFromWdl(app, "job_complete_b_" + System.currentTimeMillis(), inputs);
+		AbstractJob job3 = createJobFromWdl(app, "job_complete_c_" + System.currentTimeMillis(), inputs);
+		engine.submit(job1);
+		engine.submit(job2);
+		engine.submit(job3);
+
+		// jobs are removed right after they are marked as complete
+		waitFor(() -> job1.isComplete() && job2.isComplete() && job3.isComplete());
+		waitFor(() -> isEmpty());
+
+		assertEquals(AbstractJob.STATE_SUCCESS, job1.getState());
+		assertEquals(AbstractJob.STATE_SUCCESS, job2.getState());
+		assertEquals(AbstractJob.STATE_SUCCESS, job3.getState());
+
+		// jobs were executed one after the other
+		assertTrue(job1.getEndTime() <= job2.getStartTime());
+		assertTrue(job2.getEndTime() <= job3.getStartTime());
+
+		assertNull(engine.getJobById(job1.getId()));
+		assertNull(engine.getJobById(job2.getId()));
+		assertNull(engine.getJobById(job3.getId()));
+		assertEquals(startedBefore + 3, (long) engine.getWaitTimes().get("queue_started"));
+
+	}
+
+	private boolean isEmpty() {
+		return engine.getAllJobsInLongTimeQueue().isEmpty() && engine.getAllJobsInShortTimeQueue().isEmpty();
+	}
+
+	private void waitFor(BooleanSupplier condition) throws InterruptedException {
+		long timeout = System.currentTimeMillis() + TIMEOUT;
+		while (!condition.getAsBoolean() && System.currentTimeMillis() < timeout) {
+			Thread.sleep(50);
+		}
+		assertTrue("Condition not reached after " + TIMEOUT + " ms", condition.getAsBoolean());
+	}
+
 	public CloudgeneJob createJobFromWdl(WdlApp app, String id, Map<String, String> inputs) throws Exception {
 
 		User user = TestServer.getInstance().getUser();
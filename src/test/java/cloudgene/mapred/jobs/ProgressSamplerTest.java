@@ -0,0 +1,126 @@
+package cloudgene.mapred.jobs;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+
+import cloudgene.mapred.jobs.queue.PriorityRunnable;
+import cloudgene.mapred.jobs.queue.Queue;
+import junit.framework.TestCase;
+
+public class ProgressSamplerTest extends TestCase {
+
+	private CountDownLatch latch;
+
+	@Override
+	protected void setUp() throws Exception {
+		latch = new CountDownLatch(1);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		latch.countDown();
+	}
+
+	public void testSampleAllQueues() {
+
+		Queue setupQueue = createQueue("SetupQueue");
+		Queue executionQueue = createQueue("ExecutionQueue");
+
+		// jobs executing setup steps are waiting
+		SampledJob setupJob = new SampledJob("setup-job", AbstractJob.STATE_WAITING);
+		setupQueue.submit(setupJob);
+
+		SampledJob runningJob = new SampledJob("running-job", AbstractJob.STATE_RUNNING);
+		executionQueue.submit(runningJob);
+
+		SampledJob exportingJob = new SampledJob("exporting-job", AbstractJob.STATE_EXPORTING);
+		executionQueue.submit(exportingJob);
+
+		SampledJob canceledJob = new SampledJob("canceled-job", AbstractJob.STATE_CANCELED);
+		executionQueue.submit(canceledJob);
+
+		ProgressSampler sampler = new ProgressSampler(Arrays.asList(setupQueue, executionQueue));
+		assertEquals(0, sampler.getLastSample());
+
+		sampler.run();
+
+		assertEquals(1, setupJob.samples);
+		assertEquals(50, setupJob.getProgress());
+		assertEquals(1, runningJob.samples);
+		assertEquals(1, exportingJob.samples);
+		assertEquals(0, canceledJob.samples);
+		assertEquals(-1, canceledJob.getProgress());
+		assertTrue(sampler.getLastSample() > 0);
+
+	}
+
+	public void testFailedSampleIsSkipped() {
+
+		Queue queue = createQueue("ExecutionQueue");
+
+		SampledJob brokenJob = new SampledJob("broken-job", AbstractJob.STATE_RUNNING);
+		brokenJob.broken = true;
+		queue.submit(brokenJob);
+
+		SampledJob runningJob = new SampledJob("running-job", AbstractJob.STATE_RUNNING);
+		queue.submit(runningJob);
+
+		// an exception does not stop sampling of other jobs
+		ProgressSampler sampler = new ProgressSampler(Arrays.asList(queue));
+		sampler.run();
+		assertEquals(1, brokenJob.samples);
+		assertEquals(1, runningJob.samples);
+
+	}
+
+	private Queue createQueue(String name) {
+
+		return new Queue(name, 5, false, false) {
+
+			@Override
+			public PriorityRunnable createRunnable(AbstractJob job) {
+				// keeps the job in the queue until the test is finished
+				return new PriorityRunnable() {
+					@Override
+					public void run() {
+						try {
+							latch.await();
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+					}
+				};
+			}
+
+			@Override
+			public void onComplete(AbstractJob job) {
+
+			}
+
+		};
+
+	}
+
+	class SampledJob extends CloudgeneJob {
+
+		int samples = 0;
+
+		boolean broken = false;
+
+		public SampledJob(String id, int state) {
+			setId(id);
+			setState(state);
+		}
+
+		@Override
+		public void updateProgress() {
+			samples++;
+			if (broken) {
+				throw new IllegalStateException("JobTracker not reachable.");
+			}
+			setProgress(50);
+		}
+
+	}
+
+}
@@ -46,6 +46,37 @@ public class WorkflowEngineTest extends TestCase {
 		assertEquals(AbstractJob.STATE_SUCCESS, job.getState());
 	}
 
+	public void testParallelSteps() throws Exception {
+
+		WdlApp app = WdlReader.loadAppFromFile("test-data/parallel-steps.yaml");
+
+		Map<String, String> inputs = new HashMap<String, String>();
+		inputs.put("input", "input-file");
+
+		AbstractJob job = createJobFromWdl(app, inputs);
+		engine.submit(job);
+		while (!job.isComplete()) {
+			Thread.sleep(500);
+		}
+		assertEquals(3, job.getSteps().size());
+		assertEquals(AbstractJob.STATE_SUCCESS, job.getState());
+	}
+
+	public void testParallelStepsWithFailure() throws Exception {
+
+		WdlApp app = WdlReader.loadAppFromFile("test-data/parallel-steps-failure.yaml");
+
+		Map<String, String> inputs = new HashMap<String, String>();
+		inputs.put("input", "input-file");
+
+		AbstractJob job = createJobFromWdl(app, inputs);
+		engine.submit(job);
+		while (!job.isComplete()) {
+			Thread.sleep(500);
+		}
+		assertEquals(AbstractJob.STATE_FAILED, job.getState());
+	}
+
 	public void testReturnFalseStep() throws Exception {
 
 		WdlApp app = WdlReader.loadAppFromFile("test-data/return-false.yaml");
@@ -0,0 +1,152 @@
+package cloudgene.mapred.jobs.engine;
+
+import java.sql.Connection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+
+import cloudgene.mapred.database.CheckpointDao;
+import cloudgene.mapred.database.util.JdbcBatch;
+import cloudgene.mapred.jobs.CloudgeneJob;
+import cloudgene.mapred.jobs.CloudgeneStep;
+import cloudgene.mapred.util.Settings;
+import cloudgene.mapred.util.junit.TestServer;
+import cloudgene.mapred.wdl.WdlApp;
+import cloudgene.mapred.wdl.WdlReader;
+import genepi.db.Database;
+import genepi.hadoop.HdfsUtil;
+import genepi.io.FileUtil;
+import junit.framework.TestCase;
+
+public class ExecutorTest extends TestCase {
+
+	private Database database;
+
+	private CheckpointDao dao;
+
+	@Override
+	protected void setUp() throws Exception {
+		TestServer.getInstance().start();
+		database = TestServer.getInstance().getDatabase();
+		dao = new CheckpointDao(database);
+	}
+
+	/**
+	 * The first run stops in the last step. The resumed run skips the
+	 * completed steps and restores their counters.
+	 */
+	public void testResumeSkipsCompletedSteps() throws Exception {
+
+		String id = "resume-skip-" + System.currentTimeMillis();
+
+		CloudgeneJob job = createJob(id, false);
+		assertFalse(job.execute());
+		assertEquals(3, getExecutedSteps(job).size());
+		assertEquals(2, dao.findAllByJob(id).size());
+		assertTrue(dao.findAllByJob(id).containsKey("step1"));
+		assertTrue(dao.findAllByJob(id).containsKey("step2"));
+
+		CloudgeneJob resumedJob = createJob(id, true);
+		assertTrue(resumedJob.execute());
+
+		List<String> steps = getExecutedSteps(resumedJob);
+		assertEquals(1, steps.size());
+		assertEquals("Step3", steps.get(0));
+
+		Map<String, Integer> counters = resumedJob.getContext().getCounters();
+		assertEquals(1, (int) counters.get("steps.success.step1"));
+		assertEquals(1, (int) counters.get("steps.success.step2"));
+		assertEquals(1, (int) counters.get("steps.success.step3"));
+		assertEquals(3, dao.findAllByJob(id).size());
+
+		dao.deleteByJob(id);
+
+	}
+
+	/**
+	 * Steps with a checkpoint are executed again if a predecessor has to be
+	 * executed again.
+	 */
+	public void testResumeRerunsDependents() throws Exception {
+
+		String id = "resume-dependents-" + System.currentTimeMillis();
+
+		CloudgeneJob job = createJob(id, false);
+		assertFalse(job.execute());
+		assertEquals(2, dao.findAllByJob(id).size());
+
+		// checkpoint of the first step is lost
+		Connection connection = database.getDataSource().getConnection();
+		try {
+			JdbcBatch.executeUpdate(connection, "delete from job_checkpoints where job_id = ? and step = ?",
+					new Object[] { id, "step1" });
+		} finally {
+			connection.close();
+		}
+
+		CloudgeneJob resumedJob = createJob(id, true);
+		assertTrue(resumedJob.execute());
+
+		List<String> steps = getExecutedSteps(resumedJob);
+		assertEquals(3, steps.size());
+		assertEquals("Step1", steps.get(0));
+		assertEquals("Step2", steps.get(1));
+		assertEquals("Step3", steps.get(2));
+
+		dao.deleteByJob(id);
+
+	}
+
+	public void testLostLeaseWritesNoCheckpoints() throws Exception {
+
+		String id = "resume-fenced-" + System.currentTimeMillis();
+
+		// job is owned by an other worker
+		CloudgeneJob job = createJob(id, false);
+		job.setWorker("worker-without-lease");
+		job.setLeaseToken(1);
+		assertFalse(job.execute());
+
+		assertEquals(0, dao.findAllByJob(id).size());
+
+	}
+
+	private CloudgeneJob createJob(String id, boolean resume) throws Exception {
+
+		WdlApp app = WdlReader.loadAppFromFile("test-data/resume-steps.yaml");
+		Settings settings = TestServer.getInstance().getSettings();
+
+		Map<String, String> inputs = new HashMap<String, String>();
+		inputs.put("input", "input-file");
+
+		String localWorkspace = FileUtil.path(settings.getLocalWorkspace(), id);
+		FileUtil.createDirectory(localWorkspace);
+
+		CloudgeneJob job = new CloudgeneJob(TestServer.getInstance().getUser(), id, app, inputs);
+		job.setId(id);
+		job.setName(id);
+		job.setLocalWorkspace(localWorkspace);
+		job.setHdfsWorkspace(HdfsUtil.path(settings.getHdfsWorkspace(), id));
+		job.setSettings(settings);
+
+		Checkpoints checkpoints = new Checkpoints(dao, id);
+		if (resume) {
+			checkpoints.load();
+		}
+		job.setCheckpoints(checkpoints);
+		job.setup();
+
+		return job;
+
+	}
+
+	private List<String> getExecutedSteps(CloudgeneJob job) {
+		List<String> steps = new Vector<String>();
+		for (CloudgeneStep step : job.getSteps()) {
+			steps.add(step.getName());
+		}
+		return steps;
+	}
+
+}
@@ -0,0 +1,211 @@
+package cloudgene.mapred.jobs.engine;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+import cloudgene.mapred.jobs.CloudgeneContext;
+import cloudgene.mapred.jobs.CloudgeneJob;
+import cloudgene.mapred.jobs.engine.graph.GraphNode;
+import cloudgene.mapred.util.Settings;
+import cloudgene.mapred.util.junit.TestServer;
+import cloudgene.mapred.wdl.WdlApp;
+import cloudgene.mapred.wdl.WdlReader;
+import genepi.hadoop.HdfsUtil;
+import genepi.io.FileUtil;
+import junit.framework.TestCase;
+
+public class StepCacheTest extends TestCase {
+
+	public static final String FOLDER = "test-step-cache";
+
+	public static final String WORKSPACE = "test-step-cache-jobs";
+
+	private int jobs = 0;
+
+	private Map<GraphNode, CloudgeneContext> contexts = new HashMap<GraphNode, CloudgeneContext>();
+
+	@Override
+	protected void setUp() throws Exception {
+		TestServer.getInstance().start();
+		FileUtil.deleteDirectory(FOLDER);
+		FileUtil.deleteDirectory(WORKSPACE);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		FileUtil.deleteDirectory(FOLDER);
+		FileUtil.deleteDirectory(WORKSPACE);
+	}
+
+	public void testFingerprint() throws Exception {
+
+		StepCache cache = new StepCache(FOLDER, 1024 * 1024);
+
+		GraphNode node1 = createNode("hello");
+		GraphNode node2 = createNode("hello");
+		GraphNode node3 = createNode("hey");
+
+		assertTrue(cache.isCacheable(node1, context(node1)));
+
+		// job ids are not part of the fingerprint, input values are
+		String fingerprint = cache.getFingerprint(node1, context(node1));
+		assertEquals(fingerprint, cache.getFingerprint(node2, context(node2)));
+		assertFalse(fingerprint.equals(cache.getFingerprint(node3, context(node3))));
+
+		// steps with 'cache: false' are never cached
+		node1.getStep().put("cache", "false");
+		assertFalse(cache.isCacheable(node1, context(node1)));
+
+	}
+
+	public void testHitAndMiss() throws Exception {
+
+		StepCache cache = new StepCache(FOLDER, 1024 * 1024);
+
+		GraphNode node1 = createNode("hello");
+		assertFalse(cache.restore(node1, context(node1)));
+
+		// fingerprint of the miss is used again to store the outputs
+		String fingerprint = node1.getFingerprint();
+		assertEquals(cache.getFingerprint(node1, context(node1)), fingerprint);
+
+		run(node1, "hello");
+		cache.addToCache(node1, context(node1));
+		assertTrue(cache.contains(fingerprint));
+		assertEquals(1, cache.getEntries());
+		assertEquals(5, cache.getSize());
+
+		// same inputs: outputs are copied to the workspace of the new job
+		GraphNode node2 = createNode("hello");
+		assertTrue(cache.restore(node2, context(node2)));
+		assertEquals("hello", read(context(node2).getOutput("output")));
+
+		// different inputs
+		GraphNode node3 = createNode("hey");
+		assertFalse(cache.restore(node3, context(node3)));
+
+		// entries are found again after a restart
+		StepCache restarted = new StepCache(FOLDER, 1024 * 1024);
+		assertEquals(1, restarted.getEntries());
+		assertEquals(5, restarted.getSize());
+		assertTrue(restarted.restore(node2, context(node2)));
+
+	}
+
+	public void testEviction() throws Exception {
+
+		StepCache cache = new StepCache(FOLDER, 15);
+
+		GraphNode node1 = createNode("1");
+		run(node1, "0123456789");
+		cache.addToCache(node1, context(node1));
+		String fingerprint1 = cache.getFingerprint(node1, context(node1));
+
+		GraphNode node2 = createNode("2");
+		run(node2, "0123456789");
+		cache.addToCache(node2, context(node2));
+		String fingerprint2 = cache.getFingerprint(node2, context(node2));
+
+		// least recently used entry is removed
+		assertFalse(cache.contains(fingerprint1));
+		assertFalse(new File(FileUtil.path(FOLDER, fingerprint1)).exists());
+		assertTrue(cache.contains(fingerprint2));
+		assertEquals(1, cache.getEntries());
+		assertEquals(10, cache.getSize());
+
+		// entries larger than the cache are not stored
+		GraphNode node3 = createNode("3");
+		run(node3, "0123456789012345");
+		cache.addToCache(node3, context(node3));
+		assertFalse(cache.contains(cache.getFingerprint(node3, context(node3))));
+		assertEquals(1, cache.getEntries());
+
+	}
+
+	public void testPinnedEntryIsNotEvicted() throws Exception {
+
+		StepCache cache = new StepCache(FOLDER, 15);
+
+		GraphNode node1 = createNode("1");
+		run(node1, "0123456789");
+		cache.addToCache(node1, context(node1));
+		String fingerprint1 = cache.getFingerprint(node1, context(node1));
+
+		// entry is restored by an other job at the moment
+		assertTrue(cache.pin(fingerprint1));
+
+		GraphNode node2 = createNode("2");
+		run(node2, "0123456789");
+		cache.addToCache(node2, context(node2));
+		String fingerprint2 = cache.getFingerprint(node2, context(node2));
+
+		// the unpinned entry is evicted instead
+		assertTrue(cache.contains(fingerprint1));
+		assertFalse(cache.contains(fingerprint2));
+
+		GraphNode node3 = createNode("3");
+		run(node3, "01234");
+		cache.addToCache(node3, context(node3));
+		assertTrue(cache.contains(fingerprint1));
+		assertEquals(15, cache.getSize());
+
+		// released entries are evicted again
+		cache.unpin(fingerprint1);
+		GraphNode node4 = createNode("4");
+		run(node4, "01234");
+		cache.addToCache(node4, context(node4));
+		assertFalse(cache.contains(fingerprint1));
+		assertEquals(10, cache.getSize());
+
+		assertFalse(cache.pin("unknown"));
+
+	}
+
+	private GraphNode createNode(String text) throws Exception {
+
+		WdlApp app = WdlReader.loadAppFromFile("test-data/write-text-to-file.yaml");
+		Settings settings = TestServer.getInstance().getSettings();
+
+		Map<String, String> inputs = new HashMap<String, String>();
+		inputs.put("inputtext", text);
+
+		String id = "step_cache_" + System.currentTimeMillis() + "_" + (jobs++);
+
+		String localWorkspace = FileUtil.path(WORKSPACE, id);
+		FileUtil.createDirectory(localWorkspace);
+
+		CloudgeneJob job = new CloudgeneJob(TestServer.getInstance().getUser(), id, app, inputs);
+		job.setId(id);
+		job.setName(id);
+		job.setLocalWorkspace(localWorkspace);
+		job.setHdfsWorkspace(HdfsUtil.path(settings.getHdfsWorkspace(), id));
+		job.setSettings(settings);
+		job.setup();
+
+		GraphNode node = new GraphNode(app.getWorkflow().getSteps().get(0), job.getContext());
+		node.addInput("inputtext");
+		node.addOutput("output");
+		contexts.put(node, job.getContext());
+		return node;
+
+	}
+
+	private CloudgeneContext context(GraphNode node) {
+		return contexts.get(node);
+	}
+
+	private void run(GraphNode node, String content) throws IOException {
+		File output = new File(context(node).getOutput("output"));
+		output.getParentFile().mkdirs();
+		Files.write(output.toPath(), content.getBytes("UTF-8"));
+	}
+
+	private String read(String filename) throws IOException {
+		return new String(Files.readAllBytes(Paths.get(filename)), "UTF-8");
+	}
+
+}
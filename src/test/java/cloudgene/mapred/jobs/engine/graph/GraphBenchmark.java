@@ -0,0 +1,160 @@
+package cloudgene.mapred.jobs.engine.graph;
+
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Builds and drains synthetic per-chunk workflows (qc_i -> impute_i -> merge)
+ * with 1k - 10k nodes. The adjacency graph is drained node by node like the
+ * parallel executor does, the flat edge list (the former implementation) only
+ * level by level like the sequential executor.
+ * 
+ * Run with: mvn test-compile exec:java
+ * -Dexec.mainClass=cloudgene.mapred.jobs.engine.graph.GraphBenchmark
+ * -Dexec.classpathScope=test
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+public class GraphBenchmark {
+
+	@Param({ "1000", "5000", "10000" })
+	public int nodes;
+
+	private List<GraphNode> qc;
+
+	private List<GraphNode> impute;
+
+	private GraphNode merge;
+
+	@Setup
+	public void setup() {
+		int chunks = (nodes - 1) / 2;
+		qc = new Vector<GraphNode>();
+		impute = new Vector<GraphNode>();
+		for (int i = 0; i < chunks; i++) {
+			qc.add(GraphTest.createNode("qc_" + i));
+			impute.add(GraphTest.createNode("impute_" + i));
+		}
+		merge = GraphTest.createNode("merge");
+	}
+
+	@Benchmark
+	public int adjacencyGraph() {
+
+		Graph graph = new Graph(null);
+		for (int i = 0; i < qc.size(); i++) {
+			graph.addNode(qc.get(i));
+			graph.addNode(impute.get(i));
+		}
+		graph.addNode(merge);
+		for (int i = 0; i < qc.size(); i++) {
+			graph.connect(qc.get(i), impute.get(i), null);
+			graph.connect(impute.get(i), merge, null);
+		}
+
+		if (graph.hasCycle()) {
+			throw new IllegalStateException();
+		}
+
+		int executed = 0;
+		while (graph.getSize() > 0) {
+			GraphNode node = graph.getSources().get(0);
+			graph.remove(node);
+			executed++;
+		}
+		return executed;
+	}
+
+	@Benchmark
+	public int flatEdgeList() {
+
+		FlatGraph graph = new FlatGraph();
+		for (int i = 0; i < qc.size(); i++) {
+			graph.nodes.add(qc.get(i));
+			graph.nodes.add(impute.get(i));
+		}
+		graph.nodes.add(merge);
+		for (int i = 0; i < qc.size(); i++) {
+			graph.edges.add(new GraphEdge(qc.get(i), impute.get(i), null));
+			graph.edges.add(new GraphEdge(impute.get(i), merge, null));
+		}
+
+		int executed = 0;
+		while (graph.nodes.size() > 0) {
+			for (GraphNode node : graph.getSources()) {
+				graph.remove(node);
+				executed++;
+			}
+		}
+		return executed;
+	}
+
+	/**
+	 * Former implementation of {@link Graph} based on a flat list of edges.
+	 */
+	static class FlatGraph {
+
+		List<GraphNode> nodes = new Vector<GraphNode>();
+
+		List<GraphEdge> edges = new Vector<GraphEdge>();
+
+		void remove(GraphNode node) {
+			List<GraphEdge> remove = new Vector<GraphEdge>();
+			nodes.remove(node);
+			for (GraphEdge edge : edges) {
+				if (edge.getSource() == node || edge.getTarget() == node) {
+					remove.add(edge);
+				}
+			}
+			edges.removeAll(remove);
+		}
+
+		int getInDegree(GraphNode node) {
+			int degree = 0;
+			for (GraphEdge edge : edges) {
+				if (edge.getTarget() == node) {
+					degree++;
+				}
+			}
+			return degree;
+		}
+
+		List<GraphNode> getSources() {
+			List<GraphNode> sources = new Vector<GraphNode>();
+			for (GraphNode node : nodes) {
+				if (getInDegree(node) == 0) {
+					sources.add(node);
+				}
+			}
+			return sources;
+		}
+
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder().include(GraphBenchmark.class.getSimpleName()).build();
+		new Runner(options).run();
+	}
+
+}
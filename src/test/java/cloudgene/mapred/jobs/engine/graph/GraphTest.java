@@ -0,0 +1,88 @@
+package cloudgene.mapred.jobs.engine.graph;
+
+import java.util.List;
+
+import cloudgene.mapred.wdl.WdlStep;
+import junit.framework.TestCase;
+
+public class GraphTest extends TestCase {
+
+	public void testDegreesAndSources() {
+
+		Graph graph = new Graph(null);
+		GraphNode a = createNode("a");
+		GraphNode b = createNode("b");
+		GraphNode c = createNode("c");
+		GraphNode d = createNode("d");
+		graph.addNode(a);
+		graph.addNode(b);
+		graph.addNode(c);
+		graph.addNode(d);
+
+		// a -> c, b -> c, c -> d
+		graph.connect(a, c, null);
+		graph.connect(b, c, null);
+		graph.connect(c, d, null);
+		// duplicate edges are ignored
+		graph.connect(a, c, null);
+
+		assertEquals(3, graph.getEdgeCount());
+		assertEquals(3, graph.getEdges().size());
+		assertEquals(2, graph.getInDegree(c));
+		assertEquals(1, graph.getOutDegree(c));
+		assertTrue(graph.areConnected(a, c));
+		assertFalse(graph.areConnected(c, a));
+		assertEquals(1, graph.getSuccessors(a).size());
+		assertEquals(c, graph.getSuccessors(a).get(0));
+		assertEquals(0, graph.getSuccessors(d).size());
+
+		List<GraphNode> sources = graph.getSources();
+		assertEquals(2, sources.size());
+		assertEquals(a, sources.get(0));
+		assertEquals(b, sources.get(1));
+
+		graph.remove(a);
+		assertEquals(1, graph.getSources().size());
+		assertEquals(b, graph.getSources().get(0));
+
+		// c is ready after all its dependencies are removed
+		graph.remove(b);
+		assertEquals(1, graph.getSources().size());
+		assertEquals(c, graph.getSources().get(0));
+
+		graph.remove(c);
+		assertEquals(d, graph.getSources().get(0));
+		assertEquals(0, graph.getEdgeCount());
+
+		graph.remove(d);
+		assertEquals(0, graph.getSize());
+		assertEquals(0, graph.getSources().size());
+
+	}
+
+	public void testCycle() {
+
+		Graph graph = new Graph(null);
+		GraphNode a = createNode("a");
+		GraphNode b = createNode("b");
+		GraphNode c = createNode("c");
+		graph.addNode(a);
+		graph.addNode(b);
+		graph.addNode(c);
+
+		graph.connect(a, b, null);
+		graph.connect(b, c, null);
+		assertFalse(graph.hasCycle());
+
+		graph.connect(c, b, null);
+		assertTrue(graph.hasCycle());
+
+	}
+
+	public static GraphNode createNode(String name) {
+		WdlStep step = new WdlStep();
+		step.put("name", name);
+		return new GraphNode(step);
+	}
+
+}
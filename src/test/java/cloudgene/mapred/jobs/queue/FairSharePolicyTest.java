@@ -0,0 +1,100 @@
+package cloudgene.mapred.jobs.queue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+
+import cloudgene.mapred.core.User;
+import cloudgene.mapred.util.Settings;
+import junit.framework.TestCase;
+
+public class FairSharePolicyTest extends TestCase {
+
+	public void testUsersAreInterleaved() {
+
+		Settings settings = new Settings();
+		FairSharePolicy policy = new FairSharePolicy(settings);
+
+		User user1 = createUser("user1", "user");
+		User user2 = createUser("user2", "user");
+
+		// user1 submits many jobs before user2 submits two jobs
+		List<TestJob> jobs1 = new Vector<TestJob>();
+		for (int i = 0; i < 20; i++) {
+			TestJob job = new TestJob("a" + i, user1);
+			job.setPriority(policy.getPriority(job));
+			jobs1.add(job);
+		}
+		TestJob jobB1 = new TestJob("b1", user2);
+		jobB1.setPriority(policy.getPriority(jobB1));
+		TestJob jobB2 = new TestJob("b2", user2);
+		jobB2.setPriority(policy.getPriority(jobB2));
+
+		// first jobs of both users share the first turn, second job of user2
+		// runs before the third job of user1
+		assertEquals(jobs1.get(0).getPriority(), jobB1.getPriority());
+		assertTrue(jobB2.getPriority() <= jobs1.get(1).getPriority());
+		assertTrue(jobB2.getPriority() < jobs1.get(2).getPriority());
+
+	}
+
+	public void testWeights() {
+
+		Settings settings = new Settings();
+		Map<String, String> weights = new HashMap<String, String>();
+		weights.put("premium", "2");
+		settings.setSchedulerWeights(weights);
+		FairSharePolicy policy = new FairSharePolicy(settings);
+
+		User user1 = createUser("user1", "user");
+		User user2 = createUser("user2", "user,premium");
+		assertEquals(1, policy.getWeight(user1));
+		assertEquals(2, policy.getWeight(user2));
+
+		long last1 = 0;
+		long last2 = 0;
+		for (int i = 0; i < 10; i++) {
+			last1 = policy.getPriority(new TestJob("a" + i, user1));
+			last2 = policy.getPriority(new TestJob("b" + i, user2));
+		}
+		// user2 advances half as fast
+		assertEquals(9 * FairSharePolicy.COST, last1 - 1);
+		assertEquals(9 * FairSharePolicy.COST / 2, last2 - 1);
+
+	}
+
+	public void testMaxRunningSlots() {
+
+		Settings settings = new Settings();
+		settings.setMaxRunningSlotsPerUser(2);
+		FairSharePolicy policy = new FairSharePolicy(settings);
+
+		User user1 = createUser("user1", "user");
+		User user2 = createUser("user2", "user");
+
+		TestJob job1 = new TestJob("a1", user1);
+		TestJob job2 = new TestJob("a2", user1);
+		TestJob job3 = new TestJob("a3", user1);
+		TestJob job4 = new TestJob("b1", user2);
+
+		assertTrue(policy.acquire(job1));
+		assertTrue(policy.acquire(job2));
+		assertFalse(policy.acquire(job3));
+		assertTrue(policy.acquire(job4));
+		assertEquals(2, policy.getRunningSlots(user1));
+
+		policy.release(job1);
+		assertEquals(1, policy.getRunningSlots(user1));
+		assertTrue(policy.acquire(job3));
+
+	}
+
+	private User createUser(String username, String roles) {
+		User user = new User();
+		user.setUsername(username);
+		user.setRoles(roles.split(","));
+		return user;
+	}
+
+}
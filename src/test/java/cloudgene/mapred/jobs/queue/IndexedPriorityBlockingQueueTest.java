@@ -0,0 +1,97 @@
+package cloudgene.mapred.jobs.queue;
+
+import java.util.List;
+import java.util.Random;
+import java.util.Vector;
+
+import junit.framework.TestCase;
+
+public class IndexedPriorityBlockingQueueTest extends TestCase {
+
+	public void testOrderAndFifo() {
+
+		IndexedPriorityBlockingQueue queue = new IndexedPriorityBlockingQueue();
+
+		List<TestRunnable> runnables = new Vector<TestRunnable>();
+		for (int i = 0; i < 20; i++) {
+			TestRunnable runnable = new TestRunnable(i, i % 3);
+			runnables.add(runnable);
+			assertTrue(queue.offer(runnable));
+		}
+		assertEquals(20, queue.size());
+		assertFalse(queue.offer(runnables.get(0)));
+
+		TestRunnable previous = null;
+		while (!queue.isEmpty()) {
+			TestRunnable runnable = (TestRunnable) queue.poll();
+			if (previous != null) {
+				assertTrue(previous.getPriority() <= runnable.getPriority());
+				if (previous.getPriority() == runnable.getPriority()) {
+					assertTrue(previous.id < runnable.id);
+				}
+			}
+			previous = runnable;
+		}
+
+	}
+
+	public void testRemoveAndUpdate() {
+
+		IndexedPriorityBlockingQueue queue = new IndexedPriorityBlockingQueue();
+		Random random = new Random(42);
+
+		List<TestRunnable> runnables = new Vector<TestRunnable>();
+		for (int i = 0; i < 1000; i++) {
+			TestRunnable runnable = new TestRunnable(i, random.nextInt(100));
+			runnables.add(runnable);
+			queue.offer(runnable);
+		}
+
+		// remove every third element
+		for (int i = 0; i < runnables.size(); i += 3) {
+			assertTrue(queue.remove(runnables.get(i)));
+			assertFalse(queue.contains(runnables.get(i)));
+		}
+		assertFalse(queue.remove(runnables.get(0)));
+		assertEquals(666, queue.size());
+
+		// move some elements to the front
+		final TestRunnable first = runnables.get(1);
+		final TestRunnable second = runnables.get(2);
+		assertTrue(queue.update(second, () -> second.setPriority(-1)));
+		assertTrue(queue.update(first, () -> first.setPriority(-1)));
+		assertFalse(queue.update(runnables.get(0), () -> runnables.get(0).setPriority(-1)));
+
+		// same priority: updated first, runs first
+		assertSame(second, queue.poll());
+		assertSame(first, queue.poll());
+
+		long priority = Long.MIN_VALUE;
+		int count = 0;
+		while (!queue.isEmpty()) {
+			TestRunnable runnable = (TestRunnable) queue.poll();
+			assertTrue(priority <= runnable.getPriority());
+			priority = runnable.getPriority();
+			count++;
+		}
+		assertEquals(664, count);
+
+	}
+
+	class TestRunnable extends PriorityRunnable {
+
+		private int id;
+
+		public TestRunnable(int id, long priority) {
+			this.id = id;
+			setPriority(priority);
+		}
+
+		@Override
+		public void run() {
+
+		}
+
+	}
+
+}
@@ -0,0 +1,52 @@
+package cloudgene.mapred.jobs.queue;
+
+import java.util.Arrays;
+
+import cloudgene.mapred.core.User;
+import junit.framework.TestCase;
+
+public class JobRegistryTest extends TestCase {
+
+	public void testJobsByUser() {
+
+		JobRegistry registry = new JobRegistry();
+
+		User user1 = createUser(1);
+		User user2 = createUser(2);
+
+		// jobs of a user are returned in submit order
+		TestJob jobC = new TestJob("c", user1);
+		TestJob jobA = new TestJob("a", user1);
+		TestJob jobB = new TestJob("b", user1);
+		TestJob jobD = new TestJob("d", user2);
+		registry.add(jobC);
+		registry.add(jobA);
+		registry.add(jobD);
+		registry.add(jobB);
+
+		assertEquals(Arrays.asList(jobC, jobA, jobB), registry.getJobsByUser(user1));
+		assertEquals(3, registry.countJobsByUser(user1));
+		assertSame(jobD, registry.getJobById("d"));
+
+		registry.remove(jobA);
+		assertEquals(Arrays.asList(jobC, jobB), registry.getJobsByUser(user1));
+
+		// users without jobs are removed
+		registry.remove(jobD);
+		assertEquals(0, registry.countJobsByUser(user2));
+		assertEquals(1, registry.getUsers());
+		registry.remove(jobC);
+		registry.remove(jobB);
+		assertEquals(0, registry.getUsers());
+		assertEquals(0, registry.getSize());
+
+	}
+
+	private User createUser(int id) {
+		User user = new User();
+		user.setId(id);
+		user.setUsername("user" + id);
+		return user;
+	}
+
+}
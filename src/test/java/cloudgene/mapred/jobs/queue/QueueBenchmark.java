@@ -0,0 +1,108 @@
+package cloudgene.mapred.jobs.queue;
+
+import java.util.List;
+import java.util.Random;
+import java.util.Vector;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import cloudgene.mapred.jobs.AbstractJob;
+
+/**
+ * Priority updates (like the admin ChangePriority call) and removals on a
+ * long time queue with many waiting jobs. The queue is paused, no job is
+ * executed.
+ * 
+ * mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=cloudgene.mapred.jobs.queue.QueueBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueueBenchmark {
+
+	@Param({ "10000" })
+	public int jobs;
+
+	private Queue queue;
+
+	private List<AbstractJob> waiting;
+
+	private IndexedPriorityBlockingQueue heap;
+
+	private List<PriorityRunnable> runnables;
+
+	private Random random = new Random(42);
+
+	@Setup
+	public void setup() {
+
+		queue = new Queue("BenchmarkQueue", 1, true, true) {
+
+			@Override
+			public PriorityRunnable createRunnable(AbstractJob job) {
+				return job;
+			}
+
+			@Override
+			public void onComplete(AbstractJob job) {
+
+			}
+
+		};
+		queue.pause();
+
+		waiting = new Vector<AbstractJob>();
+		for (int i = 0; i < jobs; i++) {
+			AbstractJob job = new TestJob("job-" + i);
+			job.setPriority(i + 1);
+			queue.submit(job);
+			waiting.add(job);
+		}
+
+		heap = new IndexedPriorityBlockingQueue();
+		runnables = new Vector<PriorityRunnable>();
+		for (int i = 0; i < jobs; i++) {
+			AbstractJob job = new TestJob("heap-" + i);
+			job.setPriority(i + 1);
+			heap.offer(job);
+			runnables.add(job);
+		}
+
+	}
+
+	@Benchmark
+	public boolean changePriority() {
+		AbstractJob job = waiting.get(random.nextInt(waiting.size()));
+		return queue.updatePriority(job, random.nextInt(jobs));
+	}
+
+	@Benchmark
+	public boolean removeAndOffer() {
+		PriorityRunnable runnable = runnables.get(random.nextInt(runnables.size()));
+		heap.remove(runnable);
+		return heap.offer(runnable);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(QueueBenchmark.class.getSimpleName()).build()).run();
+	}
+
+}
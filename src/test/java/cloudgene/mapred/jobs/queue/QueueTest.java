@@ -0,0 +1,155 @@
+package cloudgene.mapred.jobs.queue;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+
+import cloudgene.mapred.jobs.AbstractJob;
+import junit.framework.TestCase;
+
+public class QueueTest extends TestCase {
+
+	public static final long TIMEOUT = 10000;
+
+	private CountDownLatch latch;
+
+	private HoldPolicy policy;
+
+	@Override
+	protected void setUp() throws Exception {
+		latch = new CountDownLatch(1);
+		policy = new HoldPolicy();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		policy.held = null;
+		latch.countDown();
+	}
+
+	public void testJobsStartedOutOfOrder() throws Exception {
+
+		Queue queue = createQueue(2);
+		queue.setPolicy(policy);
+
+		// job2 is held back by the policy, job3 starts before it
+		policy.held = "job2";
+		AbstractJob job1 = submit(queue, "job1", 1);
+		AbstractJob job2 = submit(queue, "job2", 2);
+		AbstractJob job3 = submit(queue, "job3", 3);
+
+		waitForOrder(queue, job1, job3, job2);
+		assertEquals(0, job2.getPositionInQueue());
+
+		// new jobs are inserted behind the held job
+		AbstractJob job4 = submit(queue, "job4", 4);
+		AbstractJob job5 = submit(queue, "job5", 0);
+		waitForOrder(queue, job1, job3, job5, job2, job4);
+		assertEquals(0, job5.getPositionInQueue());
+		assertEquals(1, job2.getPositionInQueue());
+		assertEquals(2, job4.getPositionInQueue());
+
+	}
+
+	public void testPositionsAfterPriorityUpdate() throws Exception {
+
+		Queue queue = createQueue(1);
+		queue.setPolicy(policy);
+
+		AbstractJob job1 = submit(queue, "job1", 1);
+		waitForRunning(job1);
+
+		AbstractJob job2 = submit(queue, "job2", 2);
+		AbstractJob job3 = submit(queue, "job3", 3);
+		assertEquals(0, job2.getPositionInQueue());
+		assertEquals(1, job3.getPositionInQueue());
+
+		assertTrue(queue.updatePriority(job3, 0));
+		waitForOrder(queue, job1, job3, job2);
+		assertEquals(0, job3.getPositionInQueue());
+		assertEquals(1, job2.getPositionInQueue());
+
+	}
+
+	private AbstractJob submit(Queue queue, String id, long priority) {
+		BlockingJob job = new BlockingJob(id);
+		job.setPriority(priority);
+		job.setState(AbstractJob.STATE_WAITING);
+		queue.submit(job);
+		return job;
+	}
+
+	private void waitForOrder(Queue queue, AbstractJob... jobs) throws InterruptedException {
+		long timeout = System.currentTimeMillis() + TIMEOUT;
+		while (!queue.getAllJobs().equals(Arrays.asList(jobs)) && System.currentTimeMillis() < timeout) {
+			Thread.sleep(10);
+		}
+		assertEquals(Arrays.asList(jobs), queue.getAllJobs());
+	}
+
+	private void waitForRunning(AbstractJob job) throws InterruptedException {
+		long timeout = System.currentTimeMillis() + TIMEOUT;
+		while (job.getState() != AbstractJob.STATE_RUNNING && System.currentTimeMillis() < timeout) {
+			Thread.sleep(10);
+		}
+		assertEquals(AbstractJob.STATE_RUNNING, job.getState());
+	}
+
+	private Queue createQueue(int threads) {
+
+		return new Queue("LongTimeQueue", threads, true, true) {
+
+			@Override
+			public PriorityRunnable createRunnable(AbstractJob job) {
+				return job;
+			}
+
+			@Override
+			public void onComplete(AbstractJob job) {
+
+			}
+
+		};
+
+	}
+
+	class BlockingJob extends TestJob {
+
+		public BlockingJob(String id) {
+			super(id);
+		}
+
+		@Override
+		public void run() {
+			// keeps the job running until the test is finished
+			setState(AbstractJob.STATE_RUNNING);
+			try {
+				latch.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+	}
+
+	class HoldPolicy implements SchedulingPolicy {
+
+		volatile String held;
+
+		@Override
+		public long getPriority(PriorityRunnable runnable) {
+			return runnable.getPriority();
+		}
+
+		@Override
+		public boolean acquire(PriorityRunnable runnable) {
+			return !((AbstractJob) runnable).getId().equals(held);
+		}
+
+		@Override
+		public void release(PriorityRunnable runnable) {
+
+		}
+
+	}
+
+}
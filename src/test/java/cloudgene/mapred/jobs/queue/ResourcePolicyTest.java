@@ -0,0 +1,125 @@
+package cloudgene.mapred.jobs.queue;
+
+import cloudgene.mapred.wdl.WdlStep;
+import cloudgene.mapred.wdl.WdlWorkflow;
+import junit.framework.TestCase;
+
+public class ResourcePolicyTest extends TestCase {
+
+	public void testLedger() {
+
+		ResourceLedger ledger = new ResourceLedger(8, 16000);
+		assertTrue(ledger.reserve(4, 8000));
+		assertFalse(ledger.fits(2, 10000));
+		assertTrue(ledger.reserve(4, 8000));
+		assertFalse(ledger.fits(1, 0));
+		assertEquals(8, ledger.getUsedCpus());
+		assertEquals(16000, ledger.getUsedMemory());
+
+		ledger.release(4, 8000);
+		ledger.release(4, 8000);
+		assertEquals(0, ledger.getUsedCpus());
+
+		// larger than the host: runs alone
+		assertTrue(ledger.reserve(32, 0));
+		assertFalse(ledger.fits(1, 0));
+
+	}
+
+	public void testBackfill() {
+
+		ResourcePolicy policy = new ResourcePolicy(new FifoPolicy(), new ResourceLedger(8, 0));
+
+		IndexedPriorityBlockingQueue queue = new IndexedPriorityBlockingQueue();
+		queue.setAdmission(element -> policy.acquire((PriorityRunnable) element));
+
+		TestJob running = new TestJob("running", 4, 0);
+		assertTrue(policy.acquire(running));
+
+		TestJob large = new TestJob("large", 8, 0);
+		large.setPriority(1);
+		TestJob small1 = new TestJob("small1", 2, 0);
+		small1.setPriority(2);
+		TestJob small2 = new TestJob("small2", 2, 0);
+		small2.setPriority(3);
+		queue.offer(large);
+		queue.offer(small1);
+		queue.offer(small2);
+
+		// large job does not fit, small jobs are backfilled
+		assertSame(small1, queue.poll());
+		assertSame(small2, queue.poll());
+		assertNull(queue.poll());
+		assertEquals(8, policy.getLedger().getUsedCpus());
+
+		policy.release(running);
+		assertNull(queue.poll());
+		policy.release(small1);
+		policy.release(small2);
+		assertSame(large, queue.poll());
+		assertEquals(8, policy.getLedger().getUsedCpus());
+
+	}
+
+	public void testReservation() {
+
+		// waiting jobs get a reservation at once
+		ResourcePolicy policy = new ResourcePolicy(new FifoPolicy(), new ResourceLedger(8, 0), 0);
+
+		IndexedPriorityBlockingQueue queue = new IndexedPriorityBlockingQueue();
+		queue.setAdmission(element -> policy.acquire((PriorityRunnable) element));
+
+		TestJob running = new TestJob("running", 4, 0);
+		assertTrue(policy.acquire(running));
+
+		TestJob large = new TestJob("large", 8, 0);
+		large.setPriority(1);
+		TestJob small = new TestJob("small", 2, 0);
+		small.setPriority(2);
+		queue.offer(large);
+		queue.offer(small);
+
+		// small job does not fit next to the reserved large job
+		assertNull(queue.poll());
+		assertSame(large, policy.getReservedRunnable());
+
+		policy.release(running);
+		assertSame(large, queue.poll());
+		assertNull(policy.getReservedRunnable());
+
+		policy.release(large);
+		assertSame(small, queue.poll());
+
+	}
+
+	public void testParallelRequirements() {
+
+		WdlWorkflow workflow = new WdlWorkflow();
+		workflow.getSteps().add(createStep("4", "1000"));
+		workflow.getSteps().add(createStep("2", "3000"));
+		workflow.getSteps().add(createStep(null, "2000"));
+
+		// sequential: largest step
+		assertEquals(4, workflow.getRequiredCpus());
+		assertEquals(3000, workflow.getRequiredMemory());
+
+		// two steps at the same time: two largest steps
+		assertEquals(6, workflow.getRequiredCpus(2));
+		assertEquals(5000, workflow.getRequiredMemory(2));
+
+		// all steps, undeclared steps need one core
+		assertEquals(7, workflow.getRequiredCpus(4));
+		assertEquals(6000, workflow.getRequiredMemory(4));
+
+	}
+
+	private WdlStep createStep(String cpus, String memory) {
+		WdlStep step = new WdlStep();
+		if (cpus != null) {
+			step.put("cpus", cpus);
+		}
+		step.put("memory", memory);
+		return step;
+	}
+
+}
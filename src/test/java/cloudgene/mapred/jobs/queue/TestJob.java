@@ -0,0 +1,80 @@
+package cloudgene.mapred.jobs.queue;
+
+import cloudgene.mapred.core.User;
+import cloudgene.mapred.jobs.AbstractJob;
+
+/**
+ * Job without steps to test queues and scheduling policies.
+ */
+public class TestJob extends AbstractJob {
+
+	private int cpus = 1;
+
+	private int memory = 0;
+
+	public TestJob(String id) {
+		setId(id);
+	}
+
+	public TestJob(String id, User user) {
+		setId(id);
+		setUser(user);
+	}
+
+	public TestJob(String id, int cpus, int memory) {
+		setId(id);
+		this.cpus = cpus;
+		this.memory = memory;
+	}
+
+	@Override
+	public int getRequiredCpus() {
+		return cpus;
+	}
+
+	@Override
+	public int getRequiredMemory() {
+		return memory;
+	}
+
+	@Override
+	public boolean execute() {
+		return true;
+	}
+
+	@Override
+	public boolean executeSetupSteps() {
+		return true;
+	}
+
+	@Override
+	public boolean executeInstallation(boolean forceInstallation) {
+		return true;
+	}
+
+	@Override
+	public boolean setup() {
+		return true;
+	}
+
+	@Override
+	public boolean before() {
+		return true;
+	}
+
+	@Override
+	public boolean after() {
+		return true;
+	}
+
+	@Override
+	public boolean onFailure() {
+		return true;
+	}
+
+	@Override
+	public boolean cleanUp() {
+		return true;
+	}
+
+}
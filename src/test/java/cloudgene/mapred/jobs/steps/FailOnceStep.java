@@ -0,0 +1,24 @@
+package cloudgene.mapred.jobs.steps;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import genepi.hadoop.common.WorkflowContext;
+import genepi.hadoop.common.WorkflowStep;
+
+/**
+ * Fails the first time it is executed for a job and succeeds on all further
+ * runs of the same job.
+ */
+public class FailOnceStep extends WorkflowStep {
+
+	private static Set<String> failedJobs = new HashSet<String>();
+
+	@Override
+	public boolean run(WorkflowContext context) {
+		synchronized (failedJobs) {
+			return !failedJobs.add(context.getJobId());
+		}
+	}
+
+}
@@ -0,0 +1,74 @@
+package cloudgene.mapred.util;
+
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
+
+import genepi.io.FileUtil;
+import junit.framework.TestCase;
+
+public class ApplicationTest extends TestCase {
+
+	public void testIsModified() throws Exception {
+
+		FileUtil.createDirectory("test-application");
+		String filename = "test-application/return-true.yaml";
+		FileUtils.copyFile(new File("test-data/return-true.yaml"), new File(filename));
+
+		Application application = new Application("return-true", "user", filename);
+		assertTrue(application.isModified());
+
+		application.loadWdlApp();
+		assertTrue(application.isLoaded());
+		assertFalse(application.isModified());
+
+		// new modification time, same content
+		new File(filename).setLastModified(System.currentTimeMillis() + 10000);
+		assertFalse(application.isModified());
+
+		// new content
+		String content = FileUtil.readFileAsString(filename);
+		FileUtil.writeStringBufferToFile(filename, new StringBuffer(content + "\n# changed\n"));
+		assertTrue(application.isModified());
+
+		application.checkForChanges();
+		assertTrue(application.isChanged());
+
+		application.loadWdlApp();
+		assertFalse(application.isModified());
+
+		FileUtil.deleteDirectory("test-application");
+
+	}
+
+	public void testReloadOnlyModified() throws Exception {
+
+		FileUtil.createDirectory("test-application");
+		String filename = "test-application/return-true.yaml";
+		FileUtils.copyFile(new File("test-data/return-true.yaml"), new File(filename));
+
+		Settings settings = new Settings();
+		settings.getApps().add(new Application("return-true", "user", filename));
+		settings.getApps().add(new Application("return-false", "user", "test-data/return-false.yaml"));
+		settings.reloadApplications();
+
+		Application application = settings.getApp("return-true");
+		assertNotNull(application);
+		Object wdlApp = application.getWdlApp();
+		assertNotNull(wdlApp);
+
+		// unchanged manifest is not parsed again
+		settings.reloadApplications();
+		assertSame(wdlApp, settings.getApp("return-true").getWdlApp());
+
+		String content = FileUtil.readFileAsString(filename);
+		FileUtil.writeStringBufferToFile(filename, new StringBuffer(content + "\n# changed\n"));
+		settings.reloadApplications();
+		assertNotSame(wdlApp, settings.getApp("return-true").getWdlApp());
+		assertEquals("return-true", settings.getApp("return-true").getWdlApp().getId());
+
+		FileUtil.deleteDirectory("test-application");
+
+	}
+
+}
@@ -0,0 +1,37 @@
+package cloudgene.mapred.util;
+
+import junit.framework.TestCase;
+
+public class ExpiringCacheTest extends TestCase {
+
+	public void testMaxSize() {
+
+		ExpiringCache<String, String> cache = new ExpiringCache<String, String>(2, 60000);
+		cache.put("a", "1");
+		cache.put("b", "2");
+		// a is now the most recently used entry
+		assertEquals("1", cache.get("a"));
+		cache.put("c", "3");
+
+		assertEquals(2, cache.size());
+		assertEquals("1", cache.get("a"));
+		assertEquals(null, cache.get("b"));
+		assertEquals("3", cache.get("c"));
+
+	}
+
+	public void testExpires() {
+
+		ExpiringCache<String, String> cache = new ExpiringCache<String, String>(10, 60000);
+		cache.put("a", "1", System.currentTimeMillis() - 1);
+		cache.put("b", "2");
+
+		assertEquals(null, cache.get("a"));
+		assertEquals("2", cache.get("b"));
+
+		cache.remove("b");
+		assertEquals(null, cache.get("b"));
+
+	}
+
+}
@@ -0,0 +1,44 @@
+package cloudgene.mapred.util;
+
+import java.io.File;
+import java.io.StringWriter;
+
+import org.apache.velocity.Template;
+import org.apache.velocity.VelocityContext;
+
+import genepi.io.FileUtil;
+import junit.framework.TestCase;
+
+public class TemplateCacheTest extends TestCase {
+
+	public void testCacheAndModification() throws Exception {
+
+		FileUtil.createDirectory("test-template-cache");
+		File file = new File("test-template-cache/template.vm");
+		FileUtil.writeStringBufferToFile(file.getAbsolutePath(), new StringBuffer("hello $name"));
+
+		TemplateCache cache = TemplateCache.getInstance();
+		Template template1 = cache.getTemplate(file);
+		Template template2 = cache.getTemplate(file);
+		assertSame(template1, template2);
+
+		VelocityContext context = new VelocityContext();
+		context.put("name", "lukas");
+		StringWriter writer = new StringWriter();
+		cache.merge(file, context, writer);
+		assertEquals("hello lukas", writer.toString());
+
+		// modified template is parsed again
+		FileUtil.writeStringBufferToFile(file.getAbsolutePath(), new StringBuffer("bye $name"));
+		Template template3 = cache.getTemplate(file);
+		assertNotSame(template1, template3);
+
+		writer = new StringWriter();
+		cache.merge(file, context, writer);
+		assertEquals("bye lukas", writer.toString());
+
+		FileUtil.deleteDirectory("test-template-cache");
+
+	}
+
+}